@@ -0,0 +1,172 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import javacard.framework.ISO7816;
+
+/**
+ * Parsed length fields of a command APDU: case, Lc, Ne and data offset.
+ *
+ * <p>The runtime classifies every command once and hands the header to
+ * <code>APDU</code>. Callers which already parsed the command, for example
+ * into a <code>javax.smartcardio.CommandAPDU</code>, pass a header to
+ * {@link SimulatorRuntime#transmitCommand(byte[], ApduHeader)} and the
+ * command is not classified again.</p>
+ */
+public final class ApduHeader {
+    private final ApduCase apduCase;
+    private final int lc;
+    private final int ne;
+
+    /**
+     * @param apduCase case of the command
+     * @param lc number of data bytes, 0 for case 1 and 2
+     * @param ne maximum number of response bytes (256 or 65536 for a Le of zero), 0 for case 1 and 3
+     * @throws IllegalArgumentException if <code>lc</code> or <code>ne</code> do not fit <code>apduCase</code>
+     * @throws NullPointerException if <code>apduCase</code> is null
+     */
+    public ApduHeader(ApduCase apduCase, int lc, int ne) {
+        if (apduCase == null) {
+            throw new NullPointerException("apduCase");
+        }
+        boolean hasData = apduCase == ApduCase.Case3 || apduCase == ApduCase.Case3Extended
+                || apduCase == ApduCase.Case4 || apduCase == ApduCase.Case4Extended;
+        boolean hasLe = apduCase == ApduCase.Case2 || apduCase == ApduCase.Case2Extended
+                || apduCase == ApduCase.Case4 || apduCase == ApduCase.Case4Extended;
+        int maxLc = apduCase.isExtended() ? 65535 : 255;
+        int maxNe = apduCase.isExtended() ? 65536 : 256;
+        if (hasData ? (lc < 0 || lc > maxLc) : lc != 0) {
+            throw new IllegalArgumentException("lc: " + lc + " for " + apduCase);
+        }
+        if (hasLe ? (ne < 1 || ne > maxNe) : ne != 0) {
+            throw new IllegalArgumentException("ne: " + ne + " for " + apduCase);
+        }
+        this.apduCase = apduCase;
+        this.lc = lc;
+        this.ne = ne;
+    }
+
+    /**
+     * Parse a command APDU
+     * @param command command APDU
+     * @return header of <code>command</code>
+     * @throws IllegalArgumentException if <code>command</code> is malformed
+     * @throws NullPointerException if <code>command</code> is null
+     */
+    public static ApduHeader parse(byte[] command) {
+        return forCase(ApduCase.getCase(command), command);
+    }
+
+    /**
+     * Read Lc and Le of a command with a known case
+     * @param apduCase case of <code>command</code>
+     * @param command command APDU
+     * @return header of <code>command</code>
+     */
+    public static ApduHeader forCase(ApduCase apduCase, byte[] command) {
+        final int lcOffset = ISO7816.OFFSET_LC;
+        switch (apduCase) {
+            case Case2:
+                return new ApduHeader(apduCase, 0, shortLe(command[lcOffset]));
+            case Case2Extended:
+                return new ApduHeader(apduCase, 0, extendedLe(command, lcOffset + 1));
+            case Case3:
+                return new ApduHeader(apduCase, command[lcOffset] & 0xFF, 0);
+            case Case3Extended:
+                return new ApduHeader(apduCase, readShort(command, lcOffset + 1), 0);
+            case Case4: {
+                int lc = command[lcOffset] & 0xFF;
+                return new ApduHeader(apduCase, lc, shortLe(command[lcOffset + 1 + lc]));
+            }
+            case Case4Extended: {
+                int lc = readShort(command, lcOffset + 1);
+                return new ApduHeader(apduCase, lc, extendedLe(command, lcOffset + 3 + lc));
+            }
+            case Case1:
+            default:
+                return new ApduHeader(ApduCase.Case1, 0, 0);
+        }
+    }
+
+    private static int readShort(byte[] command, int offset) {
+        return ((command[offset] & 0xFF) << 8) | (command[offset + 1] & 0xFF);
+    }
+
+    private static int shortLe(byte le) {
+        return le == 0 ? 256 : le & 0xFF;
+    }
+
+    private static int extendedLe(byte[] command, int offset) {
+        int le = readShort(command, offset);
+        return le == 0 ? 65536 : le;
+    }
+
+    /**
+     * @return case of the command
+     */
+    public ApduCase getCase() {
+        return apduCase;
+    }
+
+    /**
+     * @return number of data bytes
+     */
+    public int getLc() {
+        return lc;
+    }
+
+    /**
+     * @return maximum number of response bytes, 0 if the command has no Le field
+     */
+    public int getNe() {
+        return ne;
+    }
+
+    /**
+     * @return offset of the data in the command
+     */
+    public int getDataOffset() {
+        return apduCase.isExtended() ? ISO7816.OFFSET_CDATA + 2 : ISO7816.OFFSET_CDATA;
+    }
+
+    /**
+     * @return length of a command with this header
+     */
+    public int getCommandLength() {
+        switch (apduCase) {
+            case Case2:
+                return 5;
+            case Case2Extended:
+                return 7;
+            case Case3:
+                return 5 + lc;
+            case Case3Extended:
+                return 7 + lc;
+            case Case4:
+                return 6 + lc;
+            case Case4Extended:
+                return 9 + lc;
+            case Case1:
+            default:
+                return 4;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return apduCase + " Lc=" + lc + " Ne=" + ne;
+    }
+}
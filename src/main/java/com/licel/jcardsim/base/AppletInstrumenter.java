@@ -0,0 +1,215 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AdviceAdapter;
+import org.objectweb.asm.commons.Method;
+
+/**
+ * Adds the probes of an {@link AppletProfiler} to an applet class.
+ *
+ * <p>Every method with code gets a start time local set by
+ * <code>AppletProfiler.enter</code> and calls <code>AppletProfiler.exit</code>
+ * on return and from a catch-all handler, so exceptions thrown by callees
+ * such as <code>ISOException.throwIt</code> are timed too. Conditional jumps
+ * count the fall through after the jump and the taken branch in a trampoline
+ * at the end of the method; switches get a trampoline per target.</p>
+ */
+final class AppletInstrumenter {
+    private static final Type PROFILER = Type.getType(AppletProfiler.class);
+    private static final Method ENTER = Method.getMethod("long enter(int)");
+    private static final Method EXIT = Method.getMethod("void exit(int, long)");
+    private static final Method BRANCH = Method.getMethod("void branch(int, int)");
+
+    private final AppletProfiler profiler;
+    private final ClassLoader loader;
+
+    AppletInstrumenter(AppletProfiler profiler, ClassLoader loader) {
+        this.profiler = profiler;
+        this.loader = loader;
+    }
+
+    byte[] instrument(byte[] classBytes) {
+        ClassReader reader = new ClassReader(classBytes);
+        ClassWriter writer = new LoaderClassWriter(loader);
+        reader.accept(new ProbeClassAdapter(writer), ClassReader.SKIP_FRAMES);
+        return writer.toByteArray();
+    }
+
+    private final class ProbeClassAdapter extends ClassVisitor {
+        private String className;
+
+        ProbeClassAdapter(ClassVisitor cv) {
+            super(Opcodes.ASM7, cv);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            className = name.replace('/', '.');
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
+            if (mv == null || (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+                return mv;
+            }
+            int id = profiler.register(className, name, descriptor);
+            return new ProbeMethodAdapter(mv, access, name, descriptor, id);
+        }
+    }
+
+    private static final class ProbeMethodAdapter extends AdviceAdapter {
+        private final int id;
+        private final Label tryStart = new Label();
+        private final List<Label> trampolines = new ArrayList<Label>();
+        private final List<Label> targets = new ArrayList<Label>();
+        // branch index counted by each trampoline
+        private final List<Integer> trampolineBranches = new ArrayList<Integer>();
+        private int start;
+        private int branchCount;
+        // false in constructors until the super constructor was called
+        private boolean entered;
+
+        ProbeMethodAdapter(MethodVisitor mv, int access, String name, String descriptor, int id) {
+            super(Opcodes.ASM7, mv, access, name, descriptor);
+            this.id = id;
+        }
+
+        @Override
+        protected void onMethodEnter() {
+            push(id);
+            invokeStatic(PROFILER, ENTER);
+            start = newLocal(Type.LONG_TYPE);
+            storeLocal(start);
+            mark(tryStart);
+            entered = true;
+        }
+
+        @Override
+        protected void onMethodExit(int opcode) {
+            // ATHROW is handled by the catch-all handler
+            if (opcode != ATHROW) {
+                callExit();
+            }
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            if (!entered || opcode == GOTO || opcode == JSR) {
+                super.visitJumpInsn(opcode, label);
+                return;
+            }
+            int notTaken = branchCount++;
+            super.visitJumpInsn(opcode, trampoline(label));
+            countBranch(notTaken);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            if (!entered) {
+                super.visitTableSwitchInsn(min, max, dflt, labels);
+                return;
+            }
+            Map<Label, Label> switchTrampolines = new IdentityHashMap<Label, Label>();
+            super.visitTableSwitchInsn(min, max, trampoline(switchTrampolines, dflt), trampolines(switchTrampolines, labels));
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            if (!entered) {
+                super.visitLookupSwitchInsn(dflt, keys, labels);
+                return;
+            }
+            Map<Label, Label> switchTrampolines = new IdentityHashMap<Label, Label>();
+            super.visitLookupSwitchInsn(trampoline(switchTrampolines, dflt), keys, trampolines(switchTrampolines, labels));
+        }
+
+        @Override
+        public void visitMaxs(int maxStack, int maxLocals) {
+            Label tryEnd = new Label();
+            Label handler = new Label();
+            mark(tryEnd);
+            for (int i = 0; i < trampolines.size(); i++) {
+                mark(trampolines.get(i));
+                countBranch(trampolineBranches.get(i));
+                goTo(targets.get(i));
+            }
+            if (entered) {
+                mv.visitTryCatchBlock(tryStart, tryEnd, handler, null);
+                mark(handler);
+                callExit();
+                throwException();
+            }
+            super.visitMaxs(maxStack, maxLocals);
+        }
+
+        @Override
+        public void visitEnd() {
+            AppletProfiler.setBranchCount(id, branchCount);
+            super.visitEnd();
+        }
+
+        private Label trampoline(Label target) {
+            Label trampoline = new Label();
+            trampolines.add(trampoline);
+            targets.add(target);
+            trampolineBranches.add(branchCount++);
+            return trampoline;
+        }
+
+        private Label trampoline(Map<Label, Label> switchTrampolines, Label target) {
+            Label trampoline = switchTrampolines.get(target);
+            if (trampoline == null) {
+                trampoline = trampoline(target);
+                switchTrampolines.put(target, trampoline);
+            }
+            return trampoline;
+        }
+
+        private Label[] trampolines(Map<Label, Label> switchTrampolines, Label[] labels) {
+            Label[] result = new Label[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                result[i] = trampoline(switchTrampolines, labels[i]);
+            }
+            return result;
+        }
+
+        private void countBranch(int branch) {
+            push(id);
+            push(branch);
+            invokeStatic(PROFILER, BRANCH);
+        }
+
+        private void callExit() {
+            push(id);
+            loadLocal(start);
+            invokeStatic(PROFILER, EXIT);
+        }
+    }
+}
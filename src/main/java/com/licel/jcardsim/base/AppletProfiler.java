@@ -0,0 +1,371 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Method profile and branch coverage of applet classes.
+ *
+ * <p>Applet classes loaded by a <code>Simulator</code> from applet jars, see
+ * {@link Simulator#setAppletProfiler(AppletProfiler)}, are instrumented with
+ * ASM when they are loaded. The instrumented code counts invocations, the
+ * cumulative time spent in each method including its callees and how often
+ * each branch of a conditional jump or switch was taken. Applet classes on
+ * the class path of jCardSim itself are not instrumented.</p>
+ *
+ * <p>Setting the system property {@value #REPORT_SYSTEM_PROPERTY} to a file
+ * name profiles the applets of every new <code>Simulator</code> with one
+ * shared profiler whose report is written to that file when the JVM shuts
+ * down.</p>
+ *
+ * <p>Times are measured with <code>System.nanoTime()</code> on the host and
+ * only show where an applet spends its time relative to its other methods,
+ * they are not an estimate of the time on a real card.</p>
+ */
+public final class AppletProfiler {
+    /** system property naming the report file of the shared profiler */
+    public static final String REPORT_SYSTEM_PROPERTY = "com.licel.jcardsim.profiler.report";
+
+    private static final Logger LOGGER = Logger.getLogger(AppletProfiler.class.getName());
+    private static final Object LOCK = new Object();
+    // probes of all profilers, instrumented code refers to them by index
+    private static volatile MethodProbe[] probes = new MethodProbe[64];
+    private static int probeCount;
+    private static AppletProfiler shared;
+
+    private final List<MethodProbe> methods = Collections.synchronizedList(new ArrayList<MethodProbe>());
+    // probes by class name, method name and descriptor, guarded by LOCK
+    private final Map<String, MethodProbe> probesByMethod = new HashMap<String, MethodProbe>();
+
+    /**
+     * @return shared profiler if {@value #REPORT_SYSTEM_PROPERTY} is set, otherwise null
+     */
+    static AppletProfiler forNewSimulator() {
+        String report = System.getProperty(REPORT_SYSTEM_PROPERTY);
+        if (report == null) {
+            return null;
+        }
+        synchronized (LOCK) {
+            if (shared == null) {
+                shared = new AppletProfiler();
+                shared.writeReportOnShutdown(new File(report));
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Instrument an applet class
+     * @param classBytes class file
+     * @param loader class loader which will define the class, used to look up super classes
+     * @return instrumented class file, <code>classBytes</code> if the class cannot be instrumented
+     */
+    public byte[] instrument(byte[] classBytes, ClassLoader loader) {
+        try {
+            return new AppletInstrumenter(this, loader).instrument(classBytes);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to instrument applet class, it is not profiled", e);
+            return classBytes;
+        }
+    }
+
+    /**
+     * @return profiles of all instrumented methods, hottest first
+     */
+    public List<MethodProfile> getMethods() {
+        List<MethodProfile> result = new ArrayList<MethodProfile>();
+        synchronized (methods) {
+            for (MethodProbe probe : methods) {
+                result.add(new MethodProfile(probe));
+            }
+        }
+        Collections.sort(result, new Comparator<MethodProfile>() {
+            public int compare(MethodProfile a, MethodProfile b) {
+                if (a.totalNanos != b.totalNanos) {
+                    return a.totalNanos > b.totalNanos ? -1 : 1;
+                }
+                return a.invocations > b.invocations ? -1 : (a.invocations == b.invocations ? 0 : 1);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @param className binary class name, e.g. <code>com.example.MyApplet</code>
+     * @param methodName method name
+     * @return profile of the first method with that name or null
+     */
+    public MethodProfile getMethod(String className, String methodName) {
+        for (MethodProfile profile : getMethods()) {
+            if (profile.className.equals(className) && profile.methodName.equals(methodName)) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Clear all counters, instrumented classes stay instrumented
+     */
+    public void reset() {
+        synchronized (methods) {
+            for (MethodProbe probe : methods) {
+                probe.reset();
+            }
+        }
+    }
+
+    /**
+     * Write a text report listing every instrumented method, hottest first
+     * @param out destination
+     * @throws IOException if writing fails
+     */
+    public void writeReport(Appendable out) throws IOException {
+        List<MethodProfile> profiles = getMethods();
+        int covered = 0;
+        int branches = 0;
+        out.append(String.format(Locale.ROOT, "%12s %12s %10s  %s%n", "calls", "total ms", "branches", "method"));
+        for (MethodProfile profile : profiles) {
+            covered += profile.coveredBranches;
+            branches += profile.branchCount;
+            out.append(String.format(Locale.ROOT, "%12d %12.3f %10s  %s.%s%s%n",
+                    profile.invocations, profile.totalNanos / 1e6,
+                    profile.coveredBranches + "/" + profile.branchCount,
+                    profile.className, profile.methodName, profile.descriptor));
+        }
+        out.append(String.format(Locale.ROOT, "%d methods, %d of %d branches covered%n",
+                profiles.size(), covered, branches));
+    }
+
+    /**
+     * Write the report when the JVM shuts down
+     * @param file report file
+     * @return registered shutdown hook
+     */
+    public Thread writeReportOnShutdown(final File file) {
+        Thread hook = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+                    try {
+                        writeReport(writer);
+                    } finally {
+                        writer.close();
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Unable to write applet profile to " + file, e);
+                }
+            }
+        }, "jCardSim applet profile");
+        Runtime.getRuntime().addShutdownHook(hook);
+        return hook;
+    }
+
+    /**
+     * Allocate the probe of an instrumented method. A method loaded again,
+     * by another <code>Simulator</code> or after <code>reloadApplets</code>,
+     * gets the probe it had before.
+     * @return probe id used by the instrumented code
+     */
+    int register(String className, String methodName, String descriptor) {
+        MethodProbe probe;
+        synchronized (LOCK) {
+            String key = className + "." + methodName + descriptor;
+            probe = probesByMethod.get(key);
+            if (probe != null) {
+                return probe.id;
+            }
+            int id = probeCount++;
+            probe = new MethodProbe(id, className, methodName, descriptor);
+            MethodProbe[] current = probes;
+            if (id == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[id] = probe;
+            probes = current;
+            probesByMethod.put(key, probe);
+        }
+        methods.add(probe);
+        return probe.id;
+    }
+
+    static void setBranchCount(int id, int branchCount) {
+        MethodProbe probe = probes[id];
+        synchronized (LOCK) {
+            // keep the counts of a method loaded again, unless its code changed
+            if (probe.branches.length() != branchCount) {
+                probe.branches = new AtomicLongArray(branchCount);
+            }
+        }
+    }
+
+    /**
+     * Called by instrumented code when a method is entered
+     * @param id probe id
+     * @return start time
+     */
+    public static long enter(int id) {
+        probes[id].invocations.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Called by instrumented code when a method returns or throws
+     * @param id probe id
+     * @param start result of {@link #enter(int)}
+     */
+    public static void exit(int id, long start) {
+        probes[id].nanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * Called by instrumented code when a branch is taken
+     * @param id probe id
+     * @param branch branch index within the method
+     */
+    public static void branch(int id, int branch) {
+        probes[id].branches.incrementAndGet(branch);
+    }
+
+    private static final class MethodProbe {
+        final int id;
+        final String className;
+        final String methodName;
+        final String descriptor;
+        final AtomicLong invocations = new AtomicLong();
+        final AtomicLong nanos = new AtomicLong();
+        volatile AtomicLongArray branches = new AtomicLongArray(0);
+
+        MethodProbe(int id, String className, String methodName, String descriptor) {
+            this.id = id;
+            this.className = className;
+            this.methodName = methodName;
+            this.descriptor = descriptor;
+        }
+
+        void reset() {
+            invocations.set(0);
+            nanos.set(0);
+            AtomicLongArray counters = branches;
+            for (int i = 0; i < counters.length(); i++) {
+                counters.set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the counters of one method
+     */
+    public static final class MethodProfile {
+        private final String className;
+        private final String methodName;
+        private final String descriptor;
+        private final long invocations;
+        private final long totalNanos;
+        private final long[] branchCounts;
+        private final int branchCount;
+        private final int coveredBranches;
+
+        private MethodProfile(MethodProbe probe) {
+            className = probe.className;
+            methodName = probe.methodName;
+            descriptor = probe.descriptor;
+            invocations = probe.invocations.get();
+            totalNanos = probe.nanos.get();
+            AtomicLongArray counters = probe.branches;
+            branchCounts = new long[counters.length()];
+            int covered = 0;
+            for (int i = 0; i < branchCounts.length; i++) {
+                branchCounts[i] = counters.get(i);
+                if (branchCounts[i] != 0) {
+                    covered++;
+                }
+            }
+            branchCount = branchCounts.length;
+            coveredBranches = covered;
+        }
+
+        /**
+         * @return binary class name
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+
+        /**
+         * @return JVM method descriptor
+         */
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        public long getInvocations() {
+            return invocations;
+        }
+
+        /**
+         * @return time spent in the method and its callees
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return number of branches, two per conditional jump and one per switch target
+         */
+        public int getBranchCount() {
+            return branchCount;
+        }
+
+        public int getCoveredBranches() {
+            return coveredBranches;
+        }
+
+        /**
+         * @param branch branch index in the order of the bytecode
+         * @return how often the branch was taken
+         */
+        public long getBranchHits(int branch) {
+            return branchCounts[branch];
+        }
+
+        @Override
+        public String toString() {
+            return className + "." + methodName + descriptor;
+        }
+    }
+}
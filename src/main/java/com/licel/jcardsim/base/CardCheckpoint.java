@@ -0,0 +1,65 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import java.security.SecureRandom;
+
+/**
+ * In-memory copy of the applet state of a {@link SimulatorRuntime}, see
+ * {@link SimulatorRuntime#checkpoint()} and {@link SimulatorRuntime#restore(CardCheckpoint)}.
+ *
+ * <p>The state is a deep copy of the applet instances together with the
+ * transient and sensitive arrays they reference. Restoring copies it again,
+ * so a checkpoint can be restored any number of times.</p>
+ */
+public final class CardCheckpoint {
+    private final Kryo kryo;
+    private final Object[] state;
+
+    CardCheckpoint(Kryo kryo, Object[] state) {
+        this.kryo = kryo;
+        this.state = kryo.copy(state);
+    }
+
+    Object[] copyState() {
+        return kryo.copy(state);
+    }
+
+    /**
+     * Copies a <code>SecureRandom</code> as a new instance. Its fields belong
+     * to <code>java.base</code> and cannot be copied on Java 9 and later,
+     * and a random generator has no state worth restoring.
+     */
+    static final class SecureRandomSerializer extends Serializer<SecureRandom> {
+        @Override
+        public void write(Kryo kryo, Output output, SecureRandom random) {
+        }
+
+        @Override
+        public SecureRandom read(Kryo kryo, Input input, Class<? extends SecureRandom> type) {
+            return new SecureRandom();
+        }
+
+        @Override
+        public SecureRandom copy(Kryo kryo, SecureRandom original) {
+            return new SecureRandom();
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javacard.security.KeyAgreement;
+import javacard.security.MessageDigest;
+import javacard.security.RandomData;
+import javacard.security.Signature;
+import javacardx.crypto.Cipher;
+
+/**
+ * Estimates the execution time of each APDU on a real card from a
+ * {@link CostModel}, next to the time the simulator needed.
+ *
+ * <p>Install the meter with {@link Simulator#setCostMeter(CardCostMeter)}
+ * before loading applets. Applet classes loaded from applet jars are then
+ * instrumented to charge the cost of their bytecode and of their calls to
+ * the Java Card API; applets on the class path of jCardSim are not
+ * instrumented and cost nothing. Writes to persistent memory made by the
+ * applet with array stores are charged as instructions only, writes through
+ * API methods such as <code>Util.arrayCopy</code> are charged as EEPROM
+ * writes.</p>
+ *
+ * <p>With a budget set, commands estimated to take longer are counted and
+ * logged as warnings, so a test can fail on
+ * {@link #getBudgetOverruns()}. The system properties
+ * {@value CostModel#MODEL_SYSTEM_PROPERTY} and
+ * {@value #BUDGET_SYSTEM_PROPERTY} install a meter in every new
+ * <code>Simulator</code>.</p>
+ */
+public final class CardCostMeter {
+    /** system property with the budget per APDU in milliseconds */
+    public static final String BUDGET_SYSTEM_PROPERTY = "com.licel.jcardsim.cost.budget";
+
+    private static final Logger LOGGER = Logger.getLogger(CardCostMeter.class.getName());
+    private static final int DEFAULT_HISTORY_LIMIT = 1024;
+
+    private final CostModel model;
+    private volatile long budgetNanos;
+    private volatile int historyLimit = DEFAULT_HISTORY_LIMIT;
+    private final Deque<CommandCost> history = new ArrayDeque<CommandCost>();
+    private int budgetOverruns;
+    // cycles of the command being processed
+    private long instructionCycles;
+    private long apiCycles;
+    private long eepromCycles;
+
+    /**
+     * @param model cost model
+     * @throws NullPointerException if <code>model</code> is null
+     */
+    public CardCostMeter(CostModel model) {
+        if (model == null) {
+            throw new NullPointerException("model");
+        }
+        this.model = model;
+    }
+
+    /**
+     * @return meter configured by {@value CostModel#MODEL_SYSTEM_PROPERTY} and
+     * {@value #BUDGET_SYSTEM_PROPERTY}, null if neither is set
+     */
+    static CardCostMeter forNewSimulator() {
+        String modelFile = System.getProperty(CostModel.MODEL_SYSTEM_PROPERTY);
+        String budget = System.getProperty(BUDGET_SYSTEM_PROPERTY);
+        if (modelFile == null && budget == null) {
+            return null;
+        }
+        CostModel model = new CostModel();
+        if (modelFile != null && !"default".equals(modelFile)) {
+            try {
+                model = CostModel.load(new File(modelFile));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to load cost model " + modelFile + ", using the default model", e);
+            }
+        }
+        CardCostMeter meter = new CardCostMeter(model);
+        if (budget != null) {
+            meter.setBudget((long) (Double.parseDouble(budget) * 1e6));
+        }
+        return meter;
+    }
+
+    public CostModel getModel() {
+        return model;
+    }
+
+    /**
+     * @param nanos estimated time allowed per APDU, 0 for no budget
+     */
+    public void setBudget(long nanos) {
+        this.budgetNanos = nanos;
+    }
+
+    public long getBudget() {
+        return budgetNanos;
+    }
+
+    /**
+     * @return number of commands estimated to exceed the budget
+     */
+    public synchronized int getBudgetOverruns() {
+        return budgetOverruns;
+    }
+
+    /**
+     * @param limit number of commands kept by {@link #getCommands()}
+     */
+    public void setHistoryLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit");
+        }
+        this.historyLimit = limit;
+    }
+
+    /**
+     * @return cost of the last command or null
+     */
+    public synchronized CommandCost getLastCommand() {
+        return history.peekLast();
+    }
+
+    /**
+     * @return costs of the most recent commands, oldest first
+     */
+    public synchronized List<CommandCost> getCommands() {
+        return new ArrayList<CommandCost>(history);
+    }
+
+    /**
+     * Forget all commands and budget overruns
+     */
+    public synchronized void reset() {
+        history.clear();
+        budgetOverruns = 0;
+    }
+
+    /**
+     * Write a summary of the recorded commands per CLA and INS
+     * @param out destination
+     * @throws IOException if writing fails
+     */
+    public void writeReport(Appendable out) throws IOException {
+        Map<Integer, long[]> byCommand = new TreeMap<Integer, long[]>();
+        for (CommandCost cost : getCommands()) {
+            int key = (cost.cla & 0xFF) << 8 | (cost.ins & 0xFF);
+            long[] values = byCommand.get(key);
+            if (values == null) {
+                values = new long[4];
+                byCommand.put(key, values);
+            }
+            values[0]++;
+            values[1] += cost.estimatedNanos;
+            values[2] = Math.max(values[2], cost.estimatedNanos);
+            values[3] = Math.max(values[3], cost.simulatedNanos);
+        }
+        out.append(String.format(Locale.ROOT, "%-6s %8s %14s %14s %14s%n",
+                "CLA/INS", "count", "mean card ms", "max card ms", "max sim ms"));
+        for (Map.Entry<Integer, long[]> entry : byCommand.entrySet()) {
+            long[] values = entry.getValue();
+            out.append(String.format(Locale.ROOT, "%04X   %8d %14.3f %14.3f %14.3f%n",
+                    entry.getKey(), values[0], values[1] / 1e6 / values[0], values[2] / 1e6, values[3] / 1e6));
+        }
+        out.append(String.format(Locale.ROOT, "%d budget overruns%n", getBudgetOverruns()));
+    }
+
+    /**
+     * Called by instrumented applet code at the end of a basic block
+     * @param cycles instruction cycles of the block
+     */
+    public static void charge(int cycles) {
+        CardCostMeter meter = currentMeter();
+        if (meter != null) {
+            meter.instructionCycles += cycles;
+        }
+    }
+
+    /**
+     * Called by instrumented applet code before calling an API method with a cost
+     * @param receiver object the method is called on, null for static methods
+     * @param array array written by the method or null
+     * @param length bytes processed
+     * @param api internal class name + "." + method name
+     */
+    public static void chargeApi(Object receiver, Object array, int length, String api) {
+        SimulatorRuntime runtime = SimulatorSystem.currentInstance();
+        CardCostMeter meter = runtime == null ? null : runtime.getCostMeter();
+        if (meter == null) {
+            return;
+        }
+        CostModel.ApiCost cost = meter.model.getApiCost(api);
+        if (cost != null) {
+            meter.apiCycles += cost.cycles(algorithm(receiver), length);
+        }
+        if (array instanceof byte[] && runtime.isPersistent((byte[]) array)) {
+            meter.eepromCycles += meter.model.getEepromWriteCost(length);
+        }
+    }
+
+    private static CardCostMeter currentMeter() {
+        SimulatorRuntime runtime = SimulatorSystem.currentInstance();
+        return runtime == null ? null : runtime.getCostMeter();
+    }
+
+    private static int algorithm(Object receiver) {
+        if (receiver instanceof Cipher) {
+            return ((Cipher) receiver).getAlgorithm() & 0xFF;
+        }
+        if (receiver instanceof Signature) {
+            return ((Signature) receiver).getAlgorithm() & 0xFF;
+        }
+        if (receiver instanceof MessageDigest) {
+            return ((MessageDigest) receiver).getAlgorithm() & 0xFF;
+        }
+        if (receiver instanceof KeyAgreement) {
+            return ((KeyAgreement) receiver).getAlgorithm() & 0xFF;
+        }
+        if (receiver instanceof RandomData) {
+            return ((RandomData) receiver).getAlgorithm() & 0xFF;
+        }
+        return -1;
+    }
+
+    /**
+     * Start accounting a command, cycles charged outside of commands are dropped
+     */
+    void beginCommand() {
+        instructionCycles = 0;
+        apiCycles = 0;
+        eepromCycles = 0;
+    }
+
+    /**
+     * Finish accounting a command
+     * @param command command APDU
+     * @param sw status word
+     * @param simulatedNanos time the simulator needed
+     */
+    void endCommand(byte[] command, short sw, long simulatedNanos) {
+        long cycles = instructionCycles + apiCycles + eepromCycles;
+        long estimatedNanos = (long) (cycles * 1e9 / model.getClockFrequency());
+        CommandCost cost = new CommandCost(command[0], command[1], sw, instructionCycles, apiCycles, eepromCycles,
+                estimatedNanos, simulatedNanos);
+        long budget = budgetNanos;
+        synchronized (this) {
+            while (history.size() >= historyLimit) {
+                history.removeFirst();
+            }
+            history.addLast(cost);
+            if (budget > 0 && estimatedNanos > budget) {
+                budgetOverruns++;
+            }
+        }
+        if (budget > 0 && estimatedNanos > budget) {
+            LOGGER.log(Level.WARNING, String.format(Locale.ROOT, "%s exceeds the budget of %.3f ms",
+                    cost, budget / 1e6));
+        }
+    }
+
+    /**
+     * Estimated cost of one command
+     */
+    public static final class CommandCost {
+        private final byte cla;
+        private final byte ins;
+        private final short sw;
+        private final long instructionCycles;
+        private final long apiCycles;
+        private final long eepromCycles;
+        private final long estimatedNanos;
+        private final long simulatedNanos;
+
+        CommandCost(byte cla, byte ins, short sw, long instructionCycles, long apiCycles, long eepromCycles,
+                    long estimatedNanos, long simulatedNanos) {
+            this.cla = cla;
+            this.ins = ins;
+            this.sw = sw;
+            this.instructionCycles = instructionCycles;
+            this.apiCycles = apiCycles;
+            this.eepromCycles = eepromCycles;
+            this.estimatedNanos = estimatedNanos;
+            this.simulatedNanos = simulatedNanos;
+        }
+
+        public byte getCla() {
+            return cla;
+        }
+
+        public byte getIns() {
+            return ins;
+        }
+
+        public short getSW() {
+            return sw;
+        }
+
+        /**
+         * @return cycles of applet bytecode
+         */
+        public long getInstructionCycles() {
+            return instructionCycles;
+        }
+
+        /**
+         * @return cycles of API calls, without EEPROM writes
+         */
+        public long getApiCycles() {
+            return apiCycles;
+        }
+
+        /**
+         * @return cycles of persistent memory writes through the API
+         */
+        public long getEepromCycles() {
+            return eepromCycles;
+        }
+
+        public long getTotalCycles() {
+            return instructionCycles + apiCycles + eepromCycles;
+        }
+
+        /**
+         * @return estimated time on the card
+         */
+        public long getEstimatedNanos() {
+            return estimatedNanos;
+        }
+
+        /**
+         * @return time the simulator needed
+         */
+        public long getSimulatedNanos() {
+            return simulatedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "CLA=%02X INS=%02X SW=%04X: %d cycles, %.3f ms on card, %.3f ms simulated",
+                    cla & 0xFF, ins & 0xFF, sw & 0xFFFF, getTotalCycles(), estimatedNanos / 1e6, simulatedNanos / 1e6);
+        }
+    }
+}
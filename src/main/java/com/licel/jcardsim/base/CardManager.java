@@ -20,6 +20,8 @@ import javacard.framework.AID;
 import javacard.framework.ISO7816;
 import javacard.framework.SystemException;
 import javacard.framework.Util;
+
+import java.nio.ByteBuffer;
 /**
  * CardManager.
  */
@@ -38,10 +40,34 @@ public class CardManager implements CardManagerInterface {
     public static byte[] dispatchApdu(JavaCardInterface sim, byte[] capdu) {
         return impl.dispatchApduImpl(sim, capdu);
     }
+
+    /**
+     * Dispatch a command and write the response into a buffer. Commands for
+     * applets of a <code>Simulator</code> go to
+     * {@link Simulator#transmitCommand(byte[], ByteBuffer)}, which does not
+     * allocate a response array.
+     * @param sim card
+     * @param capdu command apdu
+     * @param response buffer receiving the response apdu, its position is advanced
+     * @return response length
+     * @throws java.nio.BufferOverflowException if <code>response</code> has not enough space left
+     */
+    public static int dispatchApdu(JavaCardInterface sim, byte[] capdu, ByteBuffer response) {
+        if (impl.getClass() == CardManager.class && sim instanceof Simulator && !isCreateAppletCommand(capdu)) {
+            return ((Simulator) sim).transmitCommand(capdu, response);
+        }
+        byte[] result = impl.dispatchApduImpl(sim, capdu);
+        response.put(result);
+        return result.length;
+    }
+
+    private static boolean isCreateAppletCommand(byte[] capdu) {
+        return capdu[ISO7816.OFFSET_CLA] == (byte)0x80 && capdu[ISO7816.OFFSET_INS] == (byte)0xb8;
+    }
     
     public byte[] dispatchApduImpl(JavaCardInterface sim, byte[] capdu) {
         byte[] theSW = new byte[2];
-        if (capdu[ISO7816.OFFSET_CLA] == (byte)0x80 && capdu[ISO7816.OFFSET_INS] == (byte)0xb8) {
+        if (isCreateAppletCommand(capdu)) {
             // handle CREATE APPLET command
             // command format:
             // CLA    INS  P0    P1
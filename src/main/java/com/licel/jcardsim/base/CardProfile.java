@@ -0,0 +1,422 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.utils.AIDUtil;
+import com.licel.jcardsim.utils.ByteUtil;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javacard.framework.AID;
+import javacard.framework.Applet;
+import javacard.framework.ISO7816;
+import javacard.framework.SystemException;
+
+/**
+ * Declarative description of a card, used to provision many identical cards.
+ *
+ * <p>A profile lists load files (an applet jar or the class path), their
+ * modules (applet classes), the applet instances to install with their
+ * install parameters and the personalization commands sent after
+ * installation. Applet classes are loaded once per profile and shared by
+ * all cards built from it, so static fields of applets are shared as well,
+ * just like for applets on the class path of jCardSim. Each card has its
+ * own <code>SimulatorRuntime</code> and gets only the applets of the
+ * profile, <code>com.licel.jcardsim.card.applet.N.*</code> properties are
+ * ignored.</p>
+ *
+ * <p>{@link #provision(int)} builds cards in parallel on a fork-join pool.
+ * A profile must not be changed while cards are built from it.</p>
+ */
+public final class CardProfile {
+    // cards built by one fork-join task without splitting further
+    private static final int PROVISION_THRESHOLD = 8;
+
+    private final SortedMap<AID, LoadFileEntry> loadFiles = new TreeMap<AID, LoadFileEntry>(AIDUtil.comparator());
+    private final List<Instance> instances = new ArrayList<Instance>();
+    private final List<Command> commands = new ArrayList<Command>();
+    // load files with resolved applet classes, null until the first card is built
+    private LoadFile[] resolved;
+    // loads applet classes from jars, instrumented like the applets of any other simulator
+    private Simulator classLoaderOwner;
+
+    /**
+     * Add a load file
+     * @param loadFileAID AID of the load file (Java Card package AID)
+     * @param appletJarContents applet jar holding the classes of the modules, null for the class path
+     * @return this profile
+     * @throws IllegalArgumentException if the load file was already added
+     */
+    public synchronized CardProfile addLoadFile(AID loadFileAID, byte[] appletJarContents) {
+        if (loadFileAID == null) {
+            throw new NullPointerException("loadFileAID");
+        }
+        if (loadFiles.containsKey(loadFileAID)) {
+            throw new IllegalArgumentException("Duplicate load file " + AIDUtil.toString(loadFileAID));
+        }
+        loadFiles.put(loadFileAID, new LoadFileEntry(appletJarContents == null ? null : appletJarContents.clone()));
+        resolved = null;
+        return this;
+    }
+
+    /**
+     * Add a module to a load file
+     * @param loadFileAID AID of a load file added before
+     * @param moduleAID AID of the applet class
+     * @param appletClassName applet class name, loaded from the jar of the load file
+     * @return this profile
+     * @throws IllegalArgumentException if there is no such load file
+     */
+    public synchronized CardProfile addModule(AID loadFileAID, AID moduleAID, String appletClassName) {
+        if (moduleAID == null) {
+            throw new NullPointerException("moduleAID");
+        }
+        if (appletClassName == null) {
+            throw new NullPointerException("appletClassName");
+        }
+        requireLoadFile(loadFileAID).modules.add(new ModuleEntry(moduleAID, appletClassName, null));
+        resolved = null;
+        return this;
+    }
+
+    /**
+     * Add a module to a load file
+     * @param loadFileAID AID of a load file added before
+     * @param moduleAID AID of the applet class
+     * @param appletClass applet class
+     * @return this profile
+     * @throws IllegalArgumentException if there is no such load file
+     */
+    public synchronized CardProfile addModule(AID loadFileAID, AID moduleAID, Class<? extends Applet> appletClass) {
+        if (moduleAID == null) {
+            throw new NullPointerException("moduleAID");
+        }
+        if (appletClass == null) {
+            throw new NullPointerException("appletClass");
+        }
+        requireLoadFile(loadFileAID).modules.add(new ModuleEntry(moduleAID, appletClass.getName(), appletClass));
+        resolved = null;
+        return this;
+    }
+
+    /**
+     * Add an applet instance, instances are installed in the order they are added
+     * @param loadFileAID AID of a load file added before
+     * @param moduleAID AID of a module of the load file
+     * @param instanceAID AID of the applet instance
+     * @param installParameters parameters passed to <code>install</code>, null for none
+     * @return this profile
+     * @throws IllegalArgumentException if there is no such module or the parameters are longer than 127 bytes
+     */
+    public synchronized CardProfile addInstance(AID loadFileAID, AID moduleAID, AID instanceAID, byte[] installParameters) {
+        if (instanceAID == null) {
+            throw new NullPointerException("instanceAID");
+        }
+        if (requireLoadFile(loadFileAID).getModule(moduleAID) == null) {
+            throw new IllegalArgumentException("Module AID not found " + AIDUtil.toString(moduleAID));
+        }
+        byte[] parameters = installParameters == null ? new byte[0] : installParameters.clone();
+        if (parameters.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("installParameters too long");
+        }
+        instances.add(new Instance(loadFileAID, moduleAID, instanceAID, parameters));
+        return this;
+    }
+
+    /**
+     * Select an applet instance during personalization
+     * @param instanceAID AID of the applet instance
+     * @return this profile
+     */
+    public synchronized CardProfile addSelect(AID instanceAID) {
+        if (instanceAID == null) {
+            throw new NullPointerException("instanceAID");
+        }
+        commands.add(new Command(instanceAID, null, ISO7816.SW_NO_ERROR & 0xFFFF));
+        return this;
+    }
+
+    /**
+     * Add a personalization command which must return <code>9000</code>
+     * @param command command APDU
+     * @return this profile
+     */
+    public CardProfile addCommand(byte[] command) {
+        return addCommand(command, ISO7816.SW_NO_ERROR & 0xFFFF);
+    }
+
+    /**
+     * Add a personalization command, commands are sent in the order they are added
+     * @param command command APDU
+     * @param expectedSW status word the command must return
+     * @return this profile
+     */
+    public synchronized CardProfile addCommand(byte[] command, int expectedSW) {
+        if (command == null) {
+            throw new NullPointerException("command");
+        }
+        commands.add(new Command(null, command.clone(), expectedSW & 0xFFFF));
+        return this;
+    }
+
+    /**
+     * Build one card
+     * @return new card with the applets of this profile installed and personalized
+     * @throws SystemException if an applet class cannot be loaded or an applet cannot be installed
+     * @throws IllegalStateException if a personalization command fails
+     */
+    public Simulator newCard() {
+        LoadFile[] loadFiles;
+        List<Instance> instances;
+        List<Command> commands;
+        synchronized (this) {
+            loadFiles = resolve();
+            instances = new ArrayList<Instance>(this.instances);
+            commands = new ArrayList<Command>(this.commands);
+        }
+        return newCard(loadFiles, instances, commands);
+    }
+
+    /**
+     * Build cards in parallel on a new pool with one thread per processor
+     * @param count number of cards
+     * @return new cards
+     * @throws SystemException if an applet class cannot be loaded or an applet cannot be installed
+     * @throws IllegalStateException if a personalization command fails
+     */
+    public List<Simulator> provision(int count) {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return provision(count, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Build cards in parallel
+     * @param count number of cards
+     * @param pool pool building the cards
+     * @return new cards
+     * @throws SystemException if an applet class cannot be loaded or an applet cannot be installed
+     * @throws IllegalStateException if a personalization command fails
+     */
+    public List<Simulator> provision(int count, ForkJoinPool pool) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count");
+        }
+        if (pool == null) {
+            throw new NullPointerException("pool");
+        }
+        Simulator[] cards = new Simulator[count];
+        ProvisionTask task;
+        synchronized (this) {
+            task = new ProvisionTask(resolve(), new ArrayList<Instance>(instances),
+                    new ArrayList<Command>(commands), cards, 0, count);
+        }
+        pool.invoke(task);
+        return Arrays.asList(cards);
+    }
+
+    private static Simulator newCard(LoadFile[] loadFiles, List<Instance> instances, List<Command> commands) {
+        SimulatorRuntime runtime = new SimulatorRuntime();
+        Simulator card = new Simulator(runtime, new Properties());
+        synchronized (runtime) {
+            for (LoadFile loadFile : loadFiles) {
+                runtime.loadLoadFile(loadFile);
+            }
+            for (Instance instance : instances) {
+                runtime.installApplet(instance.loadFileAID, instance.moduleAID, instance.instanceAID,
+                        instance.parameters, (short) 0, (byte) instance.parameters.length);
+            }
+        }
+        for (int i = 0; i < commands.size(); i++) {
+            Command command = commands.get(i);
+            int sw;
+            if (command.apdu == null) {
+                sw = ByteUtil.getSW(card.selectAppletWithResult(command.select)) & 0xFFFF;
+            } else {
+                sw = ByteUtil.getSW(card.transmitCommand(command.apdu)) & 0xFFFF;
+            }
+            if (sw != command.expectedSW) {
+                throw new IllegalStateException(String.format("Personalization command %d returned %04X, expected %04X",
+                        i, sw, command.expectedSW));
+            }
+        }
+        return card;
+    }
+
+    /**
+     * @return load files with the applet classes loaded, built on first use
+     */
+    private LoadFile[] resolve() {
+        if (resolved != null) {
+            return resolved;
+        }
+        if (classLoaderOwner == null) {
+            classLoaderOwner = new Simulator(new SimulatorRuntime(), new Properties());
+        }
+        Simulator.AppletClassLoader loader = classLoaderOwner.cl;
+        LoadFile[] result = new LoadFile[loadFiles.size()];
+        int i = 0;
+        for (Map.Entry<AID, LoadFileEntry> entry : loadFiles.entrySet()) {
+            LoadFileEntry loadFile = entry.getValue();
+            if (loadFile.jar != null && !loadFile.jarAdded) {
+                try {
+                    loader.addAppletContents(loadFile.jar);
+                } catch (IOException e) {
+                    SystemException.throwIt(SystemException.ILLEGAL_VALUE);
+                }
+                loadFile.jarAdded = true;
+            }
+            if (loadFile.modules.isEmpty()) {
+                throw new IllegalStateException("Load file without modules " + AIDUtil.toString(entry.getKey()));
+            }
+            Module[] modules = new Module[loadFile.modules.size()];
+            for (int m = 0; m < modules.length; m++) {
+                ModuleEntry module = loadFile.modules.get(m);
+                modules[m] = new Module(module.aid, module.load(loader));
+            }
+            result[i++] = new LoadFile(entry.getKey(), modules);
+        }
+        resolved = result;
+        return result;
+    }
+
+    private LoadFileEntry requireLoadFile(AID loadFileAID) {
+        LoadFileEntry loadFile = loadFiles.get(loadFileAID);
+        if (loadFile == null) {
+            throw new IllegalArgumentException("LoadFile AID not found " + AIDUtil.toString(loadFileAID));
+        }
+        return loadFile;
+    }
+
+    private static final class LoadFileEntry {
+        final byte[] jar;
+        final List<ModuleEntry> modules = new ArrayList<ModuleEntry>();
+        // jar added to the class loader, classes of a changed profile are loaded from the same loader
+        boolean jarAdded;
+
+        LoadFileEntry(byte[] jar) {
+            this.jar = jar;
+        }
+
+        ModuleEntry getModule(AID moduleAID) {
+            for (ModuleEntry module : modules) {
+                if (module.aid.equals(moduleAID)) {
+                    return module;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class ModuleEntry {
+        final AID aid;
+        final String className;
+        final Class<? extends Applet> appletClass;
+
+        ModuleEntry(AID aid, String className, Class<? extends Applet> appletClass) {
+            this.aid = aid;
+            this.className = className;
+            this.appletClass = appletClass;
+        }
+
+        @SuppressWarnings("unchecked")
+        Class<? extends Applet> load(ClassLoader loader) {
+            if (appletClass != null) {
+                return appletClass;
+            }
+            Class<?> loaded = null;
+            try {
+                loaded = loader.loadClass(className);
+            } catch (ClassNotFoundException e) {
+                SystemException.throwIt(SystemException.ILLEGAL_VALUE);
+            }
+            if (!Applet.class.isAssignableFrom(loaded)) {
+                SystemException.throwIt(SystemException.ILLEGAL_VALUE);
+            }
+            return (Class<? extends Applet>) loaded;
+        }
+    }
+
+    private static final class Instance {
+        final AID loadFileAID;
+        final AID moduleAID;
+        final AID instanceAID;
+        final byte[] parameters;
+
+        Instance(AID loadFileAID, AID moduleAID, AID instanceAID, byte[] parameters) {
+            this.loadFileAID = loadFileAID;
+            this.moduleAID = moduleAID;
+            this.instanceAID = instanceAID;
+            this.parameters = parameters;
+        }
+    }
+
+    private static final class Command {
+        // applet to select, or null
+        final AID select;
+        // command APDU, or null
+        final byte[] apdu;
+        final int expectedSW;
+
+        Command(AID select, byte[] apdu, int expectedSW) {
+            this.select = select;
+            this.apdu = apdu;
+            this.expectedSW = expectedSW;
+        }
+    }
+
+    private static final class ProvisionTask extends RecursiveAction {
+        private final LoadFile[] loadFiles;
+        private final List<Instance> instances;
+        private final List<Command> commands;
+        private final Simulator[] cards;
+        private final int from;
+        private final int to;
+
+        ProvisionTask(LoadFile[] loadFiles, List<Instance> instances, List<Command> commands,
+                      Simulator[] cards, int from, int to) {
+            this.loadFiles = loadFiles;
+            this.instances = instances;
+            this.commands = commands;
+            this.cards = cards;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PROVISION_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    cards[i] = newCard(loadFiles, instances, commands);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ProvisionTask(loadFiles, instances, commands, cards, from, middle),
+                    new ProvisionTask(loadFiles, instances, commands, cards, middle, to));
+        }
+    }
+}
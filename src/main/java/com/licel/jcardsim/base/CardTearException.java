@@ -0,0 +1,26 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+/**
+ * Thrown by <code>transmitCommand</code> when a {@link TearInjector} tore
+ * the card. The card has lost power, the command has no response.
+ */
+public class CardTearException extends RuntimeException {
+    public CardTearException(String message) {
+        super(message);
+    }
+}
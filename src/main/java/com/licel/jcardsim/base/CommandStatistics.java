@@ -0,0 +1,336 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.utils.AIDUtil;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javacard.framework.AID;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Command statistics of one <code>SimulatorRuntime</code>: latency histograms
+ * and status words per applet, CLA and INS, short and extended APDU counts
+ * and select/deselect counts.
+ *
+ * <p>Recording uses atomic counters only, no locks, so statistics can stay
+ * enabled in long running tests. Read the values through the getters or
+ * through JMX, see {@link #registerMBean(String)}. Setting the system property
+ * {@value #ENABLED_SYSTEM_PROPERTY} to <code>true</code> makes every new
+ * <code>SimulatorRuntime</code> record into one statistics object for the
+ * whole process, registered once as
+ * <code>com.licel.jcardsim:type=CommandStatistics,name="all"</code>, so
+ * servers creating many cards do not leave an MBean behind for each.</p>
+ *
+ * @see SimulatorRuntime#setStatistics(CommandStatistics)
+ */
+public class CommandStatistics implements CommandStatisticsMXBean {
+    /** system property enabling statistics for every new runtime */
+    public static final String ENABLED_SYSTEM_PROPERTY = "com.licel.jcardsim.statistics";
+
+    private static final Logger LOGGER = Logger.getLogger(CommandStatistics.class.getName());
+    // statistics of all runtimes if ENABLED_SYSTEM_PROPERTY is set, created on first use
+    private static CommandStatistics shared;
+    // applet name used for commands processed without a selected applet
+    private static final String NO_APPLET = "";
+
+    private final ConcurrentMap<String, AppletCounters> applets = new ConcurrentHashMap<String, AppletCounters>();
+    private final ConcurrentMap<Integer, AtomicLong> statusWords = new ConcurrentHashMap<Integer, AtomicLong>();
+    private final AtomicLong shortApdus = new AtomicLong();
+    private final AtomicLong extendedApdus = new AtomicLong();
+    private final AtomicLong selects = new AtomicLong();
+    private final AtomicLong deselects = new AtomicLong();
+    // commands usually go to the same applet, avoids converting its AID
+    private volatile AppletCounters lastApplet;
+
+    /**
+     * @return shared statistics registered with JMX if {@value #ENABLED_SYSTEM_PROPERTY} is set, otherwise null
+     */
+    static synchronized CommandStatistics forNewRuntime() {
+        if (!Boolean.getBoolean(ENABLED_SYSTEM_PROPERTY)) {
+            return null;
+        }
+        if (shared == null) {
+            shared = new CommandStatistics();
+            try {
+                shared.registerMBean("all");
+            } catch (JMException e) {
+                LOGGER.log(Level.WARNING, "Unable to register statistics MBean", e);
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Register with the platform MBean server
+     * @param name value of the <code>name</code> key
+     * @return object name, use it to unregister
+     * @throws JMException if registering fails
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("com.licel.jcardsim:type=CommandStatistics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Record a processed command
+     * @param applet applet which processed the command or null
+     * @param command command APDU
+     * @param extended true for extended length APDUs
+     * @param sw status word
+     * @param nanos processing time
+     */
+    void recordCommand(AID applet, byte[] command, boolean extended, short sw, long nanos) {
+        (extended ? extendedApdus : shortApdus).incrementAndGet();
+        increment(statusWords, sw & 0xFFFF);
+        appletCounters(applet).command(command[0], command[1]).record(sw, nanos);
+    }
+
+    void recordSelect() {
+        selects.incrementAndGet();
+    }
+
+    void recordDeselect() {
+        deselects.incrementAndGet();
+    }
+
+    private AppletCounters appletCounters(AID aid) {
+        AppletCounters counters = lastApplet;
+        if (counters != null && counters.aid == aid) {
+            return counters;
+        }
+        String name = aid == null ? NO_APPLET : AIDUtil.toString(aid);
+        counters = applets.get(name);
+        if (counters == null) {
+            AppletCounters created = new AppletCounters(aid, name);
+            counters = applets.putIfAbsent(name, created);
+            if (counters == null) {
+                counters = created;
+            }
+        }
+        lastApplet = counters.aid == aid ? counters : new AppletCounters(aid, counters);
+        return counters;
+    }
+
+    private static void increment(ConcurrentMap<Integer, AtomicLong> counters, int key) {
+        AtomicLong counter = counters.get(key);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(key, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    private static Map<String, Long> toHexMap(ConcurrentMap<Integer, AtomicLong> counters) {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<Integer, AtomicLong> entry : counters.entrySet()) {
+            result.put(String.format("%04X", entry.getKey()), entry.getValue().get());
+        }
+        return result;
+    }
+
+    /**
+     * @param applet applet AID, null for commands processed without a selected applet
+     * @param cla class byte
+     * @param ins instruction byte
+     * @return latency histogram or null if no such command was recorded
+     */
+    public LatencyHistogram getHistogram(AID applet, byte cla, byte ins) {
+        AppletCounters counters = applets.get(applet == null ? NO_APPLET : AIDUtil.toString(applet));
+        if (counters == null) {
+            return null;
+        }
+        CommandCounters command = counters.commands.get(key(cla, ins));
+        return command == null ? null : command.latency;
+    }
+
+    public long getShortApduCount() {
+        return shortApdus.get();
+    }
+
+    public long getExtendedApduCount() {
+        return extendedApdus.get();
+    }
+
+    public long getSelectCount() {
+        return selects.get();
+    }
+
+    public long getDeselectCount() {
+        return deselects.get();
+    }
+
+    public Map<String, Long> getStatusWords() {
+        return toHexMap(statusWords);
+    }
+
+    public List<CommandSummary> getCommands() {
+        List<CommandSummary> result = new ArrayList<CommandSummary>();
+        for (AppletCounters applet : new TreeMap<String, AppletCounters>(applets).values()) {
+            for (Map.Entry<Integer, CommandCounters> entry : new TreeMap<Integer, CommandCounters>(applet.commands).entrySet()) {
+                result.add(new CommandSummary(applet.name, entry.getKey(), entry.getValue()));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public void reset() {
+        applets.clear();
+        statusWords.clear();
+        shortApdus.set(0);
+        extendedApdus.set(0);
+        selects.set(0);
+        deselects.set(0);
+        lastApplet = null;
+    }
+
+    private static int key(byte cla, byte ins) {
+        return ((cla & 0xFF) << 8) | (ins & 0xFF);
+    }
+
+    private static final class AppletCounters {
+        final AID aid;
+        final String name;
+        final ConcurrentMap<Integer, CommandCounters> commands;
+
+        AppletCounters(AID aid, String name) {
+            this.aid = aid;
+            this.name = name;
+            this.commands = new ConcurrentHashMap<Integer, CommandCounters>();
+        }
+
+        /**
+         * Alias of <code>counters</code> for another AID instance with the same bytes
+         */
+        AppletCounters(AID aid, AppletCounters counters) {
+            this.aid = aid;
+            this.name = counters.name;
+            this.commands = counters.commands;
+        }
+
+        CommandCounters command(byte cla, byte ins) {
+            Integer key = key(cla, ins);
+            CommandCounters counters = commands.get(key);
+            if (counters == null) {
+                CommandCounters created = new CommandCounters();
+                counters = commands.putIfAbsent(key, created);
+                if (counters == null) {
+                    counters = created;
+                }
+            }
+            return counters;
+        }
+    }
+
+    private static final class CommandCounters {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final ConcurrentMap<Integer, AtomicLong> statusWords = new ConcurrentHashMap<Integer, AtomicLong>();
+
+        void record(short sw, long nanos) {
+            latency.record(nanos);
+            increment(statusWords, sw & 0xFFFF);
+        }
+    }
+
+    /**
+     * Statistics of one applet, CLA and INS combination
+     */
+    public static final class CommandSummary {
+        private final String applet;
+        private final int cla;
+        private final int ins;
+        private final long count;
+        private final long meanNanos;
+        private final long medianNanos;
+        private final long p99Nanos;
+        private final long maxNanos;
+        private final Map<String, Long> statusWords;
+
+        CommandSummary(String applet, int key, CommandCounters counters) {
+            this.applet = applet;
+            this.cla = key >>> 8;
+            this.ins = key & 0xFF;
+            this.count = counters.latency.getCount();
+            this.meanNanos = counters.latency.getMeanNanos();
+            this.medianNanos = counters.latency.getValueAtPercentile(50);
+            this.p99Nanos = counters.latency.getValueAtPercentile(99);
+            this.maxNanos = counters.latency.getMaxNanos();
+            this.statusWords = toHexMap(counters.statusWords);
+        }
+
+        /**
+         * @return applet AID as hex string, empty for commands processed without a selected applet
+         */
+        public String getApplet() {
+            return applet;
+        }
+
+        public int getCla() {
+            return cla;
+        }
+
+        public int getIns() {
+            return ins;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanNanos() {
+            return meanNanos;
+        }
+
+        public long getMedianNanos() {
+            return medianNanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @return number of responses per status word, keyed by 4 digit hex status word
+         */
+        public Map<String, Long> getStatusWords() {
+            return statusWords;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %02X %02X: count=%d mean=%dns p50=%dns p99=%dns max=%dns %s",
+                    applet, cla, ins, count, meanNanos, medianNanos, p99Nanos, maxNanos, statusWords);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of {@link CommandStatistics}.
+ */
+public interface CommandStatisticsMXBean {
+    /**
+     * @return number of processed short APDUs
+     */
+    long getShortApduCount();
+
+    /**
+     * @return number of processed extended length APDUs
+     */
+    long getExtendedApduCount();
+
+    /**
+     * @return number of applet selections
+     */
+    long getSelectCount();
+
+    /**
+     * @return number of applet deselections
+     */
+    long getDeselectCount();
+
+    /**
+     * @return number of responses per status word, keyed by 4 digit hex status word
+     */
+    Map<String, Long> getStatusWords();
+
+    /**
+     * @return statistics per applet, CLA and INS
+     */
+    List<CommandStatistics.CommandSummary> getCommands();
+
+    /**
+     * Forget all recorded values
+     */
+    void reset();
+}
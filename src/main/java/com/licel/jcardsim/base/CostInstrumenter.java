@@ -0,0 +1,230 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+/**
+ * Adds the cycle accounting of a {@link CostModel} to an applet class.
+ *
+ * <p>The instruction costs of a basic block are added up while the class
+ * is instrumented and charged with one call of
+ * <code>CardCostMeter.charge</code> at the end of the block, that is before
+ * a jump, switch, return, throw or method call and before every label.
+ * Calls of API methods with a cost pass the receiver, the written array and
+ * the length argument to <code>CardCostMeter.chargeApi</code> first.</p>
+ */
+final class CostInstrumenter {
+    private static final Type METER = Type.getType(CardCostMeter.class);
+    private static final Method CHARGE = Method.getMethod("void charge(int)");
+    private static final Method CHARGE_API = Method.getMethod("void chargeApi(Object, Object, int, String)");
+
+    private final CostModel model;
+    private final ClassLoader loader;
+
+    CostInstrumenter(CostModel model, ClassLoader loader) {
+        this.model = model;
+        this.loader = loader;
+    }
+
+    byte[] instrument(byte[] classBytes) {
+        ClassReader reader = new ClassReader(classBytes);
+        ClassWriter writer = new LoaderClassWriter(loader);
+        reader.accept(new ClassVisitor(Opcodes.ASM7, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
+                if (mv == null || (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+                    return mv;
+                }
+                return new CostMethodAdapter(mv, access, name, descriptor);
+            }
+        }, ClassReader.SKIP_FRAMES);
+        return writer.toByteArray();
+    }
+
+    private final class CostMethodAdapter extends GeneratorAdapter {
+        // cycles of the current block not charged yet
+        private int pending;
+
+        CostMethodAdapter(MethodVisitor mv, int access, String name, String descriptor) {
+            super(Opcodes.ASM7, mv, access, name, descriptor);
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            flush();
+            super.visitLabel(label);
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            pending += model.getInstructionCost(opcode);
+            if ((opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) || opcode == Opcodes.ATHROW) {
+                flush();
+            }
+            super.visitInsn(opcode);
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            pending += model.getInstructionCost(opcode);
+            super.visitIntInsn(opcode, operand);
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            pending += model.getInstructionCost(opcode);
+            if (opcode == Opcodes.RET) {
+                flush();
+            }
+            super.visitVarInsn(opcode, var);
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            pending += model.getInstructionCost(opcode);
+            super.visitTypeInsn(opcode, type);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+            pending += model.getInstructionCost(opcode);
+            super.visitFieldInsn(opcode, owner, name, descriptor);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            pending += model.getInstructionCost(opcode);
+            flush();
+            CostModel.ApiCost cost = model.getApiCost(owner + "." + name);
+            if (cost != null && !"<init>".equals(name)) {
+                chargeApi(opcode, owner + "." + name, descriptor, cost);
+            }
+            super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle,
+                                           Object... bootstrapMethodArguments) {
+            pending += model.getInstructionCost(Opcodes.INVOKEDYNAMIC);
+            flush();
+            super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            pending += model.getInstructionCost(opcode);
+            flush();
+            super.visitJumpInsn(opcode, label);
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            pending += model.getInstructionCost(Opcodes.LDC);
+            super.visitLdcInsn(value);
+        }
+
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            pending += model.getInstructionCost(Opcodes.IINC);
+            super.visitIincInsn(var, increment);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            pending += model.getInstructionCost(Opcodes.TABLESWITCH);
+            flush();
+            super.visitTableSwitchInsn(min, max, dflt, labels);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            pending += model.getInstructionCost(Opcodes.LOOKUPSWITCH);
+            flush();
+            super.visitLookupSwitchInsn(dflt, keys, labels);
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+            pending += model.getInstructionCost(Opcodes.MULTIANEWARRAY);
+            super.visitMultiANewArrayInsn(descriptor, numDimensions);
+        }
+
+        private void flush() {
+            if (pending != 0) {
+                push(pending);
+                invokeStatic(METER, CHARGE);
+                pending = 0;
+            }
+        }
+
+        /**
+         * Save the arguments in new locals, charge the call and push the arguments again
+         */
+        private void chargeApi(int opcode, String api, String descriptor, CostModel.ApiCost cost) {
+            Type[] arguments = Type.getArgumentTypes(descriptor);
+            int[] locals = new int[arguments.length];
+            for (int i = arguments.length - 1; i >= 0; i--) {
+                locals[i] = newLocal(arguments[i]);
+                storeLocal(locals[i]);
+            }
+            if (opcode == Opcodes.INVOKESTATIC) {
+                push((String) null);
+            } else {
+                dup();
+            }
+            int array = cost.arrayArgument;
+            if (array >= 0 && array < arguments.length && arguments[array].getSort() == Type.ARRAY) {
+                loadLocal(locals[array]);
+            } else {
+                push((String) null);
+            }
+            int length = cost.lengthArgument;
+            if (length >= 0 && length < arguments.length && isIntType(arguments[length])) {
+                loadLocal(locals[length]);
+            } else {
+                push(0);
+            }
+            push(api);
+            invokeStatic(METER, CHARGE_API);
+            for (int local : locals) {
+                loadLocal(local);
+            }
+        }
+    }
+
+    private static boolean isIntType(Type type) {
+        switch (type.getSort()) {
+            case Type.BYTE:
+            case Type.SHORT:
+            case Type.CHAR:
+            case Type.INT:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
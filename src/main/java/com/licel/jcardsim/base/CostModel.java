@@ -0,0 +1,389 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javacard.security.Signature;
+import javacardx.crypto.Cipher;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.util.Printer;
+
+/**
+ * Cycle costs used by {@link CardCostMeter} to estimate the execution time
+ * of an APDU on a real card.
+ *
+ * <p>The model has three parts: a cost per bytecode instruction, a cost per
+ * call of Java Card API methods such as <code>Util.arrayCopy</code> or
+ * <code>Cipher.doFinal</code> (fixed cycles plus cycles per byte, optionally
+ * per algorithm) and a cost for writes to persistent memory made through the
+ * API. The estimated time is the number of cycles divided by the clock
+ * frequency.</p>
+ *
+ * <p>The defaults are rough figures for a contact card with a 5 MHz
+ * internal clock and only meant as a starting point; calibrate the model
+ * against the real card and load it from a properties file, see
+ * {@link #configure(Properties)}.</p>
+ *
+ * <p>Instruction costs are applied when applet classes are loaded, change
+ * them before installing a {@link CardCostMeter} with this model.</p>
+ */
+public final class CostModel {
+    /** system property naming a properties file with a model, or <code>default</code> */
+    public static final String MODEL_SYSTEM_PROPERTY = "com.licel.jcardsim.cost.model";
+
+    private static final Logger LOGGER = Logger.getLogger(CostModel.class.getName());
+
+    private long clockFrequency = 5000000;
+    private final int[] instructionCycles = new int[256];
+    private long eepromWriteCycles = 15000;
+    private long eepromByteCycles = 50;
+    // keyed by internal class name + "." + method name
+    private final Map<String, ApiCost> apiCosts = new HashMap<String, ApiCost>();
+
+    /**
+     * Create a model with the default costs
+     */
+    public CostModel() {
+        Arrays.fill(instructionCycles, 40);
+        for (int opcode = Opcodes.INVOKEVIRTUAL; opcode <= Opcodes.INVOKEDYNAMIC; opcode++) {
+            instructionCycles[opcode] = 200;
+        }
+        for (int opcode = Opcodes.GETSTATIC; opcode <= Opcodes.PUTFIELD; opcode++) {
+            instructionCycles[opcode] = 60;
+        }
+        for (int opcode = Opcodes.IASTORE; opcode <= Opcodes.SASTORE; opcode++) {
+            instructionCycles[opcode] = 60;
+        }
+        instructionCycles[Opcodes.NEW] = 2000;
+        instructionCycles[Opcodes.NEWARRAY] = 2000;
+        instructionCycles[Opcodes.ANEWARRAY] = 2000;
+        instructionCycles[Opcodes.MULTIANEWARRAY] = 2000;
+        instructionCycles[Opcodes.ATHROW] = 500;
+        instructionCycles[Opcodes.TABLESWITCH] = 80;
+        instructionCycles[Opcodes.LOOKUPSWITCH] = 80;
+
+        String util = "javacard.framework.Util";
+        setApiCost(util, "arrayCopy", 4, 2, 300, 4);
+        setApiCost(util, "arrayCopyNonAtomic", 4, 2, 200, 2);
+        setApiCost(util, "arrayFillNonAtomic", 2, 0, 150, 2);
+        setApiCost(util, "arrayCompare", 4, -1, 150, 2);
+        setApiCost(util, "setShort", -1, 0, 100, 0);
+
+        String cipher = "javacardx.crypto.Cipher";
+        setApiCost(cipher, "init", -1, -1, 5000, 0);
+        setApiCost(cipher, "update", 2, -1, 1000, 40);
+        setApiCost(cipher, "doFinal", 2, -1, 2000, 40);
+        for (byte algorithm : new byte[]{Cipher.ALG_RSA_PKCS1, Cipher.ALG_RSA_NOPAD, Cipher.ALG_RSA_PKCS1_OAEP}) {
+            setAlgorithmCost(cipher, "doFinal", algorithm, 750000, 0);
+        }
+
+        String signature = "javacard.security.Signature";
+        setApiCost(signature, "init", -1, -1, 5000, 0);
+        setApiCost(signature, "update", 2, -1, 1000, 40);
+        setApiCost(signature, "sign", 2, -1, 3000, 40);
+        setApiCost(signature, "verify", 2, -1, 3000, 40);
+        for (byte algorithm : new byte[]{Signature.ALG_RSA_SHA_PKCS1, Signature.ALG_RSA_SHA_256_PKCS1}) {
+            setAlgorithmCost(signature, "sign", algorithm, 750000, 30);
+            setAlgorithmCost(signature, "verify", algorithm, 60000, 30);
+        }
+        for (byte algorithm : new byte[]{Signature.ALG_ECDSA_SHA, Signature.ALG_ECDSA_SHA_256}) {
+            setAlgorithmCost(signature, "sign", algorithm, 400000, 30);
+            setAlgorithmCost(signature, "verify", algorithm, 700000, 30);
+        }
+
+        String digest = "javacard.security.MessageDigest";
+        setApiCost(digest, "update", 2, -1, 1000, 30);
+        setApiCost(digest, "doFinal", 2, -1, 1500, 30);
+        setApiCost("javacard.security.RandomData", "generateData", 2, -1, 500, 50);
+        setApiCost("javacard.security.RandomData", "nextBytes", 2, -1, 500, 50);
+        setApiCost("javacard.security.KeyAgreement", "generateSecret", 2, -1, 400000, 0);
+        setApiCost("javacard.security.KeyPair", "genKeyPair", -1, -1, 10000000, 0);
+    }
+
+    /**
+     * Instrument an applet class to charge its costs to the {@link CardCostMeter}
+     * of the runtime executing it
+     * @param classBytes class file
+     * @param loader class loader which will define the class, used to look up super classes
+     * @return instrumented class file, <code>classBytes</code> if the class cannot be instrumented
+     */
+    public byte[] instrument(byte[] classBytes, ClassLoader loader) {
+        try {
+            return new CostInstrumenter(this, loader).instrument(classBytes);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to instrument applet class, its costs are not estimated", e);
+            return classBytes;
+        }
+    }
+
+    /**
+     * Load a model, costs not in the file keep their defaults
+     * @param file properties file, see {@link #configure(Properties)}
+     * @return new model
+     * @throws IOException if the file cannot be read
+     */
+    public static CostModel load(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        CostModel model = new CostModel();
+        model.configure(properties);
+        return model;
+    }
+
+    /**
+     * Change costs. Recognized properties:
+     * <ul>
+     *     <li><code>clock=</code><i>Hz</i></li>
+     *     <li><code>instruction=</code><i>cycles</i> for every instruction</li>
+     *     <li><code>instruction.</code><i>mnemonic</i><code>=</code><i>cycles</i>, e.g. <code>instruction.invokevirtual=200</code></li>
+     *     <li><code>eeprom.write=</code><i>cycles</i><code>,</code><i>cyclesPerByte</i></li>
+     *     <li><code>api.</code><i>class</i><code>.</code><i>method</i><code>=</code><i>cycles</i><code>,</code><i>cyclesPerByte</i>[<code>,</code><i>lengthArgument</i>[<code>,</code><i>arrayArgument</i>]],
+     *     e.g. <code>api.javacard.framework.Util.arrayCopy=300,4,4,2</code></li>
+     *     <li><code>api.</code><i>class</i><code>.</code><i>method</i><code>.</code><i>algorithm</i><code>=</code><i>cycles</i><code>,</code><i>cyclesPerByte</i>,
+     *     e.g. <code>api.javacardx.crypto.Cipher.doFinal.10=750000,0</code></li>
+     * </ul>
+     * @param properties costs
+     * @throws IllegalArgumentException if a property is malformed
+     */
+    public void configure(Properties properties) {
+        String all = properties.getProperty("instruction");
+        if (all != null) {
+            Arrays.fill(instructionCycles, parseInt("instruction", all));
+        }
+        List<String> algorithmKeys = new ArrayList<String>();
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key).trim();
+            if (key.equals("clock")) {
+                setClockFrequency(parseLong(key, value));
+            } else if (key.startsWith("instruction.")) {
+                setInstructionCost(opcode(key.substring("instruction.".length())), parseInt(key, value));
+            } else if (key.equals("eeprom.write")) {
+                long[] values = parseList(key, value, 2, 2);
+                setEepromWriteCost(values[0], values[1]);
+            } else if (key.startsWith("api.")) {
+                if (isAlgorithmKey(key)) {
+                    algorithmKeys.add(key);
+                } else {
+                    configureApi(key, value);
+                }
+            }
+        }
+        // overrides need the cost of their method, which may be in the same properties
+        for (String key : algorithmKeys) {
+            configureAlgorithm(key, properties.getProperty(key).trim());
+        }
+    }
+
+    private static boolean isAlgorithmKey(String key) {
+        String last = key.substring(key.lastIndexOf('.') + 1);
+        return !last.isEmpty() && Character.isDigit(last.charAt(0));
+    }
+
+    private void configureAlgorithm(String key, String value) {
+        long[] values = parseList(key, value, 2, 2);
+        String name = key.substring("api.".length(), key.lastIndexOf('.'));
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0) {
+            throw new IllegalArgumentException("Invalid cost property: " + key);
+        }
+        setAlgorithmCost(name.substring(0, dot), name.substring(dot + 1),
+                (byte) parseInt(key, key.substring(key.lastIndexOf('.') + 1)), values[0], values[1]);
+    }
+
+    private void configureApi(String key, String value) {
+        String name = key.substring("api.".length());
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0) {
+            throw new IllegalArgumentException("Invalid cost property: " + key);
+        }
+        long[] values = parseList(key, value, 2, 4);
+        String className = name.substring(0, dot);
+        String methodName = name.substring(dot + 1);
+        ApiCost existing = getApiCost(className.replace('.', '/') + "." + methodName);
+        int lengthArgument = values.length > 2 ? (int) values[2] : (existing == null ? -1 : existing.lengthArgument);
+        int arrayArgument = values.length > 3 ? (int) values[3] : (existing == null ? -1 : existing.arrayArgument);
+        setApiCost(className, methodName, lengthArgument, arrayArgument, values[0], values[1]);
+    }
+
+    private static int opcode(String mnemonic) {
+        String upper = mnemonic.toUpperCase(Locale.ROOT);
+        for (int opcode = 0; opcode < Printer.OPCODES.length; opcode++) {
+            if (upper.equals(Printer.OPCODES[opcode])) {
+                return opcode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown instruction: " + mnemonic);
+    }
+
+    private static long[] parseList(String key, String value, int min, int max) {
+        String[] parts = value.split(",");
+        if (parts.length < min || parts.length > max) {
+            throw new IllegalArgumentException("Invalid cost property: " + key + "=" + value);
+        }
+        long[] result = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = parseLong(key, parts[i].trim());
+        }
+        return result;
+    }
+
+    private static long parseLong(String key, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cost property: " + key + "=" + value);
+        }
+    }
+
+    private static int parseInt(String key, String value) {
+        long result = parseLong(key, value);
+        if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid cost property: " + key + "=" + value);
+        }
+        return (int) result;
+    }
+
+    /**
+     * @param hz clock frequency of the card
+     * @throws IllegalArgumentException if <code>hz</code> is not positive
+     */
+    public void setClockFrequency(long hz) {
+        if (hz <= 0) {
+            throw new IllegalArgumentException("hz");
+        }
+        this.clockFrequency = hz;
+    }
+
+    public long getClockFrequency() {
+        return clockFrequency;
+    }
+
+    /**
+     * @param opcode JVM opcode, see <code>org.objectweb.asm.Opcodes</code>
+     * @param cycles cycles per execution
+     */
+    public void setInstructionCost(int opcode, int cycles) {
+        instructionCycles[opcode] = cycles;
+    }
+
+    public int getInstructionCost(int opcode) {
+        return instructionCycles[opcode];
+    }
+
+    /**
+     * Cost of writing persistent memory through API methods with an array argument
+     * @param cycles cycles per write
+     * @param cyclesPerByte additional cycles per byte written
+     */
+    public void setEepromWriteCost(long cycles, long cyclesPerByte) {
+        this.eepromWriteCycles = cycles;
+        this.eepromByteCycles = cyclesPerByte;
+    }
+
+    long getEepromWriteCost(int length) {
+        return eepromWriteCycles + eepromByteCycles * length;
+    }
+
+    /**
+     * Set the cost of an API method, all overloads share the cost
+     * @param className binary class name of the declaring class as used by applets, e.g. <code>javacardx.crypto.Cipher</code>
+     * @param methodName method name
+     * @param lengthArgument index of the argument holding the number of bytes processed, -1 if none
+     * @param arrayArgument index of the array argument written by the method, -1 if none
+     * @param cycles cycles per call
+     * @param cyclesPerByte additional cycles per byte processed
+     */
+    public void setApiCost(String className, String methodName, int lengthArgument, int arrayArgument,
+                           long cycles, long cyclesPerByte) {
+        String key = className.replace('.', '/') + "." + methodName;
+        ApiCost existing = apiCosts.get(key);
+        ApiCost cost = new ApiCost(lengthArgument, arrayArgument, cycles, cyclesPerByte);
+        if (existing != null) {
+            cost.algorithms.putAll(existing.algorithms);
+        }
+        apiCosts.put(key, cost);
+    }
+
+    /**
+     * Override the cost of an API method for one algorithm, the method must have a cost
+     * @param className binary class name of the declaring class
+     * @param methodName method name
+     * @param algorithm result of <code>getAlgorithm()</code> of the cipher, signature etc.
+     * @param cycles cycles per call
+     * @param cyclesPerByte additional cycles per byte processed
+     * @throws IllegalArgumentException if the method has no cost
+     */
+    public void setAlgorithmCost(String className, String methodName, byte algorithm, long cycles, long cyclesPerByte) {
+        ApiCost cost = apiCosts.get(className.replace('.', '/') + "." + methodName);
+        if (cost == null) {
+            throw new IllegalArgumentException("No cost for " + className + "." + methodName);
+        }
+        cost.algorithms.put(algorithm & 0xFF, new long[]{cycles, cyclesPerByte});
+    }
+
+    /**
+     * @param key internal class name + "." + method name
+     * @return cost or null
+     */
+    ApiCost getApiCost(String key) {
+        return apiCosts.get(key);
+    }
+
+    static final class ApiCost {
+        final int lengthArgument;
+        final int arrayArgument;
+        private final long cycles;
+        private final long cyclesPerByte;
+        private final Map<Integer, long[]> algorithms = new HashMap<Integer, long[]>();
+
+        ApiCost(int lengthArgument, int arrayArgument, long cycles, long cyclesPerByte) {
+            this.lengthArgument = lengthArgument;
+            this.arrayArgument = arrayArgument;
+            this.cycles = cycles;
+            this.cyclesPerByte = cyclesPerByte;
+        }
+
+        /**
+         * @param algorithm algorithm or -1 if unknown
+         * @param length bytes processed
+         * @return cycles
+         */
+        long cycles(int algorithm, int length) {
+            long[] override = algorithm < 0 ? null : algorithms.get(algorithm);
+            if (override != null) {
+                return override[0] + override[1] * length;
+            }
+            return cycles + cyclesPerByte * length;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.utils.AIDUtil;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javacard.framework.AID;
+
+/**
+ * Java Flight Recorder events for APDU processing, applet lifecycle,
+ * transactions and crypto operations.
+ *
+ * <p>Events are only emitted if the system property
+ * {@value #ENABLED_SYSTEM_PROPERTY} is <code>true</code> when this class is
+ * loaded. Otherwise every hook is a check of a static final field, so the
+ * hooks cost nothing once compiled. If enabled, events still have to be
+ * enabled in the recording, e.g. with
+ * <code>-XX:StartFlightRecording:settings=profile</code>; all events are in
+ * the category <code>jCardSim</code>.</p>
+ *
+ * <p>jCardSim runs on Java versions without JFR, so the event types are
+ * defined at runtime through <code>jdk.jfr.EventFactory</code>. If that
+ * fails, a warning is logged and no events are emitted.</p>
+ */
+public final class FlightRecorderEvents {
+    /** system property enabling the events */
+    public static final String ENABLED_SYSTEM_PROPERTY = "com.licel.jcardsim.jfr";
+
+    /** event name of processed command APDUs */
+    public static final String APDU_EVENT = "com.licel.jcardsim.Apdu";
+    /** event name of applet install, delete, select and deselect */
+    public static final String APPLET_EVENT = "com.licel.jcardsim.Applet";
+    /** event name of transaction begin, commit and abort */
+    public static final String TRANSACTION_EVENT = "com.licel.jcardsim.Transaction";
+    /** event name of cipher and signature operations */
+    public static final String CRYPTO_EVENT = "com.licel.jcardsim.Crypto";
+
+    private static final Logger LOGGER = Logger.getLogger(FlightRecorderEvents.class.getName());
+    private static final String CATEGORY = "jCardSim";
+    private static final FlightRecorderEvents EVENTS = Boolean.getBoolean(ENABLED_SYSTEM_PROPERTY) ? create() : null;
+
+    final Definition apdu;
+    final Definition applet;
+    final Definition transaction;
+    final Definition crypto;
+
+    // jdk.jfr.Event and jdk.jfr.EventFactory methods
+    private final Method newEvent;
+    private final Method getEventType;
+    private final Method isEnabled;
+    private final Method begin;
+    private final Method set;
+    private final Method commit;
+
+    /**
+     * Define the event types
+     * @throws ReflectiveOperationException if JFR is not available
+     */
+    FlightRecorderEvents() throws ReflectiveOperationException {
+        Class<?> eventClass = Class.forName("jdk.jfr.Event");
+        Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+        newEvent = factoryClass.getMethod("newEvent");
+        getEventType = factoryClass.getMethod("getEventType");
+        isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+        begin = eventClass.getMethod("begin");
+        set = eventClass.getMethod("set", int.class, Object.class);
+        commit = eventClass.getMethod("commit");
+
+        apdu = define(factoryClass, APDU_EVENT, "APDU", "Command APDU processed by the selected applet",
+                String.class, "applet", "Applet",
+                int.class, "cla", "CLA",
+                int.class, "ins", "INS",
+                int.class, "sw", "Status Word",
+                int.class, "commandLength", "Command Length",
+                int.class, "responseLength", "Response Length");
+        applet = define(factoryClass, APPLET_EVENT, "Applet", "Applet installed, deleted, selected or deselected",
+                String.class, "action", "Action",
+                String.class, "applet", "Applet");
+        transaction = define(factoryClass, TRANSACTION_EVENT, "Transaction", "Transaction begun, committed or aborted",
+                String.class, "action", "Action",
+                int.class, "logUsed", "Undo Log Bytes Used");
+        crypto = define(factoryClass, CRYPTO_EVENT, "Crypto", "Cipher or signature operation",
+                String.class, "operation", "Operation",
+                int.class, "algorithm", "Algorithm",
+                int.class, "length", "Length");
+    }
+
+    private static FlightRecorderEvents create() {
+        try {
+            return new FlightRecorderEvents();
+        } catch (ReflectiveOperationException e) {
+            LOGGER.log(Level.WARNING, "Java Flight Recorder events are not available", e);
+            return null;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Java Flight Recorder events are not available", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return true if {@value #ENABLED_SYSTEM_PROPERTY} is set and the event types were defined
+     */
+    public static boolean isEnabled() {
+        return EVENTS != null;
+    }
+
+    /**
+     * Start timing a command APDU
+     * @return event to pass to {@link #commitApdu}, null if disabled
+     */
+    public static Object beginApdu() {
+        final FlightRecorderEvents events = EVENTS;
+        return events == null ? null : events.apdu.begin();
+    }
+
+    /**
+     * Record a processed command APDU
+     * @param event result of {@link #beginApdu()}, may be null
+     * @param applet selected applet or null
+     * @param command command APDU
+     * @param sw status word
+     * @param responseLength length of the response data
+     */
+    public static void commitApdu(Object event, AID applet, byte[] command, short sw, int responseLength) {
+        if (event == null) {
+            return;
+        }
+        EVENTS.apdu.commit(event, applet == null ? null : AIDUtil.toString(applet),
+                command[0] & 0xFF, command[1] & 0xFF, sw & 0xFFFF, command.length, responseLength);
+    }
+
+    /**
+     * Record an applet lifecycle change
+     * @param action <code>install</code>, <code>delete</code>, <code>select</code> or <code>deselect</code>
+     * @param applet applet AID
+     */
+    public static void appletEvent(String action, AID applet) {
+        final FlightRecorderEvents events = EVENTS;
+        if (events != null && events.applet.isEnabled()) {
+            events.applet.commit(events.applet.newEvent(), action, applet == null ? null : AIDUtil.toString(applet));
+        }
+    }
+
+    /**
+     * Record a transaction state change
+     * @param action <code>begin</code>, <code>commit</code> or <code>abort</code>
+     * @param logUsed bytes used in the undo log
+     */
+    public static void transactionEvent(String action, int logUsed) {
+        final FlightRecorderEvents events = EVENTS;
+        if (events != null && events.transaction.isEnabled()) {
+            events.transaction.commit(events.transaction.newEvent(), action, logUsed);
+        }
+    }
+
+    /**
+     * Start timing a crypto operation
+     * @return event to pass to {@link #commitCrypto}, null if disabled
+     */
+    public static Object beginCrypto() {
+        final FlightRecorderEvents events = EVENTS;
+        return events == null ? null : events.crypto.begin();
+    }
+
+    /**
+     * Record a crypto operation
+     * @param event result of {@link #beginCrypto()}, may be null
+     * @param operation e.g. <code>Cipher.doFinal</code>
+     * @param algorithm algorithm constant of the cipher or signature
+     * @param length input length, or key size for <code>init</code>
+     */
+    public static void commitCrypto(Object event, String operation, byte algorithm, int length) {
+        if (event == null) {
+            return;
+        }
+        EVENTS.crypto.commit(event, operation, algorithm & 0xFF, length);
+    }
+
+    /**
+     * Record a crypto operation without duration
+     * @param operation e.g. <code>Cipher.init</code>
+     * @param algorithm algorithm constant of the cipher or signature
+     * @param length key size in bits
+     */
+    public static void cryptoEvent(String operation, byte algorithm, int length) {
+        final FlightRecorderEvents events = EVENTS;
+        if (events != null && events.crypto.isEnabled()) {
+            events.crypto.commit(events.crypto.newEvent(), operation, algorithm & 0xFF, length);
+        }
+    }
+
+    private Definition define(Class<?> factoryClass, String name, String label, String description,
+                              Object... fields) throws ReflectiveOperationException {
+        Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement");
+        Constructor<?> annotation = annotationClass.getConstructor(Class.class, Object.class);
+        Constructor<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor")
+                .getConstructor(Class.class, String.class, List.class);
+
+        List<Object> annotations = new ArrayList<Object>();
+        annotations.add(annotation.newInstance(annotationType("jdk.jfr.Name"), name));
+        annotations.add(annotation.newInstance(annotationType("jdk.jfr.Label"), label));
+        annotations.add(annotation.newInstance(annotationType("jdk.jfr.Description"), description));
+        annotations.add(annotation.newInstance(annotationType("jdk.jfr.Category"), new String[]{CATEGORY}));
+
+        List<Object> values = new ArrayList<Object>();
+        for (int i = 0; i < fields.length; i += 3) {
+            Object fieldLabel = annotation.newInstance(annotationType("jdk.jfr.Label"), fields[i + 2]);
+            values.add(valueDescriptor.newInstance(fields[i], fields[i + 1], Collections.singletonList(fieldLabel)));
+        }
+        Object factory = factoryClass.getMethod("create", List.class, List.class).invoke(null, annotations, values);
+        return new Definition(factory, getEventType.invoke(factory));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> annotationType(String name) throws ClassNotFoundException {
+        return (Class<? extends Annotation>) Class.forName(name);
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * One event type defined through <code>jdk.jfr.EventFactory</code>
+     */
+    final class Definition {
+        private final Object factory;
+        private final Object eventType;
+
+        private Definition(Object factory, Object eventType) {
+            this.factory = factory;
+            this.eventType = eventType;
+        }
+
+        /**
+         * @return true if a running recording has this event enabled
+         */
+        boolean isEnabled() {
+            return (Boolean) invoke(isEnabled, eventType);
+        }
+
+        Object newEvent() {
+            return invoke(newEvent, factory);
+        }
+
+        /**
+         * @return started event, null if the event is not enabled
+         */
+        Object begin() {
+            if (!isEnabled()) {
+                return null;
+            }
+            Object event = newEvent();
+            invoke(begin, event);
+            return event;
+        }
+
+        /**
+         * Set the fields in declaration order and commit, which ends the
+         * duration of a begun event
+         * @param event event from {@link #begin()} or {@link #newEvent()}
+         * @param values field values
+         */
+        void commit(Object event, Object... values) {
+            for (int i = 0; i < values.length; i++) {
+                invoke(set, event, i, values[i]);
+            }
+            invoke(commit, event);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Computes frames of instrumented applet classes without loading classes,
+ * super classes are read as class files through the applet class loader.
+ */
+final class LoaderClassWriter extends ClassWriter {
+    private final ClassLoader loader;
+
+    LoaderClassWriter(ClassLoader loader) {
+        super(COMPUTE_FRAMES);
+        this.loader = loader;
+    }
+
+    @Override
+    protected String getCommonSuperClass(String type1, String type2) {
+        Set<String> supers = new HashSet<String>();
+        for (String type = type1; type != null; type = superClass(type)) {
+            supers.add(type);
+        }
+        for (String type = type2; type != null; type = superClass(type)) {
+            if (supers.contains(type)) {
+                return type;
+            }
+        }
+        return "java/lang/Object";
+    }
+
+    /**
+     * @return super class, null for interfaces, <code>java/lang/Object</code> and unknown classes
+     */
+    private String superClass(String type) {
+        if ("java/lang/Object".equals(type)) {
+            return null;
+        }
+        InputStream in = loader.getResourceAsStream(type + ".class");
+        if (in == null) {
+            return null;
+        }
+        try {
+            try {
+                ClassReader reader = new ClassReader(in);
+                return (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0 ? null : reader.getSuperName();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            // class file version unknown to ASM, e.g. a JDK class
+            return loadedSuperClass(type);
+        }
+    }
+
+    private String loadedSuperClass(String type) {
+        try {
+            Class<?> c = Class.forName(type.replace('/', '.'), false, loader);
+            return c.isInterface() || c.getSuperclass() == null ? null : Type.getInternalName(c.getSuperclass());
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -29,7 +29,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
 import javacard.framework.AID;
 import javacard.framework.Applet;
@@ -146,29 +145,22 @@ public class PersistentSimulatorRuntime extends SimulatorRuntime {
         for (AID anAidsToTrash : aidsToTrash) {
             clearApplet(anAidsToTrash);
         }
-
-        loadFiles.clear();
-        generatedLoadFileAIDs.clear();
-        Arrays.fill(responseBuffer, (byte) 0);
-        transactionDepth = 0;
-        responseBufferSize = 0;
-        currentAID = null;
-        previousAID = null;
-        
-        transientMemory.forgetBuffers();
-        sensitiveMemory.forgetBuffers();
-
+        clearRuntimeState();
     }
     
     @Override
-    public byte[] transmitCommand(byte[] command) throws SystemException {
+    protected short processCommand(byte[] command, ApduHeader header) {
         try {
-            return super.transmitCommand(command);
+            return super.processCommand(command, header);
         } finally {
-            Applet applet = getApplet(getAID());
-            if(appletsDir != null && applet != null) {
-                updateAppletFile(getAID(), applet);
-            }
+            updateSelectedAppletFile();
+        }
+    }
+
+    private void updateSelectedAppletFile() {
+        Applet applet = getApplet(getAID());
+        if(appletsDir != null && applet != null) {
+            updateAppletFile(getAID(), applet);
         }
     }
     
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+/**
+ * Receives response data directly from <code>APDU.sendBytes</code>,
+ * see {@link SimulatorRuntime#transmitCommand(byte[], ResponseSink)}.
+ */
+public interface ResponseSink {
+    /**
+     * Called for every block of response data the applet sends.
+     * <code>data</code> is only valid during the call.
+     * A runtime exception aborts the command, it is thrown again by
+     * <code>transmitCommand</code>.
+     * @param data source array
+     * @param offset offset of the block in <code>data</code>
+     * @param length length of the block
+     */
+    void write(byte[] data, int offset, int length);
+}
@@ -136,4 +136,21 @@ public class SensitiveMemory {
         persistentArrays.clear();
         transientArrays.clear();
     }
+
+    /**
+     * @return registered arrays, persistent ones first, for <code>CardCheckpoint</code>
+     */
+    Object[] snapshot() {
+        return new Object[]{persistentArrays, transientArrays};
+    }
+
+    /**
+     * Replace the registered arrays by those of a copied {@link #snapshot()}
+     */
+    @SuppressWarnings("unchecked")
+    void restore(Object[] snapshot) {
+        clearAll();
+        persistentArrays.addAll((Set<Object>) snapshot[0]);
+        transientArrays.addAll((Set<Object>) snapshot[1]);
+    }
 }
@@ -16,11 +16,16 @@
 package com.licel.jcardsim.base;
 
 import com.licel.jcardsim.io.JavaCardInterface;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
 import java.text.MessageFormat;
 import java.util.Locale;
 import java.util.Properties;
@@ -45,12 +50,20 @@ public class Simulator implements JavaCardInterface {
     static final MessageFormat AID_SP_TEMPLATE = new MessageFormat("{0}.AID");
     // Applet ClassName system property template
     static final MessageFormat APPLET_CLASS_SP_TEMPLATE = new MessageFormat("{0}.Class");
-    // Applet Class Loader
-    final AppletClassLoader cl = new AppletClassLoader(new URL[]{});
+    // Applet Jar system property template
+    static final MessageFormat APPLET_JAR_SP_TEMPLATE = new MessageFormat("{0}.Jar");
+    // instruments applet classes loaded from jars, null if not profiling
+    private volatile AppletProfiler appletProfiler = AppletProfiler.forNewSimulator();
+    // estimates card time, applet classes are instrumented with its model
+    private volatile CardCostMeter costMeter;
+    // Applet Class Loader, replaced by reloadApplets
+    volatile AppletClassLoader cl = new AppletClassLoader(new URL[]{});
     /** The simulator runtime */
     protected final SimulatorRuntime runtime;
     // current protocol
     private String protocol = "T=0";
+    // true if a subclass overrides transmitCommand(byte[]) but not transmitCommand(byte[], ByteBuffer)
+    private final boolean byteArrayTransmitOverridden;
 
     /**
      * Create a Simulator object using the default SimulatorRuntime.
@@ -85,13 +98,32 @@ public class Simulator implements JavaCardInterface {
         }
 
         this.runtime = runtime;
+        try {
+            byteArrayTransmitOverridden = getClass().getMethod("transmitCommand", byte[].class).getDeclaringClass()
+                    != getClass().getMethod("transmitCommand", byte[].class, ByteBuffer.class).getDeclaringClass();
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("Internal reflection error", e);
+        }
         synchronized (this.runtime) {
             this.runtime.resetRuntime();
         }
 
         changeProtocol(protocol);
 
+        CardCostMeter meter = CardCostMeter.forNewSimulator();
+        if (meter != null) {
+            setCostMeter(meter);
+        }
+
         // init pre-installed applets
+        loadApplets(properties);
+    }
+
+    /**
+     * Load the applets configured by <code>com.licel.jcardsim.card.applet.n.AID</code>,
+     * <code>.Class</code> and the optional <code>.Jar</code> (applet jar file) properties
+     */
+    private void loadApplets(Properties properties) {
         for (int i = 0; i < 100 && !properties.isEmpty(); i++) {
             String selectedPrefix = PROPERTY_PREFIX;
             String aidPropertyName = PROPERTY_PREFIX + AID_SP_TEMPLATE.format(new Object[]{i});
@@ -111,12 +143,84 @@ public class Simulator implements JavaCardInterface {
                         // skip incorrect applet
                         continue;
                     }
+                    String appletJar = properties.getProperty(selectedPrefix + APPLET_JAR_SP_TEMPLATE.format(new Object[]{i}));
+                    if (appletJar != null) {
+                        try {
+                            cl.addAppletJar(new File(appletJar));
+                        } catch (MalformedURLException e) {
+                            // skip incorrect applet
+                            continue;
+                        }
+                    }
                     loadApplet(new AID(aidBytes, (short) 0, (byte) aidBytes.length), appletClassName);
                 }
             }
         }
     }
 
+    /**
+     * Replace all applets without creating a new <code>Simulator</code>.
+     *
+     * <p>The runtime is reset, applet classes are loaded through a new class
+     * loader and the applets configured in <code>properties</code> are loaded
+     * again, so changed <code>.Jar</code> files take effect. Applet classes
+     * found on the class path of jCardSim itself are not reloaded.
+     * Commands sent concurrently complete either before or after the reload.</p>
+     *
+     * @param properties configuration holding <code>com.licel.jcardsim.card.applet.n.*</code> properties
+     */
+    public void reloadApplets(Properties properties) {
+        synchronized (runtime) {
+            runtime.resetRuntime();
+            AppletClassLoader previous = cl;
+            cl = new AppletClassLoader(new URL[]{});
+            try {
+                previous.close();
+            } catch (IOException ignored) {
+            }
+            loadApplets(properties);
+        }
+    }
+
+    /**
+     * Profile applet classes loaded from applet jars. Only classes loaded
+     * after this call are instrumented, use {@link #reloadApplets(Properties)}
+     * to profile applets configured by properties.
+     *
+     * @param profiler profiler or null to stop instrumenting
+     * @see AppletProfiler#REPORT_SYSTEM_PROPERTY
+     */
+    public void setAppletProfiler(AppletProfiler profiler) {
+        this.appletProfiler = profiler;
+    }
+
+    /**
+     * @return profiler instrumenting applet classes, null if not profiling
+     */
+    public AppletProfiler getAppletProfiler() {
+        return appletProfiler;
+    }
+
+    /**
+     * Estimate the card time of each APDU. Only applet classes loaded from
+     * applet jars after this call are charged, use
+     * {@link #reloadApplets(Properties)} for applets configured by properties.
+     *
+     * @param meter meter or null to stop estimating
+     * @see CardCostMeter#BUDGET_SYSTEM_PROPERTY
+     */
+    public void setCostMeter(CardCostMeter meter) {
+        this.costMeter = meter;
+        runtime.setCostMeter(meter);
+    }
+
+    /**
+     * @return meter estimating the card time or null
+     */
+    public CardCostMeter getCostMeter() {
+        return costMeter;
+    }
+
     public AID loadApplet(AID aid, String appletClassName, byte[] appletJarContents) throws SystemException {
         // simple method, but emulate real card login
         // download data
@@ -124,8 +228,9 @@ public class Simulator implements JavaCardInterface {
         aid.getBytes(aidData, (short) 0);
         Class<? extends Applet> appletClass = null;
         try {
-            cl.addAppletContents(appletJarContents);
-            appletClass = requireExtendsApplet(cl.loadClass(appletClassName));
+            AppletClassLoader loader = cl;
+            loader.addAppletContents(appletJarContents);
+            appletClass = requireExtendsApplet(loader.loadClass(appletClassName));
         } catch (Exception e) {
             SystemException.throwIt(SystemException.ILLEGAL_VALUE);
 
@@ -262,6 +367,121 @@ public class Simulator implements JavaCardInterface {
         }
     }
 
+    /**
+     * Transmit a command which is already parsed
+     * @param command command apdu
+     * @param header case and length fields of <code>command</code>
+     * @return response apdu
+     * @see SimulatorRuntime#transmitCommand(byte[], ApduHeader)
+     */
+    public byte[] transmitCommand(byte[] command, ApduHeader header) {
+        if (byteArrayTransmitOverridden) {
+            return transmitCommand(command);
+        }
+        synchronized (runtime) {
+            return runtime.transmitCommand(command, header);
+        }
+    }
+
+    /**
+     * Transmit a command and write the response into a buffer without
+     * allocating a response array
+     * @param command command apdu
+     * @param response buffer receiving the response apdu, its position is advanced
+     * @return response length
+     * @throws java.nio.BufferOverflowException if <code>response</code> has not enough space left
+     * @see SimulatorRuntime#transmitCommand(byte[], ByteBuffer)
+     */
+    public int transmitCommand(byte[] command, ByteBuffer response) {
+        if (byteArrayTransmitOverridden) {
+            byte[] result = transmitCommand(command);
+            response.put(result);
+            return result.length;
+        }
+        synchronized (runtime) {
+            return runtime.transmitCommand(command, response);
+        }
+    }
+
+    /**
+     * Transmit a command and hand the response data to <code>sink</code>
+     * as the applet sends it
+     * @param command command apdu
+     * @param sink receives the response data
+     * @return status word
+     * @see SimulatorRuntime#transmitCommand(byte[], ResponseSink)
+     */
+    public short transmitCommand(byte[] command, ResponseSink sink) {
+        if (byteArrayTransmitOverridden) {
+            byte[] result = transmitCommand(command);
+            sink.write(result, 0, result.length - 2);
+            return ByteUtil.getSW(result);
+        }
+        synchronized (runtime) {
+            return runtime.transmitCommand(command, sink);
+        }
+    }
+
+    /**
+     * Transmit a command and write the response apdu to <code>out</code>
+     * as the applet sends it
+     * @param command command apdu
+     * @param out receives the response data followed by the status word
+     * @return response length
+     * @throws IOException if writing to <code>out</code> fails
+     * @see SimulatorRuntime#transmitCommand(byte[], OutputStream)
+     */
+    public int transmitCommand(byte[] command, OutputStream out) throws IOException {
+        if (byteArrayTransmitOverridden) {
+            byte[] result = transmitCommand(command);
+            out.write(result);
+            return result.length;
+        }
+        synchronized (runtime) {
+            return runtime.transmitCommand(command, out);
+        }
+    }
+
+    /**
+     * @param responseChaining true to return long T=0 responses with GET RESPONSE
+     * @see SimulatorRuntime#setResponseChaining(boolean)
+     */
+    public void setResponseChaining(boolean responseChaining) {
+        synchronized (runtime) {
+            runtime.setResponseChaining(responseChaining);
+        }
+    }
+
+    /**
+     * @param tearInjector injector tearing following commands, null to stop tearing
+     * @see SimulatorRuntime#setTearInjector(TearInjector)
+     */
+    public void setTearInjector(TearInjector tearInjector) {
+        synchronized (runtime) {
+            runtime.setTearInjector(tearInjector);
+        }
+    }
+
+    /**
+     * @return in-memory copy of the applet state
+     * @see SimulatorRuntime#checkpoint()
+     */
+    public CardCheckpoint checkpoint() {
+        synchronized (runtime) {
+            return runtime.checkpoint();
+        }
+    }
+
+    /**
+     * @param checkpoint checkpoint to restore
+     * @see SimulatorRuntime#restore(CardCheckpoint)
+     */
+    public void restore(CardCheckpoint checkpoint) {
+        synchronized (runtime) {
+            runtime.restore(checkpoint);
+        }
+    }
+
     public void reset() {
         synchronized (runtime) {
             runtime.reset();
@@ -344,6 +564,44 @@ public class Simulator implements JavaCardInterface {
             super(urls, Simulator.class.getClassLoader());
         }
 
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            AppletProfiler profiler = appletProfiler;
+            CardCostMeter meter = costMeter;
+            if (profiler == null && meter == null) {
+                return super.findClass(name);
+            }
+            URL resource = findResource(name.replace('.', '/') + ".class");
+            if (resource == null) {
+                throw new ClassNotFoundException(name);
+            }
+            byte[] classBytes;
+            try {
+                InputStream in = resource.openStream();
+                try {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    byte[] chunk = new byte[4096];
+                    int read;
+                    while ((read = in.read(chunk)) != -1) {
+                        bos.write(chunk, 0, read);
+                    }
+                    classBytes = bos.toByteArray();
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+            // costs first, so the probes of the profiler are not charged
+            if (meter != null) {
+                classBytes = meter.getModel().instrument(classBytes, this);
+            }
+            if (profiler != null) {
+                classBytes = profiler.instrument(classBytes, this);
+            }
+            return defineClass(name, classBytes, 0, classBytes.length);
+        }
+
         void addAppletContents(byte[] appletJarContents) throws IOException {
             File downloadedAppletJar = File.createTempFile("applet", "contents");
             downloadedAppletJar.deleteOnExit();
@@ -353,5 +611,9 @@ public class Simulator implements JavaCardInterface {
             addURL(downloadedAppletJar.toURI().toURL());
 
         }
+
+        void addAppletJar(File appletJar) throws MalformedURLException {
+            addURL(appletJar.toURI().toURL());
+        }
     }
 }
@@ -15,19 +15,28 @@
  */
 package com.licel.jcardsim.base;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import com.licel.jcardsim.framework.InternalAPDU;
 import com.licel.jcardsim.utils.AIDUtil;
 import com.licel.jcardsim.utils.BiConsumer;
 import com.licel.jcardsim.utils.ByteUtil;
 import javacard.framework.*;
 import javacardx.apdu.ExtendedLength;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import org.objenesis.strategy.StdInstantiatorStrategy;
 
 /**
  * Base implementation of Java Card Runtime.
@@ -35,6 +44,21 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @see Applet
  */
 public class SimulatorRuntime {
+    /** system property holding the commit capacity in bytes, see {@link #setMaxCommitCapacity(short)} */
+    public static final String COMMIT_CAPACITY_SYSTEM_PROPERTY = "com.licel.jcardsim.transaction.capacity";
+
+    // install(byte[], short, byte) of applet classes, null if missing; looked up once per class
+    private static final ClassValue<Method> INSTALL_METHODS = new ClassValue<Method>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            try {
+                return type.getMethod("install", byte[].class, short.class, byte.class);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    };
+
     // holds the Applet registration callback
     protected final ThreadLocal<BiConsumer<Applet,AID>> registrationCallback;
     /** storage for installed applets */
@@ -43,7 +67,11 @@ public class SimulatorRuntime {
     protected final SortedMap<AID, LoadFile> loadFiles = new TreeMap<AID, LoadFile>(AIDUtil.comparator());
     /** storage for automatically generated loadFile AIDs */
     protected final SortedMap<AID, AID> generatedLoadFileAIDs = new TreeMap<AID, AID>(AIDUtil.comparator());
-    /** method for resetting APDUs */
+    /**
+     * method for resetting APDUs
+     * @deprecated APDUs are reset through <code>InternalAPDU</code>, see {@link #resetAPDU}
+     */
+    @Deprecated
     protected final Method apduPrivateResetMethod;
     /** outbound response byte array buffer */
     protected final byte[] responseBuffer = new byte[Short.MAX_VALUE + 2];
@@ -70,8 +98,44 @@ public class SimulatorRuntime {
     protected byte transactionDepth = 0;
     /** previousActiveObject */
     protected Object previousActiveObject;
+    /** undo log of the current transaction */
+    protected final TransactionLog transactionLog
+            = new TransactionLog(Integer.getInteger(COMMIT_CAPACITY_SYSTEM_PROPERTY, Short.MAX_VALUE));
+    // last array found to be persistent by logArrayWrite
+    private byte[] lastPersistentArray;
+    // tears the card, or null
+    private volatile TearInjector tearInjector;
+    // tearInjector while a command is processed
+    private TearInjector armedTearInjector;
+    // true while select, process or deselect of an applet runs
+    private boolean appletRunning;
+    // copies applet state for checkpoints, created on first use
+    private Kryo checkpointKryo;
 
     private boolean legacyMode;
+    // status word of the command being processed
+    private final byte[] statusWord = new byte[2];
+    // true if a subclass overrides transmitCommand(byte[]) but not transmitCommand(byte[], ByteBuffer)
+    private final boolean byteArrayTransmitOverridden;
+    // command statistics or null
+    private volatile CommandStatistics statistics = CommandStatistics.forNewRuntime();
+    // estimates the card time of commands, or null
+    private volatile CardCostMeter costMeter;
+    // receives response data instead of responseBuffer, or null
+    private ResponseSink responseSink;
+    // first exception thrown by responseSink during the current command
+    private RuntimeException responseSinkFailure;
+    // start of the response data in responseBuffer
+    private int responseOffset;
+    // if responses longer than T0_MAX_RESPONSE are fetched with GET RESPONSE under T=0
+    private boolean responseChaining;
+    // response data not yet fetched with GET RESPONSE
+    private int pendingResponseOffset;
+    private int pendingResponseLength;
+    private short pendingResponseSW;
+
+    private static final int T0_MAX_RESPONSE = 256;
+    private static final byte INS_GET_RESPONSE = (byte) 0xC0;
 
     protected final SensitiveMemory sensitiveMemory;
 
@@ -104,6 +168,9 @@ public class SimulatorRuntime {
             Field f = Applet.class.getDeclaredField("registrationCallback");
             f.setAccessible(true);
             registrationCallback = (ThreadLocal<BiConsumer<Applet,AID>>) f.get(null);
+
+            byteArrayTransmitOverridden = getClass().getMethod("transmitCommand", byte[].class).getDeclaringClass()
+                    != getClass().getMethod("transmitCommand", byte[].class, ByteBuffer.class).getDeclaringClass();
         } catch (Exception e) {
             throw new RuntimeException("Internal reflection error", e);
         }
@@ -218,6 +285,7 @@ public class SimulatorRuntime {
         }
 
         applets.remove(aid);
+        FlightRecorderEvents.appletEvent("delete", aid);
         Applet applet = applicationInstance.getApplet();
         if (applet == null) {
             return;
@@ -252,34 +320,296 @@ public class SimulatorRuntime {
      * @return response apdu
      */
     public byte[] transmitCommand(byte[] command) throws SystemException {
+        short sw = processCommand(command, null);
+        byte[] response = new byte[responseBufferSize + 2];
+        System.arraycopy(responseBuffer, responseOffset, response, 0, responseBufferSize);
+        Util.setShort(response, responseBufferSize, sw);
+        return response;
+    }
+
+    /**
+     * Transmit APDU to previous selected applet and write the response
+     * into <code>response</code>, without allocating a response array.
+     * Subclasses which override {@link #transmitCommand(byte[])} but not
+     * this method get the response from <code>transmitCommand(byte[])</code>.
+     * @param command command apdu
+     * @param response buffer receiving the response apdu, its position is advanced
+     * @return response length
+     * @throws java.nio.BufferOverflowException if <code>response</code> has not enough
+     * space left, the position of <code>response</code> is unchanged in this case
+     */
+    public int transmitCommand(byte[] command, ByteBuffer response) throws SystemException {
+        if (byteArrayTransmitOverridden) {
+            byte[] result = transmitCommand(command);
+            response.put(result);
+            return result.length;
+        }
+        short sw = processCommand(command, null);
+        if (response.remaining() < responseBufferSize + 2) {
+            throw new BufferOverflowException();
+        }
+        response.put(responseBuffer, responseOffset, responseBufferSize);
+        response.putShort(sw);
+        return responseBufferSize + 2;
+    }
+
+    /**
+     * Transmit APDU to previous selected applet and hand the response data
+     * to <code>sink</code> as the applet sends it, without collecting it in
+     * the response buffer first.
+     * <p>Unlike the other <code>transmitCommand</code> methods the data is
+     * not withheld if the command ends with a status word other than
+     * <code>61XX</code>, <code>62XX</code>, <code>63XX</code> or <code>9XXX</code>,
+     * data sent before such an error has already reached the sink.</p>
+     * @param command command apdu
+     * @param sink receives the response data
+     * @return status word
+     */
+    public short transmitCommand(byte[] command, ResponseSink sink) throws SystemException {
+        if (sink == null) {
+            throw new NullPointerException("sink");
+        }
+        if (byteArrayTransmitOverridden) {
+            byte[] result = transmitCommand(command);
+            sink.write(result, 0, result.length - 2);
+            return ByteUtil.getSW(result);
+        }
+        short sw;
+        responseSink = sink;
+        responseSinkFailure = null;
+        try {
+            sw = processCommand(command, null);
+        } finally {
+            responseSink = null;
+        }
+        RuntimeException failure = responseSinkFailure;
+        if (failure != null) {
+            responseSinkFailure = null;
+            throw failure;
+        }
+        // GET RESPONSE is answered from the response buffer
+        if (responseBufferSize > 0) {
+            sink.write(responseBuffer, responseOffset, responseBufferSize);
+        }
+        return sw;
+    }
+
+    /**
+     * Transmit APDU to previous selected applet and write the response apdu
+     * to <code>out</code> as the applet sends it.
+     * @param command command apdu
+     * @param out receives the response data followed by the status word
+     * @return response length
+     * @throws IOException if writing to <code>out</code> fails
+     * @see #transmitCommand(byte[], ResponseSink)
+     */
+    public int transmitCommand(byte[] command, OutputStream out) throws IOException {
+        OutputStreamSink sink = new OutputStreamSink(out);
+        short sw;
+        try {
+            sw = transmitCommand(command, sink);
+        } catch (RuntimeException e) {
+            if (sink.failure != null) {
+                throw sink.failure;
+            }
+            throw e;
+        }
+        out.write(sw >> 8);
+        out.write(sw);
+        return sink.count + 2;
+    }
+
+    /**
+     * Enable or disable GET RESPONSE chaining. If enabled and the current
+     * protocol is T=0, a response with more than 256 bytes of data is
+     * returned in blocks: the first 256 bytes with status word <code>61XX</code>,
+     * the rest with following <code>GET RESPONSE</code> commands, which are
+     * answered by the runtime without calling the applet.
+     * The status word of the command comes with the last block.
+     * @param responseChaining true to enable chaining
+     */
+    public void setResponseChaining(boolean responseChaining) {
+        this.responseChaining = responseChaining;
+        pendingResponseLength = 0;
+    }
+
+    /**
+     * @return true if GET RESPONSE chaining is enabled
+     * @see #setResponseChaining(boolean)
+     */
+    public boolean isResponseChaining() {
+        return responseChaining;
+    }
+
+    /**
+     * Transmit APDU to previous selected applet. The command is not parsed
+     * again, <code>header</code> must describe it.
+     * @param command command apdu
+     * @param header case and length fields of <code>command</code>
+     * @return response apdu
+     * @throws IllegalArgumentException if the length of <code>command</code> does not match <code>header</code>
+     */
+    public byte[] transmitCommand(byte[] command, ApduHeader header) throws SystemException {
+        if (header.getCommandLength() != command.length) {
+            throw new IllegalArgumentException("command length " + command.length + " does not match " + header);
+        }
+        if (byteArrayTransmitOverridden) {
+            return transmitCommand(command);
+        }
+        short sw = processCommand(command, header);
+        byte[] response = new byte[responseBufferSize + 2];
+        System.arraycopy(responseBuffer, responseOffset, response, 0, responseBufferSize);
+        Util.setShort(response, responseBufferSize, sw);
+        return response;
+    }
+
+    /**
+     * @return command statistics or null if disabled, shared by all runtimes
+     * if enabled by {@value CommandStatistics#ENABLED_SYSTEM_PROPERTY}
+     */
+    public CommandStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Enable or disable command statistics
+     * @param statistics statistics to record into, null to disable
+     */
+    public void setStatistics(CommandStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Process a command. Afterwards <code>responseBuffer</code> holds
+     * <code>responseBufferSize</code> bytes of response data starting
+     * at <code>responseOffset</code>.
+     * <p>Every <code>transmitCommand</code> method processes its command
+     * here, subclasses acting on each command override this method.</p>
+     * @param command command apdu
+     * @param header case and length fields of <code>command</code>, null to parse them
+     * @return status word
+     */
+    protected short processCommand(byte[] command, ApduHeader header) {
+        if (header == null) {
+            header = ApduHeader.parse(command);
+        }
+        final TearInjector injector = tearInjector;
+        if (injector == null) {
+            return timeCommand(command, header);
+        }
+        injector.beginCommand();
+        armedTearInjector = injector;
+        short sw;
+        try {
+            sw = timeCommand(command, header);
+        } catch (TearInjector.Tear e) {
+            // torn outside of applet code, handled below
+            sw = 0;
+        } finally {
+            armedTearInjector = null;
+        }
+        if (injector.consumeTear()) {
+            // the transaction was rolled back when process was left
+            reset();
+            throw new CardTearException(injector.describe());
+        }
+        return sw;
+    }
+
+    private short timeCommand(byte[] command, ApduHeader header) {
+        final Object event = FlightRecorderEvents.beginApdu();
+        final CommandStatistics stats = statistics;
+        final CardCostMeter meter = costMeter;
+        short sw;
+        if (stats == null && meter == null) {
+            sw = chainCommand(command, header);
+        } else {
+            if (meter != null) {
+                meter.beginCommand();
+            }
+            long start = System.nanoTime();
+            sw = chainCommand(command, header);
+            long nanos = System.nanoTime() - start;
+            if (stats != null) {
+                stats.recordCommand(currentAID, command, header.getCase().isExtended(), sw, nanos);
+            }
+            if (meter != null) {
+                meter.endCommand(command, sw, nanos);
+            }
+        }
+        FlightRecorderEvents.commitApdu(event, currentAID, command, sw, responseBufferSize);
+        return sw;
+    }
+
+    private short chainCommand(byte[] command, ApduHeader header) {
+        responseOffset = 0;
+        if (pendingResponseLength > 0) {
+            if (isGetResponseApdu(command)) {
+                int le = command[ISO7816.OFFSET_LC] & 0xFF;
+                int length = Math.min(le == 0 ? T0_MAX_RESPONSE : le, pendingResponseLength);
+                responseOffset = pendingResponseOffset;
+                responseBufferSize = (short) length;
+                pendingResponseOffset += length;
+                pendingResponseLength -= length;
+                return pendingResponseStatus();
+            }
+            pendingResponseLength = 0;
+        }
+        short sw = dispatchCommand(command, header);
+        if (responseChaining && responseBufferSize > T0_MAX_RESPONSE
+                && (currentProtocol & APDU.PROTOCOL_TYPE_MASK) == APDU.PROTOCOL_T0) {
+            pendingResponseSW = sw;
+            pendingResponseOffset = T0_MAX_RESPONSE;
+            pendingResponseLength = responseBufferSize - T0_MAX_RESPONSE;
+            responseBufferSize = T0_MAX_RESPONSE;
+            return pendingResponseStatus();
+        }
+        return sw;
+    }
+
+    private short pendingResponseStatus() {
+        if (pendingResponseLength == 0) {
+            return pendingResponseSW;
+        }
+        return (short) (ISO7816.SW_BYTES_REMAINING_00 | (Math.min(pendingResponseLength, T0_MAX_RESPONSE) & 0xFF));
+    }
+
+    private static boolean isGetResponseApdu(byte[] command) {
+        return command.length == 5
+                && command[ISO7816.OFFSET_INS] == INS_GET_RESPONSE
+                && command[ISO7816.OFFSET_P1] == 0
+                && command[ISO7816.OFFSET_P2] == 0;
+    }
+
+    private short dispatchCommand(byte[] command, ApduHeader header) {
         if( legacyMode ){
-            byte[] theSW;
+            final byte[] theSW = statusWord;
             block20: {
                 this.activateSimulatorRuntimeInstance();
-                ApduCase apduCase = ApduCase.getCase(command);
-                theSW = new byte[2];
+                ApduCase apduCase = header.getCase();
                 Applet applet = this.getApplet(this.getAID());
                 this.selecting = false;
                 if (!apduCase.isExtended() && SimulatorRuntime.isAppletSelectionApdu(command)) {
                     AID newAid = this.findAppletForSelectApdu(command, apduCase);
                     if (newAid != null) {
                         this.deselect(this.lookupApplet(this.getAID()));
+                        this.recordSelect(newAid);
                         this.currentAID = newAid;
                         applet = this.getApplet(this.getAID());
                         this.selecting = true;
                     } else if (applet == null) {
                         Util.setShort(theSW, (short)0, ISO7816.SW_APPLET_SELECT_FAILED);
-                        return theSW;
+                        return discardResponse(theSW);
                     }
                 }
                 if (applet == null) {
                     Util.setShort(theSW, (short)0, ISO7816.SW_COMMAND_NOT_ALLOWED);
-                    return theSW;
+                    return discardResponse(theSW);
                 }
                 if (apduCase.isExtended()) {
                     if (!(applet instanceof ExtendedLength)) {
                         Util.setShort(theSW, (short)0, ISO7816.SW_WRONG_LENGTH);
-                        return theSW;
+                        return discardResponse(theSW);
                     }
                     this.usingExtendedAPDUs = true;
                 } else {
@@ -288,6 +618,7 @@ public class SimulatorRuntime {
                 this.responseBufferSize = 0;
                 APDU apdu = this.getCurrentAPDU();
                 try {
+                    this.appletRunning = true;
                     if (this.selecting) {
                         boolean success;
                         try {
@@ -300,7 +631,7 @@ public class SimulatorRuntime {
                             throw new ISOException(ISO7816.SW_APPLET_SELECT_FAILED);
                         }
                     }
-                    this.resetAPDU(apdu, apduCase, command);
+                    this.prepareAPDU(apdu, header, command);
                     applet.process(apdu);
                     Util.setShort(theSW, (short)0, ISO7816.SW_NO_ERROR );
                 }
@@ -315,24 +646,24 @@ public class SimulatorRuntime {
                     }
                 }
                 finally {
+                    this.appletRunning = false;
                     this.selecting = false;
                     this.resetAPDU(apdu, null, null);
+                    if (this.transactionDepth != 0) {
+                        this.abortTransaction();
+                    }
                 }
             }
             if (theSW[0] != 97 && theSW[0] != 98 && theSW[0] != 99) {
-                if (theSW[0] < -112) return theSW;
-                if (theSW[0] > -97) return theSW;
+                if (theSW[0] < -112) return discardResponse(theSW);
+                if (theSW[0] > -97) return discardResponse(theSW);
             }
-            byte[] response = new byte[this.responseBufferSize + 2];
-            Util.arrayCopyNonAtomic(this.responseBuffer, (short)0, response, (short)0, this.responseBufferSize);
-            Util.arrayCopyNonAtomic(theSW, (short)0, response, this.responseBufferSize, (short)2);
-            return response;
+            return Util.getShort(theSW, (short) 0);
         }
 
         activateSimulatorRuntimeInstance();
-        final ApduCase apduCase = ApduCase.getCase(command);
-        final byte[] theSW = new byte[2];
-        byte[] response;
+        final ApduCase apduCase = header.getCase();
+        final byte[] theSW = statusWord;
         Applet applet = getApplet(getAID());
         selecting = false;
         // check if there is an applet to be selected
@@ -340,19 +671,20 @@ public class SimulatorRuntime {
             AID newAid = findAppletForSelectApdu(command, apduCase);
             if (newAid != null) {
                 deselect(lookupApplet(getAID()));
+                recordSelect(newAid);
                 currentAID = newAid;
                 applet = getApplet(getAID());
                 selecting = true;
             }
             else if (applet == null) {
                 Util.setShort(theSW, (short) 0, ISO7816.SW_APPLET_SELECT_FAILED);
-                return theSW;
+                return discardResponse(theSW);
             }
         }
 
         if (applet == null) {
             Util.setShort(theSW, (short) 0, ISO7816.SW_COMMAND_NOT_ALLOWED);
-            return theSW;
+            return discardResponse(theSW);
         }
 
         if (apduCase.isExtended()) {
@@ -361,7 +693,7 @@ public class SimulatorRuntime {
             }
             else {
                 Util.setShort(theSW, (short)0, ISO7816.SW_WRONG_LENGTH);
-                return theSW;
+                return discardResponse(theSW);
             }
         }
         else {
@@ -371,6 +703,7 @@ public class SimulatorRuntime {
         responseBufferSize = 0;
         APDU apdu = getCurrentAPDU();
         try {
+            appletRunning = true;
             if (selecting) {
                 boolean success;
                 try {
@@ -385,7 +718,7 @@ public class SimulatorRuntime {
             }
 
             // set apdu
-            resetAPDU(apdu, apduCase, command);
+            prepareAPDU(apdu, header, command);
 
             applet.process(apdu);
             Util.setShort(theSW, (short) 0, (short) 0x9000);
@@ -396,21 +729,25 @@ public class SimulatorRuntime {
             }
         }
         finally {
+            appletRunning = false;
             selecting = false;
             resetAPDU(apdu, null, null);
+            // the JCRE aborts a transaction left open by process
+            if (transactionDepth != 0) {
+                abortTransaction();
+            }
         }
 
         // if theSW = 0x61XX or 0x9XYZ than return data (ISO7816-3)
         if(theSW[0] == 0x61 || theSW[0] == 0x62 || theSW[0] == 0x63 || (theSW[0] >= (byte)0x90 && theSW[0] <= (byte)0x9F) || isNotAbortingCase(theSW) ) {
-            response = new byte[responseBufferSize + 2];
-            Util.arrayCopyNonAtomic(responseBuffer, (short) 0, response, (short) 0, responseBufferSize);
-            Util.arrayCopyNonAtomic(theSW, (short) 0, response, responseBufferSize, (short) 2);
-        }
-        else {
-            response = theSW;
+            return Util.getShort(theSW, (short) 0);
         }
+        return discardResponse(theSW);
+    }
 
-        return response;
+    private short discardResponse(byte[] theSW) {
+        responseBufferSize = 0;
+        return Util.getShort(theSW, (short) 0);
     }
 
     /**
@@ -445,14 +782,30 @@ public class SimulatorRuntime {
         return null;
     }
 
+    private void recordSelect(AID newAid) {
+        CommandStatistics stats = statistics;
+        if (stats != null) {
+            stats.recordSelect();
+        }
+        FlightRecorderEvents.appletEvent("select", newAid);
+    }
+
     protected void deselect(ApplicationInstance applicationInstance) {
         activateSimulatorRuntimeInstance();
         if (applicationInstance != null) {
+            CommandStatistics stats = statistics;
+            if (stats != null) {
+                stats.recordDeselect();
+            }
+            FlightRecorderEvents.appletEvent("deselect", applicationInstance.getAID());
             try {
                 Applet applet = applicationInstance.getApplet();
+                appletRunning = true;
                 applet.deselect();
             } catch (Exception e) {
                 // ignore all
+            } finally {
+                appletRunning = false;
             }
         }
         if (getTransactionDepth() != 0) {
@@ -468,6 +821,22 @@ public class SimulatorRuntime {
      * @param len the length in bytes of the response
      */
     public void sendAPDU(byte[] buffer, short bOff, short len) {
+        TearInjector injector = armedTearInjector;
+        if (injector != null) {
+            injector.beforeResponse(len);
+        }
+        ResponseSink sink = responseSink;
+        if (sink != null) {
+            try {
+                sink.write(buffer, bOff, len);
+            } catch (RuntimeException e) {
+                if (responseSinkFailure == null) {
+                    responseSinkFailure = e;
+                }
+                throw e;
+            }
+            return;
+        }
         responseBufferSize = Util.arrayCopyNonAtomic(buffer, bOff, responseBuffer, responseBufferSize, len);
     }
 
@@ -476,8 +845,14 @@ public class SimulatorRuntime {
      */
     public void reset() {
         Arrays.fill(responseBuffer, (byte) 0);
+        // power loss, writes of an open transaction are undone
+        if (transactionDepth != 0) {
+            transactionLog.rollback();
+        }
         transactionDepth = 0;
         responseBufferSize = 0;
+        responseOffset = 0;
+        pendingResponseLength = 0;
         currentAID = null;
         previousAID = null;
         transientMemory.clearOnReset();
@@ -494,12 +869,23 @@ public class SimulatorRuntime {
         for (AID anAidsToTrash : aidsToTrash) {
             deleteApplet(anAidsToTrash);
         }
+        clearRuntimeState();
+    }
 
+    /**
+     * Forget load files, the open transaction, the response, the selection
+     * and all transient arrays. Called by <code>resetRuntime</code> after
+     * the applets are removed.
+     */
+    protected void clearRuntimeState() {
         loadFiles.clear();
         generatedLoadFileAIDs.clear();
         Arrays.fill(responseBuffer, (byte) 0);
+        transactionLog.clear();
         transactionDepth = 0;
         responseBufferSize = 0;
+        responseOffset = 0;
+        pendingResponseLength = 0;
         currentAID = null;
         previousAID = null;
 
@@ -518,11 +904,12 @@ public class SimulatorRuntime {
     }
 
     protected void resetAPDU(APDU apdu, ApduCase apduCase, byte[] buffer) {
-        try {
-            apduPrivateResetMethod.invoke(apdu, currentProtocol, apduCase, buffer);
-        } catch (Exception e) {
-            throw new RuntimeException("Internal reflection error", e);
-        }
+        // APDU implements InternalAPDU once JavaCardApiProcessor merged APDUProxy into it
+        ((InternalAPDU) (Object) apdu).internalReset(currentProtocol, apduCase, buffer);
+    }
+
+    private void prepareAPDU(APDU apdu, ApduHeader header, byte[] command) {
+        ((InternalAPDU) (Object) apdu).internalReset(currentProtocol, header, command);
     }
 
     public APDU getCurrentAPDU() {
@@ -552,6 +939,8 @@ public class SimulatorRuntime {
             TransactionException.throwIt(TransactionException.IN_PROGRESS);
         }
         transactionDepth = 1;
+        lastPersistentArray = null;
+        FlightRecorderEvents.transactionEvent("begin", 0);
     }
 
     /**
@@ -561,6 +950,8 @@ public class SimulatorRuntime {
         if (transactionDepth == 0) {
             TransactionException.throwIt(TransactionException.NOT_IN_PROGRESS);
         }
+        FlightRecorderEvents.transactionEvent("abort", transactionLog.getUsed());
+        transactionLog.rollback();
         transactionDepth = 0;
     }
 
@@ -571,7 +962,171 @@ public class SimulatorRuntime {
         if (transactionDepth == 0) {
             TransactionException.throwIt(TransactionException.NOT_IN_PROGRESS);
         }
+        FlightRecorderEvents.transactionEvent("commit", transactionLog.getUsed());
+        transactionLog.commit();
+        transactionDepth = 0;
+    }
+
+    /**
+     * Log the old contents of an array range before it is written by an
+     * atomic operation such as <code>Util.arrayCopy</code>. Only writes
+     * to persistent arrays inside a transaction are logged.
+     * @param array array about to be written
+     * @param offset offset of the range
+     * @param length length of the range
+     * @throws TransactionException <code>BUFFER_FULL</code> if the commit capacity would be exceeded
+     * @throws ArrayIndexOutOfBoundsException if the range is outside of <code>array</code>
+     */
+    public void logArrayWrite(byte[] array, short offset, short length) {
+        TearInjector injector = armedTearInjector;
+        if ((transactionDepth == 0 && injector == null) || !isPersistent(array)) {
+            return;
+        }
+        if (injector != null) {
+            injector.beforePersistentWrite();
+        }
+        if (transactionDepth != 0 && !transactionLog.record(array, offset, length)) {
+            TransactionException.throwIt(TransactionException.BUFFER_FULL);
+        }
+    }
+
+    /**
+     * Count a write by a non-atomic operation such as
+     * <code>Util.arrayCopyNonAtomic</code> as a tear point. Non-atomic
+     * writes are not logged for transactions, and only writes made while
+     * applet code runs count, not those of the simulator itself.
+     * @param array array about to be written
+     */
+    public void logNonAtomicWrite(byte[] array) {
+        TearInjector injector = armedTearInjector;
+        if (injector != null && appletRunning && isPersistent(array)) {
+            injector.beforePersistentWrite();
+        }
+    }
+
+    boolean isPersistent(byte[] array) {
+        if (array == lastPersistentArray) {
+            return true;
+        }
+        if (array == statusWord || array == responseBuffer || array == shortAPDU.getBuffer() || array == extendedAPDU.getBuffer()
+                || transientMemory.isTransient(array) != JCSystem.NOT_A_TRANSIENT_OBJECT) {
+            return false;
+        }
+        lastPersistentArray = array;
+        return true;
+    }
+
+    /**
+     * Estimate the card time of following commands, only applet classes
+     * instrumented with the model of the meter are charged
+     * @param costMeter meter or null
+     * @see Simulator#setCostMeter(CardCostMeter)
+     */
+    public void setCostMeter(CardCostMeter costMeter) {
+        this.costMeter = costMeter;
+    }
+
+    /**
+     * @return cost meter or null
+     */
+    public CardCostMeter getCostMeter() {
+        return costMeter;
+    }
+
+    /**
+     * Tear the card during following commands
+     * @param tearInjector injector choosing the tear point, null to stop tearing
+     */
+    public void setTearInjector(TearInjector tearInjector) {
+        this.tearInjector = tearInjector;
+    }
+
+    /**
+     * @return current tear injector or null
+     */
+    public TearInjector getTearInjector() {
+        return tearInjector;
+    }
+
+    /**
+     * Copy the state of all applets into memory. Restoring a checkpoint is
+     * much cheaper than installing and personalizing applets again, use it
+     * to start every iteration of a tear test from the same state.
+     * <p>Applet instances, the objects they reference and the transient
+     * and sensitive arrays are copied with Kryo. Static fields of applet
+     * classes are not part of the checkpoint.</p>
+     * @return new checkpoint
+     * @throws IllegalStateException if a transaction is in progress
+     */
+    public CardCheckpoint checkpoint() {
+        if (transactionDepth != 0) {
+            throw new IllegalStateException("transaction in progress");
+        }
+        Object[] state = new Object[]{
+                new ArrayList<ApplicationInstance>(applets.values()),
+                transientMemory.clearOnDeselect,
+                transientMemory.clearOnReset,
+                sensitiveMemory.snapshot(),
+                currentAID
+        };
+        return new CardCheckpoint(getCheckpointKryo(), state);
+    }
+
+    /**
+     * Restore applets and transient memory from a checkpoint and end any
+     * transaction. The selected applet is the one selected when the
+     * checkpoint was taken, it is not selected again.
+     * @param checkpoint checkpoint from {@link #checkpoint()} of this runtime
+     */
+    @SuppressWarnings("unchecked")
+    public void restore(CardCheckpoint checkpoint) {
+        Object[] state = checkpoint.copyState();
+        transactionLog.clear();
         transactionDepth = 0;
+        lastPersistentArray = null;
+        applets.clear();
+        for (ApplicationInstance instance : (List<ApplicationInstance>) state[0]) {
+            applets.put(instance.getAID(), instance);
+        }
+        transientMemory.clearOnDeselect.clear();
+        transientMemory.clearOnDeselect.addAll((List<Object>) state[1]);
+        transientMemory.clearOnReset.clear();
+        transientMemory.clearOnReset.addAll((List<Object>) state[2]);
+        sensitiveMemory.restore((Object[]) state[3]);
+        currentAID = (AID) state[4];
+        previousAID = null;
+        responseBufferSize = 0;
+        responseOffset = 0;
+        pendingResponseLength = 0;
+    }
+
+    private Kryo getCheckpointKryo() {
+        if (checkpointKryo == null) {
+            Kryo kryo = new Kryo();
+            kryo.setReferences(true);
+            kryo.setRegistrationRequired(false);
+            kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+            // held by RandomDataImpl and the key pair generators
+            kryo.addDefaultSerializer(SecureRandom.class, new CardCheckpoint.SecureRandomSerializer());
+            checkpointKryo = kryo;
+        }
+        return checkpointKryo;
+    }
+
+    /**
+     * @return undo log of transactions, holds the commit buffer statistics
+     */
+    public TransactionLog getTransactionLog() {
+        return transactionLog;
+    }
+
+    /**
+     * Change the commit capacity
+     * @param capacity capacity in bytes
+     * @see javacard.framework.JCSystem#getMaxCommitCapacity()
+     */
+    public void setMaxCommitCapacity(short capacity) {
+        transactionLog.setCapacity(capacity);
     }
 
     /**
@@ -584,18 +1139,18 @@ public class SimulatorRuntime {
 
     /**
      * @see javacard.framework.JCSystem#getUnusedCommitCapacity()
-     * @return The current implementation always returns 32767
+     * @return commit capacity left in the current transaction
      */
     public short getUnusedCommitCapacity() {
-        return Short.MAX_VALUE;
+        return (short) transactionLog.getUnused();
     }
 
     /**
      * @see javacard.framework.JCSystem#getMaxCommitCapacity()
-     * @return The current implementation always returns 32767
+     * @return commit capacity, 32767 unless configured otherwise
      */
     public short getMaxCommitCapacity() {
-        return Short.MAX_VALUE;
+        return (short) transactionLog.getCapacity();
     }
 
     /**
@@ -706,12 +1261,8 @@ public class SimulatorRuntime {
             throw new IllegalArgumentException("Module AID not found " + AIDUtil.toString(moduleAID));
         }
 
-        Class<? extends Applet> appletClass = module.getAppletClass();
-        Method initMethod;
-        try {
-            initMethod = appletClass.getMethod("install",
-                    new Class[]{byte[].class, short.class, byte.class});
-        } catch (NoSuchMethodException e) {
+        Method initMethod = INSTALL_METHODS.get(module.getAppletClass());
+        if (initMethod == null) {
             throw new IllegalArgumentException("Class does not provide install method");
         }
 
@@ -755,6 +1306,7 @@ public class SimulatorRuntime {
         if (callCount.get() != 1) {
             throw new SystemException(SystemException.ILLEGAL_AID);
         }
+        FlightRecorderEvents.appletEvent("install", appletAID);
     }
 
     /** Represents an Applet instance */
@@ -780,4 +1332,30 @@ public class SimulatorRuntime {
             return String.format("ApplicationInstance (%s)", AIDUtil.toString(aid));
         }
     }
+
+    /**
+     * Writes response data to an <code>OutputStream</code>
+     */
+    private static final class OutputStreamSink implements ResponseSink {
+        private final OutputStream out;
+        private IOException failure;
+        private int count;
+
+        OutputStreamSink(OutputStream out) {
+            if (out == null) {
+                throw new NullPointerException("out");
+            }
+            this.out = out;
+        }
+
+        public void write(byte[] data, int offset, int length) {
+            try {
+                out.write(data, offset, length);
+                count += length;
+            } catch (IOException e) {
+                failure = e;
+                throw new RuntimeException(e);
+            }
+        }
+    }
 }
@@ -82,6 +82,41 @@ public class SimulatorSystem {
         return simulatorRuntime;
     }
 
+    /**
+     * Log an array write for the transaction of the current runtime,
+     * used by <code>Util</code> which is also called outside of a runtime
+     * @param array array about to be written
+     * @param offset offset of the range
+     * @param length length of the range
+     * @see SimulatorRuntime#logArrayWrite(byte[], short, short)
+     */
+    public static void logArrayWrite(byte[] array, short offset, short length) {
+        SimulatorRuntime simulatorRuntime = currentRuntime.get();
+        if (simulatorRuntime != null) {
+            simulatorRuntime.logArrayWrite(array, offset, length);
+        }
+    }
+
+    /**
+     * Report a non-atomic array write to the current runtime, used by
+     * <code>Util</code> which is also called outside of a runtime
+     * @param array array about to be written
+     * @see SimulatorRuntime#logNonAtomicWrite(byte[])
+     */
+    public static void logNonAtomicWrite(byte[] array) {
+        SimulatorRuntime simulatorRuntime = currentRuntime.get();
+        if (simulatorRuntime != null) {
+            simulatorRuntime.logNonAtomicWrite(array);
+        }
+    }
+
+    /**
+     * @return runtime active on the current thread or null
+     */
+    static SimulatorRuntime currentInstance() {
+        return currentRuntime.get();
+    }
+
     /**
      * Internal method to set the currently active SimulatorRuntime
      * @param simulatorRuntime simulatorRuntime to set
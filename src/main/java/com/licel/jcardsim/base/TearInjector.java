@@ -0,0 +1,162 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import java.util.Random;
+
+/**
+ * Tears the card at a chosen point of command processing.
+ *
+ * <p>Install with {@link SimulatorRuntime#setTearInjector(TearInjector)}.
+ * For every command the injector counts tear points from zero: persistent
+ * array writes through <code>Util.arrayCopy</code>,
+ * <code>Util.setShort</code>, <code>Util.arrayCopyNonAtomic</code> and
+ * <code>Util.arrayFillNonAtomic</code>, and response bytes. When the configured point
+ * is reached the applet is interrupted before the write or send happens,
+ * an open transaction is rolled back, the card loses power and
+ * <code>transmitCommand</code> throws {@link CardTearException}.</p>
+ *
+ * <p>Random tears are drawn from a seeded generator, the same seed and
+ * command sequence give the same tears.</p>
+ */
+public final class TearInjector {
+    private static final int MODE_WRITES = 0;
+    private static final int MODE_RESPONSE_BYTES = 1;
+    private static final int MODE_RANDOM = 2;
+
+    private final int mode;
+    private final long limit;
+    private final Random random;
+    private final int bound;
+
+    private long target;
+    private long writes;
+    private long responseBytes;
+    private long points;
+    private boolean torn;
+    private long tearCount;
+
+    private TearInjector(int mode, long limit, Random random, int bound) {
+        this.mode = mode;
+        this.limit = limit;
+        this.random = random;
+        this.bound = bound;
+    }
+
+    /**
+     * Tear when a command starts persistent write number <code>writes + 1</code>,
+     * exactly <code>writes</code> writes reach persistent memory
+     * @param writes number of persistent writes before the tear
+     * @return new injector
+     */
+    public static TearInjector afterPersistentWrites(long writes) {
+        if (writes < 0) {
+            throw new IllegalArgumentException("writes");
+        }
+        return new TearInjector(MODE_WRITES, writes, null, 0);
+    }
+
+    /**
+     * Tear when a command sends more than <code>bytes</code> bytes of response data
+     * @param bytes number of response bytes before the tear
+     * @return new injector
+     */
+    public static TearInjector afterResponseBytes(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("bytes");
+        }
+        return new TearInjector(MODE_RESPONSE_BYTES, bytes, null, 0);
+    }
+
+    /**
+     * Tear every command at a random tear point. A persistent write and a
+     * block of response data count as one tear point each. The number of
+     * points passed before the tear is drawn from <code>[0, bound)</code>
+     * for every command, commands with fewer points are not torn.
+     * @param seed random seed
+     * @param bound upper bound for the number of tear points before the tear
+     * @return new injector
+     */
+    public static TearInjector atRandomPoint(long seed, int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound");
+        }
+        return new TearInjector(MODE_RANDOM, 0, new Random(seed), bound);
+    }
+
+    /**
+     * @return number of tears so far
+     */
+    public long getTearCount() {
+        return tearCount;
+    }
+
+    void beginCommand() {
+        writes = 0;
+        responseBytes = 0;
+        points = 0;
+        torn = false;
+        target = mode == MODE_RANDOM ? random.nextInt(bound) : limit;
+    }
+
+    void beforePersistentWrite() {
+        if (torn || (mode == MODE_WRITES && writes == target) || (mode == MODE_RANDOM && points == target)) {
+            tear();
+        }
+        writes++;
+        points++;
+    }
+
+    void beforeResponse(int length) {
+        if (torn || (mode == MODE_RESPONSE_BYTES && responseBytes + length > target)
+                || (mode == MODE_RANDOM && points == target)) {
+            tear();
+        }
+        responseBytes += length;
+        points++;
+    }
+
+    /**
+     * @return true if the last command was torn, clears the flag
+     */
+    boolean consumeTear() {
+        boolean result = torn;
+        torn = false;
+        return result;
+    }
+
+    String describe() {
+        return "card torn after " + writes + " persistent writes and " + responseBytes + " response bytes";
+    }
+
+    private void tear() {
+        if (!torn) {
+            torn = true;
+            tearCount++;
+        }
+        throw new Tear();
+    }
+
+    /**
+     * Unwinds the applet, an <code>Error</code> so that applet code catching
+     * <code>Exception</code> does not swallow it
+     */
+    static final class Tear extends Error {
+        Tear() {
+            super("card tear", null, false, false);
+        }
+    }
+}
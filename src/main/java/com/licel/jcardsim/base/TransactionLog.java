@@ -0,0 +1,198 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import java.util.Arrays;
+
+/**
+ * Undo log of the persistent array writes of a transaction.
+ *
+ * <p>Before an array range is written inside a transaction its old contents
+ * are appended to the log. Abort restores the ranges in reverse order,
+ * commit forgets them. Entries are kept in parallel primitive arrays which
+ * are reused between transactions, recording a write does not allocate.</p>
+ *
+ * <p>Every entry uses its data length plus {@link #ENTRY_OVERHEAD} bytes of
+ * the commit capacity. The log also counts commits, aborts and
+ * <code>BUFFER_FULL</code> failures and remembers the highest capacity used,
+ * which shows how close applets get to the commit capacity.</p>
+ */
+public final class TransactionLog {
+    /** commit capacity used by an entry in addition to the logged bytes, for array reference, offset and length */
+    public static final int ENTRY_OVERHEAD = 4;
+
+    private byte[][] arrays = new byte[16][];
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+    private byte[] data = new byte[256];
+    private int entries;
+    private int dataLength;
+    private int capacity;
+
+    private int highWaterMark;
+    private long commitCount;
+    private long abortCount;
+    private long overflowCount;
+
+    /**
+     * @param capacity commit capacity in bytes
+     */
+    public TransactionLog(int capacity) {
+        setCapacity(capacity);
+    }
+
+    /**
+     * @return commit capacity in bytes
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @param capacity commit capacity in bytes, 0 to 32767
+     * @throws IllegalArgumentException if <code>capacity</code> is out of range
+     */
+    public void setCapacity(int capacity) {
+        if (capacity < 0 || capacity > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return commit capacity used by the current transaction
+     */
+    public int getUsed() {
+        return dataLength + entries * ENTRY_OVERHEAD;
+    }
+
+    /**
+     * @return commit capacity left for the current transaction
+     */
+    public int getUnused() {
+        return Math.max(capacity - getUsed(), 0);
+    }
+
+    /**
+     * @return highest commit capacity used by a transaction
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * @return number of committed transactions
+     */
+    public long getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * @return number of aborted transactions
+     */
+    public long getAbortCount() {
+        return abortCount;
+    }
+
+    /**
+     * @return number of writes rejected because the commit capacity was exceeded
+     */
+    public long getOverflowCount() {
+        return overflowCount;
+    }
+
+    /**
+     * Reset the counters and the high water mark
+     */
+    public void resetStatistics() {
+        highWaterMark = 0;
+        commitCount = 0;
+        abortCount = 0;
+        overflowCount = 0;
+    }
+
+    /**
+     * Log the current contents of <code>array[offset..offset+length)</code>
+     * @param array array about to be written
+     * @param offset offset of the range
+     * @param length length of the range
+     * @return false if the commit capacity would be exceeded, nothing is logged in this case
+     * @throws ArrayIndexOutOfBoundsException if the range is outside of <code>array</code>
+     * @throws NullPointerException if <code>array</code> is null
+     */
+    boolean record(byte[] array, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > array.length) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        if (length == 0) {
+            return true;
+        }
+        int used = getUsed() + length + ENTRY_OVERHEAD;
+        if (used > capacity) {
+            overflowCount++;
+            return false;
+        }
+        if (entries == arrays.length) {
+            int newSize = entries * 2;
+            arrays = Arrays.copyOf(arrays, newSize);
+            offsets = Arrays.copyOf(offsets, newSize);
+            lengths = Arrays.copyOf(lengths, newSize);
+        }
+        if (dataLength + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + length));
+        }
+        arrays[entries] = array;
+        offsets[entries] = offset;
+        lengths[entries] = length;
+        entries++;
+        System.arraycopy(array, offset, data, dataLength, length);
+        dataLength += length;
+        if (used > highWaterMark) {
+            highWaterMark = used;
+        }
+        return true;
+    }
+
+    /**
+     * Keep all logged writes
+     */
+    void commit() {
+        commitCount++;
+        clear();
+    }
+
+    /**
+     * Undo all logged writes, newest first
+     */
+    void rollback() {
+        abortCount++;
+        int position = dataLength;
+        for (int i = entries - 1; i >= 0; i--) {
+            position -= lengths[i];
+            System.arraycopy(data, position, arrays[i], offsets[i], lengths[i]);
+        }
+        clear();
+    }
+
+    /**
+     * Forget the log without counting a commit or abort
+     */
+    void clear() {
+        Arrays.fill(arrays, 0, entries, null);
+        entries = 0;
+        dataLength = 0;
+    }
+}
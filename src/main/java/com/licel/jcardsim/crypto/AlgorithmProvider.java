@@ -0,0 +1,34 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.crypto;
+
+/**
+ * Service provider interface for plugging additional algorithms into
+ * {@link AlgorithmRegistry}.
+ *
+ * <p>Implementations are discovered with <code>java.util.ServiceLoader</code>:
+ * list the implementing class in
+ * <code>META-INF/services/com.licel.jcardsim.crypto.AlgorithmProvider</code>.
+ * Providers run once, after the built-in algorithms are registered, so they
+ * can both add new algorithm codes and replace existing factories.</p>
+ */
+public interface AlgorithmProvider {
+    /**
+     * Register factories, e.g. with
+     * <code>AlgorithmRegistry.CIPHER.register(factory, algorithm)</code>
+     */
+    void registerAlgorithms();
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.crypto;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javacard.security.Checksum;
+import javacard.security.CryptoException;
+import javacard.security.InitializedMessageDigest;
+import javacard.security.KeyAgreement;
+import javacard.security.RandomData;
+import javacard.security.Signature;
+import javacardx.crypto.AEADCipher;
+import javacardx.crypto.Cipher;
+
+/**
+ * Per-algorithm table of {@link AlgorithmFactory} instances used by the
+ * <code>getInstance</code> proxies.
+ *
+ * <p>Lookup is a single array access indexed by the algorithm code.
+ * Instance creation is reported to the <code>com.licel.jcardsim.crypto</code>
+ * logger at level <code>FINE</code>; attach a <code>java.util.logging.Handler</code>
+ * to collect these records.</p>
+ *
+ * <p>After the built-in algorithms are registered, every {@link AlgorithmProvider}
+ * found by <code>java.util.ServiceLoader</code> is invoked and may add or
+ * replace factories.</p>
+ *
+ * @param <T> type of the created primitive
+ * @see AlgorithmProvider
+ */
+public final class AlgorithmRegistry<T> {
+    static final Logger LOGGER = Logger.getLogger("com.licel.jcardsim.crypto");
+
+    private static final int TABLE_SIZE = 256;
+
+    /**
+     * Factories used by <code>Signature.getInstance(byte, boolean)</code>
+     */
+    public static final AlgorithmRegistry<Signature> SIGNATURE = new AlgorithmRegistry<Signature>("Signature");
+    /**
+     * Factories used by <code>Cipher.getInstance(byte, boolean)</code>
+     */
+    public static final AlgorithmRegistry<Cipher> CIPHER = new AlgorithmRegistry<Cipher>("Cipher");
+    /**
+     * Factories used by <code>MessageDigest.getInstance(byte, boolean)</code> and
+     * <code>MessageDigest.getInitializedMessageDigestInstance(byte, boolean)</code>
+     */
+    public static final AlgorithmRegistry<InitializedMessageDigest> MESSAGE_DIGEST
+            = new AlgorithmRegistry<InitializedMessageDigest>("MessageDigest");
+    /**
+     * Factories used by <code>KeyAgreement.getInstance(byte, boolean)</code>
+     */
+    public static final AlgorithmRegistry<KeyAgreement> KEY_AGREEMENT = new AlgorithmRegistry<KeyAgreement>("KeyAgreement");
+    /**
+     * Factories used by <code>RandomData.getInstance(byte)</code>
+     */
+    public static final AlgorithmRegistry<RandomData> RANDOM_DATA = new AlgorithmRegistry<RandomData>("RandomData");
+    /**
+     * Factories used by <code>Checksum.getInstance(byte, boolean)</code>
+     */
+    public static final AlgorithmRegistry<Checksum> CHECKSUM = new AlgorithmRegistry<Checksum>("Checksum");
+
+    static {
+        registerSignatures();
+        registerCiphers();
+        registerMessageDigests();
+        registerKeyAgreements();
+        registerRandomData();
+        registerChecksums();
+        loadProviders();
+    }
+
+    private static void registerSignatures() {
+        AlgorithmFactory<Signature> asymmetric = new AlgorithmFactory<Signature>() {
+            public Signature newInstance(byte algorithm) {
+                return new AsymmetricSignatureImpl(algorithm);
+            }
+        };
+        AlgorithmFactory<Signature> symmetric = new AlgorithmFactory<Signature>() {
+            public Signature newInstance(byte algorithm) {
+                return new SymmetricSignatureImpl(algorithm);
+            }
+        };
+        SIGNATURE.register(asymmetric,
+                Signature.ALG_RSA_SHA_ISO9796,
+                Signature.ALG_RSA_SHA_PKCS1,
+                Signature.ALG_RSA_SHA_224_PKCS1,
+                Signature.ALG_RSA_SHA_256_PKCS1,
+                Signature.ALG_RSA_SHA_384_PKCS1,
+                Signature.ALG_RSA_SHA_512_PKCS1,
+                Signature.ALG_RSA_SHA_PKCS1_PSS,
+                Signature.ALG_RSA_SHA_224_PKCS1_PSS,
+                Signature.ALG_RSA_SHA_256_PKCS1_PSS,
+                Signature.ALG_RSA_SHA_384_PKCS1_PSS,
+                Signature.ALG_RSA_SHA_512_PKCS1_PSS,
+                Signature.ALG_RSA_MD5_PKCS1,
+                Signature.ALG_RSA_RIPEMD160_ISO9796,
+                Signature.ALG_RSA_RIPEMD160_PKCS1,
+                Signature.ALG_ECDSA_SHA,
+                Signature.ALG_ECDSA_SHA_224,
+                Signature.ALG_ECDSA_SHA_256,
+                Signature.ALG_ECDSA_SHA_384,
+                Signature.ALG_ECDSA_SHA_512,
+                Signature.ALG_RSA_SHA_ISO9796_MR,
+                Signature.ALG_DSA_SHA,
+                Signature.ALG_RSA_MD5_PKCS1_PSS,
+                Signature.ALG_RSA_RIPEMD160_PKCS1_PSS);
+        SIGNATURE.register(symmetric,
+                Signature.ALG_DES_MAC4_NOPAD,
+                Signature.ALG_DES_MAC8_NOPAD,
+                Signature.ALG_DES_MAC4_ISO9797_M1,
+                Signature.ALG_DES_MAC8_ISO9797_M1,
+                Signature.ALG_DES_MAC4_ISO9797_M2,
+                Signature.ALG_DES_MAC8_ISO9797_M2,
+                Signature.ALG_DES_MAC8_ISO9797_1_M2_ALG3,
+                Signature.ALG_DES_MAC4_PKCS5,
+                Signature.ALG_DES_MAC8_PKCS5,
+                Signature.ALG_AES_MAC_128_NOPAD,
+                Signature.ALG_HMAC_SHA1,
+                Signature.ALG_HMAC_SHA_256,
+                Signature.ALG_HMAC_SHA_384,
+                Signature.ALG_HMAC_SHA_512,
+                Signature.ALG_HMAC_MD5,
+                Signature.ALG_HMAC_RIPEMD160,
+                Signature.ALG_AES_CMAC_128);
+    }
+
+    private static void registerCiphers() {
+        CIPHER.register(new AlgorithmFactory<Cipher>() {
+            public Cipher newInstance(byte algorithm) {
+                return new SymmetricCipherImpl(algorithm);
+            }
+        },
+                Cipher.ALG_DES_CBC_NOPAD,
+                Cipher.ALG_DES_CBC_ISO9797_M1,
+                Cipher.ALG_DES_CBC_ISO9797_M2,
+                Cipher.ALG_DES_CBC_PKCS5,
+                Cipher.ALG_DES_ECB_NOPAD,
+                Cipher.ALG_DES_ECB_ISO9797_M1,
+                Cipher.ALG_DES_ECB_ISO9797_M2,
+                Cipher.ALG_DES_ECB_PKCS5,
+                Cipher.ALG_AES_BLOCK_128_CBC_NOPAD,
+                Cipher.ALG_AES_BLOCK_128_ECB_NOPAD,
+                Cipher.ALG_AES_CBC_ISO9797_M2,
+                Cipher.ALG_AES_CTR,
+                Cipher.ALG_KOREAN_SEED_ECB_NOPAD,
+                Cipher.ALG_KOREAN_SEED_CBC_NOPAD);
+        CIPHER.register(new AlgorithmFactory<Cipher>() {
+            public Cipher newInstance(byte algorithm) {
+                return new AsymmetricCipherImpl(algorithm);
+            }
+        },
+                Cipher.ALG_RSA_PKCS1,
+                Cipher.ALG_RSA_NOPAD,
+                Cipher.ALG_RSA_ISO14888,
+                Cipher.ALG_RSA_ISO9796,
+                Cipher.ALG_RSA_PKCS1_OAEP);
+        CIPHER.register(new AlgorithmFactory<Cipher>() {
+            public Cipher newInstance(byte algorithm) {
+                return new AuthenticatedSymmetricCipherImpl(algorithm);
+            }
+        },
+                AEADCipher.ALG_AES_GCM,
+                AEADCipher.ALG_AES_CCM);
+    }
+
+    private static void registerMessageDigests() {
+        MESSAGE_DIGEST.register(new AlgorithmFactory<InitializedMessageDigest>() {
+            public InitializedMessageDigest newInstance(byte algorithm) {
+                return new MessageDigestImpl(algorithm);
+            }
+        },
+                InitializedMessageDigest.ALG_SHA,
+                InitializedMessageDigest.ALG_MD5,
+                InitializedMessageDigest.ALG_RIPEMD160,
+                InitializedMessageDigest.ALG_SHA_224,
+                InitializedMessageDigest.ALG_SHA_256,
+                InitializedMessageDigest.ALG_SHA_384,
+                InitializedMessageDigest.ALG_SHA_512,
+                InitializedMessageDigest.ALG_SHA3_224,
+                InitializedMessageDigest.ALG_SHA3_256,
+                InitializedMessageDigest.ALG_SHA3_384,
+                InitializedMessageDigest.ALG_SHA3_512);
+    }
+
+    private static void registerKeyAgreements() {
+        KEY_AGREEMENT.register(new AlgorithmFactory<KeyAgreement>() {
+            public KeyAgreement newInstance(byte algorithm) {
+                return new KeyAgreementImpl(algorithm);
+            }
+        },
+                KeyAgreement.ALG_EC_SVDP_DH,
+                KeyAgreement.ALG_EC_SVDP_DH_PLAIN,
+                KeyAgreement.ALG_EC_SVDP_DHC,
+                KeyAgreement.ALG_EC_SVDP_DHC_PLAIN,
+                KeyAgreement.ALG_EC_SVDP_DH_PLAIN_XY,
+                KeyAgreement.ALG_DH_PLAIN,
+                KeyAgreement.ALG_EC_PACE_GM);
+    }
+
+    private static void registerRandomData() {
+        RANDOM_DATA.register(new AlgorithmFactory<RandomData>() {
+            public RandomData newInstance(byte algorithm) {
+                return new RandomDataImpl(algorithm);
+            }
+        },
+                RandomData.ALG_PSEUDO_RANDOM,
+                RandomData.ALG_SECURE_RANDOM,
+                RandomData.ALG_TRNG,
+                RandomData.ALG_PRESEEDED_DRBG,
+                RandomData.ALG_FAST,
+                RandomData.ALG_KEYGENERATION);
+    }
+
+    private static void registerChecksums() {
+        CHECKSUM.register(new AlgorithmFactory<Checksum>() {
+            public Checksum newInstance(byte algorithm) {
+                return new CRC16();
+            }
+        }, Checksum.ALG_ISO3309_CRC16);
+        CHECKSUM.register(new AlgorithmFactory<Checksum>() {
+            public Checksum newInstance(byte algorithm) {
+                return new CRC32();
+            }
+        }, Checksum.ALG_ISO3309_CRC32);
+    }
+
+    private static void loadProviders() {
+        Iterator<AlgorithmProvider> providers = ServiceLoader.load(AlgorithmProvider.class).iterator();
+        while (true) {
+            try {
+                if (!providers.hasNext()) {
+                    break;
+                }
+                AlgorithmProvider provider = providers.next();
+                provider.registerAlgorithms();
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Registered algorithm provider {0}", provider.getClass().getName());
+                }
+            } catch (ServiceConfigurationError e) {
+                LOGGER.log(Level.WARNING, "Failed to load algorithm provider", e);
+            }
+        }
+    }
+
+    private final String name;
+    private final AtomicReferenceArray<AlgorithmFactory<? extends T>> factories
+            = new AtomicReferenceArray<AlgorithmFactory<? extends T>>(TABLE_SIZE);
+
+    private AlgorithmRegistry(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return name of the primitive, e.g. <code>Signature</code>
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Register a factory for one or more algorithms, replacing any factory
+     * registered before.
+     * @param factory factory to use
+     * @param algorithms algorithm codes
+     * @throws java.lang.NullPointerException if <code>factory</code> is null
+     */
+    public void register(AlgorithmFactory<? extends T> factory, byte... algorithms) {
+        if (factory == null) {
+            throw new NullPointerException("factory");
+        }
+        for (byte algorithm : algorithms) {
+            factories.set(algorithm & 0xFF, factory);
+        }
+    }
+
+    /**
+     * Remove the factory of an algorithm
+     * @param algorithm algorithm code
+     */
+    public void unregister(byte algorithm) {
+        factories.set(algorithm & 0xFF, null);
+    }
+
+    /**
+     * @param algorithm algorithm code
+     * @return <code>true</code> if a factory is registered for <code>algorithm</code>
+     */
+    public boolean isSupported(byte algorithm) {
+        return factories.get(algorithm & 0xFF) != null;
+    }
+
+    /**
+     * Create a new instance of the requested algorithm
+     * @param algorithm algorithm code
+     * @return new instance
+     * @throws CryptoException with reason code <code>CryptoException.NO_SUCH_ALGORITHM</code>
+     * if no factory is registered for <code>algorithm</code>
+     */
+    public T newInstance(byte algorithm) throws CryptoException {
+        AlgorithmFactory<? extends T> factory = factories.get(algorithm & 0xFF);
+        if (factory == null) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "{0} algorithm {1} is not supported", new Object[]{name, algorithm});
+            }
+            CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
+        }
+        T instance = factory.newInstance(algorithm);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "{0} instance created for algorithm {1}", new Object[]{name, algorithm});
+        }
+        return instance;
+    }
+}
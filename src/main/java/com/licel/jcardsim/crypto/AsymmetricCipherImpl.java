@@ -15,6 +15,7 @@
  */
 package com.licel.jcardsim.crypto;
 
+import com.licel.jcardsim.base.FlightRecorderEvents;
 import java.security.SecureRandom;
 import javacard.framework.JCSystem;
 import javacard.framework.Util;
@@ -85,6 +86,7 @@ public class AsymmetricCipherImpl extends Cipher {
         initMode = theMode;
         bufferPos = 0;
         isInitialized = true;
+        FlightRecorderEvents.cryptoEvent("Cipher.init", getAlgorithm(), theKey.getSize());
     }
 
     public void init(Key theKey, byte theMode, byte[] bArray, short bOff, short bLen) throws CryptoException {
@@ -96,6 +98,15 @@ public class AsymmetricCipherImpl extends Cipher {
     }
 
     public short doFinal(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException {
+        Object event = FlightRecorderEvents.beginCrypto();
+        try {
+            return doFinalInternal(inBuff, inOffset, inLength, outBuff, outOffset);
+        } finally {
+            FlightRecorderEvents.commitCrypto(event, "Cipher.doFinal", getAlgorithm(), inLength);
+        }
+    }
+
+    private short doFinalInternal(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException {
         if (!isInitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
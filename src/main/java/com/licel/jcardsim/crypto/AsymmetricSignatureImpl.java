@@ -15,7 +15,7 @@
  */
 package com.licel.jcardsim.crypto;
 
-import java.lang.reflect.Field;
+import com.licel.jcardsim.base.FlightRecorderEvents;
 import javacard.framework.JCSystem;
 import javacard.framework.Util;
 import javacard.security.CryptoException;
@@ -40,7 +40,6 @@ import org.bouncycastle.crypto.digests.SHA512Digest;
 import org.bouncycastle.crypto.engines.RSAEngine;
 import org.bouncycastle.crypto.params.ParametersWithRandom;
 import org.bouncycastle.crypto.signers.*;
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 /*
  * Implementation <code>Signature</code> with asymmetric keys based
@@ -59,8 +58,20 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
     boolean isInitialized;
     boolean isRecovery;
     byte[] preSig;
+    /**
+     * scratch buffer for signatures passed to <code>verify</code> at an offset
+     */
+    private byte[] sigBuffer;
 
     Digest digest;
+    /**
+     * digest wrapper of the engine, accepts precomputed hash values
+     */
+    BouncyCastlePrecomputedOrDigestProxy precomputedDigest;
+    /**
+     * number of message bytes passed to the engine since the last reset
+     */
+    int messageLength;
     boolean isImplicitTrailer;
 
     public AsymmetricSignatureImpl(byte algorithm) {
@@ -82,47 +93,47 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
                 break;
             case ALG_RSA_SHA_PKCS1:
                 digest = new SHA1Digest();
-                engine = new RSADigestSigner(new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new RSADigestSigner(precomputable(digest));
                 break;
             case ALG_RSA_SHA_224_PKCS1:
                 digest = new SHA224Digest();
-                engine = new RSADigestSigner(new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new RSADigestSigner(precomputable(digest));
                 break;
             case ALG_RSA_SHA_256_PKCS1:
                 digest = new SHA256Digest();
-                engine = new RSADigestSigner(new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new RSADigestSigner(precomputable(digest));
                 break;
             case ALG_RSA_SHA_384_PKCS1:
                 digest = new SHA384Digest();
-                engine = new RSADigestSigner(new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new RSADigestSigner(precomputable(digest));
                 break;
             case ALG_RSA_SHA_512_PKCS1:
                 digest = new SHA512Digest();
-                engine = new RSADigestSigner(new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new RSADigestSigner(precomputable(digest));
                 break;
             case ALG_RSA_SHA_PKCS1_PSS:
                 digest = new SHA1Digest();
-                engine = new PSSSigner(new RSAEngine(), new BouncyCastlePrecomputedOrDigestProxy(digest), digest.getDigestSize());
+                engine = new PSSSigner(new RSAEngine(), precomputable(digest), digest.getDigestSize());
                 break;
             case ALG_RSA_SHA_224_PKCS1_PSS:
                 digest = new SHA224Digest();
-                engine = new PSSSigner(new RSAEngine(), new BouncyCastlePrecomputedOrDigestProxy(digest), digest.getDigestSize());
+                engine = new PSSSigner(new RSAEngine(), precomputable(digest), digest.getDigestSize());
                 break;
             case ALG_RSA_SHA_256_PKCS1_PSS:
                 digest = new SHA256Digest();
-                engine = new PSSSigner(new RSAEngine(), new BouncyCastlePrecomputedOrDigestProxy(digest), digest.getDigestSize());
+                engine = new PSSSigner(new RSAEngine(), precomputable(digest), digest.getDigestSize());
                 break;
             case ALG_RSA_SHA_384_PKCS1_PSS:
                 digest = new SHA384Digest();
-                engine = new PSSSigner(new RSAEngine(), new BouncyCastlePrecomputedOrDigestProxy(digest), digest.getDigestSize());
+                engine = new PSSSigner(new RSAEngine(), precomputable(digest), digest.getDigestSize());
                 break;
             case ALG_RSA_SHA_512_PKCS1_PSS:
                 digest = new SHA512Digest();
-                engine = new PSSSigner(new RSAEngine(), new BouncyCastlePrecomputedOrDigestProxy(digest), digest.getDigestSize());
+                engine = new PSSSigner(new RSAEngine(), precomputable(digest), digest.getDigestSize());
                 break;
             case ALG_RSA_MD5_PKCS1:
                 digest = new MD5Digest();
-                engine = new RSADigestSigner(new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new RSADigestSigner(precomputable(digest));
                 break;
             case ALG_RSA_RIPEMD160_ISO9796:
                 digest = new RIPEMD160Digest();
@@ -130,46 +141,41 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
                 break;
             case ALG_RSA_RIPEMD160_PKCS1:
                 digest = new RIPEMD160Digest();
-                engine = new RSADigestSigner(new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new RSADigestSigner(precomputable(digest));
                 break;
             case ALG_ECDSA_SHA:
                 digest = new SHA1Digest();
-                engine = new DSADigestSigner(new ECDSASigner(), new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new DSADigestSigner(new ECDSASigner(), precomputable(digest));
                 break;
             case ALG_ECDSA_SHA_224:
                 digest = new SHA224Digest();
-                engine = new DSADigestSigner(new ECDSASigner(), new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new DSADigestSigner(new ECDSASigner(), precomputable(digest));
                 break;
             case ALG_ECDSA_SHA_256:
                 digest = new SHA256Digest();
-                engine = new DSADigestSigner(new ECDSASigner(), new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new DSADigestSigner(new ECDSASigner(), precomputable(digest));
                 break;
             case ALG_ECDSA_SHA_384:
                 digest = new SHA384Digest();
-                engine = new DSADigestSigner(new ECDSASigner(), new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new DSADigestSigner(new ECDSASigner(), precomputable(digest));
                 break;
             case ALG_ECDSA_SHA_512:
                 digest = new SHA512Digest();
-                engine = new DSADigestSigner(new ECDSASigner(), new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new DSADigestSigner(new ECDSASigner(), precomputable(digest));
                 break;
             case ALG_DSA_SHA:
                 digest = new SHA1Digest();
-                engine = new DSADigestSigner(new DSASigner(), new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new DSADigestSigner(new DSASigner(), precomputable(digest));
                 break;
             case ALG_RSA_MD5_PKCS1_PSS:
                 digest = new MD5Digest();
-                engine = new PSSSigner(new RSAEngine(), new BouncyCastlePrecomputedOrDigestProxy(digest), digest.getDigestSize());
+                engine = new PSSSigner(new RSAEngine(), precomputable(digest), digest.getDigestSize());
                 break;
             case ALG_RSA_RIPEMD160_PKCS1_PSS:
                 digest = new RIPEMD160Digest();
-                engine = new PSSSigner(new RSAEngine(), new BouncyCastlePrecomputedOrDigestProxy(digest), digest.getDigestSize());
+                engine = new PSSSigner(new RSAEngine(), precomputable(digest), digest.getDigestSize());
                 break;
 
-            case ALG_RSA_SHA_RFC2409:
-            case ALG_RSA_MD5_RFC2409:
-            case ALG_RSA_RIPEMD160_ISO9796_MR:
-                throw new NotImplementedException();
-
             default:
                 CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
                 break;
@@ -184,37 +190,19 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
         this.paddingAlgorithm = paddingAlgorithm;
         isRecovery = false;
         if (isRawECDSAWithoutHash()) {
-            engine = new DSADigestSigner(new ECDSASigner(), new BouncyCastlePrecomputedOrDigestProxy(new NullDigest()));
+            engine = new DSADigestSigner(new ECDSASigner(), precomputable(new NullDigest()));
             return;
         }
 
-        switch(this.messageDigestAlgorithm ){
+        switch (this.messageDigestAlgorithm) {
             case MessageDigest.ALG_SHA:
-                digest = new SHA1Digest();
-                break;
-
             case MessageDigest.ALG_SHA_224:
-                digest = new SHA224Digest();
-                break;
-
             case MessageDigest.ALG_SHA_256:
-                digest = new SHA256Digest();
-                break;
-
             case MessageDigest.ALG_SHA_384:
-                digest = new SHA384Digest();
-                break;
-
             case MessageDigest.ALG_SHA_512:
-                digest = new SHA512Digest();
-                break;
-
             case MessageDigest.ALG_MD5:
-                digest = new MD5Digest();
-                break;
-
             case MessageDigest.ALG_RIPEMD160:
-                digest = new RIPEMD160Digest();
+                digest = MessageDigestImpl.newDigest(this.messageDigestAlgorithm);
                 break;
 
             default:
@@ -236,11 +224,11 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
                         break;
 
                     case Cipher.PAD_PKCS1:
-                        engine = new RSADigestSigner(new BouncyCastlePrecomputedOrDigestProxy(digest));
+                        engine = new RSADigestSigner(precomputable(digest));
                         break;
 
                     case Cipher.PAD_PKCS1_PSS:
-                        engine = new PSSSigner(new RSAEngine(), new BouncyCastlePrecomputedOrDigestProxy(digest), digest.getDigestSize());
+                        engine = new PSSSigner(new RSAEngine(), precomputable(digest), digest.getDigestSize());
                         break;
 
                     default:
@@ -254,7 +242,7 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
                 if( this.paddingAlgorithm != Cipher.PAD_NULL) {
                     CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
                 }
-                engine = new DSADigestSigner( new ECDSASigner(), new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new DSADigestSigner( new ECDSASigner(), precomputable(digest));
                 break;
             }
 
@@ -262,7 +250,7 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
                 if( this.paddingAlgorithm != Cipher.PAD_NULL) {
                     CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
                 }
-                engine = new DSADigestSigner( new ECDSASigner(), new BouncyCastlePrecomputedOrDigestProxy(digest), PlainDSAEncoding.INSTANCE);
+                engine = new DSADigestSigner( new ECDSASigner(), precomputable(digest), PlainDSAEncoding.INSTANCE);
                 break;
             }
 
@@ -270,7 +258,7 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
                 if( this.paddingAlgorithm != Cipher.PAD_NULL) {
                     CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
                 }
-                engine = new DSADigestSigner(new DSASigner(), new BouncyCastlePrecomputedOrDigestProxy(digest));
+                engine = new DSADigestSigner(new DSASigner(), precomputable(digest));
                 break;
             }
         }
@@ -301,7 +289,9 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
             engine.init(theMode == MODE_SIGN, params);
         }
         this.key = theKey;
+        messageLength = 0;
         isInitialized = true;
+        FlightRecorderEvents.cryptoEvent("Signature.init", getAlgorithm(), theKey.getSize());
     }
 
     public void init(Key theKey, byte theMode, byte[] bArray, short bOff, short bLen) throws CryptoException {
@@ -364,9 +354,19 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
         engine.update(inBuff, inOffset, inLength);
+        messageLength += inLength;
     }
 
     public short sign(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset) throws CryptoException {
+        Object event = FlightRecorderEvents.beginCrypto();
+        try {
+            return doSign(inBuff, inOffset, inLength, sigBuff, sigOffset);
+        } finally {
+            FlightRecorderEvents.commitCrypto(event, "Signature.sign", getAlgorithm(), inLength);
+        }
+    }
+
+    private short doSign(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset) throws CryptoException {
         if (isRecovery) {
             CryptoException.throwIt(CryptoException.ILLEGAL_USE);
         }
@@ -384,12 +384,21 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
         } catch (DataLengthException ex) {
             CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
         } finally {
-            engine.reset();
+            resetEngine();
         }
         return -1;
     }
 
     public boolean verify(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short sigLength) throws CryptoException {
+        Object event = FlightRecorderEvents.beginCrypto();
+        try {
+            return doVerify(inBuff, inOffset, inLength, sigBuff, sigOffset, sigLength);
+        } finally {
+            FlightRecorderEvents.commitCrypto(event, "Signature.verify", getAlgorithm(), inLength);
+        }
+    }
+
+    private boolean doVerify(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short sigLength) throws CryptoException {
         if (isRecovery) {
             CryptoException.throwIt(CryptoException.ILLEGAL_USE);
         }
@@ -397,13 +406,27 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
         engine.update(inBuff, inOffset, inLength);
-        byte[] sig = new byte[sigLength];
-        Util.arrayCopyNonAtomic(sigBuff, sigOffset, sig, (short) 0, sigLength);
-        boolean b = engine.verifySignature(sig);
-        engine.reset();
+        boolean b = engine.verifySignature(signatureArray(sigBuff, sigOffset, sigLength));
+        resetEngine();
         return b;
     }
 
+    /**
+     * BouncyCastle signers only accept a whole array, so the signature is
+     * used in place when it fills <code>sigBuff</code> and otherwise copied
+     * into a scratch buffer which is reused while the length stays the same.
+     */
+    private byte[] signatureArray(byte[] sigBuff, short sigOffset, short sigLength) {
+        if (sigOffset == 0 && sigLength == sigBuff.length) {
+            return sigBuff;
+        }
+        if (sigBuffer == null || sigBuffer.length != sigLength) {
+            sigBuffer = new byte[sigLength];
+        }
+        Util.arrayCopyNonAtomic(sigBuff, sigOffset, sigBuffer, (short) 0, sigLength);
+        return sigBuffer;
+    }
+
     public short beginVerify(byte[] sigAndRecDataBuff, short buffOffset, short sigLength) throws CryptoException {
         if (!isRecovery) {
             CryptoException.throwIt(CryptoException.ILLEGAL_USE);
@@ -411,7 +434,9 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
         if (!isInitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
-        preSig = JCSystem.makeTransientByteArray(sigLength, JCSystem.CLEAR_ON_RESET);
+        if (preSig == null || preSig.length != sigLength) {
+            preSig = JCSystem.makeTransientByteArray(sigLength, JCSystem.CLEAR_ON_RESET);
+        }
         Util.arrayCopyNonAtomic(sigAndRecDataBuff, buffOffset, preSig, (short) 0, sigLength);
         try {
             ((SignerWithRecovery) engine).updateWithRecoveredMessage(preSig);
@@ -424,6 +449,16 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
 
     public short sign(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short[] recMsgLen,
             short recMsgLenOffset) throws CryptoException {
+        Object event = FlightRecorderEvents.beginCrypto();
+        try {
+            return doSign(inBuff, inOffset, inLength, sigBuff, sigOffset, recMsgLen, recMsgLenOffset);
+        } finally {
+            FlightRecorderEvents.commitCrypto(event, "Signature.sign", getAlgorithm(), inLength);
+        }
+    }
+
+    private short doSign(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short[] recMsgLen,
+            short recMsgLenOffset) throws CryptoException {
         if (!isRecovery) {
             CryptoException.throwIt(CryptoException.ILLEGAL_USE);
         }
@@ -431,14 +466,11 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
         engine.update(inBuff, inOffset, inLength);
+        messageLength += inLength;
         byte[] sig;
         try {
-            // there is no direct way to obtain encoded message length
-            Field messageLengthField = engine.getClass().getDeclaredField("messageLength");
-            messageLengthField.setAccessible(true);
-
-            // Need to read messageLength before it is cleared in generateSignature()
-            int messageLength = messageLengthField.getInt(engine);
+            // ISO9796d2Signer does not expose the encoded message length
+            int messageLength = this.messageLength;
             sig = engine.generateSignature();
             Util.arrayCopyNonAtomic(sig, (short) 0, sigBuff, sigOffset, (short) sig.length);
 
@@ -472,12 +504,21 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
         } catch (Exception ex) {
             CryptoException.throwIt(CryptoException.ILLEGAL_USE);
         } finally {
-            engine.reset();
+            resetEngine();
         }
         return -1;
     }
 
     public boolean verify(byte[] inBuff, short inOffset, short inLength) throws CryptoException {
+        Object event = FlightRecorderEvents.beginCrypto();
+        try {
+            return doVerify(inBuff, inOffset, inLength);
+        } finally {
+            FlightRecorderEvents.commitCrypto(event, "Signature.verify", getAlgorithm(), inLength);
+        }
+    }
+
+    private boolean doVerify(byte[] inBuff, short inOffset, short inLength) throws CryptoException {
         if(!isRecovery){
             CryptoException.throwIt(CryptoException.ILLEGAL_USE);
         }
@@ -489,7 +530,7 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
         }
         engine.update(inBuff, inOffset, inLength);
         boolean b = engine.verifySignature(preSig);
-        engine.reset();
+        resetEngine();
         return b;
     }
 
@@ -502,38 +543,39 @@ public class AsymmetricSignatureImpl extends Signature implements SignatureMessa
                             short hashLength,
                             byte[] sigBuff,
                             short sigOffset) throws CryptoException {
-        try {
-            if((engine instanceof RSADigestSigner) || (engine instanceof DSADigestSigner) || (engine instanceof PSSSigner)) {
-                // set precomputed hava value - BouncyCastle specific
-                 Field h = engine.getClass().getDeclaredField(engine instanceof PSSSigner ? "contentDigest" : "digest");
-                 h.setAccessible(true);
-                 Object digestObject = h.get(engine);
-                 digestObject.getClass().getMethod("setPrecomputedValue", new Class[]{byte[].class, int.class, int.class})
-                         .invoke(digestObject, new Object[]{hashBuff,hashOffset,hashLength});
-                 return sign(null, (short) 0, (short) 0, sigBuff, sigOffset);
-            }
-        } catch(ReflectiveOperationException e) {}
-        
-        CryptoException.throwIt(CryptoException.ILLEGAL_USE);
-        return 0;
+        if (!setPrecomputedValue(hashBuff, hashOffset, hashLength)) {
+            CryptoException.throwIt(CryptoException.ILLEGAL_USE);
+        }
+        return sign(null, (short) 0, (short) 0, sigBuff, sigOffset);
     }
     
     public boolean verifyPreComputedHash(byte[] hashBuff, short hashOffset, short hashLength, byte[] sigBuff, short sigOffset, short sigLength) throws CryptoException {
-        try {
-            if((engine instanceof RSADigestSigner) || (engine instanceof DSADigestSigner) || (engine instanceof PSSSigner)) {
-                // set precomputed hava value - BouncyCastle specific
-                 Field h = engine.getClass().getDeclaredField(engine instanceof PSSSigner ? "contentDigest" : "digest");
-                 h.setAccessible(true);
-                 Object digestObject = h.get(engine);
-                 digestObject.getClass().getMethod("setPrecomputedValue", new Class[]{byte[].class, int.class, int.class})
-                         .invoke(digestObject, new Object[]{hashBuff,hashOffset,hashLength});
-                 return verify(null, (short) 0, (short) 0, sigBuff, sigOffset, sigLength);
-            }
-        } catch(ReflectiveOperationException e) {
+        if (!setPrecomputedValue(hashBuff, hashOffset, hashLength)) {
+            CryptoException.throwIt(CryptoException.ILLEGAL_USE);
         }
-        
-        CryptoException.throwIt(CryptoException.ILLEGAL_USE);
-        return false;
+        return verify(null, (short) 0, (short) 0, sigBuff, sigOffset, sigLength);
+    }
+
+    /**
+     * Pass a precomputed hash value to the digest of the engine
+     * @return false if the engine does not hash through
+     * <code>BouncyCastlePrecomputedOrDigestProxy</code> or the length is wrong
+     */
+    private boolean setPrecomputedValue(byte[] hashBuff, short hashOffset, short hashLength) {
+        if (precomputedDigest == null) {
+            return false;
+        }
+        return precomputedDigest.setPrecomputedValue(hashBuff, hashOffset, hashLength);
+    }
+
+    private Digest precomputable(Digest digest) {
+        precomputedDigest = new BouncyCastlePrecomputedOrDigestProxy(digest);
+        return precomputedDigest;
+    }
+
+    private void resetEngine() {
+        engine.reset();
+        messageLength = 0;
     }
     
     public byte getPaddingAlgorithm() {
@@ -15,6 +15,7 @@
  */
 package com.licel.jcardsim.crypto;
 
+import com.licel.jcardsim.base.FlightRecorderEvents;
 import javacard.framework.JCSystem;
 import javacard.framework.Util;
 import javacard.security.CryptoException;
@@ -140,6 +141,7 @@ public class AuthenticatedSymmetricCipherImpl extends AEADCipher {
 
         initMode = theMode;
         state = CipherState.Initialized;
+        FlightRecorderEvents.cryptoEvent("Cipher.init", getAlgorithm(), theKey.getSize());
     }
 
     /**
@@ -202,6 +204,7 @@ public class AuthenticatedSymmetricCipherImpl extends AEADCipher {
 
         initMode = theMode;
         state = CipherState.Initialized;
+        FlightRecorderEvents.cryptoEvent("Cipher.init", getAlgorithm(), theKey.getSize());
     }
 
     /**
@@ -260,6 +263,7 @@ public class AuthenticatedSymmetricCipherImpl extends AEADCipher {
         initAADLen = adataLen;
         totalMsgLen = 0;
         state = CipherState.Initialized;
+        FlightRecorderEvents.cryptoEvent("Cipher.init", getAlgorithm(), theKey.getSize());
     }
 
     /**
@@ -349,6 +353,15 @@ public class AuthenticatedSymmetricCipherImpl extends AEADCipher {
      */
     @Override
     public short doFinal(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException {
+        Object event = FlightRecorderEvents.beginCrypto();
+        try {
+            return doFinalInternal(inBuff, inOffset, inLength, outBuff, outOffset);
+        } finally {
+            FlightRecorderEvents.commitCrypto(event, "Cipher.doFinal", getAlgorithm(), inLength);
+        }
+    }
+
+    private short doFinalInternal(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException {
         if (state == CipherState.Uninitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
@@ -17,10 +17,18 @@ package com.licel.jcardsim.crypto;
 
 import org.bouncycastle.crypto.Digest;
 
+/**
+ * <code>Digest</code> wrapper which returns a hash value set with
+ * {@link #setPrecomputedValue(byte[], int, int)} from the next
+ * <code>doFinal</code> instead of hashing the input.
+ * <code>AsymmetricSignatureImpl</code> keeps a reference to the wrapper it
+ * passes to the BouncyCastle signer.
+ */
 public class BouncyCastlePrecomputedOrDigestProxy implements Digest {
     
     private final Digest parentDigest;
-    private byte[] precomputedDigestValue = null;
+    private byte[] precomputedDigestValue;
+    private boolean hasPrecomputedValue;
 
     public BouncyCastlePrecomputedOrDigestProxy(Digest parentDigest) {
         this.parentDigest = parentDigest;
@@ -38,41 +46,52 @@ public class BouncyCastlePrecomputedOrDigestProxy implements Digest {
 
     @Override
     public void update(byte in) {
-        if (precomputedDigestValue == null) {
+        if (!hasPrecomputedValue) {
             parentDigest.update(in);
         }
     }
 
     @Override
     public void update(byte[] in, int inOff, int len) {
-        if (precomputedDigestValue == null) {
+        if (!hasPrecomputedValue) {
             parentDigest.update(in, inOff, len);
         }
     }
 
     @Override
     public int doFinal(byte[] out, int outOff) {
-        if (precomputedDigestValue == null) {
+        if (!hasPrecomputedValue) {
             return parentDigest.doFinal(out, outOff);
         }
-        System.arraycopy(precomputedDigestValue, 0, out, outOff, precomputedDigestValue.length);
         int len = precomputedDigestValue.length;
-        precomputedDigestValue = null;
+        System.arraycopy(precomputedDigestValue, 0, out, outOff, len);
+        hasPrecomputedValue = false;
         return len;
     }
 
-    public void setPrecomputedValue(byte[] in, int inOff, int inLength) {
+    /**
+     * Set the value returned by the next <code>doFinal</code>
+     * @param in input buffer
+     * @param inOff offset in <code>in</code>
+     * @param inLength length, must be equal to the digest size
+     * @return false if <code>inLength</code> does not match the digest size
+     */
+    public boolean setPrecomputedValue(byte[] in, int inOff, int inLength) {
         int digestSize = getDigestSize();
-        if (inLength!= digestSize) {
-            throw new IllegalArgumentException();
+        if (inLength != digestSize) {
+            return false;
+        }
+        if (precomputedDigestValue == null || precomputedDigestValue.length != digestSize) {
+            precomputedDigestValue = new byte[digestSize];
         }
-        precomputedDigestValue = new byte[digestSize];
         System.arraycopy(in, inOff, precomputedDigestValue, 0, digestSize);
+        hasPrecomputedValue = true;
+        return true;
     }
 
     @Override
     public void reset() {
-        precomputedDigestValue = null;
+        hasPrecomputedValue = false;
         parentDigest.reset();
     }
 }
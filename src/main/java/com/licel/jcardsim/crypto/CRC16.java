@@ -29,8 +29,23 @@ import javacard.security.CryptoException;
 public class CRC16 extends Checksum {
 
     static final byte LENGTH = 2;
+    private static final int POLYNOMIAL = 0x1021;
+    /**
+     * CRC of every single byte value, MSB first
+     */
+    private static final short[] TABLE = new short[256];
     private byte crc16[];
 
+    static {
+        for (int n = 0; n < 256; n++) {
+            int c = n << 8;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 0x8000) != 0 ? (c << 1) ^ POLYNOMIAL : c << 1;
+            }
+            TABLE[n] = (short) c;
+        }
+    }
+
     public CRC16() {
         crc16 = JCSystem.makeTransientByteArray(LENGTH, JCSystem.CLEAR_ON_DESELECT);
     }
@@ -62,19 +77,12 @@ public class CRC16 extends Checksum {
     }
 
     void crc16(byte inBuf[], short inOff, short inLen) {
-        short fcs = Util.getShort(crc16, (short) 0);
-        for (short i = inOff; i < (short) (inOff + inLen); i++) {
-            short d = (short) (inBuf[i] << 8);
-            for (short k = 0; k < 8; k++) {
-                if ((short) ((fcs ^ d) & 0x8000) != 0) {
-                    fcs = (short) ((short) (fcs << 1) ^ 0x1021);
-                } else {
-                    fcs <<= 1;
-                }
-                d <<= 1;
-            }
-
+        int fcs = ((crc16[0] & 0xFF) << 8) | (crc16[1] & 0xFF);
+        int end = inOff + inLen;
+        for (int i = inOff; i < end; i++) {
+            fcs = (fcs << 8) ^ TABLE[((fcs >>> 8) ^ inBuf[i]) & 0xFF];
         }
-        Util.setShort(crc16, (short) 0, fcs);
+        crc16[0] = (byte) (fcs >>> 8);
+        crc16[1] = (byte) fcs;
     }
 }
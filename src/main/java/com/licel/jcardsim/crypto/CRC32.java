@@ -29,10 +29,28 @@ import javacard.security.CryptoException;
 public class CRC32 extends Checksum {
 
     final static byte LENGTH = 4;
+    /**
+     * 0x04C11DB7 with reflected bit order
+     */
+    private static final int POLYNOMIAL = 0xEDB88320;
+    /**
+     * CRC of every single byte value, LSB first
+     */
+    private static final int[] TABLE = new int[256];
+    /**
+     * reflected CRC register, big endian
+     */
     private byte crc32[];
-    private final byte polynom[] = {
-        4, -63, 29, -73
-    };
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int c = n;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 1) != 0 ? (c >>> 1) ^ POLYNOMIAL : c >>> 1;
+            }
+            TABLE[n] = c;
+        }
+    }
 
     public CRC32() {
         crc32 = JCSystem.makeTransientByteArray(LENGTH, JCSystem.CLEAR_ON_DESELECT);
@@ -47,7 +65,8 @@ public class CRC32 extends Checksum {
         if (bLen != LENGTH) {
             CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
         }
-        Util.arrayCopyNonAtomic(bArray, bOff, crc32, (short) 0, bLen);
+        // the initial value is given in MSB-first order
+        setState(Integer.reverse(getInt(bArray, bOff)));
     }
 
     public short doFinal(byte inBuff[], short inOffset, short inLength, byte outBuff[], short outOffset) {
@@ -66,67 +85,23 @@ public class CRC32 extends Checksum {
     }
 
     private void crc32(byte inBuf[], short inOff, short inLen) {
-        short fcs_h = Util.getShort(crc32, (short) 0);
-        short fcs_l = Util.getShort(crc32, (short) 2);
-        short poly_h = Util.getShort(polynom, (short) 0);
-        short poly_l = Util.getShort(polynom, (short) 2);
-        byte carry = 0;
-        for (short i = inOff; i < (short) (inOff + inLen); i++) {
-            short d_h = (short) (reflect8(inBuf[i]) << 8);
-            for (short k = 0; k < 8; k++) {
-                if (((fcs_h ^ d_h) & 0x8000) != 0) {
-                    carry = 0;
-                    short lfcs_h = shift(fcs_h);
-                    if ((fcs_l & 0x8000) != 0) {
-                        carry = 1;
-                    }
-                    short lfcs_l = shift(fcs_l);
-                    if (carry == 1) {
-                        lfcs_h++;
-                    }
-                    fcs_h = (short) (lfcs_h ^ poly_h);
-                    fcs_l = (short) (lfcs_l ^ poly_l);
-                } else {
-                    carry = 0;
-                    short lfcs_h = shift(fcs_h);
-                    if ((fcs_l & 0x8000) != 0) {
-                        carry = 1;
-                    }
-                    short lfcs_l = shift(fcs_l);
-                    if (carry == 1) {
-                        lfcs_h++;
-                    }
-                    fcs_h = lfcs_h;
-                    fcs_l = lfcs_l;
-                }
-                d_h <<= 1;
-            }
-
+        int fcs = getInt(crc32, (short) 0);
+        int end = inOff + inLen;
+        for (int i = inOff; i < end; i++) {
+            fcs = (fcs >>> 8) ^ TABLE[(fcs ^ inBuf[i]) & 0xFF];
         }
-
-        Util.setShort(crc32, (short) 2, reflect16(fcs_h));
-        Util.setShort(crc32, (short) 0, reflect16(fcs_l));
+        setState(fcs);
     }
 
-    private byte reflect8(byte input){
-        byte reflected = 0;
-        for( byte i = 0; i < 8; i++){
-            if((input & (0x80 >> i)) > 0 )
-                reflected |= (1 << i);
-        }
-        return reflected;
-    }
-
-    private short reflect16(short input){
-        short reflected = 0;
-        for( byte i = 0; i < 16; i++){
-            if((input & (0x8000 >> i)) > 0 )
-                reflected |= (1 << i);
-        }
-        return reflected;
+    private void setState(int fcs) {
+        crc32[0] = (byte) (fcs >>> 24);
+        crc32[1] = (byte) (fcs >>> 16);
+        crc32[2] = (byte) (fcs >>> 8);
+        crc32[3] = (byte) fcs;
     }
 
-    short shift(short s) {
-        return s <<= 1;
+    private static int getInt(byte[] buf, short off) {
+        return ((buf[off] & 0xFF) << 24) | ((buf[off + 1] & 0xFF) << 16)
+                | ((buf[off + 2] & 0xFF) << 8) | (buf[off + 3] & 0xFF);
     }
 }
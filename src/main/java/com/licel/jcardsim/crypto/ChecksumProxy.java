@@ -42,21 +42,7 @@ public class ChecksumProxy {
         if (externalAccess) {
             CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
         }
-        Checksum instance = null;
-        switch (algorithm) {
-            case Checksum.ALG_ISO3309_CRC16:
-                instance = new CRC16();
-                break;
-
-            case Checksum.ALG_ISO3309_CRC32:
-                instance = new CRC32();
-                break;
-
-            default:
-                CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
-                break;
-        }
-        return instance;
+        return AlgorithmRegistry.CHECKSUM.newInstance(algorithm);
     }
     
 }
@@ -17,7 +17,6 @@ package com.licel.jcardsim.crypto;
 
 import javacard.security.CryptoException;
 import javacardx.crypto.Cipher;
-import javacardx.crypto.AEADCipher;
 /**
  * ProxyClass for <code>Cipher</code>
  * @see Cipher
@@ -40,45 +39,10 @@ public class CipherProxy {
      */
     public static final Cipher getInstance(byte algorithm, boolean externalAccess)
             throws CryptoException {
-        Cipher instance = null;
         if (externalAccess) {
             CryptoException.throwIt((short) 3);
         }
- 
-        switch (algorithm) {
-            case Cipher.ALG_DES_CBC_NOPAD:
-            case Cipher.ALG_DES_CBC_ISO9797_M1:
-            case Cipher.ALG_DES_CBC_ISO9797_M2:
-            case Cipher.ALG_DES_CBC_PKCS5:
-            case Cipher.ALG_DES_ECB_NOPAD:
-            case Cipher.ALG_DES_ECB_ISO9797_M1:
-            case Cipher.ALG_DES_ECB_ISO9797_M2:
-            case Cipher.ALG_DES_ECB_PKCS5:
-            case Cipher.ALG_AES_BLOCK_128_CBC_NOPAD:
-            case Cipher.ALG_AES_BLOCK_128_ECB_NOPAD:
-            case Cipher.ALG_AES_CBC_ISO9797_M2:
-            case Cipher.ALG_AES_CTR:
-            case Cipher.ALG_KOREAN_SEED_ECB_NOPAD:
-            case Cipher.ALG_KOREAN_SEED_CBC_NOPAD:
-                instance = new SymmetricCipherImpl(algorithm);
-                break;
-            case Cipher.ALG_RSA_PKCS1:
-            case Cipher.ALG_RSA_NOPAD:
-            case Cipher.ALG_RSA_ISO14888:
-            case Cipher.ALG_RSA_ISO9796:
-            case Cipher.ALG_RSA_PKCS1_OAEP:
-                instance = new AsymmetricCipherImpl(algorithm);
-                break;
-            case AEADCipher.ALG_AES_GCM:
-            case AEADCipher.ALG_AES_CCM:
-                instance = new AuthenticatedSymmetricCipherImpl(algorithm);
-                break;
-
-            default:
-                CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
-                break;
-        }
-        return instance;
+        return AlgorithmRegistry.CIPHER.newInstance(algorithm);
     }
     
 }
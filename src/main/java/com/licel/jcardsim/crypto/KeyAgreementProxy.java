@@ -41,6 +41,6 @@ public class KeyAgreementProxy {
      */
     public static final KeyAgreement getInstance(byte algorithm, boolean externalAccess)
             throws CryptoException {
-        return new KeyAgreementImpl(algorithm);
+        return AlgorithmRegistry.KEY_AGREEMENT.newInstance(algorithm);
     }
 }
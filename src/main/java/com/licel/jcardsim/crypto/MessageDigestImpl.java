@@ -23,8 +23,10 @@ import javacard.security.CryptoException;
 import javacard.security.InitializedMessageDigest;
 import javacard.security.MessageDigest;
 import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.ExtendedDigest;
 import org.bouncycastle.crypto.digests.*;
 import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Memoable;
 import org.bouncycastle.util.Pack;
 
 /**
@@ -47,91 +49,100 @@ public class MessageDigestImpl extends InitializedMessageDigest {
     private byte componentStartIdx;
 
     public MessageDigestImpl(byte algorithm) {
-        this.algorithm = algorithm;
-        componentStartIdx = 1;
-        switch (algorithm) {
-            case ALG_SHA:
-                engine = new SHA1Digest();
-                digestClass = engine.getClass();
-                blockSize = (short) ((SHA1Digest)engine).getByteLength();
-                break;
-            case ALG_MD5:
-                engine = new MD5Digest();
-                digestClass = engine.getClass();
-                blockSize = (short) ((MD5Digest)engine).getByteLength();
-                break;
-            case ALG_RIPEMD160:
-                engine = new RIPEMD160Digest();
-                digestClass = engine.getClass();
-                blockSize = (short) ((RIPEMD160Digest)engine).getByteLength();
-                componentStartIdx = 0;
-                break;
-            case ALG_SHA_224:
-                engine = new SHA224Digest();
-                digestClass = engine.getClass();
-                blockSize = (short) ((SHA224Digest)engine).getByteLength();
-                break;
-            case ALG_SHA_256:
-                engine = new SHA256Digest();
-                digestClass = engine.getClass();
-                blockSize = (short) ((SHA256Digest)engine).getByteLength();
-                break;
-            case ALG_SHA_384:
-                engine = new SHA384Digest();
-                digestClass = engine.getClass().getSuperclass();
-                blockSize = (short) ((SHA384Digest)engine).getByteLength();
-                break;
-            case ALG_SHA_512:
-                engine = new SHA512Digest();
-                digestClass = engine.getClass().getSuperclass();
-                blockSize = (short) ((SHA512Digest)engine).getByteLength();
-                break;
-            case ALG_SHA3_224:
-                engine = new SHA3Digest(224);
-                digestClass = engine.getClass().getSuperclass();
-                blockSize = (short) ((SHA3Digest)engine).getByteLength();
-                break;
-            case ALG_SHA3_256:
-                engine = new SHA3Digest(256);
-                digestClass = engine.getClass().getSuperclass();
-                blockSize = (short) ((SHA3Digest)engine).getByteLength();
-                break;
-            case ALG_SHA3_384:
-                engine = new SHA3Digest(384);
-                digestClass = engine.getClass().getSuperclass();
-                blockSize = (short) ((SHA3Digest)engine).getByteLength();
-                break;
-            case ALG_SHA3_512:
-                engine = new SHA3Digest(512);
-                digestClass = engine.getClass().getSuperclass();
-                blockSize = (short) ((SHA3Digest)engine).getByteLength();
-                break;
-            default:
-                CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
-                break;
+        DigestPrototype prototype = DigestPrototype.get(algorithm);
+        if (prototype == null) {
+            CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
         }
+        this.algorithm = algorithm;
+        engine = prototype.newEngine();
+        digestClass = prototype.digestClass;
+        blockSize = prototype.blockSize;
+        componentStartIdx = prototype.componentStartIdx;
+        componentSize = prototype.componentSize;
+        componentCount = prototype.componentCount;
+    }
 
-        componentSize = (byte)(blockSize == 64 ? 4 : 8);
-        componentCount = getComponentCount(algorithm);
+    /**
+     * Create a new BouncyCastle digest engine
+     * @param algorithm <code>MessageDigest</code> algorithm code
+     * @return new digest or <code>null</code> if <code>algorithm</code> is not supported
+     */
+    static Digest newDigest(byte algorithm) {
+        DigestPrototype prototype = DigestPrototype.get(algorithm);
+        return prototype == null ? null : prototype.newEngine();
     }
 
-    private byte getComponentCount(byte algorithm){
-        switch(algorithm){
-            case ALG_SHA:
-            case ALG_MD5:
-            case ALG_RIPEMD160:
-            case ALG_SHA_256:
-            case ALG_SHA_512:
-                return (byte) (engine.getDigestSize() / componentSize);
+    /**
+     * Pre-built digest engine and the BouncyCastle layout data derived from it.
+     * New engines are copies of the prototype, which is never updated itself.
+     */
+    private static final class DigestPrototype {
+        private static final DigestPrototype[] PROTOTYPES = new DigestPrototype[256];
+
+        static {
+            register(ALG_SHA, new SHA1Digest(), false, (byte) 1);
+            register(ALG_MD5, new MD5Digest(), false, (byte) 1);
+            register(ALG_RIPEMD160, new RIPEMD160Digest(), false, (byte) 0);
+            register(ALG_SHA_224, new SHA224Digest(), false, (byte) 1);
+            register(ALG_SHA_256, new SHA256Digest(), false, (byte) 1);
+            register(ALG_SHA_384, new SHA384Digest(), true, (byte) 1);
+            register(ALG_SHA_512, new SHA512Digest(), true, (byte) 1);
+            register(ALG_SHA3_224, new SHA3Digest(224), true, (byte) 1);
+            register(ALG_SHA3_256, new SHA3Digest(256), true, (byte) 1);
+            register(ALG_SHA3_384, new SHA3Digest(384), true, (byte) 1);
+            register(ALG_SHA3_512, new SHA3Digest(512), true, (byte) 1);
+        }
 
-            // From NIST FIPS 180-4, https://nvlpubs.nist.gov/nistpubs/FIPS/NIST.FIPS.180-4.pdf
-            case ALG_SHA_224: // 5.3.2 SHA-224 Initial Hash Words
-            case ALG_SHA_384: // 5.3.4 SHA-384 Initial Hash Words
-                return 8;
+        final ExtendedDigest prototype;
+        final Class digestClass;
+        final short blockSize;
+        final byte componentStartIdx;
+        final byte componentSize;
+        final byte componentCount;
+
+        private DigestPrototype(byte algorithm, ExtendedDigest prototype, boolean stateInSuperclass, byte componentStartIdx) {
+            this.prototype = prototype;
+            this.digestClass = stateInSuperclass ? prototype.getClass().getSuperclass() : prototype.getClass();
+            this.blockSize = (short) prototype.getByteLength();
+            this.componentStartIdx = componentStartIdx;
+            this.componentSize = (byte) (blockSize == 64 ? 4 : 8);
+            this.componentCount = getComponentCount(algorithm, prototype.getDigestSize(), componentSize);
         }
 
-        return 0;
+        private static void register(byte algorithm, ExtendedDigest prototype, boolean stateInSuperclass, byte componentStartIdx) {
+            PROTOTYPES[algorithm & 0xFF] = new DigestPrototype(algorithm, prototype, stateInSuperclass, componentStartIdx);
+        }
+
+        static DigestPrototype get(byte algorithm) {
+            return PROTOTYPES[algorithm & 0xFF];
+        }
+
+        Digest newEngine() {
+            if (prototype instanceof Memoable) {
+                return (Digest) ((Memoable) prototype).copy();
+            }
+            return new SHA3Digest((SHA3Digest) prototype);
+        }
+
+        private static byte getComponentCount(byte algorithm, int digestSize, byte componentSize) {
+            switch (algorithm) {
+                case ALG_SHA:
+                case ALG_MD5:
+                case ALG_RIPEMD160:
+                case ALG_SHA_256:
+                case ALG_SHA_512:
+                    return (byte) (digestSize / componentSize);
+
+                // From NIST FIPS 180-4, https://nvlpubs.nist.gov/nistpubs/FIPS/NIST.FIPS.180-4.pdf
+                case ALG_SHA_224: // 5.3.2 SHA-224 Initial Hash Words
+                case ALG_SHA_384: // 5.3.4 SHA-384 Initial Hash Words
+                    return 8;
+            }
+
+            return 0;
+        }
     }
+
     public byte getAlgorithm() {
         return algorithm;
     }
@@ -42,8 +42,7 @@ public class MessageDigestProxy {
         if (externalAccess) {
             CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
         }
-        MessageDigest instance = new MessageDigestImpl(algorithm);
-        return instance;
+        return (MessageDigest) AlgorithmRegistry.MESSAGE_DIGEST.newInstance(algorithm);
     }
     
     /**
@@ -67,7 +66,6 @@ public class MessageDigestProxy {
         if (externalAccess) {
             CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
         }
-        InitializedMessageDigest instance = new MessageDigestImpl(algorithm);
-        return instance;
+        return AlgorithmRegistry.MESSAGE_DIGEST.newInstance(algorithm);
     }
 }
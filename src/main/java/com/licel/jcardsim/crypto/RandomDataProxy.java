@@ -18,8 +18,6 @@ package com.licel.jcardsim.crypto;
 import javacard.security.CryptoException;
 import javacard.security.RandomData;
 
-import static javacard.security.RandomData.*;
-
 /**
  * ProxyClass for <code>RandomData</code>
  * @see RandomData
@@ -35,20 +33,6 @@ public class RandomDataProxy {
      */
     public static final RandomData getInstance(byte algorithm)
             throws CryptoException {
-        RandomData instance = null;
-        switch (algorithm) {
-            case ALG_PSEUDO_RANDOM: 
-            case ALG_SECURE_RANDOM:
-            case ALG_TRNG:
-            case ALG_PRESEEDED_DRBG:
-            case ALG_FAST:
-            case ALG_KEYGENERATION:
-                instance = new RandomDataImpl(algorithm);
-                break;
-            default:
-                CryptoException.throwIt((short) 3);
-                break;
-        }
-        return instance;
+        return AlgorithmRegistry.RANDOM_DATA.newInstance(algorithm);
     }
 }
@@ -38,76 +38,11 @@ public class SignatureProxy {
      */
     public static final Signature getInstance(byte algorithm, boolean externalAccess)
             throws CryptoException {
-        Signature instance = null;
         //TODO: implement externalAccess logic
 //        if (externalAccess) {
 //            CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
 //        }
-        switch (algorithm) {
-            case Signature.ALG_RSA_SHA_ISO9796:
-            case Signature.ALG_RSA_SHA_PKCS1:
-            case Signature.ALG_RSA_SHA_224_PKCS1:
-            case Signature.ALG_RSA_SHA_256_PKCS1:
-            case Signature.ALG_RSA_SHA_384_PKCS1:
-            case Signature.ALG_RSA_SHA_512_PKCS1:
-            case Signature.ALG_RSA_SHA_PKCS1_PSS:
-            case Signature.ALG_RSA_SHA_224_PKCS1_PSS:
-            case Signature.ALG_RSA_SHA_256_PKCS1_PSS:
-            case Signature.ALG_RSA_SHA_384_PKCS1_PSS:
-            case Signature.ALG_RSA_SHA_512_PKCS1_PSS:
-            case Signature.ALG_RSA_MD5_PKCS1:
-            case Signature.ALG_RSA_RIPEMD160_ISO9796:
-            case Signature.ALG_RSA_RIPEMD160_PKCS1:
-            case Signature.ALG_ECDSA_SHA:
-            case Signature.ALG_ECDSA_SHA_224:
-            case Signature.ALG_ECDSA_SHA_256:
-            case Signature.ALG_ECDSA_SHA_384:
-            case Signature.ALG_ECDSA_SHA_512:
-            case Signature.ALG_RSA_SHA_ISO9796_MR:
-            case Signature.ALG_DSA_SHA:
-            case Signature.ALG_RSA_SHA_RFC2409:
-            case Signature.ALG_RSA_MD5_RFC2409:
-            case Signature.ALG_RSA_MD5_PKCS1_PSS:
-            case Signature.ALG_RSA_RIPEMD160_PKCS1_PSS:
-            case Signature.ALG_RSA_RIPEMD160_ISO9796_MR:
-                System.out.println("getInstance of assymetric algo: " + algorithm);
-                try {
-                    instance = new AsymmetricSignatureImpl(algorithm);
-                    System.out.println("getInstance of assymetric algo: " + algorithm + " is OK!");
-                } catch(Exception e) {
-                    e.printStackTrace();
-                    e.getCause().printStackTrace();
-                    CryptoException.throwIt(CryptoException.INVALID_INIT);
-                }
-                break;
-
-            case Signature.ALG_DES_MAC4_NOPAD:
-            case Signature.ALG_DES_MAC8_NOPAD:
-            case Signature.ALG_DES_MAC4_ISO9797_M1:
-            case Signature.ALG_DES_MAC8_ISO9797_M1:
-            case Signature.ALG_DES_MAC4_ISO9797_M2:
-            case Signature.ALG_DES_MAC8_ISO9797_M2:
-            case Signature.ALG_DES_MAC8_ISO9797_1_M2_ALG3:
-            case Signature.ALG_DES_MAC4_PKCS5:
-            case Signature.ALG_DES_MAC8_PKCS5:
-            case Signature.ALG_AES_MAC_128_NOPAD:
-            case Signature.ALG_HMAC_SHA1:                
-            case Signature.ALG_HMAC_SHA_256:                
-            case Signature.ALG_HMAC_SHA_384:                
-            case Signature.ALG_HMAC_SHA_512:                
-            case Signature.ALG_HMAC_MD5:                
-            case Signature.ALG_HMAC_RIPEMD160:
-            case Signature.ALG_AES_CMAC_128:
-                instance = new SymmetricSignatureImpl(algorithm);
-                break;
-
-            default:
-                CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
-                break;
-
-
-        }
-        return instance;
+        return AlgorithmRegistry.SIGNATURE.newInstance(algorithm);
     }
 
     public static final Signature getInstance(byte messageDigestAlgorithm, byte cipherAlgorithm,
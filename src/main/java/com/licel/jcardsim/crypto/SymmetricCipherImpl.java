@@ -15,6 +15,7 @@
  */
 package com.licel.jcardsim.crypto;
 
+import com.licel.jcardsim.base.FlightRecorderEvents;
 import javacard.framework.*;
 import javacard.security.CryptoException;
 import javacard.security.Key;
@@ -50,6 +51,7 @@ public class SymmetricCipherImpl extends Cipher {
         selectCipherEngine(theKey);
         engine.init(theMode == MODE_ENCRYPT, ((SymmetricKeyImpl) theKey).getParameters());
         isInitialized = true;
+        FlightRecorderEvents.cryptoEvent("Cipher.init", getAlgorithm(), theKey.getSize());
     }
 
     public void init(Key theKey, byte theMode, byte[] bArray, short bOff, short bLen) throws CryptoException {
@@ -75,6 +77,7 @@ public class SymmetricCipherImpl extends Cipher {
         Util.arrayCopyNonAtomic(bArray, bOff, iv, (short) 0, bLen);
         engine.init(theMode == MODE_ENCRYPT, new ParametersWithIV(((SymmetricKeyImpl) theKey).getParameters(), iv));
         isInitialized = true;
+        FlightRecorderEvents.cryptoEvent("Cipher.init", getAlgorithm(), theKey.getSize());
     }
 
     public byte getAlgorithm() {
@@ -82,6 +85,15 @@ public class SymmetricCipherImpl extends Cipher {
     }
 
     public short doFinal(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException {
+        Object event = FlightRecorderEvents.beginCrypto();
+        try {
+            return doFinalInternal(inBuff, inOffset, inLength, outBuff, outOffset);
+        } finally {
+            FlightRecorderEvents.commitCrypto(event, "Cipher.doFinal", getAlgorithm(), inLength);
+        }
+    }
+
+    private short doFinalInternal(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException {
         if (!isInitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
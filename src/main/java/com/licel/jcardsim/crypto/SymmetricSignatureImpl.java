@@ -15,6 +15,8 @@
  */
 package com.licel.jcardsim.crypto;
 
+import com.licel.jcardsim.base.FlightRecorderEvents;
+import com.licel.jcardsim.utils.ByteUtil;
 import javacard.framework.Util;
 import javacard.security.CryptoException;
 import javacard.security.Key;
@@ -51,6 +53,10 @@ public class SymmetricSignatureImpl extends Signature {
     byte cipherAlgorithm;
     byte paddingAlgorithm;
     boolean isInitialized;
+    /**
+     * scratch buffer for the computed MAC in <code>verify</code>
+     */
+    private byte[] macBuffer;
     
     public SymmetricSignatureImpl(byte algorithm) {
         this.algorithm = algorithm;
@@ -184,7 +190,11 @@ public class SymmetricSignatureImpl extends Signature {
                 break;
         }
         engine.init(cipherParams);
+        if (macBuffer == null || macBuffer.length < engine.getMacSize()) {
+            macBuffer = new byte[engine.getMacSize()];
+        }
         isInitialized = true;
+        FlightRecorderEvents.cryptoEvent("Signature.init", getAlgorithm(), theKey.getSize());
     }
     
     public short getLength() throws CryptoException {
@@ -206,6 +216,15 @@ public class SymmetricSignatureImpl extends Signature {
     }
     
     public short sign(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset) throws CryptoException {
+        Object event = FlightRecorderEvents.beginCrypto();
+        try {
+            return doSign(inBuff, inOffset, inLength, sigBuff, sigOffset);
+        } finally {
+            FlightRecorderEvents.commitCrypto(event, "Signature.sign", getAlgorithm(), inLength);
+        }
+    }
+
+    private short doSign(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset) throws CryptoException {
         if (!isInitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
@@ -220,6 +239,15 @@ public class SymmetricSignatureImpl extends Signature {
     }
     
     public boolean verify(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short sigLength) throws CryptoException {
+        Object event = FlightRecorderEvents.beginCrypto();
+        try {
+            return doVerify(inBuff, inOffset, inLength, sigBuff, sigOffset, sigLength);
+        } finally {
+            FlightRecorderEvents.commitCrypto(event, "Signature.verify", getAlgorithm(), inLength);
+        }
+    }
+
+    private boolean doVerify(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short sigLength) throws CryptoException {
         if (!isInitialized) {
             CryptoException.throwIt(CryptoException.INVALID_INIT);
         }
@@ -228,10 +256,12 @@ public class SymmetricSignatureImpl extends Signature {
             CryptoException.throwIt(CryptoException.ILLEGAL_USE);
         }
         engine.update(inBuff, inOffset, inLength);
-        byte[] sig = new byte[getLength()];
-        engine.doFinal(sig, (short) 0);
+        int macLength = engine.doFinal(macBuffer, 0);
         engine.reset();
-        return Util.arrayCompare(sig, (short) 0, sigBuff, sigOffset, (short) sig.length) == 0;
+        boolean result = sigLength == macLength
+                && ByteUtil.constantTimeEquals(macBuffer, 0, sigBuff, sigOffset, macLength);
+        Util.arrayFillNonAtomic(macBuffer, (short) 0, (short) macLength, (byte) 0);
+        return result;
     }
 
     /**
@@ -45,7 +45,8 @@ public class AIDProxy {
             SystemException.throwIt(SystemException.ILLEGAL_VALUE);
         }
         aid = new byte[length];
-        Util.arrayCopy(bArray, offset, aid, (short) 0, length);
+        // System.arraycopy, copies made by the JCRE are no tear points
+        System.arraycopy(bArray, offset, aid, 0, length);
     }
 
     /**
@@ -60,7 +61,7 @@ public class AIDProxy {
 
     public final byte getBytes(byte dest[], short offset)
             throws NullPointerException, ArrayIndexOutOfBoundsException, SecurityException {
-        Util.arrayCopy(aid, (short) 0, dest, offset, (short) aid.length);
+        System.arraycopy(aid, 0, dest, offset, aid.length);
         return (byte) aid.length;
     }
 
@@ -186,7 +187,7 @@ public class AIDProxy {
         if (oLength == 0) {
             copyLen = (short) (aid.length - aidOffset);
         }
-        Util.arrayCopy(aid, aidOffset, dest, oOffset, copyLen);
+        System.arraycopy(aid, aidOffset, dest, oOffset, copyLen);
         return (byte) copyLen;
     }
 }
@@ -16,9 +16,8 @@
 package com.licel.jcardsim.framework;
 
 import com.licel.jcardsim.base.ApduCase;
+import com.licel.jcardsim.base.ApduHeader;
 import com.licel.jcardsim.base.SimulatorSystem;
-import com.licel.jcardsim.utils.ByteUtil;
-import java.lang.reflect.Field;
 import java.util.Arrays;
 import javacard.framework.APDU;
 import javacard.framework.APDUException;
@@ -29,7 +28,7 @@ import javacard.framework.Util;
  * Implementation for <code>APDU</code>
  * @see APDUProxy
  */
-public class APDUProxy {
+public class APDUProxy implements InternalAPDU {
     // buffer size
     private static final short BUFFER_SIZE = 260;
     // buffer size (extended APDU) + (CLA,INS,P1,P2,0,Lc_Hi,Lc_Low,CData,Le_Hi,Le_Lo)
@@ -153,7 +152,7 @@ public class APDUProxy {
      */
     public static byte getProtocol() {
         APDU apdu = SimulatorSystem.instance().getCurrentAPDU();
-        return (byte)((short[])getFieldInternal(apdu,"ramVars"))[ACTIVE_PROTOCOL];
+        return (byte) internal(apdu).ramVars[ACTIVE_PROTOCOL];
     }
 
     /**
@@ -531,7 +530,7 @@ public class APDUProxy {
             throws SecurityException {
         javacard.framework.APDU currentAPDU = SimulatorSystem.instance().getCurrentAPDU();
         
-        if (!((boolean[])getFieldInternal(currentAPDU, "flags"))[ACCESS_ALLOWED_FLAG]) {
+        if (!internal(currentAPDU).flags[ACCESS_ALLOWED_FLAG]) {
             throw new SecurityException("getCurrentAPDU must not be called outside of Applet#process()");
         }
         return currentAPDU;
@@ -573,7 +572,7 @@ public class APDUProxy {
      */
     public static byte getCLAChannel() {
         javacard.framework.APDU apdu = SimulatorSystem.instance().getCurrentAPDU();
-        return (byte)((short[])getFieldInternal(apdu,"ramVars"))[LOGICAL_CHN];
+        return (byte) internal(apdu).ramVars[LOGICAL_CHN];
     }
 
     /**
@@ -594,7 +593,7 @@ public class APDUProxy {
     public static void waitExtension()
             throws APDUException {
         javacard.framework.APDU apdu = SimulatorSystem.instance().getCurrentAPDU();
-        boolean[] apduFlags = (boolean[])getFieldInternal(apdu, "flags");
+        boolean[] apduFlags = internal(apdu).flags;
         if (!apduFlags[ACCESS_ALLOWED_FLAG] || apduFlags[NO_CHAINING_FLAG]) {
             APDUException.throwIt(APDUException.ILLEGAL_USE);
         }
@@ -700,15 +699,25 @@ public class APDUProxy {
 
     /**
      * clear internal state of the APDU
-     * called by SimulatorRuntime via reflection
+     * called by SimulatorRuntime through <code>InternalAPDU</code>
      */
-    private void internalReset(byte protocol, ApduCase apduCase, byte[] inputBuffer) {
+    public void internalReset(byte protocol, ApduCase apduCase, byte[] inputBuffer) {
+        internalReset(protocol, inputBuffer == null ? null : ApduHeader.forCase(apduCase, inputBuffer), inputBuffer);
+    }
+
+    /**
+     * clear internal state of the APDU, Lc and Le are taken from <code>header</code>
+     * called by SimulatorRuntime through <code>InternalAPDU</code>
+     */
+    public void internalReset(byte protocol, ApduHeader header, byte[] inputBuffer) {
         if (inputBuffer == null) {
             flags[ACCESS_ALLOWED_FLAG] = false;
             ramVars[ACTIVE_PROTOCOL] = protocol;
             return;
         }
 
+        // applets may use any part of the buffer as scratch space without
+        // calling an API method, so the whole buffer is cleared
         Arrays.fill(buffer, (byte) 0);
         Arrays.fill(ramVars, (short) 0);
         System.arraycopy(inputBuffer, 0, buffer, 0, inputBuffer.length);
@@ -717,55 +726,17 @@ public class APDUProxy {
         flags[ACCESS_ALLOWED_FLAG] = true;
         ramVars[ACTIVE_PROTOCOL] = protocol;
 
-        final short lc;
-        final short le;
-        switch (apduCase) {
-            case Case2: {
-                lc = (short) 0;
-                final byte leByte = buffer[ISO7816.OFFSET_LC];
-                le = leByte == 0 ? 256 : (short) (0xFF & leByte);
-                break;
-            }
-            case Case2Extended:
-                lc = (short) 0;
-                le = ByteUtil.getShort(buffer, ISO7816.OFFSET_LC + 1);
-                break;
-            case Case3:
-                lc = (short) (0xFF & buffer[ISO7816.OFFSET_LC]);
-                le = (short) 0;
-                break;
-            case Case3Extended:
-                lc = ByteUtil.getShort(buffer, ISO7816.OFFSET_LC + 1);
-                le = (short) 0;
-                break;
-            case Case4: {
-                lc = (short) (0xFF & buffer[ISO7816.OFFSET_LC]);
-                final byte leByte = buffer[ISO7816.OFFSET_CDATA + lc];
-                le = leByte == 0 ? 256 : (short) (0xFF & leByte);
-                break;
-            }
-            case Case4Extended:
-                lc = ByteUtil.getShort(buffer, ISO7816.OFFSET_LC + 1);
-                le = ByteUtil.getShort(buffer, ISO7816.OFFSET_LC + 3 + lc);
-                break;
-            case Case1:
-            default:
-                lc = (short) 0;
-                le = (short) 0;
-                break;
-        }
-        ramVars[LC] = ramVars[REMAINING_BYTES] = lc;
-        ramVars[LE] = le;
+        ramVars[LC] = ramVars[REMAINING_BYTES] = (short) header.getLc();
+        // Ne of 65536 is stored as 0
+        ramVars[LE] = (short) header.getNe();
     }
     
-    private static Object getFieldInternal(APDU apdu, String fieldName){
-        try {
-            Field f = APDU.class.getDeclaredField(fieldName);
-            f.setAccessible(true);
-            return f.get(apdu);
-        } catch (Exception e){
-            throw new RuntimeException("Internal reflection error", e);
-        }
+    /**
+     * Access the private state of another APDU. After <code>JavaCardApiProcessor</code>
+     * merged this class into <code>APDU</code> the cast is a plain <code>APDU</code> cast.
+     */
+    private static APDUProxy internal(APDU apdu) {
+        return (APDUProxy) (Object) apdu;
     }
     
 }
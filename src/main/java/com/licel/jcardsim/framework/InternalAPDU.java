@@ -0,0 +1,44 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.framework;
+
+import com.licel.jcardsim.base.ApduCase;
+import com.licel.jcardsim.base.ApduHeader;
+
+/**
+ * Runtime access to the internal state of <code>javacard.framework.APDU</code>.
+ *
+ * <p>Implemented by <code>APDUProxy</code>; <code>JavaCardApiProcessor</code>
+ * adds this interface to <code>APDU</code> when it merges the proxy, so the
+ * runtime calls it without reflection. Not for use by applets.</p>
+ */
+public interface InternalAPDU {
+    /**
+     * Prepare the APDU for a command, or end processing of the current command
+     * @param protocol active protocol
+     * @param apduCase case of <code>inputBuffer</code>
+     * @param inputBuffer command APDU, null after processing
+     */
+    void internalReset(byte protocol, ApduCase apduCase, byte[] inputBuffer);
+
+    /**
+     * Prepare the APDU for a command which is already parsed, or end processing of the current command
+     * @param protocol active protocol
+     * @param header header of <code>inputBuffer</code>
+     * @param inputBuffer command APDU, null after processing
+     */
+    void internalReset(byte protocol, ApduHeader header, byte[] inputBuffer);
+}
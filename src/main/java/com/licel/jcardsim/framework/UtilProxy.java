@@ -15,6 +15,7 @@
  */
 package com.licel.jcardsim.framework;
 
+import com.licel.jcardsim.base.SimulatorSystem;
 import javacard.framework.TransactionException;
 
 /**
@@ -29,7 +30,8 @@ public class UtilProxy {
      * <p>
      * Note:
      * <ul>
-     * <li><em>!!! CHECK <b>Current implementation use <code>System.arraycopy</code> method and no supported transactions !</b> !!!</em></li>
+     * <li><em>!!! CHECK <b>Current implementation use <code>System.arraycopy</code> method, inside a transaction
+     *    the old contents of a persistent destination are logged for rollback !</b> !!!</em></li>
      * <li><em>If </em><code>srcOff</code><em> or </em><code>destOff</code><em> or </em><code>length</code><em> parameter
      *    is negative an </em><code>ArrayIndexOutOfBoundsException</code><em> exception is thrown.</em></li>
      * <li><em>If </em><code>srcOff+length</code><em> is greater than </em><code>src.length</code><em>, the length
@@ -63,6 +65,10 @@ public class UtilProxy {
      */
     public static final short arrayCopy(byte src[], short srcOff, byte dest[], short destOff, short length)
             throws ArrayIndexOutOfBoundsException, NullPointerException, TransactionException {
+        if (srcOff < 0 || length < 0 || srcOff + length > src.length) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        SimulatorSystem.logArrayWrite(dest, destOff, length);
         System.arraycopy(src, srcOff, dest, destOff, length);
         return (short) (destOff + length);
     }
@@ -109,6 +115,7 @@ public class UtilProxy {
      */
     public static final short arrayCopyNonAtomic(byte src[], short srcOff, byte dest[], short destOff, short length)
             throws ArrayIndexOutOfBoundsException, NullPointerException {
+        SimulatorSystem.logNonAtomicWrite(dest);
         System.arraycopy(src, srcOff, dest, destOff, length);
         return (short) (destOff + length);
     }
@@ -146,6 +153,7 @@ public class UtilProxy {
         if (bLen < 0) {
             throw new ArrayIndexOutOfBoundsException();
         }
+        SimulatorSystem.logNonAtomicWrite(bArray);
         while (bLen > 0) {
             bArray[bOff++] = bValue;
             bLen--;
@@ -242,6 +250,7 @@ public class UtilProxy {
      */
     public static final short setShort(byte bArray[], short bOff, short sValue)
             throws TransactionException, ArrayIndexOutOfBoundsException, NullPointerException {
+        SimulatorSystem.logArrayWrite(bArray, bOff, (short) 2);
         bArray[bOff] = (byte) (sValue >> 8);
         bArray[bOff + 1] = (byte) sValue;
         return (short) (bOff + 2);
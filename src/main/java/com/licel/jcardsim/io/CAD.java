@@ -16,7 +16,10 @@
 package com.licel.jcardsim.io;
 
 import com.licel.jcardsim.base.Simulator;
+import com.licel.jcardsim.base.SimulatorRuntime;
+import com.licel.jcardsim.remote.CardTemplate;
 import com.licel.jcardsim.remote.JavaCardRemoteClient;
+import com.licel.jcardsim.remote.JavaCardSocketClient;
 import java.util.Properties;
 
 /**
@@ -29,14 +32,31 @@ public class CAD {
     public final static byte INTERNAL = 0;
     public final static byte RMI = 1;
     public final static byte JAVAX_SMARTCARDIO = 2;
+    /**
+     * <code>JavaCardSocketServer</code> client, connects to the Unix domain socket
+     * <code>com.licel.jcardsim.terminal.socket</code> if set, otherwise to
+     * <code>com.licel.jcardsim.terminal.host</code> and <code>com.licel.jcardsim.terminal.port</code>.
+     * <code>com.licel.jcardsim.terminal.card</code> selects a card of the server.
+     */
+    public final static byte SOCKET = 3;
     byte interfaceType;
     CardInterface cardInterface;
 
     public CAD(Properties params) {
+        this(params, false);
+    }
+
+    /**
+     * Create a CAD
+     * @param params configuration, <code>com.licel.jcardsim.terminal.type</code> selects the card interface
+     * @param ownRuntime if true, simulated cards get their own <code>SimulatorRuntime</code>
+     * and their applets are pre-installed from <code>params</code> instead of the system properties
+     */
+    public CAD(Properties params, boolean ownRuntime) {
         byte type = Byte.parseByte(params.getProperty("com.licel.jcardsim.terminal.type", Byte.toString(INTERNAL)));
         switch (type) {
             case INTERNAL:
-                cardInterface = new Simulator();
+                cardInterface = ownRuntime ? new CardTemplate(params).newCard() : new Simulator();
                 break;
             case RMI:
                 try {
@@ -47,8 +67,26 @@ public class CAD {
                     throw new RuntimeException("RMI CardInterface init error", e);
                 }
                 break;
+            case SOCKET:
+                try {
+                    String socketPath = params.getProperty("com.licel.jcardsim.terminal.socket");
+                    JavaCardSocketClient client;
+                    if (socketPath != null) {
+                        client = JavaCardSocketClient.connectUnixDomainSocket(socketPath);
+                    } else {
+                        String host = params.getProperty("com.licel.jcardsim.terminal.host");
+                        int port = Integer.parseInt(params.getProperty("com.licel.jcardsim.terminal.port"));
+                        client = new JavaCardSocketClient(host, port);
+                    }
+                    String cardName = params.getProperty("com.licel.jcardsim.terminal.card");
+                    cardInterface = cardName == null ? client : client.forCard(cardName);
+                } catch (Exception e) {
+                    throw new RuntimeException("Socket CardInterface init error", e);
+                }
+                break;
             case JAVAX_SMARTCARDIO:
-                cardInterface = new JavaxSmartCardInterface();
+                cardInterface = ownRuntime ? new JavaxSmartCardInterface(new SimulatorRuntime(), params)
+                        : new JavaxSmartCardInterface();
                 break;
             default:
                 throw new IllegalArgumentException("Unknown CAD type: " + type);
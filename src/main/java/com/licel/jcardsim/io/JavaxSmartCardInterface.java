@@ -15,9 +15,12 @@
  */
 package com.licel.jcardsim.io;
 
+import com.licel.jcardsim.base.ApduCase;
+import com.licel.jcardsim.base.ApduHeader;
 import com.licel.jcardsim.base.Simulator;
 import com.licel.jcardsim.base.SimulatorRuntime;
 
+import java.util.Properties;
 import javax.smartcardio.CommandAPDU;
 import javax.smartcardio.ResponseAPDU;
 
@@ -55,11 +58,48 @@ public class JavaxSmartCardInterface extends Simulator {
     }
 
     /**
-     * Wrapper for transmitCommand(byte[])
+     * Create a JavaxSmartCardInterface object using a provided Runtime and
+     * pre-installing the applets configured in <code>properties</code>.
+     *
+     * @param runtime SimulatorRuntime instance to use
+     * @param properties configuration with <code>com.licel.jcardsim.card.applet.N.*</code> entries
+     * @throws java.lang.NullPointerException if <code>runtime</code> is null
+     */
+    public JavaxSmartCardInterface(SimulatorRuntime runtime, Properties properties) {
+        super(runtime, properties);
+    }
+
+    /**
+     * Wrapper for transmitCommand(byte[], ApduHeader), the header is taken
+     * from <code>commandApdu</code> instead of parsing the command again
      * @param commandApdu CommandAPDU
      * @return ResponseAPDU
      */
     public ResponseAPDU transmitCommand(CommandAPDU commandApdu) {
-        return new ResponseAPDU(transmitCommand(commandApdu.getBytes()));
+        byte[] command = commandApdu.getBytes();
+        return new ResponseAPDU(transmitCommand(command, header(commandApdu, command)));
+    }
+
+    /**
+     * Take case and length fields from a parsed command, so the runtime
+     * does not parse it again
+     * @param commandApdu CommandAPDU
+     * @param command bytes of <code>commandApdu</code>
+     * @return header of <code>commandApdu</code>
+     */
+    protected static ApduHeader header(CommandAPDU commandApdu, byte[] command) {
+        final int nc = commandApdu.getNc();
+        final int ne = commandApdu.getNe();
+        // a CommandAPDU created from bytes keeps their encoding, even for small values
+        final boolean extended = command.length > 5 && command[4] == 0;
+        final ApduCase apduCase;
+        if (nc == 0) {
+            apduCase = ne == 0 ? ApduCase.Case1 : extended ? ApduCase.Case2Extended : ApduCase.Case2;
+        } else if (ne == 0) {
+            apduCase = extended ? ApduCase.Case3Extended : ApduCase.Case3;
+        } else {
+            apduCase = extended ? ApduCase.Case4Extended : ApduCase.Case4;
+        }
+        return new ApduHeader(apduCase, nc, ne);
     }
 }
@@ -43,6 +43,18 @@ public class BixVReaderCard {
         driverProtocol.connect(host, port, event_port);
         startThread(driverProtocol);
     }
+
+    /**
+     * Connect over Unix domain sockets, requires Java 16 or later
+     * @param socketPath data socket file
+     * @param eventSocketPath event socket file
+     * @throws IOException if connecting fails
+     */
+    public BixVReaderCard(String socketPath, String eventSocketPath) throws IOException {
+        BixVReaderTCPProtocol driverProtocol = new BixVReaderTCPProtocol();
+        driverProtocol.connect(socketPath, eventSocketPath);
+        startThread(driverProtocol);
+    }
     
     static public void main(String args[]) throws Exception {
         if (args.length !=1) {
@@ -70,8 +82,18 @@ public class BixVReaderCard {
         }
         
         String host = System.getProperty("com.licel.jcardsim.bixvreader.host");
+        String socketPath = System.getProperty(BixVReaderTCPProtocol.SOCKET_PATH_PROPERTY);
         
-        if (host != null) {
+        if (socketPath != null) {
+            String propKey = BixVReaderTCPProtocol.EVENT_SOCKET_PATH_PROPERTY;
+            String eventSocketPath = System.getProperty(propKey);
+
+            if(eventSocketPath == null) {
+                throw new InvalidParameterException("Missing value for property: " + propKey);
+            }
+
+            BixVReaderCard server = new BixVReaderCard(socketPath, eventSocketPath);
+        } else if (host != null) {
             String propKey = "com.licel.jcardsim.bixvreader.port";
             String port = System.getProperty(propKey);
             
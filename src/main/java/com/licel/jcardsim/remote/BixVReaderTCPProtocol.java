@@ -18,35 +18,56 @@
 
 package com.licel.jcardsim.remote;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-
-import java.net.Socket;
-
-import java.util.Formatter;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.TimeUnit;
 
 public class BixVReaderTCPProtocol implements BixVReaderProtocol {
-    private Socket           socket;
-    private Socket           eventSocket;
-    private DataInputStream  dataInput;
-    private DataOutputStream dataOutput;
-    private DataOutputStream eventOutput;
+    static final String PROPERTY_PREFIX = "com.licel.jcardsim.bixvreader";
+    static final String SOCKET_PATH_PROPERTY = "com.licel.jcardsim.bixvreader.socket";
+    static final String EVENT_SOCKET_PATH_PROPERTY = "com.licel.jcardsim.bixvreader.esocket";
+
+    private SocketChannel    socket;
+    private SocketChannel    eventSocket;
+    private FrameCodec       dataCodec;
+    private FrameCodec       eventCodec;
 
     public void connect(String host, int port, int event_port) throws IOException {
-        socket = new Socket(host, port);
+        connect(host, port, event_port, SocketConfiguration.fromProperties(System.getProperties(), PROPERTY_PREFIX));
+    }
+
+    public void connect(String host, int port, int event_port, SocketConfiguration configuration) throws IOException {
+        socket = open(host, port, configuration);
 
         try {
             TimeUnit.SECONDS.sleep(3);
         } catch (InterruptedException ignore) {}
 
-        eventSocket = new Socket(host, event_port);
-        dataInput   = new DataInputStream(socket.getInputStream());
-        dataOutput  = new DataOutputStream(socket.getOutputStream());
-        eventOutput = new DataOutputStream(eventSocket.getOutputStream());
+        eventSocket = open(host, event_port, configuration);
+        createCodecs();
+    }
+
+    /**
+     * Connect over Unix domain sockets, requires Java 16 or later
+     * @param socketPath data socket file
+     * @param eventSocketPath event socket file
+     * @throws IOException if connecting fails or Unix domain sockets are not supported
+     */
+    public void connect(String socketPath, String eventSocketPath) throws IOException {
+        socket = UnixDomainSockets.openClient(socketPath);
+        try {
+            eventSocket = UnixDomainSockets.openClient(eventSocketPath);
+        } catch (IOException e) {
+            closeSocket(socket);
+            throw e;
+        }
+        createCodecs();
+    }
+
+    private void createCodecs() {
+        dataCodec   = new FrameCodec(socket, socket, FrameCodec.Header.INT32_LITTLE_ENDIAN);
+        eventCodec  = new FrameCodec(eventSocket, eventSocket, FrameCodec.Header.INT32_LITTLE_ENDIAN);
     }
 
     public void disconnect() {
@@ -55,84 +76,47 @@ public class BixVReaderTCPProtocol implements BixVReaderProtocol {
     }
 
     public int readCommand() throws IOException {
-        byte[] cmdBuf = new byte[4];
-
-        readFully(cmdBuf, dataInput);
-
-        int cmd = cmdFromBytes(cmdBuf);
-
-        return cmd;
+        return dataCodec.readHeader();
     }
 
+    /**
+     * @return data, valid until the next call
+     * @throws IOException if the connection fails
+     */
     public byte[] readData() throws IOException {
-        int    dataLen = readCommand();
-        byte[] dataBuf = new byte[dataLen];
-
-        readFully(dataBuf, dataInput);
-
-        return dataBuf;
+        return dataCodec.readPayload(dataCodec.readHeader());
     }
     
     public void writeData(byte[] data) throws IOException {
-        byte[] dataBuf = new byte[4 + data.length];
-        byte[] dataLen = cmdToBytes(data.length);
-
-        System.arraycopy(dataLen, 0, dataBuf, 0, 4);
-        System.arraycopy(data, 0, dataBuf, 4, data.length);
-        dataOutput.write(dataBuf);
+        dataCodec.writeFrame(data);
     }
 
     public void writeDataCommand(int cmd) throws IOException {
-        writeCommand(dataOutput, cmd);
+        dataCodec.writeHeader(cmd);
     }
 
     public void writeEventCommand(int cmd) throws IOException {
-        writeCommand(eventOutput, cmd);
+        eventCodec.writeHeader(cmd);
     }
-    
-    private static String bytesToHex(byte[] bytes) {
-        Formatter formatter = new Formatter();
 
-        for (byte b : bytes) {
-            formatter.format("%02X ", b);
+    private static SocketChannel open(String host, int port, SocketConfiguration configuration) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            configuration.apply(channel);
+            channel.connect(new InetSocketAddress(host, port));
+        } catch (IOException e) {
+            closeSocket(channel);
+            throw e;
         }
-
-        return formatter.toString();
+        return channel;
     }
 
-    private void closeSocket(Socket sock) {
+    private static void closeSocket(SocketChannel sock) {
+        if (sock == null) {
+            return;
+        }
         try {
             sock.close();
         } catch (IOException ignored) {}
     }
-
-    private int cmdFromBytes(byte[] cmd) {
-        return cmd[0] & 0xFF | (cmd[1] & 0xFF) << 8 | (cmd[2] & 0xFF) << 16 | (cmd[3] & 0xFF) << 24;
-    }
-
-    private byte[] cmdToBytes(int cmd) {
-        return new byte[] { (byte) (cmd), (byte) (cmd >>> 8), (byte) (cmd >>> 16), (byte) (cmd >>> 24) };
-    }
-    
-    private void readFully(byte[] buf, InputStream stream) throws IOException {
-        int len    = buf.length;
-        int offset = 0;
-
-        while (len > 0) {
-            int retval = stream.read(buf, offset, len);
-
-            if (retval < 0) {
-                throw new IOException("Got negative number from socket");
-            }
-
-            len    -= retval;
-            offset += retval;
-        }
-    }
-
-    private void writeCommand(OutputStream stream, int cmd) throws IOException {
-        byte[] buf = cmdToBytes(cmd);
-
-        stream.write(buf, 0, buf.length);
-    }
 }
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import com.licel.jcardsim.base.Simulator;
+import com.licel.jcardsim.io.JavaCardInterface;
+import javacard.framework.AID;
+import javacard.framework.SystemException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many independent cards in one process, keyed by card id.
+ *
+ * <p>Cards are created from named {@link CardTemplate}s, each with its own
+ * <code>SimulatorRuntime</code>, and managed with the lifecycle methods
+ * {@link #createCard}, {@link #cloneCard}, {@link #resetCard} and
+ * {@link #destroyCard}. Cards created elsewhere can be added with
+ * {@link #putCard}, but cannot be cloned or reset.</p>
+ */
+public class CardRegistry {
+    /** Name of the template used when none is given */
+    public static final String DEFAULT_TEMPLATE = "default";
+
+    private final Map<String, CardTemplate> templates = new ConcurrentHashMap<String, CardTemplate>();
+    private final Map<String, JavaCardInterface> cards = new ConcurrentHashMap<String, JavaCardInterface>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Register a template
+     * @param name template name
+     * @param template template
+     */
+    public void addTemplate(String name, CardTemplate template) {
+        if (name == null) {
+            throw new NullPointerException("name");
+        }
+        if (template == null) {
+            throw new NullPointerException("template");
+        }
+        templates.put(name, template);
+    }
+
+    /**
+     * @param name template name
+     * @return template or <code>null</code>
+     */
+    public CardTemplate getTemplate(String name) {
+        return templates.get(name);
+    }
+
+    /**
+     * Create a card from a template
+     * @param templateName template name, <code>null</code> for {@link #DEFAULT_TEMPLATE}
+     * @return id of the new card
+     * @throws IllegalArgumentException if there is no such template
+     */
+    public String createCard(String templateName) {
+        String name = templateName == null ? DEFAULT_TEMPLATE : templateName;
+        CardTemplate template = templates.get(name);
+        if (template == null) {
+            throw new IllegalArgumentException("No such template: " + name);
+        }
+        String id = newId();
+        cards.put(id, new ManagedCard(template));
+        return id;
+    }
+
+    /**
+     * Create a card from a template with a given id, replacing any card with that id
+     * @param id card id
+     * @param templateName template name, <code>null</code> for {@link #DEFAULT_TEMPLATE}
+     * @throws IllegalArgumentException if there is no such template
+     */
+    public void createCard(String id, String templateName) {
+        if (id == null) {
+            throw new NullPointerException("id");
+        }
+        String name = templateName == null ? DEFAULT_TEMPLATE : templateName;
+        CardTemplate template = templates.get(name);
+        if (template == null) {
+            throw new IllegalArgumentException("No such template: " + name);
+        }
+        cards.put(id, new ManagedCard(template));
+    }
+
+    /**
+     * Create a card from the template of an existing card and repeat the
+     * applet loads and installs made through the registry. Applet data is
+     * not copied.
+     * @param id id of the card to clone
+     * @return id of the new card
+     * @throws IllegalArgumentException if there is no such card or it was not created from a template
+     */
+    public String cloneCard(String id) {
+        ManagedCard copy = managedCard(id).copy();
+        String cloneId = newId();
+        cards.put(cloneId, copy);
+        return cloneId;
+    }
+
+    /**
+     * Replace a card with a fresh card from its template. Applets installed
+     * after creation are removed.
+     * @param id card id
+     * @throws IllegalArgumentException if there is no such card or it was not created from a template
+     */
+    public void resetCard(String id) {
+        managedCard(id).recreate();
+    }
+
+    /**
+     * Remove a card
+     * @param id card id
+     * @return true if the card existed
+     */
+    public boolean destroyCard(String id) {
+        return cards.remove(id) != null;
+    }
+
+    /**
+     * Add a card created elsewhere
+     * @param id card id
+     * @param card card
+     */
+    public void putCard(String id, JavaCardInterface card) {
+        if (id == null) {
+            throw new NullPointerException("id");
+        }
+        if (card == null) {
+            throw new NullPointerException("card");
+        }
+        cards.put(id, card);
+    }
+
+    /**
+     * @param id card id
+     * @return card or <code>null</code>
+     */
+    public JavaCardInterface getCard(String id) {
+        return cards.get(id);
+    }
+
+    /**
+     * @return ids of all cards
+     */
+    public Set<String> getCardIds() {
+        return Collections.unmodifiableSet(cards.keySet());
+    }
+
+    private String newId() {
+        String id;
+        do {
+            id = "card-" + nextId.incrementAndGet();
+        } while (cards.containsKey(id));
+        return id;
+    }
+
+    private ManagedCard managedCard(String id) {
+        JavaCardInterface card = cards.get(id);
+        if (card == null) {
+            throw new IllegalArgumentException("No such card: " + id);
+        }
+        if (!(card instanceof ManagedCard)) {
+            throw new IllegalArgumentException("Card was not created from a template: " + id);
+        }
+        return (ManagedCard) card;
+    }
+
+    /**
+     * Card created from a template. Remembers applet loads and installs so
+     * that they can be repeated on a clone.
+     */
+    static final class ManagedCard implements JavaCardInterface {
+        private final CardTemplate template;
+        private final List<InstallStep> steps;
+        private volatile Simulator sim;
+
+        ManagedCard(CardTemplate template) {
+            this(template, new ArrayList<InstallStep>());
+        }
+
+        private ManagedCard(CardTemplate template, List<InstallStep> steps) {
+            this.template = template;
+            this.steps = steps;
+            this.sim = template.newCard();
+            for (InstallStep step : steps) {
+                step.apply(sim);
+            }
+        }
+
+        synchronized ManagedCard copy() {
+            return new ManagedCard(template, new ArrayList<InstallStep>(steps));
+        }
+
+        synchronized void recreate() {
+            steps.clear();
+            sim = template.newCard();
+        }
+
+        private synchronized <T> T record(InstallStep step) {
+            @SuppressWarnings("unchecked")
+            T result = (T) step.apply(sim);
+            steps.add(step);
+            return result;
+        }
+
+        public AID loadApplet(final AID aid, final String appletClassName) throws SystemException {
+            return record(new InstallStep() {
+                Object apply(Simulator target) {
+                    return target.loadApplet(aid, appletClassName);
+                }
+            });
+        }
+
+        public AID loadApplet(final AID aid, final String appletClassName, final byte[] appletJarContents) throws SystemException {
+            return record(new InstallStep() {
+                Object apply(Simulator target) {
+                    return target.loadApplet(aid, appletClassName, appletJarContents);
+                }
+            });
+        }
+
+        public AID createApplet(final AID aid, byte[] bArray, short bOffset, final byte bLength) throws SystemException {
+            final byte[] parameters = bArray == null ? null : new byte[bLength];
+            if (bArray != null) {
+                System.arraycopy(bArray, bOffset, parameters, 0, bLength);
+            }
+            return record(new InstallStep() {
+                Object apply(Simulator target) {
+                    return target.createApplet(aid, parameters, (short) 0, bLength);
+                }
+            });
+        }
+
+        public AID installApplet(AID aid, String appletClassName, byte[] bArray, short bOffset, byte bLength) throws SystemException {
+            return createApplet(loadApplet(aid, appletClassName), bArray, bOffset, bLength);
+        }
+
+        public AID installApplet(AID aid, String appletClassName, byte[] appletJarContents, byte[] bArray, short bOffset, byte bLength) throws SystemException {
+            return createApplet(loadApplet(aid, appletClassName, appletJarContents), bArray, bOffset, bLength);
+        }
+
+        public boolean selectApplet(AID aid) {
+            return sim.selectApplet(aid);
+        }
+
+        public byte[] selectAppletWithResult(AID aid) {
+            return sim.selectAppletWithResult(aid);
+        }
+
+        public byte[] transmitCommand(byte[] data) {
+            return sim.transmitCommand(data);
+        }
+
+        public void reset() {
+            sim.reset();
+        }
+
+        public byte[] getATR() {
+            return sim.getATR();
+        }
+
+        public void changeProtocol(String protocol) {
+            sim.changeProtocol(protocol);
+        }
+
+        public String getProtocol() {
+            return sim.getProtocol();
+        }
+    }
+
+    /**
+     * Applet load or install, repeated on clones
+     */
+    abstract static class InstallStep {
+        abstract Object apply(Simulator target);
+    }
+}
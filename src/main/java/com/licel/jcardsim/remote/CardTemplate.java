@@ -0,0 +1,97 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import com.licel.jcardsim.base.Simulator;
+import com.licel.jcardsim.base.SimulatorRuntime;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Configuration from which cards of a {@link CardRegistry} are created:
+ * the ATR (<code>com.licel.jcardsim.card.ATR</code>) and the pre-installed
+ * applets (<code>com.licel.jcardsim.card.applet.N.AID</code> and
+ * <code>com.licel.jcardsim.card.applet.N.Class</code>).
+ */
+public final class CardTemplate {
+    private final byte[] atr;
+    private final Properties properties;
+
+    /**
+     * Create a template from configuration properties, the properties are copied
+     * @param properties properties, e.g. <code>System.getProperties()</code>
+     */
+    public CardTemplate(Properties properties) {
+        if (properties == null) {
+            throw new NullPointerException("properties");
+        }
+        this.properties = new Properties();
+        for (String name : properties.stringPropertyNames()) {
+            this.properties.setProperty(name, properties.getProperty(name));
+        }
+        this.atr = Hex.decode(this.properties.getProperty(Simulator.ATR_SYSTEM_PROPERTY, Simulator.DEFAULT_ATR));
+    }
+
+    /**
+     * Load a template from a jcardsim configuration file
+     * @param fileName configuration file
+     * @return new template
+     * @throws IOException if reading the file fails
+     */
+    public static CardTemplate load(String fileName) throws IOException {
+        Properties cfg = new Properties();
+        InputStream in = new FileInputStream(fileName);
+        try {
+            cfg.load(in);
+        } finally {
+            in.close();
+        }
+        return new CardTemplate(cfg);
+    }
+
+    /**
+     * @return ATR of the cards created from this template
+     */
+    public byte[] getATR() {
+        return atr.clone();
+    }
+
+    /**
+     * Create a new card with its own runtime
+     * @return new card with the applets of this template loaded
+     */
+    public Simulator newCard() {
+        return new TemplateSimulator(new SimulatorRuntime(), properties, atr);
+    }
+
+    private static final class TemplateSimulator extends Simulator {
+        private final byte[] atr;
+
+        TemplateSimulator(SimulatorRuntime runtime, Properties properties, byte[] atr) {
+            super(runtime, properties);
+            this.atr = atr;
+        }
+
+        @Override
+        public byte[] getATR() {
+            return atr.clone();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Length-prefixed framing over NIO channels, shared by the vpcd and
+ * BixVReader protocols.
+ *
+ * <p>Frames are written with one gathering write of header and payload,
+ * without copying the payload. Received payloads are read into an array
+ * which is reused while the frame length stays the same. The array
+ * returned by {@link #readPayload(int)} is therefore only valid until the
+ * next read.</p>
+ *
+ * <p>Instances are not thread-safe, but the read and write side do not
+ * share state: one thread may read while another one writes.</p>
+ */
+public final class FrameCodec {
+    /**
+     * Layout of the length prefix
+     */
+    public enum Header {
+        /** 2 byte unsigned, big endian (vpcd) */
+        UINT16_BIG_ENDIAN(2, ByteOrder.BIG_ENDIAN),
+        /** 4 byte signed, little endian (BixVReader) */
+        INT32_LITTLE_ENDIAN(4, ByteOrder.LITTLE_ENDIAN),
+        /** 4 byte signed, big endian (JavaCardSocketServer) */
+        INT32_BIG_ENDIAN(4, ByteOrder.BIG_ENDIAN);
+
+        final int size;
+        final ByteOrder order;
+
+        Header(int size, ByteOrder order) {
+            this.size = size;
+            this.order = order;
+        }
+    }
+
+    private final ReadableByteChannel input;
+    private final GatheringByteChannel output;
+    private final Header header;
+    private final ByteBuffer headerIn;
+    private final ByteBuffer headerOut;
+    private final ByteBuffer singleByte = ByteBuffer.allocate(1);
+    private final ByteBuffer[] frame = new ByteBuffer[2];
+    private byte[] payload = new byte[0];
+    private ByteBuffer payloadIn = ByteBuffer.wrap(payload);
+
+    /**
+     * @param input channel frames are read from
+     * @param output channel frames are written to
+     * @param header layout of the length prefix
+     */
+    public FrameCodec(ReadableByteChannel input, GatheringByteChannel output, Header header) {
+        if (input == null) {
+            throw new NullPointerException("input");
+        }
+        if (output == null) {
+            throw new NullPointerException("output");
+        }
+        if (header == null) {
+            throw new NullPointerException("header");
+        }
+        this.input = input;
+        this.output = output;
+        this.header = header;
+        this.headerIn = ByteBuffer.allocate(header.size).order(header.order);
+        this.headerOut = ByteBuffer.allocate(header.size).order(header.order);
+        this.frame[0] = headerOut;
+    }
+
+    /**
+     * Read a length prefix
+     * @return value of the prefix
+     * @throws IOException if the channel fails or reaches end of stream
+     */
+    public int readHeader() throws IOException {
+        ((Buffer) headerIn).clear();
+        readFully(headerIn);
+        if (header == Header.UINT16_BIG_ENDIAN) {
+            return headerIn.getShort(0) & 0xFFFF;
+        }
+        return headerIn.getInt(0);
+    }
+
+    /**
+     * Read a single byte
+     * @return signed byte value
+     * @throws IOException if the channel fails or reaches end of stream
+     */
+    public byte readByte() throws IOException {
+        ((Buffer) singleByte).clear();
+        readFully(singleByte);
+        return singleByte.get(0);
+    }
+
+    /**
+     * Read a payload
+     * @param length payload length, usually obtained by <code>readHeader()</code>
+     * @return array of exactly <code>length</code> bytes, valid until the next read
+     * @throws IOException if the channel fails or reaches end of stream
+     */
+    public byte[] readPayload(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        if (payload.length != length) {
+            payload = new byte[length];
+            payloadIn = ByteBuffer.wrap(payload);
+        }
+        ((Buffer) payloadIn).clear();
+        readFully(payloadIn);
+        return payload;
+    }
+
+    /**
+     * Write a length prefix without payload
+     * @param value value of the prefix
+     * @throws IOException if the channel fails
+     */
+    public void writeHeader(int value) throws IOException {
+        fillHeader(value);
+        writeFully(headerOut);
+    }
+
+    /**
+     * Write a length prefix followed by <code>data</code>
+     * @param data payload
+     * @throws IOException if the channel fails
+     * @throws IllegalArgumentException if the payload is too long for the header
+     */
+    public void writeFrame(byte[] data) throws IOException {
+        writeFrame(data, 0, data.length);
+    }
+
+    /**
+     * Write a length prefix followed by a range of <code>data</code>
+     * @param data payload buffer
+     * @param offset payload offset
+     * @param length payload length
+     * @throws IOException if the channel fails
+     * @throws IllegalArgumentException if the payload is too long for the header
+     */
+    public void writeFrame(byte[] data, int offset, int length) throws IOException {
+        if (header == Header.UINT16_BIG_ENDIAN && length > 0xFFFF) {
+            throw new IllegalArgumentException("Frame too long: " + length);
+        }
+        fillHeader(length);
+        ByteBuffer body = ByteBuffer.wrap(data, offset, length);
+        frame[1] = body;
+        try {
+            while (headerOut.hasRemaining() || body.hasRemaining()) {
+                output.write(frame);
+            }
+        } finally {
+            frame[1] = null;
+        }
+    }
+
+    private void fillHeader(int value) {
+        ((Buffer) headerOut).clear();
+        if (header == Header.UINT16_BIG_ENDIAN) {
+            headerOut.putShort(0, (short) value);
+        } else {
+            headerOut.putInt(0, value);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (input.read(buffer) < 0) {
+                throw new EOFException("Got negative number from channel");
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            output.write(buffer);
+        }
+    }
+}
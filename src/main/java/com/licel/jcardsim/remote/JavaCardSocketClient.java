@@ -0,0 +1,525 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import com.licel.jcardsim.io.JavaCardInterface;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javacard.framework.AID;
+import javacard.framework.SystemException;
+
+/**
+ * Client of {@link JavaCardSocketServer} and {@link SharedMemoryCardServer}.
+ *
+ * <p>The synchronous <code>JavaCardInterface</code> methods behave like those
+ * of <code>JavaCardRemoteClient</code>. The asynchronous variants return
+ * immediately, so several commands can be in flight on one connection.
+ * Clients for other cards of the same server share the connection, see
+ * {@link #forCard(String)}. Instances are thread-safe.</p>
+ */
+public class JavaCardSocketClient implements JavaCardInterface, Closeable {
+    private static final Logger LOGGER = Logger.getLogger(JavaCardSocketClient.class.getName());
+
+    private final Connection connection;
+    private final String cardName;
+
+    /**
+     * Connect to the default card of a TCP server
+     * @param serverHost server host
+     * @param serverPort server port
+     * @throws IOException if connecting fails
+     */
+    public JavaCardSocketClient(String serverHost, int serverPort) throws IOException {
+        this(new SocketConnection(openTcp(serverHost, serverPort)), JavaCardSocketServer.DEFAULT_CARD);
+    }
+
+    private JavaCardSocketClient(Connection connection, String cardName) {
+        if (cardName == null) {
+            throw new NullPointerException("cardName");
+        }
+        this.connection = connection;
+        this.cardName = cardName;
+    }
+
+    /**
+     * Connect to the default card of a Unix domain socket server, requires Java 16 or later
+     * @param path socket file
+     * @return new client
+     * @throws IOException if connecting fails or Unix domain sockets are not supported
+     */
+    public static JavaCardSocketClient connectUnixDomainSocket(String path) throws IOException {
+        return new JavaCardSocketClient(new SocketConnection(UnixDomainSockets.openClient(path)), JavaCardSocketServer.DEFAULT_CARD);
+    }
+
+    /**
+     * Connect to the default card of a <code>SharedMemoryCardServer</code>.
+     * Requests run synchronously in the calling thread, the asynchronous
+     * methods return completed futures. Requests fail if the server process
+     * stops its heartbeat for five seconds.
+     * @param path shared file of the server
+     * @param waitStrategy how to wait for responses
+     * @return new client
+     * @throws IOException if the file is not served by a <code>SharedMemoryCardServer</code>
+     */
+    public static JavaCardSocketClient connectSharedMemory(String path, SharedMemoryCardServer.WaitStrategy waitStrategy) throws IOException {
+        return new JavaCardSocketClient(new SharedMemoryConnection(new File(path), waitStrategy), JavaCardSocketServer.DEFAULT_CARD);
+    }
+
+    private static SocketChannel openTcp(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            SocketConfiguration.fromProperties(System.getProperties(), "com.licel.jcardsim.terminal").apply(channel);
+            channel.connect(new InetSocketAddress(host, port));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * @param name card name on the server
+     * @return client for another card which shares this connection
+     */
+    public JavaCardSocketClient forCard(String name) {
+        return new JavaCardSocketClient(connection, name);
+    }
+
+    /**
+     * Create a card on the server from a template of its <code>CardRegistry</code>
+     * @param templateName template name
+     * @return client for the new card, sharing this connection
+     * @throws IllegalArgumentException if there is no such template
+     */
+    public JavaCardSocketClient createCard(String templateName) {
+        RemoteProtocol.MessageWriter request = connection.begin(RemoteProtocol.CREATE_CARD, templateName);
+        return forCard(await(connection.send(request, new StringResponse())));
+    }
+
+    /**
+     * Clone this card, see <code>CardRegistry#cloneCard</code>
+     * @return client for the clone, sharing this connection
+     * @throws IllegalArgumentException if the card was not created from a template
+     */
+    public JavaCardSocketClient cloneCard() {
+        RemoteProtocol.MessageWriter request = connection.begin(RemoteProtocol.CLONE_CARD, cardName);
+        return forCard(await(connection.send(request, new StringResponse())));
+    }
+
+    /**
+     * Replace this card with a fresh card from its template, see <code>CardRegistry#resetCard</code>
+     * @throws IllegalArgumentException if the card was not created from a template
+     */
+    public void resetCard() {
+        await(connection.send(connection.begin(RemoteProtocol.RESET_CARD, cardName), new VoidResponse()));
+    }
+
+    /**
+     * Remove this card from the server
+     * @return true if the card existed
+     */
+    public boolean destroyCard() {
+        return await(connection.send(connection.begin(RemoteProtocol.DESTROY_CARD, cardName), new BooleanResponse()));
+    }
+
+    /**
+     * @return name of the card this client talks to
+     */
+    public String getCardName() {
+        return cardName;
+    }
+
+    /**
+     * Close the connection, shared by all clients created with <code>forCard</code>.
+     * Pending requests fail.
+     */
+    public void close() {
+        connection.close(new IOException("Connection closed"));
+    }
+
+    /**
+     * Send a command without waiting for the response
+     * @param data command APDU
+     * @return response APDU
+     */
+    public Future<byte[]> transmitCommandAsync(byte[] data) {
+        RemoteProtocol.MessageWriter request = connection.begin(RemoteProtocol.TRANSMIT, cardName);
+        request.putBytes(data);
+        return connection.send(request, new Response<byte[]>() {
+            byte[] decode(ByteBuffer in) {
+                return RemoteProtocol.getBytes(in);
+            }
+        });
+    }
+
+    /**
+     * Send several commands in one request without waiting for the responses
+     * @param commands command APDUs
+     * @return response APDUs, in the same order
+     */
+    public Future<byte[][]> transmitCommandsAsync(byte[]... commands) {
+        RemoteProtocol.MessageWriter request = connection.begin(RemoteProtocol.TRANSMIT_BATCH, cardName);
+        request.putInt(commands.length);
+        for (byte[] command : commands) {
+            request.putBytes(command);
+        }
+        return connection.send(request, new Response<byte[][]>() {
+            byte[][] decode(ByteBuffer in) {
+                byte[][] responses = new byte[in.getInt()][];
+                for (int i = 0; i < responses.length; i++) {
+                    responses[i] = RemoteProtocol.getBytes(in);
+                }
+                return responses;
+            }
+        });
+    }
+
+    /**
+     * Send several commands in one request
+     * @param commands command APDUs
+     * @return response APDUs, in the same order
+     */
+    public byte[][] transmitCommands(byte[]... commands) {
+        return await(transmitCommandsAsync(commands));
+    }
+
+    public byte[] transmitCommand(byte[] data) {
+        return await(transmitCommandAsync(data));
+    }
+
+    public AID loadApplet(AID aid, String appletClassName) throws SystemException {
+        return loadApplet(aid, appletClassName, null);
+    }
+
+    public AID loadApplet(AID aid, String appletClassName, byte[] appletJarContents) throws SystemException {
+        RemoteProtocol.MessageWriter request = connection.begin(RemoteProtocol.LOAD_APPLET, cardName);
+        request.putAID(aid).putString(appletClassName).putBytes(appletJarContents);
+        return await(connection.send(request, new AIDResponse()));
+    }
+
+    public AID createApplet(AID aid, byte[] bArray, short bOffset, byte bLength) throws SystemException {
+        RemoteProtocol.MessageWriter request = connection.begin(RemoteProtocol.CREATE_APPLET, cardName);
+        request.putAID(aid).putBytes(bArray).putShort(bOffset).putByte(bLength);
+        return await(connection.send(request, new AIDResponse()));
+    }
+
+    public AID installApplet(AID aid, String appletClassName, byte[] bArray, short bOffset, byte bLength) throws SystemException {
+        return createApplet(loadApplet(aid, appletClassName), bArray, bOffset, bLength);
+    }
+
+    public AID installApplet(AID aid, String appletClassName, byte[] appletJarContents, byte[] bArray, short bOffset, byte bLength) throws SystemException {
+        return createApplet(loadApplet(aid, appletClassName, appletJarContents), bArray, bOffset, bLength);
+    }
+
+    public boolean selectApplet(AID aid) {
+        RemoteProtocol.MessageWriter request = connection.begin(RemoteProtocol.SELECT_APPLET, cardName);
+        request.putAID(aid);
+        return await(connection.send(request, new BooleanResponse()));
+    }
+
+    public byte[] selectAppletWithResult(AID aid) {
+        RemoteProtocol.MessageWriter request = connection.begin(RemoteProtocol.SELECT_APPLET_WITH_RESULT, cardName);
+        request.putAID(aid);
+        return await(connection.send(request, new BytesResponse()));
+    }
+
+    public byte[] getATR() {
+        return await(connection.send(connection.begin(RemoteProtocol.GET_ATR, cardName), new BytesResponse()));
+    }
+
+    public void reset() {
+        await(connection.send(connection.begin(RemoteProtocol.RESET, cardName), new VoidResponse()));
+    }
+
+    public void changeProtocol(String protocol) {
+        RemoteProtocol.MessageWriter request = connection.begin(RemoteProtocol.CHANGE_PROTOCOL, cardName);
+        request.putString(protocol);
+        await(connection.send(request, new VoidResponse()));
+    }
+
+    public String getProtocol() {
+        return await(connection.send(connection.begin(RemoteProtocol.GET_PROTOCOL, cardName), new StringResponse()));
+    }
+
+    /**
+     * Wait for a response, rethrowing card exceptions like <code>JavaCardRemoteClient</code>
+     */
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SystemException) {
+                throw (SystemException) e.getCause();
+            }
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            LOGGER.log(Level.FINE, "request failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        SystemException.throwIt(SystemException.NO_RESOURCE);
+        return null;
+    }
+
+    /**
+     * Pending response of one request
+     * @param <T> decoded result
+     */
+    abstract static class Response<T> implements Future<T> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile T value;
+        private volatile Throwable failure;
+
+        /**
+         * Decode a successful result
+         * @param in payload after the status byte
+         * @return result
+         */
+        abstract T decode(ByteBuffer in);
+
+        void complete(ByteBuffer in) {
+            try {
+                byte status = in.get();
+                switch (status) {
+                    case RemoteProtocol.STATUS_OK:
+                        value = decode(in);
+                        break;
+                    case RemoteProtocol.STATUS_SYSTEM_EXCEPTION:
+                        failure = new SystemException(in.getShort());
+                        break;
+                    case RemoteProtocol.STATUS_ILLEGAL_ARGUMENT:
+                        failure = new IllegalArgumentException(RemoteProtocol.getString(in));
+                        break;
+                    default:
+                        failure = new IOException(RemoteProtocol.getString(in));
+                        break;
+                }
+            } catch (RuntimeException e) {
+                // e.g. BufferUnderflowException, or SystemException for an invalid AID length
+                failure = new IOException("Malformed response", e);
+            }
+            done.countDown();
+        }
+
+        void fail(Throwable cause) {
+            failure = cause;
+            done.countDown();
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        public T get() throws InterruptedException, ExecutionException {
+            done.await();
+            return result();
+        }
+
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return result();
+        }
+
+        private T result() throws ExecutionException {
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return value;
+        }
+    }
+
+    static final class BytesResponse extends Response<byte[]> {
+        byte[] decode(ByteBuffer in) {
+            return RemoteProtocol.getBytes(in);
+        }
+    }
+
+    static final class StringResponse extends Response<String> {
+        String decode(ByteBuffer in) {
+            return RemoteProtocol.getString(in);
+        }
+    }
+
+    static final class BooleanResponse extends Response<Boolean> {
+        Boolean decode(ByteBuffer in) {
+            return in.get() != 0;
+        }
+    }
+
+    static final class AIDResponse extends Response<AID> {
+        AID decode(ByteBuffer in) {
+            return RemoteProtocol.getAID(in);
+        }
+    }
+
+    static final class VoidResponse extends Response<Void> {
+        Void decode(ByteBuffer in) {
+            return null;
+        }
+    }
+
+    /**
+     * Transport shared by all card clients of one server
+     */
+    abstract static class Connection {
+        /**
+         * Start a request, the id is filled in by <code>send</code>
+         */
+        RemoteProtocol.MessageWriter begin(byte op, String cardName) {
+            RemoteProtocol.MessageWriter request = new RemoteProtocol.MessageWriter();
+            request.putInt(0).putByte(op).putString(cardName);
+            return request;
+        }
+
+        /**
+         * Send a request started with <code>begin</code>
+         * @param request request
+         * @param response completed when the response arrives
+         * @return <code>response</code>
+         */
+        abstract <T> Future<T> send(RemoteProtocol.MessageWriter request, Response<T> response);
+
+        /**
+         * Close the transport, pending requests fail with <code>cause</code>
+         */
+        abstract void close(IOException cause);
+
+        static void putId(RemoteProtocol.MessageWriter request, int id) {
+            byte[] buffer = request.array();
+            buffer[0] = (byte) (id >>> 24);
+            buffer[1] = (byte) (id >>> 16);
+            buffer[2] = (byte) (id >>> 8);
+            buffer[3] = (byte) id;
+        }
+    }
+
+    /**
+     * One socket shared by all card clients. Writes are serialized by a
+     * lock, a reader thread completes the pending responses.
+     */
+    static final class SocketConnection extends Connection {
+        private final SocketChannel channel;
+        private final FrameCodec codec;
+        private final Map<Integer, Response<?>> pending = new ConcurrentHashMap<Integer, Response<?>>();
+        private final AtomicInteger nextId = new AtomicInteger();
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private volatile IOException closed;
+
+        SocketConnection(SocketChannel channel) {
+            this.channel = channel;
+            this.codec = new FrameCodec(channel, channel, FrameCodec.Header.INT32_BIG_ENDIAN);
+            Thread reader = new Thread(new Runnable() {
+                public void run() {
+                    readLoop();
+                }
+            }, "jCardSim socket client");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        <T> Future<T> send(RemoteProtocol.MessageWriter request, Response<T> response) {
+            writeLock.lock();
+            try {
+                if (closed != null) {
+                    response.fail(closed);
+                    return response;
+                }
+                int id = nextId.incrementAndGet();
+                putId(request, id);
+                pending.put(id, response);
+                try {
+                    codec.writeFrame(request.array(), 0, request.length());
+                } catch (IOException e) {
+                    pending.remove(id);
+                    response.fail(e);
+                    close(e);
+                }
+                return response;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private void readLoop() {
+            try {
+                while (true) {
+                    int length = codec.readHeader();
+                    if (length < 5 || length > RemoteProtocol.MAX_FRAME_SIZE) {
+                        throw new IOException("Invalid frame length: " + length);
+                    }
+                    // the payload array is reused by the codec
+                    ByteBuffer frame = ByteBuffer.wrap(Arrays.copyOf(codec.readPayload(length), length));
+                    Response<?> response = pending.remove(frame.getInt());
+                    if (response != null) {
+                        response.complete(frame);
+                    }
+                }
+            } catch (IOException e) {
+                close(e);
+            } catch (Throwable e) {
+                // pending callers must not wait for a reader that is gone
+                close(new IOException("Socket client reader failed", e));
+            }
+        }
+
+        void close(IOException cause) {
+            if (closed == null) {
+                closed = cause;
+            }
+            try {
+                // unblocks a writer holding the lock
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            writeLock.lock();
+            try {
+                for (Response<?> response : pending.values()) {
+                    response.fail(closed);
+                }
+                pending.clear();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import com.licel.jcardsim.io.JavaCardInterface;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Binary protocol server, an alternative to the RMI based <code>JavaCardRemoteServer</code>.
+ *
+ * <p>The server hosts any number of named cards. Clients connect over TCP
+ * or, on Java 16 and later, a Unix domain socket and use
+ * {@link JavaCardSocketClient}. Cards are kept in a {@link CardRegistry},
+ * clients may create, clone, reset and destroy cards from its templates.
+ * Requests are pipelined: each connection
+ * reads and executes requests in order while the client keeps sending.</p>
+ *
+ * <p>Usage from the command line:
+ * <code>java com.licel.jcardsim.remote.JavaCardSocketServer &lt;jcardsim.cfg&gt;</code>
+ * listens on <code>com.licel.jcardsim.terminal.socket</code> (Unix domain socket path)
+ * if set, otherwise on <code>com.licel.jcardsim.terminal.host</code> and
+ * <code>com.licel.jcardsim.terminal.port</code>, and serves one card named
+ * {@link #DEFAULT_CARD}. The configuration is also registered as the
+ * {@link CardRegistry#DEFAULT_TEMPLATE} template, further templates can be
+ * given as <code>name=file</code> arguments.</p>
+ *
+ * @see RemoteProtocol
+ */
+public class JavaCardSocketServer implements Closeable {
+    /** name of the card used by clients which do not specify one */
+    public static final String DEFAULT_CARD = "";
+    static final String SOCKET_PATH_PROPERTY = "com.licel.jcardsim.terminal.socket";
+
+    private static final Logger LOGGER = Logger.getLogger(JavaCardSocketServer.class.getName());
+
+    private final ServerSocketChannel serverChannel;
+    private final String socketPath;
+    // identifies the socket file bound by this server
+    private final Object socketFileKey;
+    private final CardRegistry registry;
+    private final RequestHandler handler;
+    private final Set<SocketChannel> connections
+            = Collections.newSetFromMap(new ConcurrentHashMap<SocketChannel, Boolean>());
+    private volatile boolean running;
+    private Thread acceptThread;
+
+    /**
+     * Create a TCP server
+     * @param address local address, port 0 picks a free port
+     * @throws IOException if binding fails
+     */
+    public JavaCardSocketServer(InetSocketAddress address) throws IOException {
+        this(address, new CardRegistry());
+    }
+
+    /**
+     * Create a TCP server for the cards of a registry
+     * @param address local address, port 0 picks a free port
+     * @param registry cards to serve
+     * @throws IOException if binding fails
+     */
+    public JavaCardSocketServer(InetSocketAddress address, CardRegistry registry) throws IOException {
+        this(bindTcp(address), null, null, registry);
+    }
+
+    private JavaCardSocketServer(ServerSocketChannel serverChannel, String socketPath, Object socketFileKey,
+                                 CardRegistry registry) {
+        if (registry == null) {
+            throw new NullPointerException("registry");
+        }
+        this.serverChannel = serverChannel;
+        this.socketPath = socketPath;
+        this.socketFileKey = socketFileKey;
+        this.registry = registry;
+        this.handler = new RequestHandler(registry);
+    }
+
+    /**
+     * Create a Unix domain socket server, requires Java 16 or later
+     * @param path socket file, a stale socket file is replaced
+     * @return new server
+     * @throws IOException if binding fails, <code>path</code> exists and is no socket
+     * or Unix domain sockets are not supported
+     */
+    public static JavaCardSocketServer bindUnixDomainSocket(String path) throws IOException {
+        return bindUnixDomainSocket(path, new CardRegistry());
+    }
+
+    /**
+     * Create a Unix domain socket server for the cards of a registry, requires Java 16 or later
+     * @param path socket file, a stale socket file is replaced
+     * @param registry cards to serve
+     * @return new server
+     * @throws IOException if binding fails, <code>path</code> exists and is no socket
+     * or Unix domain sockets are not supported
+     */
+    public static JavaCardSocketServer bindUnixDomainSocket(String path, CardRegistry registry) throws IOException {
+        ServerSocketChannel channel = UnixDomainSockets.openServer(path);
+        Object socketFileKey;
+        try {
+            socketFileKey = UnixDomainSockets.socketFileKey(path);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new JavaCardSocketServer(channel, path, socketFileKey, registry);
+    }
+
+    private static ServerSocketChannel bindTcp(InetSocketAddress address) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.bind(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    static public void main(String args[]) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java com.licel.jcardsim.remote.JavaCardSocketServer <jcardsim.cfg> [<template>=<template.cfg> ...]");
+            System.exit(-1);
+        }
+        Properties cfg = new Properties();
+        // init Simulator
+        FileInputStream fis = null;
+        try {
+            fis = new FileInputStream(args[0]);
+            cfg.load(fis);
+        } catch (Throwable t) {
+            System.err.println("Unable to load configuration " + args[0] + " due to: " + t.getMessage());
+            System.exit(-1);
+        } finally {
+            if (fis != null) {
+                fis.close();
+            }
+        }
+
+        Enumeration keys = cfg.propertyNames();
+        while(keys.hasMoreElements()) {
+            String propertyName = (String) keys.nextElement();
+            System.setProperty(propertyName, cfg.getProperty(propertyName));
+        }
+
+        CardRegistry registry = new CardRegistry();
+        registry.addTemplate(CardRegistry.DEFAULT_TEMPLATE, new CardTemplate(System.getProperties()));
+        for (int i = 1; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            if (separator <= 0) {
+                System.err.println("Invalid template argument: " + args[i]);
+                System.exit(-1);
+            }
+            registry.addTemplate(args[i].substring(0, separator), CardTemplate.load(args[i].substring(separator + 1)));
+        }
+
+        JavaCardSocketServer server;
+        String socketPath = System.getProperty(SOCKET_PATH_PROPERTY);
+        if (socketPath != null) {
+            server = bindUnixDomainSocket(socketPath, registry);
+        } else {
+            String serverHost = System.getProperty("com.licel.jcardsim.terminal.host");
+            if(serverHost == null) {
+                System.err.println("Invalid configuration: missing 'com.licel.jcardsim.terminal.host' property");
+                System.exit(-1);
+            }
+            String serverPort = System.getProperty("com.licel.jcardsim.terminal.port");
+            if(serverPort == null) {
+                System.err.println("Invalid configuration: missing 'com.licel.jcardsim.terminal.port' property");
+                System.exit(-1);
+            }
+            server = new JavaCardSocketServer(new InetSocketAddress(serverHost, Integer.parseInt(serverPort)), registry);
+        }
+        registry.createCard(DEFAULT_CARD, CardRegistry.DEFAULT_TEMPLATE);
+        server.start();
+        System.out.println("Listening on " + server.getLocalAddress());
+    }
+
+    /**
+     * Make a card available to clients
+     * @param name card name
+     * @param card card, usually a <code>Simulator</code>
+     */
+    public void addCard(String name, JavaCardInterface card) {
+        if (name == null) {
+            throw new NullPointerException("name");
+        }
+        if (card == null) {
+            throw new NullPointerException("card");
+        }
+        registry.putCard(name, card);
+    }
+
+    /**
+     * @param name card name
+     * @return removed card or null
+     */
+    public JavaCardInterface removeCard(String name) {
+        JavaCardInterface card = registry.getCard(name);
+        return registry.destroyCard(name) ? card : null;
+    }
+
+    /**
+     * @param name card name
+     * @return card or null
+     */
+    public JavaCardInterface getCard(String name) {
+        return registry.getCard(name);
+    }
+
+    /**
+     * @return registry holding the cards of this server
+     */
+    public CardRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return bound address
+     * @throws IOException if the server is closed
+     */
+    public SocketAddress getLocalAddress() throws IOException {
+        return serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Start accepting connections
+     * @throws IllegalStateException if the server is already started
+     */
+    public synchronized void start() {
+        if (acceptThread != null) {
+            throw new IllegalStateException("already started");
+        }
+        running = true;
+        acceptThread = new Thread(new Runnable() {
+            public void run() {
+                acceptLoop();
+            }
+        }, "jCardSim socket server");
+        acceptThread.start();
+    }
+
+    /**
+     * Stop accepting connections and close all open connections
+     */
+    public void close() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+        }
+        for (SocketChannel connection : connections) {
+            closeQuietly(connection);
+        }
+        if (socketPath != null) {
+            try {
+                UnixDomainSockets.deleteSocket(socketPath, socketFileKey);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to remove " + socketPath, e);
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            final SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (AsynchronousCloseException e) {
+                break;
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.log(Level.SEVERE, "accept failed", e);
+                }
+                break;
+            }
+            connections.add(channel);
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        serve(channel);
+                    } finally {
+                        connections.remove(channel);
+                        closeQuietly(channel);
+                    }
+                }
+            }, "jCardSim socket connection");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        FrameCodec codec = new FrameCodec(channel, channel, FrameCodec.Header.INT32_BIG_ENDIAN);
+        RemoteProtocol.MessageWriter out = new RemoteProtocol.MessageWriter();
+        try {
+            while (running) {
+                int length = codec.readHeader();
+                if (length < 5 || length > RemoteProtocol.MAX_FRAME_SIZE) {
+                    throw new IOException("Invalid frame length: " + length);
+                }
+                ByteBuffer request = ByteBuffer.wrap(codec.readPayload(length));
+                int id = request.getInt();
+                out.reset();
+                out.putInt(id);
+                handler.handle(request, out);
+                codec.writeFrame(out.array(), 0, out.length());
+            }
+        } catch (EOFException e) {
+            // client disconnected
+        } catch (AsynchronousCloseException e) {
+            // server closed
+        } catch (IOException e) {
+            if (running) {
+                LOGGER.log(Level.WARNING, "connection failed", e);
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Single producer, single consumer queue of messages in a region of a
+ * memory mapped file.
+ *
+ * <p>The region starts with the head (next write position, owned by the
+ * producer) and the tail (next read position, owned by the consumer) on
+ * separate cache lines, followed by the data area. Positions grow
+ * monotonically, a message is a 4 byte length followed by the payload and
+ * may wrap around the end of the data area.</p>
+ *
+ * <p><code>MappedByteBuffer</code> has no ordered accessors before Java 9.
+ * The payload is published by a volatile write before the head is stored
+ * and read after a volatile read that follows the head load, which keeps
+ * HotSpot from reordering payload and position accesses.</p>
+ */
+final class MappedRingBuffer {
+    /** size of the head and tail fields in front of the data area */
+    static final int HEADER_SIZE = 128;
+    private static final int HEAD = 0;
+    private static final int TAIL = 64;
+
+    /** always 0, only accessed for its ordering effects */
+    private static volatile long fence;
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer data;
+    private final int capacity;
+    private final int mask;
+    private final byte[] lengthBytes = new byte[4];
+    private byte[] message = new byte[256];
+    // each side caches the position it owns
+    private long head;
+    private long tail;
+
+    /**
+     * @param region <code>HEADER_SIZE + capacity</code> bytes, starting at position 0
+     * @param capacity size of the data area, a power of two
+     */
+    MappedRingBuffer(ByteBuffer region, int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        if (region.capacity() < HEADER_SIZE + capacity) {
+            throw new IllegalArgumentException("region too small");
+        }
+        this.buffer = region;
+        ((Buffer) region).position(HEADER_SIZE);
+        ((Buffer) region).limit(HEADER_SIZE + capacity);
+        this.data = region.slice();
+        ((Buffer) region).clear();
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.head = region.getLong(HEAD);
+        this.tail = region.getLong(TAIL);
+    }
+
+    /**
+     * @return largest payload that fits into the queue
+     */
+    int maxMessageSize() {
+        return capacity - 4;
+    }
+
+    /**
+     * Append a message, called by the producer only
+     * @param src payload
+     * @param offset offset in <code>src</code>
+     * @param length payload length, at most <code>maxMessageSize()</code>
+     * @return false if the queue is too full
+     */
+    boolean offer(byte[] src, int offset, int length) {
+        if (length < 0 || length > maxMessageSize()) {
+            throw new IllegalArgumentException("Message too large: " + length);
+        }
+        long consumed = acquire(buffer.getLong(TAIL));
+        if (head + 4 + length - consumed > capacity) {
+            return false;
+        }
+        lengthBytes[0] = (byte) (length >>> 24);
+        lengthBytes[1] = (byte) (length >>> 16);
+        lengthBytes[2] = (byte) (length >>> 8);
+        lengthBytes[3] = (byte) length;
+        copyIn(head, lengthBytes, 0, 4);
+        copyIn(head + 4, src, offset, length);
+        head += 4 + length;
+        release();
+        buffer.putLong(HEAD, head);
+        return true;
+    }
+
+    /**
+     * Remove the next message, called by the consumer only
+     * @return payload, valid until the next call, or null if the queue is empty
+     * @throws IllegalStateException if the queue is corrupt
+     */
+    ByteBuffer poll() {
+        long published = acquire(buffer.getLong(HEAD));
+        if (published == tail) {
+            return null;
+        }
+        copyOut(tail, lengthBytes, 0, 4);
+        int length = ((lengthBytes[0] & 0xFF) << 24) | ((lengthBytes[1] & 0xFF) << 16)
+                | ((lengthBytes[2] & 0xFF) << 8) | (lengthBytes[3] & 0xFF);
+        if (length < 0 || length > published - tail - 4) {
+            throw new IllegalStateException("Corrupt message length: " + length);
+        }
+        if (message.length < length) {
+            message = new byte[Math.max(length, message.length * 2)];
+        }
+        copyOut(tail + 4, message, 0, length);
+        tail += 4 + length;
+        release();
+        buffer.putLong(TAIL, tail);
+        return ByteBuffer.wrap(message, 0, length);
+    }
+
+    /**
+     * Drop all published messages, called by the consumer only
+     */
+    void drain() {
+        tail = acquire(buffer.getLong(HEAD));
+        release();
+        buffer.putLong(TAIL, tail);
+    }
+
+    /**
+     * Volatile read after a position load, later accesses are not moved before it
+     */
+    private static long acquire(long position) {
+        return position + fence;
+    }
+
+    /**
+     * Volatile write before a position store, earlier accesses are not moved after it
+     */
+    private static void release() {
+        fence = 0;
+    }
+
+    private void copyIn(long position, byte[] src, int offset, int length) {
+        int index = (int) (position & mask);
+        int first = Math.min(length, capacity - index);
+        ((Buffer) data).position(index);
+        data.put(src, offset, first);
+        if (first < length) {
+            ((Buffer) data).position(0);
+            data.put(src, offset + first, length - first);
+        }
+    }
+
+    private void copyOut(long position, byte[] dst, int offset, int length) {
+        int index = (int) (position & mask);
+        int first = Math.min(length, capacity - index);
+        ((Buffer) data).position(index);
+        data.get(dst, offset, first);
+        if (first < length) {
+            ((Buffer) data).position(0);
+            data.get(dst, offset + first, length - first);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import java.nio.BufferUnderflowException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import javacard.framework.AID;
+
+/**
+ * Wire format of <code>JavaCardSocketServer</code> and <code>JavaCardSocketClient</code>.
+ *
+ * <p>Every message is a frame with a 4 byte big endian length prefix.
+ * A request is <code>id:int op:byte card:string arguments</code>, a response is
+ * <code>id:int status:byte result</code>. Requests are answered in the order
+ * they are received, so a client may send any number of requests before
+ * reading the responses.</p>
+ *
+ * <p>Encodings: <code>string</code> is an unsigned short length followed by
+ * UTF-8 bytes; <code>bytes</code> is an int length (-1 for null) followed by
+ * the data; <code>aid</code> is a length byte (-1 for null) followed by the
+ * AID bytes.</p>
+ */
+final class RemoteProtocol {
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    /** upper bound for frames, protects against corrupt length prefixes */
+    static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    // operations
+    /** aid, class name, jar bytes (may be null) -&gt; aid */
+    static final byte LOAD_APPLET = 1;
+    /** aid, parameters bytes, offset short, length byte -&gt; aid */
+    static final byte CREATE_APPLET = 2;
+    /** aid -&gt; boolean byte */
+    static final byte SELECT_APPLET = 3;
+    /** aid -&gt; bytes */
+    static final byte SELECT_APPLET_WITH_RESULT = 4;
+    /** bytes -&gt; bytes */
+    static final byte TRANSMIT = 5;
+    /** count int, bytes... -&gt; count int, bytes... */
+    static final byte TRANSMIT_BATCH = 6;
+    /** -&gt; nothing */
+    static final byte RESET = 7;
+    /** -&gt; bytes */
+    static final byte GET_ATR = 8;
+    /** string -&gt; nothing */
+    static final byte CHANGE_PROTOCOL = 9;
+    /** -&gt; string */
+    static final byte GET_PROTOCOL = 10;
+
+    // card lifecycle, the card name field holds the template name or card id
+    /** template name -&gt; card id string */
+    static final byte CREATE_CARD = 11;
+    /** card id -&gt; card id string of the clone */
+    static final byte CLONE_CARD = 12;
+    /** card id -&gt; nothing */
+    static final byte RESET_CARD = 13;
+    /** card id -&gt; boolean byte, false if there was no such card */
+    static final byte DESTROY_CARD = 14;
+
+    // response status
+    static final byte STATUS_OK = 0;
+    /** reason short */
+    static final byte STATUS_SYSTEM_EXCEPTION = 1;
+    /** message string */
+    static final byte STATUS_ILLEGAL_ARGUMENT = 2;
+    /** message string */
+    static final byte STATUS_NO_SUCH_CARD = 3;
+    /** message string */
+    static final byte STATUS_ERROR = 4;
+
+    private RemoteProtocol() {}
+
+    static byte[] getBytes(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] data = new byte[length];
+        in.get(data);
+        return data;
+    }
+
+    static String getString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF8);
+        ((Buffer) in).position(in.position() + length);
+        return value;
+    }
+
+    static AID getAID(ByteBuffer in) {
+        byte length = in.get();
+        if (length == -1) {
+            return null;
+        }
+        byte[] aid = new byte[length];
+        in.get(aid);
+        return new AID(aid, (short) 0, length);
+    }
+
+    /**
+     * Growable output buffer for one message
+     */
+    static final class MessageWriter {
+        private byte[] buffer = new byte[256];
+        private int length;
+
+        void reset() {
+            length = 0;
+        }
+
+        /**
+         * Drop everything after the first <code>newLength</code> bytes
+         */
+        void truncate(int newLength) {
+            if (newLength < 0 || newLength > length) {
+                throw new IllegalArgumentException("newLength");
+            }
+            length = newLength;
+        }
+
+        byte[] array() {
+            return buffer;
+        }
+
+        int length() {
+            return length;
+        }
+
+        MessageWriter putByte(int value) {
+            ensure(1);
+            buffer[length++] = (byte) value;
+            return this;
+        }
+
+        MessageWriter putShort(int value) {
+            ensure(2);
+            buffer[length++] = (byte) (value >>> 8);
+            buffer[length++] = (byte) value;
+            return this;
+        }
+
+        MessageWriter putInt(int value) {
+            ensure(4);
+            buffer[length++] = (byte) (value >>> 24);
+            buffer[length++] = (byte) (value >>> 16);
+            buffer[length++] = (byte) (value >>> 8);
+            buffer[length++] = (byte) value;
+            return this;
+        }
+
+        MessageWriter putBytes(byte[] data) {
+            if (data == null) {
+                return putInt(-1);
+            }
+            putInt(data.length);
+            ensure(data.length);
+            System.arraycopy(data, 0, buffer, length, data.length);
+            length += data.length;
+            return this;
+        }
+
+        MessageWriter putString(String value) {
+            byte[] data = value.getBytes(UTF8);
+            if (data.length > 0xFFFF) {
+                throw new IllegalArgumentException("String too long");
+            }
+            putShort(data.length);
+            ensure(data.length);
+            System.arraycopy(data, 0, buffer, length, data.length);
+            length += data.length;
+            return this;
+        }
+
+        MessageWriter putAID(AID aid) {
+            if (aid == null) {
+                return putByte(-1);
+            }
+            ensure(17);
+            byte aidLength = aid.getBytes(buffer, (short) (length + 1));
+            buffer[length] = aidLength;
+            length += 1 + aidLength;
+            return this;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import com.licel.jcardsim.io.JavaCardInterface;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javacard.framework.AID;
+import javacard.framework.SystemException;
+
+/**
+ * Executes <code>RemoteProtocol</code> requests against the cards of a
+ * {@link CardRegistry}, shared by the socket and shared memory servers.
+ */
+final class RequestHandler {
+    private static final Logger LOGGER = Logger.getLogger(RequestHandler.class.getName());
+
+    private final CardRegistry registry;
+
+    RequestHandler(CardRegistry registry) {
+        if (registry == null) {
+            throw new NullPointerException("registry");
+        }
+        this.registry = registry;
+    }
+
+    /**
+     * Execute one request
+     * @param request request after the id
+     * @param out response, the id is already written
+     */
+    void handle(ByteBuffer request, RemoteProtocol.MessageWriter out) {
+        int start = out.length();
+        try {
+            byte op = request.get();
+            String name = RemoteProtocol.getString(request);
+            if (op >= RemoteProtocol.CREATE_CARD) {
+                manage(op, name, out);
+                return;
+            }
+            JavaCardInterface card = registry.getCard(name);
+            if (card == null) {
+                out.putByte(RemoteProtocol.STATUS_NO_SUCH_CARD).putString("No such card: " + name);
+                return;
+            }
+            out.putByte(RemoteProtocol.STATUS_OK);
+            execute(card, op, request, out);
+        } catch (SystemException e) {
+            out.truncate(start);
+            out.putByte(RemoteProtocol.STATUS_SYSTEM_EXCEPTION).putShort(e.getReason());
+        } catch (IllegalArgumentException e) {
+            failed(out, start, RemoteProtocol.STATUS_ILLEGAL_ARGUMENT, e);
+        } catch (BufferUnderflowException e) {
+            failed(out, start, RemoteProtocol.STATUS_ERROR, e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "request failed", e);
+            failed(out, start, RemoteProtocol.STATUS_ERROR, e);
+        }
+    }
+
+    private void manage(byte op, String name, RemoteProtocol.MessageWriter out) {
+        switch (op) {
+            case RemoteProtocol.CREATE_CARD:
+                out.putByte(RemoteProtocol.STATUS_OK).putString(registry.createCard(name));
+                break;
+            case RemoteProtocol.CLONE_CARD:
+                out.putByte(RemoteProtocol.STATUS_OK).putString(registry.cloneCard(name));
+                break;
+            case RemoteProtocol.RESET_CARD:
+                registry.resetCard(name);
+                out.putByte(RemoteProtocol.STATUS_OK);
+                break;
+            case RemoteProtocol.DESTROY_CARD:
+                out.putByte(RemoteProtocol.STATUS_OK).putByte(registry.destroyCard(name) ? 1 : 0);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + op);
+        }
+    }
+
+    private void execute(JavaCardInterface card, byte op, ByteBuffer in, RemoteProtocol.MessageWriter out) {
+        switch (op) {
+            case RemoteProtocol.LOAD_APPLET: {
+                AID aid = RemoteProtocol.getAID(in);
+                String className = RemoteProtocol.getString(in);
+                byte[] jar = RemoteProtocol.getBytes(in);
+                out.putAID(jar == null ? card.loadApplet(aid, className) : card.loadApplet(aid, className, jar));
+                break;
+            }
+            case RemoteProtocol.CREATE_APPLET: {
+                AID aid = RemoteProtocol.getAID(in);
+                byte[] bArray = RemoteProtocol.getBytes(in);
+                short bOffset = in.getShort();
+                byte bLength = in.get();
+                out.putAID(card.createApplet(aid, bArray, bOffset, bLength));
+                break;
+            }
+            case RemoteProtocol.SELECT_APPLET:
+                out.putByte(card.selectApplet(RemoteProtocol.getAID(in)) ? 1 : 0);
+                break;
+            case RemoteProtocol.SELECT_APPLET_WITH_RESULT:
+                out.putBytes(card.selectAppletWithResult(RemoteProtocol.getAID(in)));
+                break;
+            case RemoteProtocol.TRANSMIT:
+                out.putBytes(card.transmitCommand(RemoteProtocol.getBytes(in)));
+                break;
+            case RemoteProtocol.TRANSMIT_BATCH: {
+                int count = in.getInt();
+                if (count < 0 || count > in.remaining() / 4) {
+                    throw new BufferUnderflowException();
+                }
+                out.putInt(count);
+                for (int i = 0; i < count; i++) {
+                    out.putBytes(card.transmitCommand(RemoteProtocol.getBytes(in)));
+                }
+                break;
+            }
+            case RemoteProtocol.RESET:
+                card.reset();
+                break;
+            case RemoteProtocol.GET_ATR:
+                out.putBytes(card.getATR());
+                break;
+            case RemoteProtocol.CHANGE_PROTOCOL:
+                card.changeProtocol(RemoteProtocol.getString(in));
+                break;
+            case RemoteProtocol.GET_PROTOCOL:
+                out.putString(card.getProtocol());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + op);
+        }
+    }
+
+    private static void failed(RemoteProtocol.MessageWriter out, int start, byte status, Exception e) {
+        out.truncate(start);
+        out.putByte(status).putString(String.valueOf(e.getMessage()));
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import com.licel.jcardsim.io.JavaCardInterface;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves cards to a client in another process through a memory mapped file,
+ * avoiding the socket round trip of <code>JavaCardSocketServer</code>.
+ *
+ * <p>The file holds two single producer, single consumer queues carrying
+ * <code>RemoteProtocol</code> requests and responses. One server thread
+ * executes the requests, so one client process at a time may use the file,
+ * see <code>JavaCardSocketClient#connectSharedMemory</code>.</p>
+ *
+ * <p>Usage from the command line:
+ * <code>java com.licel.jcardsim.remote.SharedMemoryCardServer &lt;jcardsim.cfg&gt; &lt;file&gt;</code>
+ * serves one card named <code>JavaCardSocketServer.DEFAULT_CARD</code>
+ * created from the configuration.</p>
+ */
+public class SharedMemoryCardServer implements Closeable {
+    /** default size of each queue */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /**
+     * How the server and the client wait for messages
+     */
+    public enum WaitStrategy {
+        /** spin until a message arrives, lowest latency but keeps a core busy */
+        BUSY_SPIN,
+        /** spin briefly, then park for short intervals */
+        PARK
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(SharedMemoryCardServer.class.getName());
+
+    private final File file;
+    private final SharedMemoryTransport transport;
+    private final CardRegistry registry;
+    private final RequestHandler handler;
+    private volatile boolean running;
+    private Thread serverThread;
+    private Thread heartbeatThread;
+
+    /**
+     * Create a server with parking waits and default capacity
+     * @param path shared file, an existing file is replaced
+     * @throws IOException if the file can not be mapped
+     */
+    public SharedMemoryCardServer(String path) throws IOException {
+        this(path, DEFAULT_CAPACITY, new CardRegistry(), WaitStrategy.PARK);
+    }
+
+    /**
+     * Create a server
+     * @param path shared file, an existing file is replaced
+     * @param capacity size of each queue in bytes, a power of two; bounds the message size
+     * @param registry cards to serve
+     * @param waitStrategy how the server thread waits for requests
+     * @throws IOException if the file can not be mapped
+     */
+    public SharedMemoryCardServer(String path, int capacity, CardRegistry registry, WaitStrategy waitStrategy) throws IOException {
+        if (registry == null) {
+            throw new NullPointerException("registry");
+        }
+        this.file = new File(path);
+        this.transport = SharedMemoryTransport.create(file, capacity, waitStrategy);
+        this.registry = registry;
+        this.handler = new RequestHandler(registry);
+    }
+
+    static public void main(String args[]) throws Exception {
+        if (args.length != 2) {
+            System.out.println("Usage: java com.licel.jcardsim.remote.SharedMemoryCardServer <jcardsim.cfg> <file>");
+            System.exit(-1);
+        }
+        CardRegistry registry = new CardRegistry();
+        registry.addTemplate(CardRegistry.DEFAULT_TEMPLATE, CardTemplate.load(args[0]));
+        registry.createCard(JavaCardSocketServer.DEFAULT_CARD, CardRegistry.DEFAULT_TEMPLATE);
+        SharedMemoryCardServer server = new SharedMemoryCardServer(args[1], DEFAULT_CAPACITY, registry, WaitStrategy.PARK);
+        server.start();
+        System.out.println("Serving " + args[1]);
+    }
+
+    /**
+     * Make a card available to the client
+     * @param name card name
+     * @param card card, usually a <code>Simulator</code>
+     */
+    public void addCard(String name, JavaCardInterface card) {
+        if (name == null) {
+            throw new NullPointerException("name");
+        }
+        if (card == null) {
+            throw new NullPointerException("card");
+        }
+        registry.putCard(name, card);
+    }
+
+    /**
+     * @return registry holding the cards of this server
+     */
+    public CardRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Start executing requests
+     * @throws IllegalStateException if the server is already started
+     */
+    public synchronized void start() {
+        if (serverThread != null) {
+            throw new IllegalStateException("already started");
+        }
+        running = true;
+        serverThread = new Thread(new Runnable() {
+            public void run() {
+                serve();
+            }
+        }, "jCardSim shared memory server");
+        // beats while commands execute, clients only time out if the process dies
+        heartbeatThread = new Thread(new Runnable() {
+            public void run() {
+                beat();
+            }
+        }, "jCardSim shared memory heartbeat");
+        heartbeatThread.setDaemon(true);
+        serverThread.start();
+        heartbeatThread.start();
+    }
+
+    /**
+     * Stop the server, the client fails on its next request
+     */
+    public void close() {
+        running = false;
+        transport.close(true);
+        synchronized (this) {
+            if (serverThread != null) {
+                serverThread.interrupt();
+                heartbeatThread.interrupt();
+            }
+        }
+        file.delete();
+    }
+
+    private void beat() {
+        try {
+            while (running) {
+                transport.heartbeat();
+                Thread.sleep(SharedMemoryTransport.HEARTBEAT_INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            // server closed
+        }
+    }
+
+    private void serve() {
+        RemoteProtocol.MessageWriter out = new RemoteProtocol.MessageWriter();
+        try {
+            while (running) {
+                ByteBuffer request = transport.readRequest();
+                if (request.remaining() < 5) {
+                    LOGGER.warning("Invalid request length: " + request.remaining());
+                    continue;
+                }
+                out.reset();
+                out.putInt(request.getInt());
+                handler.handle(request, out);
+                int length = out.length();
+                if (length > transport.maxMessageSize()) {
+                    out.truncate(4);
+                    out.putByte(RemoteProtocol.STATUS_ERROR).putString("Response too large: " + length);
+                }
+                transport.writeResponse(out.array(), 0, out.length());
+            }
+        } catch (EOFException e) {
+            // server closed
+        } catch (InterruptedIOException e) {
+            // server closed
+        } catch (IOException e) {
+            if (running) {
+                LOGGER.log(Level.SEVERE, "shared memory transport failed", e);
+            }
+        }
+    }
+}
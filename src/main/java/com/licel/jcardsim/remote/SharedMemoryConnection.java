@@ -0,0 +1,74 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Future;
+
+/**
+ * Client side of a <code>SharedMemoryCardServer</code> file.
+ *
+ * <p>Requests are executed synchronously: the calling thread writes the
+ * request and waits for its response, so the request queue has a single
+ * producer and the response queue a single consumer. Asynchronous client
+ * methods return completed futures.</p>
+ */
+final class SharedMemoryConnection extends JavaCardSocketClient.Connection {
+    private final SharedMemoryTransport transport;
+    private int nextId;
+    private volatile IOException closed;
+
+    SharedMemoryConnection(File file, SharedMemoryCardServer.WaitStrategy waitStrategy) throws IOException {
+        this.transport = SharedMemoryTransport.open(file, waitStrategy);
+    }
+
+    synchronized <T> Future<T> send(RemoteProtocol.MessageWriter request, JavaCardSocketClient.Response<T> response) {
+        if (closed != null) {
+            response.fail(closed);
+            return response;
+        }
+        if (request.length() > transport.maxMessageSize()) {
+            response.fail(new IllegalArgumentException("Request too large: " + request.length()));
+            return response;
+        }
+        int id = ++nextId;
+        putId(request, id);
+        try {
+            transport.writeRequest(request.array(), 0, request.length());
+            while (true) {
+                ByteBuffer frame = transport.readResponse();
+                // skip responses to requests of an earlier client
+                if (frame.remaining() >= 5 && frame.getInt() == id) {
+                    response.complete(frame);
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            response.fail(e);
+            close(e);
+        }
+        return response;
+    }
+
+    void close(IOException cause) {
+        if (closed == null) {
+            closed = cause;
+        }
+        transport.close(false);
+    }
+}
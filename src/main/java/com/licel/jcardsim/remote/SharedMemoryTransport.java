@@ -0,0 +1,258 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Memory mapped file shared by <code>SharedMemoryCardServer</code> and its
+ * client: a header followed by the request and the response queue.
+ *
+ * <p>Header: magic int, capacity int, closed int (set when the server stops),
+ * heartbeat long at offset 16 (incremented by the running server). A client
+ * waiting longer than the heartbeat timeout without seeing the heartbeat
+ * change assumes the server process died.</p>
+ */
+final class SharedMemoryTransport {
+    private static final int MAGIC = 0x6A43534D;
+    private static final int HEADER_SIZE = 64;
+    private static final int CAPACITY = 4;
+    private static final int CLOSED = 8;
+    private static final int HEARTBEAT = 16;
+    /** interval of <code>heartbeat()</code> calls by the server */
+    static final long HEARTBEAT_INTERVAL_MILLIS = 100;
+    /** default time a client waits for a heartbeat change */
+    static final long DEFAULT_HEARTBEAT_TIMEOUT_MILLIS = 5000;
+    /** busy-spin iterations before parking */
+    private static final int SPIN_LIMIT = 1000;
+    private static final long PARK_NANOS = 10000;
+
+    private final MappedByteBuffer buffer;
+    private final MappedRingBuffer requests;
+    private final MappedRingBuffer responses;
+    private final SharedMemoryCardServer.WaitStrategy waitStrategy;
+    // client side only, 0 for the server which waits for clients indefinitely
+    private final long heartbeatTimeoutNanos;
+    private volatile boolean detached;
+    // heartbeat seen by the waiting client thread and when it changed
+    private long lastHeartbeat;
+    private long lastHeartbeatNanos;
+
+    private SharedMemoryTransport(MappedByteBuffer buffer, int capacity, SharedMemoryCardServer.WaitStrategy waitStrategy,
+                                  long heartbeatTimeoutNanos) {
+        if (waitStrategy == null) {
+            throw new NullPointerException("waitStrategy");
+        }
+        this.buffer = buffer;
+        this.waitStrategy = waitStrategy;
+        this.heartbeatTimeoutNanos = heartbeatTimeoutNanos;
+        this.requests = new MappedRingBuffer(region(buffer, HEADER_SIZE, capacity), capacity);
+        this.responses = new MappedRingBuffer(region(buffer, HEADER_SIZE + MappedRingBuffer.HEADER_SIZE + capacity, capacity), capacity);
+    }
+
+    private static ByteBuffer region(ByteBuffer buffer, int offset, int capacity) {
+        ByteBuffer region = buffer.duplicate();
+        ((Buffer) region).position(offset);
+        ((Buffer) region).limit(offset + MappedRingBuffer.HEADER_SIZE + capacity);
+        return region.slice();
+    }
+
+    private static long fileSize(int capacity) {
+        return HEADER_SIZE + 2L * (MappedRingBuffer.HEADER_SIZE + capacity);
+    }
+
+    /**
+     * Create a new file, an existing file is replaced
+     * @param file file to create
+     * @param capacity size of each queue, a power of two
+     * @param waitStrategy how to wait for messages
+     * @return server side of the transport
+     * @throws IOException if the file can not be mapped
+     */
+    static SharedMemoryTransport create(File file, int capacity, SharedMemoryCardServer.WaitStrategy waitStrategy) throws IOException {
+        if (capacity < 64 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("capacity must be a power of two and at least 64");
+        }
+        // a client may still map the old file, never truncate it
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete " + file);
+        }
+        MappedByteBuffer buffer = map(file, fileSize(capacity));
+        buffer.putInt(CAPACITY, capacity);
+        buffer.putInt(CLOSED, 0);
+        buffer.putLong(HEARTBEAT, 0);
+        SharedMemoryTransport transport = new SharedMemoryTransport(buffer, capacity, waitStrategy, 0);
+        buffer.putInt(0, MAGIC);
+        return transport;
+    }
+
+    /**
+     * Map a file created by <code>create</code>
+     * @param file shared file
+     * @param waitStrategy how to wait for messages
+     * @return client side of the transport
+     * @throws IOException if the file is missing or not a jCardSim shared memory file
+     */
+    static SharedMemoryTransport open(File file, SharedMemoryCardServer.WaitStrategy waitStrategy) throws IOException {
+        return open(file, waitStrategy, DEFAULT_HEARTBEAT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Map a file created by <code>create</code>
+     * @param file shared file
+     * @param waitStrategy how to wait for messages
+     * @param heartbeatTimeoutMillis time without server heartbeat after which waits fail
+     * @return client side of the transport
+     * @throws IOException if the file is missing or not a jCardSim shared memory file
+     */
+    static SharedMemoryTransport open(File file, SharedMemoryCardServer.WaitStrategy waitStrategy,
+                                      long heartbeatTimeoutMillis) throws IOException {
+        if (heartbeatTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("heartbeatTimeoutMillis must be positive");
+        }
+        if (!file.isFile()) {
+            throw new IOException("No such file: " + file);
+        }
+        MappedByteBuffer buffer = map(file, file.length());
+        int capacity = buffer.getInt(CAPACITY);
+        if (buffer.getInt(0) != MAGIC || capacity < 64 || (capacity & (capacity - 1)) != 0
+                || buffer.capacity() != fileSize(capacity)) {
+            throw new IOException("Not a jCardSim shared memory file: " + file);
+        }
+        if (buffer.getInt(CLOSED) != 0) {
+            throw new IOException("Server closed: " + file);
+        }
+        SharedMemoryTransport transport = new SharedMemoryTransport(buffer, capacity, waitStrategy,
+                TimeUnit.MILLISECONDS.toNanos(heartbeatTimeoutMillis));
+        // responses of an earlier client are never read
+        transport.responses.drain();
+        return transport;
+    }
+
+    private static MappedByteBuffer map(File file, long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() < size) {
+                raf.setLength(size);
+            }
+            // the mapping stays valid after the file is closed
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @return largest message the queues accept
+     */
+    int maxMessageSize() {
+        return requests.maxMessageSize();
+    }
+
+    void writeRequest(byte[] src, int offset, int length) throws IOException {
+        write(requests, src, offset, length);
+    }
+
+    ByteBuffer readRequest() throws IOException {
+        return read(requests);
+    }
+
+    void writeResponse(byte[] src, int offset, int length) throws IOException {
+        write(responses, src, offset, length);
+    }
+
+    ByteBuffer readResponse() throws IOException {
+        return read(responses);
+    }
+
+    /**
+     * Signal the client that the server is alive, called periodically by the server
+     */
+    void heartbeat() {
+        buffer.putLong(HEARTBEAT, buffer.getLong(HEARTBEAT) + 1);
+    }
+
+    private void write(MappedRingBuffer queue, byte[] src, int offset, int length) throws IOException {
+        // the counter stops at SPIN_LIMIT, it must not overflow during long waits
+        for (int i = 0; !queue.offer(src, offset, length); i = Math.min(i + 1, SPIN_LIMIT)) {
+            idle(i);
+        }
+    }
+
+    private ByteBuffer read(MappedRingBuffer queue) throws IOException {
+        try {
+            ByteBuffer message;
+            for (int i = 0; (message = queue.poll()) == null; i = Math.min(i + 1, SPIN_LIMIT)) {
+                idle(i);
+            }
+            return message;
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private void idle(int iteration) throws IOException {
+        if (detached || buffer.getInt(CLOSED) != 0) {
+            throw new EOFException("Shared memory transport closed");
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException();
+        }
+        if (heartbeatTimeoutNanos != 0) {
+            checkHeartbeat(iteration);
+        }
+        if (waitStrategy == SharedMemoryCardServer.WaitStrategy.PARK && iteration >= SPIN_LIMIT) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    private void checkHeartbeat(int iteration) throws IOException {
+        if (iteration == 0) {
+            lastHeartbeat = buffer.getLong(HEARTBEAT);
+            lastHeartbeatNanos = System.nanoTime();
+        } else if (iteration >= SPIN_LIMIT) {
+            long heartbeat = buffer.getLong(HEARTBEAT);
+            long now = System.nanoTime();
+            if (heartbeat != lastHeartbeat) {
+                lastHeartbeat = heartbeat;
+                lastHeartbeatNanos = now;
+            } else if (now - lastHeartbeatNanos > heartbeatTimeoutNanos) {
+                throw new IOException("Shared memory server not responding");
+            }
+        }
+    }
+
+    /**
+     * Stop using the transport, blocked reads and writes of this side fail
+     * @param closeServer also mark the server closed for the other side
+     */
+    void close(boolean closeServer) {
+        detached = true;
+        if (closeServer) {
+            buffer.putInt(CLOSED, 1);
+        }
+    }
+}
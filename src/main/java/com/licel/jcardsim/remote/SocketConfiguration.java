@@ -0,0 +1,103 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+import java.util.Properties;
+
+/**
+ * Socket options applied to the connections of the remote card bridges.
+ *
+ * <p>Options are read from properties named <code>&lt;prefix&gt;.tcpNoDelay</code>,
+ * <code>&lt;prefix&gt;.keepAlive</code>, <code>&lt;prefix&gt;.sendBufferSize</code>
+ * and <code>&lt;prefix&gt;.receiveBufferSize</code>, for example
+ * <code>com.licel.jcardsim.vsmartcard.tcpNoDelay=false</code>.
+ * Buffer sizes of 0 keep the operating system default.</p>
+ */
+public final class SocketConfiguration {
+    private final boolean tcpNoDelay;
+    private final boolean keepAlive;
+    private final int sendBufferSize;
+    private final int receiveBufferSize;
+
+    /**
+     * @param tcpNoDelay disable Nagle's algorithm
+     * @param keepAlive enable TCP keep-alive
+     * @param sendBufferSize send buffer size, 0 for the default
+     * @param receiveBufferSize receive buffer size, 0 for the default
+     */
+    public SocketConfiguration(boolean tcpNoDelay, boolean keepAlive, int sendBufferSize, int receiveBufferSize) {
+        if (sendBufferSize < 0) {
+            throw new IllegalArgumentException("sendBufferSize");
+        }
+        if (receiveBufferSize < 0) {
+            throw new IllegalArgumentException("receiveBufferSize");
+        }
+        this.tcpNoDelay = tcpNoDelay;
+        this.keepAlive = keepAlive;
+        this.sendBufferSize = sendBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    /**
+     * Read the configuration from properties, missing values default to
+     * <code>TCP_NODELAY</code> on and everything else off
+     * @param properties properties, e.g. <code>System.getProperties()</code>
+     * @param prefix property name prefix without trailing dot
+     * @return configuration
+     */
+    public static SocketConfiguration fromProperties(Properties properties, String prefix) {
+        return new SocketConfiguration(
+                Boolean.parseBoolean(properties.getProperty(prefix + ".tcpNoDelay", "true")),
+                Boolean.parseBoolean(properties.getProperty(prefix + ".keepAlive", "false")),
+                Integer.parseInt(properties.getProperty(prefix + ".sendBufferSize", "0")),
+                Integer.parseInt(properties.getProperty(prefix + ".receiveBufferSize", "0")));
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * Apply the options to a TCP channel, should be called before connecting
+     * @param channel channel
+     * @throws IOException if an option cannot be set
+     */
+    public void apply(SocketChannel channel) throws IOException {
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+        channel.setOption(StandardSocketOptions.SO_KEEPALIVE, keepAlive);
+        if (sendBufferSize > 0) {
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+        }
+    }
+}
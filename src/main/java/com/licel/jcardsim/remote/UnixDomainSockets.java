@@ -0,0 +1,192 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Access to Unix domain socket channels (JDK 16 and later).
+ * jCardSim is built for Java 7, so the JDK 16 API is looked up reflectively.
+ */
+final class UnixDomainSockets {
+    private static final ProtocolFamily UNIX;
+    private static final Method ADDRESS_OF;
+    private static final Method OPEN_SERVER;
+    private static final Method OPEN_CLIENT;
+
+    static {
+        ProtocolFamily unix = null;
+        Method addressOf = null;
+        Method openServer = null;
+        Method openClient = null;
+        try {
+            unix = StandardProtocolFamily.valueOf("UNIX");
+            addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+            openServer = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+            openClient = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+        } catch (IllegalArgumentException e) {
+            unix = null;
+        } catch (ReflectiveOperationException e) {
+            unix = null;
+        }
+        UNIX = unix;
+        ADDRESS_OF = addressOf;
+        OPEN_SERVER = openServer;
+        OPEN_CLIENT = openClient;
+    }
+
+    private UnixDomainSockets() {}
+
+    /**
+     * @return true if the running JVM supports Unix domain socket channels
+     */
+    static boolean isSupported() {
+        return UNIX != null;
+    }
+
+    /**
+     * @param path socket file
+     * @return <code>java.net.UnixDomainSocketAddress</code> for <code>path</code>
+     * @throws IOException if Unix domain sockets are not supported
+     */
+    static SocketAddress address(String path) throws IOException {
+        requireSupported();
+        return (SocketAddress) invoke(ADDRESS_OF, path);
+    }
+
+    /**
+     * Bind a server channel, a stale socket file at <code>path</code> is removed first
+     * @param path socket file
+     * @return bound channel
+     * @throws IOException if binding fails, <code>path</code> exists and is no socket
+     * or Unix domain sockets are not supported
+     */
+    static ServerSocketChannel openServer(String path) throws IOException {
+        SocketAddress address = address(path);
+        BasicFileAttributes attributes = attributes(path);
+        if (attributes != null && !attributes.isOther()) {
+            throw new IOException("Not a socket file: " + path);
+        }
+        ServerSocketChannel channel = (ServerSocketChannel) invoke(OPEN_SERVER, UNIX);
+        try {
+            if (attributes != null) {
+                Files.deleteIfExists(Paths.get(path));
+            }
+            channel.bind(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Identify the socket file a server bound, see <code>deleteSocket</code>
+     * @param path socket file
+     * @return file key, null if the platform has none or <code>path</code> is no socket
+     * @throws IOException if the attributes can not be read
+     */
+    static Object socketFileKey(String path) throws IOException {
+        BasicFileAttributes attributes = attributes(path);
+        return attributes != null && attributes.isOther() ? attributes.fileKey() : null;
+    }
+
+    /**
+     * Remove the socket file of a closed server. Nothing is removed if
+     * <code>path</code> is no socket or was replaced by another server.
+     * @param path socket file
+     * @param fileKey result of <code>socketFileKey</code> after binding
+     * @throws IOException if removing fails
+     */
+    static void deleteSocket(String path, Object fileKey) throws IOException {
+        BasicFileAttributes attributes = attributes(path);
+        if (attributes != null && attributes.isOther()
+                && (fileKey == null || fileKey.equals(attributes.fileKey()))) {
+            Files.deleteIfExists(Paths.get(path));
+        }
+    }
+
+    private static BasicFileAttributes attributes(String path) throws IOException {
+        try {
+            return Files.readAttributes(Paths.get(path), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Connect a blocking client channel
+     * @param path socket file
+     * @return connected channel
+     * @throws IOException if connecting fails or Unix domain sockets are not supported
+     */
+    static SocketChannel openClient(String path) throws IOException {
+        SocketAddress address = address(path);
+        SocketChannel channel = open();
+        try {
+            channel.connect(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Open an unconnected client channel, e.g. for a non-blocking connect
+     * @return new channel
+     * @throws IOException if opening fails or Unix domain sockets are not supported
+     */
+    static SocketChannel open() throws IOException {
+        requireSupported();
+        return (SocketChannel) invoke(OPEN_CLIENT, UNIX);
+    }
+
+    private static void requireSupported() throws IOException {
+        if (!isSupported()) {
+            throw new IOException("Unix domain sockets require Java 16 or later");
+        }
+    }
+
+    private static Object invoke(Method method, Object argument) throws IOException {
+        try {
+            return method.invoke(null, argument);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+}
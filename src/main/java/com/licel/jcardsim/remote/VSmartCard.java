@@ -46,6 +46,8 @@ public class VSmartCard {
     static final String RELOADER_PORT_DEFAULT = "8099";
     static final String RELOADER_DELAY_PROPERTY = "com.licel.jcardsim.vsmartcard.reloader.delay";
     static final String RELOADER_DELAY_DEFAULT = "1000"; //milisec
+    // reload applets inside the running Simulator instead of reconnecting
+    static final String RELOADER_IN_PLACE_PROPERTY = "com.licel.jcardsim.vsmartcard.reloader.inplace";
     
     Simulator sim;
     ReloadThread reloader;
@@ -56,26 +58,79 @@ public class VSmartCard {
         startThread(driverProtocol);
     }
 
+    /**
+     * Connect over a Unix domain socket, requires Java 16 or later
+     * @param socketPath socket file
+     * @throws IOException if connecting fails
+     */
+    public VSmartCard(String socketPath) throws IOException {
+        VSmartCardTCPProtocol driverProtocol = new VSmartCardTCPProtocol();
+        driverProtocol.connect(socketPath);
+        startThread(driverProtocol);
+    }
+
     static public void main(String args[]) throws Exception {
         if (args.length !=1) {
             System.out.println("Usage: java com.licel.jcardsim.remote.VSmartCard <jcardsim.cfg>");
             System.exit(-1);
         }
-        Properties cfg = new Properties();
+        loadConfiguration(args[0]);
+
+        String socketPath = System.getProperty(VSmartCardTCPProtocol.SOCKET_PATH_PROPERTY);
+        if (socketPath != null) {
+            new VSmartCard(socketPath);
+            return;
+        }
+
+        String propKey = "com.licel.jcardsim.vsmartcard.host";
+        String host = System.getProperty(propKey);
+        if (host == null) {
+            throw new InvalidParameterException("Missing value for property: " + propKey);
+        }
+
+        propKey = "com.licel.jcardsim.vsmartcard.port";
+        String port = System.getProperty(propKey);
+        if (port == null) {
+            throw new InvalidParameterException("Missing value for property: " + propKey);
+        }
+
+        new VSmartCard(host, Integer.parseInt(port));
+    }
+
+    /**
+     * Load a jcardsim configuration file and publish its entries as system properties
+     * @param fileName configuration file
+     * @throws IOException if closing the file fails
+     */
+    static void loadConfiguration(String fileName) throws IOException {
+        Properties cfg = null;
         // init Simulator
-        FileInputStream fis = null;
         try {
-            fis = new FileInputStream(args[0]);
-            cfg.load(fis);
+            cfg = readConfiguration(fileName);
         } catch (Throwable t) {
-            System.err.println("Unable to load configuration " + args[0] + " due to: " + t.getMessage());
+            System.err.println("Unable to load configuration " + fileName + " due to: " + t.getMessage());
             System.exit(-1);
+        }
+        publishConfiguration(cfg);
+    }
+
+    /**
+     * @param fileName configuration file
+     * @return configuration entries
+     * @throws IOException if the file can not be read
+     */
+    static Properties readConfiguration(String fileName) throws IOException {
+        Properties cfg = new Properties();
+        FileInputStream fis = new FileInputStream(fileName);
+        try {
+            cfg.load(fis);
         } finally {
-            if (fis != null) {
-                fis.close();
-            }
+            fis.close();
         }
-        
+        return cfg;
+    }
+
+    private static void publishConfiguration(Properties cfg) {
         System.setProperty(ATR_SYSTEM_PROPERTY, cfg.getProperty(ATR_SYSTEM_PROPERTY, DEFAULT_ATR));
         System.setProperty(RELOADER_PORT_PROPERTY, cfg.getProperty(RELOADER_PORT_PROPERTY, RELOADER_PORT_DEFAULT));
         System.setProperty(RELOADER_DELAY_PROPERTY, cfg.getProperty(RELOADER_DELAY_PROPERTY, RELOADER_DELAY_DEFAULT));
@@ -85,23 +140,13 @@ public class VSmartCard {
             String propertyName = (String) keys.nextElement();
             System.setProperty(propertyName, cfg.getProperty(propertyName));
         }
-        
-        String propKey = "com.licel.jcardsim.vsmartcard.host";
-        String host = System.getProperty(propKey);
-        if (host == null) {
-            throw new InvalidParameterException("Missing value for property: " + propKey);
-        }
-
-        propKey = "com.licel.jcardsim.vsmartcard.port";
-        String port = System.getProperty(propKey);
-        if (port == null) {
-            throw new InvalidParameterException("Missing value for property: " + propKey);
-        }
-
-        new VSmartCard(host, Integer.parseInt(port));
     }
 
-    private void startThread(VSmartCardTCPProtocol driverProtocol) throws IOException {
+    /**
+     * @return <code>com.licel.globalplatform.GpSimulatorRuntime</code> if available,
+     * otherwise a new <code>SimulatorRuntime</code>
+     */
+    static SimulatorRuntime createRuntime() {
         System.out.println("Trying to load an instance of com.licel.globalplatform.GpSimulatorRuntime");
         SimulatorRuntime simRuntime;
         try {
@@ -112,7 +157,31 @@ public class VSmartCard {
             System.out.println("Failed to load the instance! Will use the default SimulatorRuntime");
             simRuntime = new SimulatorRuntime();
         }
-        sim = new Simulator(simRuntime);
+        return simRuntime;
+    }
+
+    /**
+     * Replace the applets of a running card with those of a configuration file,
+     * keeping the connection to vpcd open
+     * @param sim card to reload
+     * @param fileName configuration file
+     */
+    static void reloadInPlace(Simulator sim, String fileName) {
+        Properties cfg;
+        try {
+            cfg = readConfiguration(fileName);
+        } catch (IOException e) {
+            System.err.println("Unable to load configuration " + fileName + " due to: " + e.getMessage());
+            return;
+        }
+        publishConfiguration(cfg);
+        long start = System.nanoTime();
+        sim.reloadApplets(cfg);
+        System.out.println("Applets reloaded in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    private void startThread(VSmartCardTCPProtocol driverProtocol) throws IOException {
+        sim = new Simulator(createRuntime());
         
         final IOThread ioThread = new IOThread(sim, driverProtocol);
         ShutDownHook hook = new ShutDownHook(ioThread);
@@ -151,6 +220,7 @@ public class VSmartCard {
                 try {
                     String newConfig;
                     boolean isPowerOffCmd = false;
+                    boolean reloadedInPlace;
                     do {
                         try (ServerSocket serverSocket = new ServerSocket(Integer.parseInt(port))) {
                             System.out.println("Start reloader server on port " + port);
@@ -164,7 +234,13 @@ public class VSmartCard {
                                 }
                             }
                         }
-                        if(!hook.ioThread.driverProtocol.isClosed()) {
+                        reloadedInPlace = !isPowerOffCmd
+                                && Boolean.parseBoolean(System.getProperty(RELOADER_IN_PLACE_PROPERTY))
+                                && !hook.ioThread.driverProtocol.isClosed();
+                        if (reloadedInPlace) {
+                            // the IO thread keeps serving APDUs, wait for the next config
+                            reloadInPlace(hook.ioThread.sim, newConfig);
+                        } else if(!hook.ioThread.driverProtocol.isClosed()) {
                             Runtime.getRuntime().removeShutdownHook(hook);
                             hook.start();
                             while(!hook.ioThread.driverProtocol.isClosed()) {
@@ -173,7 +249,7 @@ public class VSmartCard {
                             System.out.println("Card remove delay: " + delay + "...");
                             Thread.sleep(Integer.parseInt(delay));
                         }
-                    } while(isPowerOffCmd);
+                    } while(isPowerOffCmd || reloadedInPlace);
                     
                     VSmartCard.main(new String[]{ newConfig });
                 } catch(InterruptedException ignore) {
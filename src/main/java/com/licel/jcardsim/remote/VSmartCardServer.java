@@ -0,0 +1,552 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import com.licel.jcardsim.base.CardManager;
+import com.licel.jcardsim.base.Simulator;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.security.InvalidParameterException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many VSmartCard cards in one JVM.
+ *
+ * <p>Every card is a non-blocking connection to one vpcd reader slot.
+ * A single selector thread does all socket I/O with pooled direct buffers.
+ * Commands are executed on a dispatch executor, one command at a time per
+ * card, so a slow applet does not block the other cards.</p>
+ *
+ * <p>Usage from the command line:
+ * <code>java com.licel.jcardsim.remote.VSmartCardServer &lt;jcardsim.cfg&gt;</code>
+ * connects <code>com.licel.jcardsim.vsmartcard.cards</code> cards to the ports
+ * <code>com.licel.jcardsim.vsmartcard.port</code>,
+ * <code>com.licel.jcardsim.vsmartcard.port + 1</code>, ...
+ * of <code>com.licel.jcardsim.vsmartcard.host</code>, or, if
+ * <code>com.licel.jcardsim.vsmartcard.socket</code> is set, to the Unix domain
+ * sockets <code>socket</code>, <code>socket.1</code>, ...</p>
+ *
+ * @see VSmartCard
+ */
+public class VSmartCardServer implements Closeable {
+    static final String CARDS_PROPERTY = "com.licel.jcardsim.vsmartcard.cards";
+    static final String CARDS_DEFAULT = "1";
+    static final String THREADS_PROPERTY = "com.licel.jcardsim.vsmartcard.threads";
+
+    /**
+     * 2 byte length and the largest frame it can describe
+     */
+    static final int BUFFER_SIZE = 2 + 0xFFFF;
+
+    private static final Logger LOGGER = Logger.getLogger(VSmartCardServer.class.getName());
+    private static final byte[] SW_UNKNOWN = {0x6F, 0x00};
+
+    private final Selector selector;
+    private final ExecutorService dispatchExecutor;
+    private final boolean ownsExecutor;
+    private final DirectBufferPool bufferPool = new DirectBufferPool(BUFFER_SIZE);
+    private final ConcurrentLinkedQueue<Runnable> selectorTasks = new ConcurrentLinkedQueue<Runnable>();
+    private final Map<Integer, Card> cards = new ConcurrentHashMap<Integer, Card>();
+    private final AtomicInteger nextCardId = new AtomicInteger();
+    private volatile SocketConfiguration socketConfiguration
+            = SocketConfiguration.fromProperties(System.getProperties(), VSmartCardTCPProtocol.PROPERTY_PREFIX);
+    private volatile boolean running;
+    private Thread selectorThread;
+
+    /**
+     * Create a server with a dispatch pool of one thread per processor
+     * @throws IOException if the selector cannot be opened
+     */
+    public VSmartCardServer() throws IOException {
+        this(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory()), true);
+    }
+
+    /**
+     * Create a server which executes commands on <code>dispatchExecutor</code>.
+     * The executor is not shut down by <code>close()</code>.
+     * @param dispatchExecutor executor for card commands
+     * @throws IOException if the selector cannot be opened
+     */
+    public VSmartCardServer(ExecutorService dispatchExecutor) throws IOException {
+        this(dispatchExecutor, false);
+    }
+
+    private VSmartCardServer(ExecutorService dispatchExecutor, boolean ownsExecutor) throws IOException {
+        if (dispatchExecutor == null) {
+            throw new NullPointerException("dispatchExecutor");
+        }
+        this.dispatchExecutor = dispatchExecutor;
+        this.ownsExecutor = ownsExecutor;
+        this.selector = Selector.open();
+    }
+
+    static public void main(String args[]) throws Exception {
+        if (args.length != 1) {
+            System.out.println("Usage: java com.licel.jcardsim.remote.VSmartCardServer <jcardsim.cfg>");
+            System.exit(-1);
+        }
+        VSmartCard.loadConfiguration(args[0]);
+
+        final String socketPath = System.getProperty(VSmartCardTCPProtocol.SOCKET_PATH_PROPERTY);
+        String propKey = "com.licel.jcardsim.vsmartcard.host";
+        String host = System.getProperty(propKey);
+        if (host == null && socketPath == null) {
+            throw new InvalidParameterException("Missing value for property: " + propKey);
+        }
+
+        propKey = "com.licel.jcardsim.vsmartcard.port";
+        String port = System.getProperty(propKey);
+        if (port == null && socketPath == null) {
+            throw new InvalidParameterException("Missing value for property: " + propKey);
+        }
+
+        int cardCount = Integer.parseInt(System.getProperty(CARDS_PROPERTY, CARDS_DEFAULT));
+        String threads = System.getProperty(THREADS_PROPERTY);
+        final VSmartCardServer server = threads == null ? new VSmartCardServer()
+                : new VSmartCardServer(Executors.newFixedThreadPool(Integer.parseInt(threads), new DaemonThreadFactory()), true);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                System.out.println("Shutdown connections");
+                server.close();
+            }
+        });
+        server.start();
+        for (int i = 0; i < cardCount; i++) {
+            Simulator sim = new Simulator(VSmartCard.createRuntime());
+            if (socketPath != null) {
+                server.addCard(i == 0 ? socketPath : socketPath + "." + i, sim);
+            } else {
+                server.addCard(host, Integer.parseInt(port) + i, sim);
+            }
+        }
+        server.selectorThread.join();
+    }
+
+    /**
+     * Start the selector thread
+     * @throws IllegalStateException if the server is already started or closed
+     */
+    public synchronized void start() {
+        if (selectorThread != null) {
+            throw new IllegalStateException("already started");
+        }
+        running = true;
+        selectorThread = new Thread(new Runnable() {
+            public void run() {
+                selectLoop();
+            }
+        }, "jCardSim vpcd selector");
+        selectorThread.start();
+    }
+
+    /**
+     * Set the socket options used by cards added afterwards.
+     * The default is read from the <code>com.licel.jcardsim.vsmartcard.*</code> system properties.
+     * @param socketConfiguration socket options
+     */
+    public void setSocketConfiguration(SocketConfiguration socketConfiguration) {
+        if (socketConfiguration == null) {
+            throw new NullPointerException("socketConfiguration");
+        }
+        this.socketConfiguration = socketConfiguration;
+    }
+
+    /**
+     * Connect a card to a vpcd reader slot
+     * @param host vpcd host
+     * @param port vpcd port of the reader slot
+     * @param sim simulator which handles the commands of this card
+     * @return card id
+     * @throws IOException if the connection cannot be started
+     */
+    public int addCard(String host, int port, Simulator sim) throws IOException {
+        if (sim == null) {
+            throw new NullPointerException("sim");
+        }
+        SocketChannel channel = SocketChannel.open();
+        try {
+            socketConfiguration.apply(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return addCard(channel, new InetSocketAddress(host, port), sim);
+    }
+
+    /**
+     * Connect a card to a vpcd reader slot over a Unix domain socket, requires Java 16 or later
+     * @param socketPath socket file
+     * @param sim simulator which handles the commands of this card
+     * @return card id
+     * @throws IOException if the connection cannot be started or Unix domain sockets are not supported
+     */
+    public int addCard(String socketPath, Simulator sim) throws IOException {
+        if (sim == null) {
+            throw new NullPointerException("sim");
+        }
+        SocketAddress address = UnixDomainSockets.address(socketPath);
+        return addCard(UnixDomainSockets.open(), address, sim);
+    }
+
+    private int addCard(SocketChannel channel, SocketAddress address, Simulator sim) throws IOException {
+        final Card card = new Card(nextCardId.getAndIncrement(), sim);
+        try {
+            channel.configureBlocking(false);
+            channel.connect(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        card.channel = channel;
+        card.in = bufferPool.acquire();
+        card.out = bufferPool.acquire();
+        cards.put(card.id, card);
+        runInSelector(new Runnable() {
+            public void run() {
+                try {
+                    int ops = card.channel.isConnected() ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT;
+                    card.key = card.channel.register(selector, ops, card);
+                } catch (IOException e) {
+                    closeCard(card, e);
+                }
+            }
+        });
+        return card.id;
+    }
+
+    /**
+     * Disconnect a card
+     * @param cardId id returned by <code>addCard</code>
+     */
+    public void removeCard(int cardId) {
+        final Card card = cards.get(cardId);
+        if (card != null) {
+            runInSelector(new Runnable() {
+                public void run() {
+                    closeCard(card, null);
+                }
+            });
+        }
+    }
+
+    /**
+     * @param cardId id returned by <code>addCard</code>
+     * @return true if the card is connected to vpcd
+     */
+    public boolean isConnected(int cardId) {
+        Card card = cards.get(cardId);
+        return card != null && card.channel.isConnected();
+    }
+
+    /**
+     * @return number of cards which are not removed or disconnected
+     */
+    public int getCardCount() {
+        return cards.size();
+    }
+
+    /**
+     * Close all connections and stop the selector thread
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = selectorThread;
+        }
+        selector.wakeup();
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Card card : cards.values()) {
+            closeCard(card, null);
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+        if (ownsExecutor) {
+            dispatchExecutor.shutdown();
+        }
+    }
+
+    private void runInSelector(Runnable task) {
+        selectorTasks.offer(task);
+        selector.wakeup();
+    }
+
+    private void selectLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Card card = (Card) key.attachment();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isConnectable()) {
+                            card.channel.finishConnect();
+                            key.interestOps(SelectionKey.OP_READ);
+                            continue;
+                        }
+                        if (key.isReadable()) {
+                            read(card);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(card);
+                        }
+                    } catch (IOException e) {
+                        closeCard(card, e);
+                    }
+                }
+            }
+        } catch (ClosedSelectorException ignored) {
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "vpcd selector failed", e);
+        }
+    }
+
+    private void read(Card card) throws IOException {
+        if (card.channel.read(card.in) < 0) {
+            throw new EOFException("vpcd closed the connection");
+        }
+        if (hasCompleteFrame(card.in)) {
+            dispatch(card);
+        }
+    }
+
+    private void write(Card card) throws IOException {
+        card.channel.write(card.out);
+        if (!card.out.hasRemaining()) {
+            ((Buffer) card.out).clear();
+            if (hasCompleteFrame(card.in)) {
+                dispatch(card);
+            } else {
+                card.key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    /**
+     * Hand the buffers of <code>card</code> to the dispatch executor.
+     * The selector thread does not touch them until <code>dispatched</code> runs.
+     */
+    private void dispatch(final Card card) {
+        card.key.interestOps(0);
+        card.busy = true;
+        try {
+            dispatchExecutor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        card.processFrames();
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Card " + card.id + " failed to process a command", e);
+                    }
+                    runInSelector(new Runnable() {
+                        public void run() {
+                            dispatched(card);
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            card.busy = false;
+            closeCard(card, new IOException("dispatch executor rejected the command", e));
+        }
+    }
+
+    private void dispatched(Card card) {
+        card.busy = false;
+        if (!card.key.isValid()) {
+            releaseBuffers(card);
+            return;
+        }
+        if (card.out.position() > 0) {
+            ((Buffer) card.out).flip();
+            card.key.interestOps(SelectionKey.OP_WRITE);
+            try {
+                write(card);
+            } catch (IOException e) {
+                closeCard(card, e);
+            }
+        } else if (hasCompleteFrame(card.in)) {
+            dispatch(card);
+        } else {
+            card.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void closeCard(Card card, IOException cause) {
+        if (cards.remove(card.id) == null) {
+            return;
+        }
+        if (cause != null) {
+            LOGGER.log(Level.INFO, "Card " + card.id + " disconnected", cause);
+        }
+        if (card.key != null) {
+            card.key.cancel();
+        }
+        try {
+            card.channel.close();
+        } catch (IOException ignored) {
+        }
+        // buffers still owned by a dispatch task are released by dispatched()
+        if (!card.busy) {
+            releaseBuffers(card);
+        }
+    }
+
+    private void releaseBuffers(Card card) {
+        bufferPool.release(card.in);
+        bufferPool.release(card.out);
+        card.in = null;
+        card.out = null;
+    }
+
+    /**
+     * @param in buffer in fill mode
+     * @return true if <code>in</code> starts with a complete frame
+     */
+    static boolean hasCompleteFrame(ByteBuffer in) {
+        if (in.position() < 2) {
+            return false;
+        }
+        int length = in.getShort(0) & 0xFFFF;
+        return in.position() >= 2 + length;
+    }
+
+    /**
+     * One virtual card and its connection
+     */
+    static final class Card {
+        final int id;
+        final Simulator sim;
+        SocketChannel channel;
+        SelectionKey key;
+        /** true while a dispatch task owns the buffers */
+        boolean busy;
+        /** received bytes, fill mode */
+        ByteBuffer in;
+        /** responses, fill mode while processing, drain mode while writing */
+        ByteBuffer out;
+        private byte[] command = new byte[0];
+
+        Card(int id, Simulator sim) {
+            this.id = id;
+            this.sim = sim;
+        }
+
+        /**
+         * Execute all complete frames in <code>in</code> and queue the responses in <code>out</code>.
+         * Stops before a frame which needs a response if <code>out</code> already holds one.
+         */
+        void processFrames() {
+            ((Buffer) in).flip();
+            try {
+                while (in.remaining() >= 2) {
+                    int start = in.position();
+                    int length = in.getShort(start) & 0xFFFF;
+                    if (in.remaining() < 2 + length) {
+                        break;
+                    }
+                    if (length == 1) {
+                        int cmd = in.get(start + 2);
+                        if (cmd == VSmartCardTCPProtocol.GET_ATR && out.position() > 0) {
+                            break;
+                        }
+                        ((Buffer) in).position(start + 3);
+                        switch (cmd) {
+                            case VSmartCardTCPProtocol.POWER_ON:
+                            case VSmartCardTCPProtocol.RESET:
+                                sim.reset();
+                                break;
+                            case VSmartCardTCPProtocol.GET_ATR:
+                                writeFrame(sim.getATR());
+                                break;
+                        }
+                    } else {
+                        if (out.position() > 0) {
+                            break;
+                        }
+                        if (command.length != length) {
+                            command = new byte[length];
+                        }
+                        ((Buffer) in).position(start + 2);
+                        in.get(command);
+                        byte[] reply;
+                        try {
+                            reply = CardManager.dispatchApdu(sim, command);
+                        } catch (RuntimeException e) {
+                            LOGGER.log(Level.WARNING, "Card " + id + " failed to process an APDU", e);
+                            reply = SW_UNKNOWN;
+                        }
+                        writeFrame(reply);
+                    }
+                }
+            } finally {
+                in.compact();
+            }
+        }
+
+        private void writeFrame(byte[] data) {
+            int length = Math.min(data.length, 0xFFFF);
+            out.putShort((short) length);
+            out.put(data, 0, length);
+        }
+    }
+
+    static final class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "jCardSim vpcd dispatch " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -21,22 +21,23 @@
 package com.licel.jcardsim.remote;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-
-import java.net.Socket;
-
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.TimeUnit;
 
 /**
  * VSmartCard TCP protocol implementation. Used by VSmartCard.
+ * Besides TCP the same protocol can run over a Unix domain socket,
+ * for a vpcd (or relay to vpcd) on the same host.
  *
  * @author alex@cooperi.net
  */
 public class VSmartCardTCPProtocol {
-    private Socket socket;
-    private InputStream  dataInput;
-    private OutputStream dataOutput;
+    static final String PROPERTY_PREFIX = "com.licel.jcardsim.vsmartcard";
+    static final String SOCKET_PATH_PROPERTY = "com.licel.jcardsim.vsmartcard.socket";
+
+    private SocketChannel channel;
+    private FrameCodec codec;
     private int frameLen = -1;
 
     public static final int POWER_OFF = 0;
@@ -46,75 +47,74 @@ public class VSmartCardTCPProtocol {
     public static final int APDU = -1;
 
     public void connect(String host, int port) throws IOException {
-        socket = new Socket(host, port);
+        connect(host, port, SocketConfiguration.fromProperties(System.getProperties(), PROPERTY_PREFIX));
+    }
+
+    public void connect(String host, int port, SocketConfiguration configuration) throws IOException {
+        channel = SocketChannel.open();
+        try {
+            configuration.apply(channel);
+            channel.connect(new InetSocketAddress(host, port));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
 
         try {
             TimeUnit.SECONDS.sleep(3);
         } catch (InterruptedException ignore) {}
 
-        dataInput   = socket.getInputStream();
-        dataOutput  = socket.getOutputStream();
+        connected();
+    }
+
+    /**
+     * Connect over a Unix domain socket, requires Java 16 or later.
+     * Unlike the TCP connect this does not wait for vpcd after connecting.
+     * @param socketPath socket file
+     * @throws IOException if connecting fails or Unix domain sockets are not supported
+     */
+    public void connect(String socketPath) throws IOException {
+        channel = UnixDomainSockets.openClient(socketPath);
+        connected();
+    }
+
+    private void connected() {
+        codec = new FrameCodec(channel, channel, FrameCodec.Header.UINT16_BIG_ENDIAN);
     }
 
     public void disconnect() {
-        closeSocket(socket);
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
     }
     
     public boolean isClosed() {
-        return socket.isClosed();
+        return !channel.isOpen();
     }
     
     public int readCommand() throws IOException {
-        final byte[] cmdBuf = new byte[3];
-        read(cmdBuf, 0, 2, dataInput);
-        final int len = ((cmdBuf[0] << 8) & 0xFF00) | (cmdBuf[1] & 0xFF);
+        final int len = codec.readHeader();
         if (len == 1) {
-            read(cmdBuf, 2, 1, dataInput);
-            final int cmd = cmdBuf[2];
-            return (cmd);
+            return codec.readByte();
         }
         frameLen = len;
         return (APDU);
     }
 
+    /**
+     * @return APDU, valid until the next call
+     * @throws IOException if no APDU is waiting or the connection fails
+     */
     public byte[] readData() throws IOException {
         if (frameLen == -1) {
             throw new IOException("No APDU command waiting");
         }
-        final byte[] buf = new byte[frameLen];
-        read(buf, dataInput);
+        final byte[] buf = codec.readPayload(frameLen);
         frameLen = -1;
         return buf;
     }
 
     public void writeData(byte[] data) throws IOException {
-        final byte[] buf = new byte[2 + data.length];
-        buf[0] = (byte)(((data.length & 0xFF00) >> 8) & 0xFF);
-        buf[1] = (byte)(data.length & 0xFF);
-        System.arraycopy(data, 0, buf, 2, data.length);
-        dataOutput.write(buf);
-    }
-
-    private void closeSocket(Socket sock) {
-        try {
-            sock.close();
-        } catch (IOException ignored) {}
-    }
-
-    private void read(byte[] buf, InputStream stream) throws IOException {
-        read(buf, 0, buf.length, stream);
-    }
-
-    private void read(byte[] buf, int offset, int len, InputStream stream) throws IOException {
-        while (len > 0) {
-            final int retval = stream.read(buf, offset, len);
-
-            if (retval < 0) {
-                throw new IOException("Got negative number from socket");
-            }
-
-            len    -= retval;
-            offset += retval;
-        }
+        codec.writeFrame(data);
     }
 }
@@ -58,14 +58,16 @@ public class CardSimulator extends JavaxSmartCardInterface {
     }
 
     /**
-     * Wrapper for {@link #transmitCommand(byte[])}
+     * Wrapper for {@link #transmitCommand(byte[], com.licel.jcardsim.base.ApduHeader)}, the header is
+     * taken from <code>commandApdu</code> instead of parsing the command again
      *
      * @param commandApdu CommandAPDU
      * @return ResponseAPDU
      */
     @Override
     public ResponseAPDU transmitCommand(CommandAPDU commandApdu) {
-        return new ResponseAPDU(transmitCommand(commandApdu.getBytes()));
+        byte[] command = commandApdu.getBytes();
+        return new ResponseAPDU(transmitCommand(command, header(commandApdu, command)));
     }
 
     /**
@@ -143,10 +145,8 @@ public class CardSimulator extends JavaxSmartCardInterface {
         }
 
         @Override
-        public int transmit(ByteBuffer byteBuffer, ByteBuffer byteBuffer2) throws CardException {
-            byte[] result = card.transmitCommand(new CommandAPDU(byteBuffer).getBytes());
-            byteBuffer2.put(result);
-            return result.length;
+        public int transmit(ByteBuffer command, ByteBuffer response) throws CardException {
+            return card.transmitCommand(JCSCardChannel.commandBytes(command, response), response);
         }
 
         @Override
@@ -251,20 +251,40 @@ public class CardSimulator extends JavaxSmartCardInterface {
 
         byte[] transmitCommand(byte[] capdu) throws CardException {
             synchronized (runtime) {
-                ensureConnected();
-                Thread thread = threadReference.get();
-                if (thread != null && thread != Thread.currentThread()) {
-                    throw new CardException("Card is held exclusively by Thread " + thread.getName());
+                byte currentProtocol = beginTransmit();
+                try {
+                    return CardManager.dispatchApdu(CardSimulator.this, capdu);
+                } finally {
+                    runtime.changeProtocol(currentProtocol);
                 }
+            }
+        }
 
-                byte currentProtocol = getProtocolByte(CardSimulator.this.getProtocol());
+        int transmitCommand(byte[] capdu, ByteBuffer response) throws CardException {
+            synchronized (runtime) {
+                byte currentProtocol = beginTransmit();
                 try {
-                    runtime.changeProtocol(protocolByte);
-                    return CardManager.dispatchApdu(CardSimulator.this, capdu);
+                    return CardManager.dispatchApdu(CardSimulator.this, capdu, response);
                 } finally {
                     runtime.changeProtocol(currentProtocol);
                 }
             }
         }
+
+        /**
+         * Check the card state and switch to the protocol of this connection
+         * @return protocol to restore afterwards
+         */
+        private byte beginTransmit() throws CardException {
+            ensureConnected();
+            Thread thread = threadReference.get();
+            if (thread != null && thread != Thread.currentThread()) {
+                throw new CardException("Card is held exclusively by Thread " + thread.getName());
+            }
+
+            byte currentProtocol = getProtocolByte(CardSimulator.this.getProtocol());
+            runtime.changeProtocol(protocolByte);
+            return currentProtocol;
+        }
     }
 }
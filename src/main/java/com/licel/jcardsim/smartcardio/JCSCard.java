@@ -17,6 +17,7 @@ package com.licel.jcardsim.smartcardio;
 
 import com.licel.jcardsim.base.CardManager;
 import com.licel.jcardsim.io.JavaCardInterface;
+import java.nio.ByteBuffer;
 import javax.smartcardio.*;
 
 /**
@@ -95,4 +96,8 @@ public class JCSCard extends Card {
     ResponseAPDU transmitCommand(CommandAPDU capdu) {
         return new ResponseAPDU(CardManager.dispatchApdu(cardInterface, capdu.getBytes()));
     }
+
+    int transmitCommand(byte[] capdu, ByteBuffer response) {
+        return CardManager.dispatchApdu(cardInterface, capdu, response);
+    }
 }
@@ -16,6 +16,7 @@
 package com.licel.jcardsim.smartcardio;
 
 import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import javax.smartcardio.*;
 
 /**
@@ -43,11 +44,38 @@ public class JCSCardChannel extends CardChannel {
         return card.transmitCommand(capdu);
     }
 
-    public int transmit(ByteBuffer bb, ByteBuffer bb1) throws CardException {
-        ResponseAPDU response = transmit(new CommandAPDU(bb));
-        byte[] binaryResponse = response.getBytes();
-        bb1.put(binaryResponse);
-        return binaryResponse.length;
+    /**
+     * Transmit without <code>CommandAPDU</code>/<code>ResponseAPDU</code>,
+     * the response is written directly into <code>response</code>
+     * @see CardChannel#transmit(ByteBuffer, ByteBuffer)
+     */
+    public int transmit(ByteBuffer command, ByteBuffer response) throws CardException {
+        return card.transmitCommand(commandBytes(command, response), response);
+    }
+
+    /**
+     * Check the arguments of <code>transmit(ByteBuffer, ByteBuffer)</code>
+     * and read the command
+     * @param command command, read from position to limit
+     * @param response response buffer
+     * @return command bytes
+     */
+    static byte[] commandBytes(ByteBuffer command, ByteBuffer response) {
+        if (command == null) {
+            throw new NullPointerException("command");
+        }
+        if (response == null) {
+            throw new NullPointerException("response");
+        }
+        if (response.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        if (command == response) {
+            throw new IllegalArgumentException("command and response must not be the same object");
+        }
+        byte[] capdu = new byte[command.remaining()];
+        command.get(capdu);
+        return capdu;
     }
 
     /**
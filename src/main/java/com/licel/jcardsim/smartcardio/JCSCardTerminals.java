@@ -27,9 +27,11 @@ import javax.smartcardio.CardTerminals;
  */
 public class JCSCardTerminals extends CardTerminals {
 
+    static final String TERMINAL_COUNT_PROPERTY = "com.licel.jcardsim.terminal.count";
+
     /**
-     * Returns only one terminal with state ALL|CARD_PRESENT|CARD_INSERTION, 
-     * in other case returns empty list.
+     * Returns <code>com.licel.jcardsim.terminal.count</code> terminals (default 1)
+     * with state ALL|CARD_PRESENT|CARD_INSERTION, in other case returns empty list.
      */
     public List<CardTerminal> list(State state) throws CardException {
         List<CardTerminal> terminals = new ArrayList<CardTerminal>();
@@ -37,7 +39,10 @@ public class JCSCardTerminals extends CardTerminals {
             case ALL:
             case CARD_PRESENT:            
             case CARD_INSERTION:                
-                terminals.add(new JCSTerminal());
+                int count = Integer.parseInt(System.getProperty(TERMINAL_COUNT_PROPERTY, "1"));
+                for (int i = 0; i < count; i++) {
+                    terminals.add(new JCSTerminal(i));
+                }
                 break;
             
         }
@@ -17,6 +17,9 @@ package com.licel.jcardsim.smartcardio;
 
 import com.licel.jcardsim.io.CAD;
 import com.licel.jcardsim.io.JavaCardInterface;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.smartcardio.Card;
 import javax.smartcardio.CardException;
 import javax.smartcardio.CardTerminal;
@@ -24,20 +27,77 @@ import javax.smartcardio.CardTerminal;
 /**
  * CardTerminal implementation class.
  *
+ * <p>Terminal 0 is named <code>jCardSim.Terminal</code> and uses the card
+ * configured by the system properties. Terminal <i>n</i> &gt; 0 is named
+ * <code>jCardSim.Terminal.</code><i>n</i> and has its own card with its
+ * own <code>SimulatorRuntime</code>. Its configuration are the system
+ * properties, where <code>com.licel.jcardsim.terminal.</code><i>n</i><code>.</code><i>key</i>
+ * overrides <code>com.licel.jcardsim.</code><i>key</i>.</p>
+ *
  * @author LICEL LLC
  */
 public class JCSTerminal extends CardTerminal {
 
     final static String NAME = "jCardSim.Terminal";
-    CAD cad;
-    static JavaCardInterface cardInterface = null;
+    static final String PROPERTY_PREFIX = "com.licel.jcardsim.";
+    static final String TERMINAL_PROPERTY_PREFIX = "com.licel.jcardsim.terminal.";
+    // cards by terminal index, shared by all instances of a terminal
+    static final Map<Integer, JavaCardInterface> cardInterfaces = new ConcurrentHashMap<Integer, JavaCardInterface>();
+    private final int index;
 
     public JCSTerminal() {
-        cad = new CAD(System.getProperties());
+        this(0);
+    }
+
+    /**
+     * @param index terminal index
+     */
+    JCSTerminal(int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("index");
+        }
+        this.index = index;
     }
 
     public String getName() {
-        return NAME;
+        return index == 0 ? NAME : NAME + "." + index;
+    }
+
+    /**
+     * @return card of this terminal, created on first use
+     */
+    JavaCardInterface getCardInterface() {
+        JavaCardInterface cardInterface = cardInterfaces.get(index);
+        if (cardInterface == null) {
+            synchronized (cardInterfaces) {
+                cardInterface = cardInterfaces.get(index);
+                if (cardInterface == null) {
+                    CAD cad = index == 0 ? new CAD(System.getProperties()) : new CAD(terminalProperties(index), true);
+                    cardInterface = (JavaCardInterface) cad.getCardInterface();
+                    cardInterfaces.put(index, cardInterface);
+                }
+            }
+        }
+        return cardInterface;
+    }
+
+    /**
+     * @param index terminal index
+     * @return system properties with the overrides of the terminal applied
+     */
+    static Properties terminalProperties(int index) {
+        Properties system = System.getProperties();
+        Properties properties = new Properties();
+        String prefix = TERMINAL_PROPERTY_PREFIX + index + ".";
+        for (String name : system.stringPropertyNames()) {
+            if (!properties.containsKey(name)) {
+                properties.setProperty(name, system.getProperty(name));
+            }
+            if (name.startsWith(prefix)) {
+                properties.setProperty(PROPERTY_PREFIX + name.substring(prefix.length()), system.getProperty(name));
+            }
+        }
+        return properties;
     }
 
     /**
@@ -45,9 +105,7 @@ public class JCSTerminal extends CardTerminal {
      * @see com.licel.jcardsim.io.JavaCardInterface#changeProtocol(String)
      */
     public Card connect(String protocol) throws CardException {
-        if (cardInterface == null) {
-            cardInterface = (JavaCardInterface) cad.getCardInterface();
-        }
+        JavaCardInterface cardInterface = getCardInterface();
 
         if (protocol == null) {
             throw new NullPointerException("protocol");
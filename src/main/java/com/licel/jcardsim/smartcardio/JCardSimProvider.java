@@ -33,6 +33,13 @@ import java.security.Provider;
  * com.licel.jcardsim.smartcardio.applet.{index}.Class 
  * where {index} is value of 0..10 
  * 
+ * Number of terminals (default 1):
+ * com.licel.jcardsim.terminal.count
+ * 
+ * Each additional terminal {n} has an independent card. Its settings can be
+ * overridden with com.licel.jcardsim.terminal.{n}.{key}, which replaces
+ * com.licel.jcardsim.{key}, e.g. com.licel.jcardsim.terminal.1.card.applet.0.AID
+ * 
  * NOTE: Applets and it's dependencies  must be available for the ClassLoader
  * before calling CardTerminal.connect();
  */
@@ -126,5 +126,22 @@ public final class ByteUtil {
         return (short) (((short) bArray[offset] << 8) + ((short) bArray[offset + 1] & 0xff));
     }
 
+    /**
+     * Compare two array ranges in time independent of their content
+     * @param a first array
+     * @param aOffset offset in <code>a</code>
+     * @param b second array
+     * @param bOffset offset in <code>b</code>
+     * @param length number of bytes to compare
+     * @return true if both ranges are equal
+     */
+    public static boolean constantTimeEquals(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int diff = 0;
+        for (int i = 0; i < length; i++) {
+            diff |= a[aOffset + i] ^ b[bOffset + i];
+        }
+        return diff == 0;
+    }
+
     private ByteUtil() {}
 }
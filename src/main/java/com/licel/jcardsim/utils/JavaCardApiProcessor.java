@@ -19,8 +19,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
@@ -49,7 +51,10 @@ public class JavaCardApiProcessor {
         proxyClass(buildDir, "com.licel.jcardsim.framework.AIDProxy", "javacard.framework.AID", false);
         allMap.put("com.licel.jcardsim.framework.APDUProxy".replace(".", "/"), "javacard.framework.APDU".replace(".", "/"));
         proxyClass(buildDir, "com.licel.jcardsim.framework.APDUProxy", "javacard.framework.APDU", false);
-        copyClass(buildDir, "com.licel.jcardsim.framework.APDUProxy$1", "javacard.framework.APDU$1", allMap);
+        // synthetic class of an enum switch, only present if APDUProxy has one
+        if (new File(buildDir, "com.licel.jcardsim.framework.APDUProxy$1".replace(".", File.separator) + ".class").isFile()) {
+            copyClass(buildDir, "com.licel.jcardsim.framework.APDUProxy$1", "javacard.framework.APDU$1", allMap);
+        }
         proxyExceptionClass(buildDir, "javacard.framework.APDUException");
         proxyClass(buildDir, "com.licel.jcardsim.framework.AppletProxy", "javacard.framework.Applet", false);
         proxyClass(buildDir, "com.licel.jcardsim.framework.CardExceptionProxy", "javacard.framework.CardException", false);
@@ -246,8 +251,11 @@ public class JavaCardApiProcessor {
         public void visit(int version, int access,
                 String name, String signature,
                 String superName, String[] interfaces) {
+            // the target also implements the interfaces of the proxy, e.g. InternalAPDU
+            LinkedHashSet<String> allInterfaces = new LinkedHashSet<String>(Arrays.asList(interfaces));
+            allInterfaces.addAll(cn.interfaces);
             super.visit(version, access, name,
-                    signature, superName, interfaces);
+                    signature, superName, allInterfaces.toArray(new String[allInterfaces.size()]));
             this.cname = name;
         }
 
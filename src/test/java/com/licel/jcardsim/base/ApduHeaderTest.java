@@ -0,0 +1,115 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.Sha1Applet;
+import com.licel.jcardsim.smartcardio.CardSimulator;
+import com.licel.jcardsim.utils.AIDUtil;
+import java.util.Arrays;
+import javacard.framework.AID;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+import junit.framework.TestCase;
+
+/**
+ * Test for <code>ApduHeader</code>
+ */
+public class ApduHeaderTest extends TestCase {
+    private static final int[] NC = {0, 1, 255, 256, 1000};
+    private static final int[] NE = {0, 1, 256, 257, 65536};
+
+    public ApduHeaderTest(String name) {
+        super(name);
+    }
+
+    public void testParse() {
+        for (int nc : NC) {
+            for (int ne : NE) {
+                CommandAPDU command = new CommandAPDU(0x80, 0x02, 0, 0, new byte[nc], ne);
+                byte[] bytes = command.getBytes();
+                ApduHeader header = ApduHeader.parse(bytes);
+                String message = "nc=" + nc + " ne=" + ne;
+                assertEquals(message, ApduCase.getCase(bytes), header.getCase());
+                assertEquals(message, nc, header.getLc());
+                assertEquals(message, ne, header.getNe());
+                assertEquals(message, bytes.length, header.getCommandLength());
+                if (nc > 0) {
+                    assertEquals(message, bytes.length - nc - (ne == 0 ? 0 : header.getCase().isExtended() ? 2 : 1),
+                            header.getDataOffset());
+                }
+            }
+        }
+    }
+
+    public void testInvalidHeader() {
+        try {
+            new ApduHeader(ApduCase.Case2, 1, 1);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // case 2 has no data
+        }
+        try {
+            new ApduHeader(ApduCase.Case3, 10, 1);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // case 3 has no Le
+        }
+    }
+
+    public void testTransmitWithHeader() {
+        CardSimulator simulator = new CardSimulator(new SimulatorRuntime());
+        AID aid = AIDUtil.create("0102030405cafe01");
+        simulator.installApplet(aid, Sha1Applet.class);
+        simulator.selectApplet(aid);
+
+        byte[] data = new byte[1000];
+        Arrays.fill(data, (byte) 0x41);
+        CommandAPDU command = new CommandAPDU(0x80, 0x02, 0, 0, data, 65536);
+        ResponseAPDU response = simulator.transmitCommand(command);
+        assertEquals(0x9000, response.getSW());
+        assertTrue(Arrays.equals(data, response.getData()));
+
+        byte[] bytes = command.getBytes();
+        try {
+            simulator.transmitCommand(Arrays.copyOf(bytes, bytes.length - 1), ApduHeader.parse(bytes));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // header does not match
+        }
+    }
+
+    public void testSmallValuesInExtendedEncoding() {
+        CardSimulator simulator = new CardSimulator(new SimulatorRuntime());
+        AID aid = AIDUtil.create("0102030405cafe01");
+        simulator.installApplet(aid, Sha1Applet.class);
+        simulator.selectApplet(aid);
+
+        byte[][] commands = {
+                // case 2, Le=16
+                {(byte) 0x80, 0x02, 0, 0, 0, 0, 0x10},
+                // case 3, Lc=3
+                {(byte) 0x80, 0x02, 0, 0, 0, 0, 3, 0x41, 0x42, 0x43},
+                // case 4, Lc=3, Le=16
+                {(byte) 0x80, 0x02, 0, 0, 0, 0, 3, 0x41, 0x42, 0x43, 0, 0x10},
+        };
+        for (byte[] bytes : commands) {
+            ResponseAPDU expected = new ResponseAPDU(simulator.transmitCommand(bytes.clone()));
+            ResponseAPDU response = simulator.transmitCommand(new CommandAPDU(bytes));
+            assertEquals(Arrays.toString(bytes), expected.getSW(), response.getSW());
+            assertTrue(Arrays.equals(expected.getBytes(), response.getBytes()));
+        }
+    }
+}
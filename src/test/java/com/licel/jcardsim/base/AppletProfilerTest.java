@@ -0,0 +1,119 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.utils.AIDUtil;
+import com.licel.jcardsim.utils.ByteUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import javacard.framework.AID;
+import javacard.framework.ISO7816;
+import junit.framework.TestCase;
+
+/**
+ * Test for <code>AppletProfiler</code>
+ */
+public class AppletProfilerTest extends TestCase {
+    private static final String APPLET_CLASS = "com.licel.jcardsim.samples.HelloWorldApplet1";
+    private static final AID APPLET_AID = AIDUtil.create("01020304050607080A");
+
+    private AppletProfiler profiler;
+    private Simulator simulator;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        profiler = new AppletProfiler();
+        simulator = new Simulator(new SimulatorRuntime());
+        simulator.setAppletProfiler(profiler);
+        simulator.installApplet(APPLET_AID, APPLET_CLASS, readJar(), new byte[0], (short) 0, (byte) 0);
+    }
+
+    public void testInvocationsAndBranches() {
+        assertTrue(simulator.selectApplet(APPLET_AID));
+        // sayHello
+        ByteUtil.requireSW(simulator.transmitCommand(new byte[]{0x01, 0x01, 0x00, 0x00}), ISO7816.SW_NO_ERROR);
+        // unknown instruction, thrown by ISOException.throwIt
+        ByteUtil.requireSW(simulator.transmitCommand(new byte[]{0x01, 0x05, 0x00, 0x00}), ISO7816.SW_INS_NOT_SUPPORTED);
+
+        AppletProfiler.MethodProfile process = profiler.getMethod(APPLET_CLASS, "process");
+        assertNotNull(process);
+        assertEquals(3, process.getInvocations());
+        assertTrue(process.getTotalNanos() > 0);
+        // selectingApplet() check and a tableswitch with five targets
+        assertEquals(7, process.getBranchCount());
+        assertEquals(1, process.getBranchHits(0));
+        assertEquals(2, process.getBranchHits(1));
+        assertEquals(4, process.getCoveredBranches());
+
+        AppletProfiler.MethodProfile sayHello = profiler.getMethod(APPLET_CLASS, "sayHello");
+        assertEquals(1, sayHello.getInvocations());
+        assertEquals(0, profiler.getMethod(APPLET_CLASS, "sayEcho2").getInvocations());
+    }
+
+    public void testReportAndReset() throws Exception {
+        assertTrue(simulator.selectApplet(APPLET_AID));
+        StringBuilder report = new StringBuilder();
+        profiler.writeReport(report);
+        assertTrue(report.toString(), report.indexOf(APPLET_CLASS + ".process(Ljavacard/framework/APDU;)V") > 0);
+
+        profiler.reset();
+        assertEquals(0, profiler.getMethod(APPLET_CLASS, "process").getInvocations());
+        assertEquals(0, profiler.getMethod(APPLET_CLASS, "process").getCoveredBranches());
+    }
+
+    public void testMethodsLoadedAgainShareProbes() throws Exception {
+        assertTrue(simulator.selectApplet(APPLET_AID));
+        Simulator second = new Simulator(new SimulatorRuntime());
+        second.setAppletProfiler(profiler);
+        second.installApplet(APPLET_AID, APPLET_CLASS, readJar(), new byte[0], (short) 0, (byte) 0);
+        assertTrue(second.selectApplet(APPLET_AID));
+        ByteUtil.requireSW(second.transmitCommand(new byte[]{0x01, 0x01, 0x00, 0x00}), ISO7816.SW_NO_ERROR);
+
+        int processCount = 0;
+        for (AppletProfiler.MethodProfile profile : profiler.getMethods()) {
+            if (profile.getClassName().equals(APPLET_CLASS) && profile.getMethodName().equals("process")) {
+                processCount++;
+            }
+        }
+        assertEquals(1, processCount);
+        AppletProfiler.MethodProfile process = profiler.getMethod(APPLET_CLASS, "process");
+        assertEquals(3, process.getInvocations());
+        assertEquals(2, process.getBranchHits(0));
+    }
+
+    public void testClassPathAppletsAreNotInstrumented() {
+        AID aid = AIDUtil.create("F000000001");
+        simulator.installApplet(aid, com.licel.jcardsim.samples.HelloWorldApplet.class);
+        simulator.selectApplet(aid);
+        assertNull(profiler.getMethod("com.licel.jcardsim.samples.HelloWorldApplet", "process"));
+    }
+
+    private static byte[] readJar() throws Exception {
+        InputStream is = SimulatorTest.class.getResourceAsStream("helloworld.jar");
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1024];
+            int read;
+            while ((read = is.read(chunk)) > 0) {
+                bos.write(chunk, 0, read);
+            }
+            return bos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.utils.AIDUtil;
+import com.licel.jcardsim.utils.ByteUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Properties;
+import javacard.framework.AID;
+import javacard.framework.ISO7816;
+import javacardx.crypto.Cipher;
+import junit.framework.TestCase;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Test for <code>CardCostMeter</code> and <code>CostModel</code>
+ */
+public class CardCostMeterTest extends TestCase {
+    private static final String APPLET_CLASS = "com.licel.jcardsim.samples.HelloWorldApplet1";
+    private static final AID APPLET_AID = AIDUtil.create("01020304050607080A");
+
+    private CardCostMeter meter;
+    private Simulator simulator;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        meter = new CardCostMeter(new CostModel());
+        simulator = new Simulator(new SimulatorRuntime());
+        simulator.setCostMeter(meter);
+        simulator.installApplet(APPLET_AID, APPLET_CLASS, readJar(), new byte[0], (short) 0, (byte) 0);
+    }
+
+    public void testCommandCost() {
+        assertTrue(simulator.selectApplet(APPLET_AID));
+        // sayHello copies the greeting with Util.arrayCopyNonAtomic
+        ByteUtil.requireSW(simulator.transmitCommand(new byte[]{0x01, 0x01, 0x00, 0x00}), ISO7816.SW_NO_ERROR);
+
+        CardCostMeter.CommandCost cost = meter.getLastCommand();
+        assertNotNull(cost);
+        assertEquals(0x01, cost.getIns());
+        assertEquals(ISO7816.SW_NO_ERROR, cost.getSW());
+        assertTrue(cost.getInstructionCycles() > 0);
+        assertTrue(cost.getApiCycles() > 0);
+        assertEquals(0, cost.getEepromCycles());
+        assertEquals(cost.getTotalCycles() * 1000000000L / meter.getModel().getClockFrequency(),
+                cost.getEstimatedNanos(), 1);
+        assertTrue(cost.getSimulatedNanos() > 0);
+        // select and sayHello
+        assertEquals(2, meter.getCommands().size());
+        assertEquals(0, meter.getBudgetOverruns());
+    }
+
+    public void testBudget() throws Exception {
+        meter.setBudget(1);
+        assertTrue(simulator.selectApplet(APPLET_AID));
+        simulator.transmitCommand(new byte[]{0x01, 0x01, 0x00, 0x00});
+        assertEquals(2, meter.getBudgetOverruns());
+
+        StringBuilder report = new StringBuilder();
+        meter.writeReport(report);
+        assertTrue(report.toString(), report.indexOf("0101 ") >= 0);
+        assertTrue(report.toString(), report.indexOf("2 budget overruns") >= 0);
+
+        meter.reset();
+        assertEquals(0, meter.getBudgetOverruns());
+        assertNull(meter.getLastCommand());
+    }
+
+    public void testConfigure() {
+        Properties properties = new Properties();
+        properties.setProperty("clock", "20000000");
+        properties.setProperty("instruction.invokevirtual", "300");
+        properties.setProperty("eeprom.write", "10000,20");
+        // override listed before its method
+        properties.setProperty("api.com.example.Crypto.run.10", "5000,0");
+        properties.setProperty("api.com.example.Crypto.run", "100,2,1");
+        properties.setProperty("api.javacardx.crypto.Cipher.doFinal." + Cipher.ALG_RSA_PKCS1, "900000,0");
+
+        CostModel model = new CostModel();
+        int iadd = model.getInstructionCost(Opcodes.IADD);
+        model.configure(properties);
+        assertEquals(20000000, model.getClockFrequency());
+        assertEquals(300, model.getInstructionCost(Opcodes.INVOKEVIRTUAL));
+        assertEquals(iadd, model.getInstructionCost(Opcodes.IADD));
+        assertEquals(10200, model.getEepromWriteCost(10));
+
+        CostModel.ApiCost run = model.getApiCost("com/example/Crypto.run");
+        assertEquals(1, run.lengthArgument);
+        assertEquals(-1, run.arrayArgument);
+        assertEquals(120, run.cycles(-1, 10));
+        assertEquals(5000, run.cycles(10, 10));
+        assertEquals(900000, model.getApiCost("javacardx/crypto/Cipher.doFinal").cycles(Cipher.ALG_RSA_PKCS1, 128));
+    }
+
+    public void testConfigureRejectsMalformedProperties() {
+        assertInvalid("instruction.nosuchop", "1");
+        assertInvalid("clock", "fast");
+        assertInvalid("eeprom.write", "1");
+        assertInvalid("api.com.example.Unknown.run.1", "1,1");
+    }
+
+    private static void assertInvalid(String key, String value) {
+        Properties properties = new Properties();
+        properties.setProperty(key, value);
+        try {
+            new CostModel().configure(properties);
+            fail(key + "=" + value);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static byte[] readJar() throws Exception {
+        InputStream is = SimulatorTest.class.getResourceAsStream("helloworld.jar");
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1024];
+            int read;
+            while ((read = is.read(chunk)) > 0) {
+                bos.write(chunk, 0, read);
+            }
+            return bos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import com.licel.jcardsim.utils.ByteUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import javacard.framework.AID;
+import javacard.framework.ISO7816;
+import javacard.framework.SystemException;
+import junit.framework.TestCase;
+
+/**
+ * Test for <code>CardProfile</code>
+ */
+public class CardProfileTest extends TestCase {
+    private static final String APPLET_CLASS = "com.licel.jcardsim.samples.HelloWorldApplet1";
+    private static final AID PACKAGE_AID = AIDUtil.create("0102030405");
+    private static final AID MODULE_AID = AIDUtil.create("010203040501");
+    private static final AID APPLET_AID = AIDUtil.create("01020304050607080A");
+    private static final AID CLASSPATH_PACKAGE_AID = AIDUtil.create("F000000001");
+    private static final AID CLASSPATH_MODULE_AID = AIDUtil.create("F00000000101");
+    private static final AID CLASSPATH_APPLET_AID = AIDUtil.create("F0000000010101");
+    // applet AID, privileges, application specific parameters holding the length prefixed AA BB
+    private static final byte[] INSTALL_PARAMETERS = ByteUtil.byteArray("05010203040501000302AABB");
+
+    private CardProfile profile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        profile = new CardProfile()
+                .addLoadFile(PACKAGE_AID, readJar())
+                .addModule(PACKAGE_AID, MODULE_AID, APPLET_CLASS)
+                .addInstance(PACKAGE_AID, MODULE_AID, APPLET_AID, INSTALL_PARAMETERS)
+                .addLoadFile(CLASSPATH_PACKAGE_AID, null)
+                .addModule(CLASSPATH_PACKAGE_AID, CLASSPATH_MODULE_AID, HelloWorldApplet.class)
+                .addInstance(CLASSPATH_PACKAGE_AID, CLASSPATH_MODULE_AID, CLASSPATH_APPLET_AID, null)
+                .addSelect(APPLET_AID)
+                .addCommand(new byte[]{0x01, 0x01, 0x00, 0x00});
+    }
+
+    public void testNewCard() {
+        Simulator card = profile.newCard();
+        byte[] response = card.transmitCommand(new byte[]{0x01, 0x04, 0x00, 0x00});
+        ByteUtil.requireSW(response, ISO7816.SW_NO_ERROR);
+        assertEquals("AABB9000", ByteUtil.hexString(response));
+        assertTrue(card.selectApplet(CLASSPATH_APPLET_AID));
+    }
+
+    public void testProvision() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<Simulator> cards;
+        try {
+            cards = profile.provision(100, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(100, cards.size());
+        Set<Simulator> distinct = new HashSet<Simulator>(cards);
+        assertEquals(100, distinct.size());
+        Class<?> appletClass = null;
+        for (Simulator card : cards) {
+            ByteUtil.requireSW(card.transmitCommand(new byte[]{0x01, 0x01, 0x00, 0x00}), ISO7816.SW_NO_ERROR);
+            // classes are loaded once per profile
+            Class<?> cardAppletClass = card.runtime.getApplet(APPLET_AID).getClass();
+            assertTrue(appletClass == null || appletClass == cardAppletClass);
+            appletClass = cardAppletClass;
+        }
+        assertEquals(0, profile.provision(0).size());
+    }
+
+    public void testFailingPersonalizationCommand() {
+        profile.addCommand(new byte[]{0x01, 0x05, 0x00, 0x00});
+        try {
+            profile.provision(20);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("6D00"));
+        }
+    }
+
+    public void testExpectedStatusWord() {
+        profile.addCommand(new byte[]{0x01, 0x05, 0x00, 0x00}, ISO7816.SW_INS_NOT_SUPPORTED);
+        assertNotNull(profile.newCard());
+    }
+
+    public void testInvalidProfile() {
+        try {
+            profile.addModule(AIDUtil.create("0A0B0C0D0E"), MODULE_AID, APPLET_CLASS);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            profile.addInstance(PACKAGE_AID, AIDUtil.create("0A0B0C0D0E"), APPLET_AID, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            profile.addInstance(PACKAGE_AID, MODULE_AID, APPLET_AID, new byte[128]);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        CardProfile unknownClass = new CardProfile()
+                .addLoadFile(PACKAGE_AID, null)
+                .addModule(PACKAGE_AID, MODULE_AID, "com.example.NoSuchApplet");
+        try {
+            unknownClass.newCard();
+            fail();
+        } catch (SystemException e) {
+            assertEquals(SystemException.ILLEGAL_VALUE, e.getReason());
+        }
+    }
+
+    private static byte[] readJar() throws Exception {
+        InputStream is = SimulatorTest.class.getResourceAsStream("helloworld.jar");
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1024];
+            int read;
+            while ((read = is.read(chunk)) > 0) {
+                bos.write(chunk, 0, read);
+            }
+            return bos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javacard.framework.AID;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import junit.framework.TestCase;
+
+/**
+ * Test for <code>CommandStatistics</code> and <code>LatencyHistogram</code>
+ */
+public class CommandStatisticsTest extends TestCase {
+    private static final AID TEST_APPLET_AID = AIDUtil.create("010203040506070809");
+
+    public CommandStatisticsTest(String name) {
+        super(name);
+    }
+
+    public void testRecordCommands() {
+        SimulatorRuntime runtime = new SimulatorRuntime();
+        CommandStatistics statistics = new CommandStatistics();
+        runtime.setStatistics(statistics);
+        Simulator simulator = new Simulator(runtime);
+        simulator.installApplet(TEST_APPLET_AID, HelloWorldApplet.class);
+        assertTrue(simulator.selectApplet(TEST_APPLET_AID));
+        for (int i = 0; i < 10; i++) {
+            simulator.transmitCommand(new byte[]{0x01, 0x02, 0x00, 0x00});
+        }
+        simulator.transmitCommand(new byte[]{0x01, 0x7F, 0x00, 0x00});
+        // extended length NOP, rejected by the applet
+        simulator.transmitCommand(new byte[]{0x01, 0x02, 0x00, 0x00, 0x00, 0x00, 0x01, 0x0A});
+
+        assertEquals(1, statistics.getSelectCount());
+        assertEquals(12, statistics.getShortApduCount());
+        assertEquals(1, statistics.getExtendedApduCount());
+        assertEquals(Long.valueOf(11), statistics.getStatusWords().get("9000"));
+        assertEquals(Long.valueOf(1), statistics.getStatusWords().get("6D00"));
+
+        LatencyHistogram nop = statistics.getHistogram(TEST_APPLET_AID, (byte) 0x01, (byte) 0x02);
+        assertEquals(11, nop.getCount());
+        assertTrue(nop.getValueAtPercentile(50) <= nop.getMaxNanos());
+
+        List<CommandStatistics.CommandSummary> commands = statistics.getCommands();
+        assertEquals(3, commands.size());
+        for (CommandStatistics.CommandSummary command : commands) {
+            assertEquals(AIDUtil.toString(TEST_APPLET_AID), command.getApplet());
+        }
+
+        // selecting again deselects the current applet first
+        assertTrue(simulator.selectApplet(TEST_APPLET_AID));
+        assertEquals(2, statistics.getSelectCount());
+        assertEquals(1, statistics.getDeselectCount());
+        statistics.reset();
+        assertEquals(0, statistics.getShortApduCount());
+        assertTrue(statistics.getCommands().isEmpty());
+    }
+
+    public void testMBean() throws Exception {
+        SimulatorRuntime runtime = new SimulatorRuntime();
+        CommandStatistics statistics = new CommandStatistics();
+        runtime.setStatistics(statistics);
+        Simulator simulator = new Simulator(runtime);
+        simulator.installApplet(TEST_APPLET_AID, HelloWorldApplet.class);
+        simulator.selectApplet(TEST_APPLET_AID);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = statistics.registerMBean("test-" + System.nanoTime());
+        try {
+            assertEquals(1L, server.getAttribute(name, "ShortApduCount"));
+            CompositeData[] commands = (CompositeData[]) server.getAttribute(name, "Commands");
+            assertEquals(1, commands.length);
+            assertEquals(0xA4, commands[0].get("ins"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    public void testRuntimesShareOneMBean() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName("com.licel.jcardsim:type=CommandStatistics,*");
+        System.setProperty(CommandStatistics.ENABLED_SYSTEM_PROPERTY, "true");
+        try {
+            CommandStatistics statistics = new SimulatorRuntime().getStatistics();
+            assertNotNull(statistics);
+            int registered = server.queryNames(pattern, null).size();
+            for (int i = 0; i < 10; i++) {
+                assertSame(statistics, new SimulatorRuntime().getStatistics());
+            }
+            assertEquals(registered, server.queryNames(pattern, null).size());
+            assertTrue(server.isRegistered(new ObjectName(
+                    "com.licel.jcardsim:type=CommandStatistics,name=" + ObjectName.quote("all"))));
+        } finally {
+            System.clearProperty(CommandStatistics.ENABLED_SYSTEM_PROPERTY);
+        }
+        assertNull(new SimulatorRuntime().getStatistics());
+    }
+
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMaxNanos());
+        assertEquals(500500, histogram.getMeanNanos());
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 500000 && median < 500000 * 1.125);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 990000 && p99 <= 1000000);
+        assertEquals(1000000, histogram.getValueAtPercentile(100));
+
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            assertEquals(i, LatencyHistogram.bucketIndex(LatencyHistogram.bucketUpperBound(i)));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javacard.framework.AID;
+import javacard.security.AESKey;
+import javacard.security.KeyBuilder;
+import javacardx.crypto.Cipher;
+import junit.framework.TestCase;
+
+/**
+ * Test for the Java Flight Recorder events
+ */
+public class FlightRecorderEventsTest extends TestCase {
+
+    public void testDisabledByDefault() {
+        if (Boolean.getBoolean(FlightRecorderEvents.ENABLED_SYSTEM_PROPERTY)) {
+            return;
+        }
+        assertFalse(FlightRecorderEvents.isEnabled());
+        assertNull(FlightRecorderEvents.beginApdu());
+        assertNull(FlightRecorderEvents.beginCrypto());
+        // no-ops
+        FlightRecorderEvents.commitApdu(null, null, new byte[]{0, 1, 2, 3}, (short) 0x9000, 0);
+        FlightRecorderEvents.appletEvent("select", null);
+        FlightRecorderEvents.transactionEvent("begin", 0);
+        FlightRecorderEvents.cryptoEvent("Cipher.init", (byte) 1, 128);
+    }
+
+    public void testEventsAreRecorded() throws Exception {
+        Class<?> recordingClass;
+        try {
+            recordingClass = Class.forName("jdk.jfr.Recording");
+        } catch (ClassNotFoundException e) {
+            // JFR not available
+            return;
+        }
+        FlightRecorderEvents events = new FlightRecorderEvents();
+        Object recording = recordingClass.newInstance();
+        for (String name : new String[]{FlightRecorderEvents.APDU_EVENT, FlightRecorderEvents.APPLET_EVENT,
+                FlightRecorderEvents.TRANSACTION_EVENT, FlightRecorderEvents.CRYPTO_EVENT}) {
+            recordingClass.getMethod("enable", String.class).invoke(recording, name);
+        }
+
+        File file = File.createTempFile("jcardsim", ".jfr");
+        try {
+            recordingClass.getMethod("start").invoke(recording);
+            assertTrue(events.apdu.isEnabled());
+            Object apdu = events.apdu.begin();
+            assertNotNull(apdu);
+            events.apdu.commit(apdu, "F000000001", 0x80, 0x02, 0x9000, 10, 5);
+            events.applet.commit(events.applet.newEvent(), "select", "F000000001");
+            events.transaction.commit(events.transaction.newEvent(), "commit", 12);
+            events.crypto.commit(events.crypto.begin(), "Cipher.doFinal", 13, 16);
+            recordingClass.getMethod("stop").invoke(recording);
+            recordingClass.getMethod("dump", Path.class).invoke(recording, file.toPath());
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+        }
+
+        try {
+            Map<String, Object> recorded = new HashMap<String, Object>();
+            List<?> list = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                    .getMethod("readAllEvents", Path.class).invoke(null, file.toPath());
+            for (Object event : list) {
+                Object type = event.getClass().getMethod("getEventType").invoke(event);
+                recorded.put((String) type.getClass().getMethod("getName").invoke(type), event);
+            }
+
+            Object apdu = recorded.get(FlightRecorderEvents.APDU_EVENT);
+            assertNotNull(apdu);
+            assertEquals("F000000001", value(apdu, "applet"));
+            assertEquals(0x02, value(apdu, "ins"));
+            assertEquals(0x9000, value(apdu, "sw"));
+            assertEquals(5, value(apdu, "responseLength"));
+            assertEquals("select", value(recorded.get(FlightRecorderEvents.APPLET_EVENT), "action"));
+            assertEquals(12, value(recorded.get(FlightRecorderEvents.TRANSACTION_EVENT), "logUsed"));
+            Object crypto = recorded.get(FlightRecorderEvents.CRYPTO_EVENT);
+            assertEquals("Cipher.doFinal", value(crypto, "operation"));
+            assertEquals(16, value(crypto, "length"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testSimulatorEmitsEvents() throws Exception {
+        if (!FlightRecorderEvents.isEnabled()) {
+            // runs in the jfr-events surefire execution
+            return;
+        }
+        Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        Object recording = recordingClass.newInstance();
+        recordingClass.getMethod("enable", String.class).invoke(recording, FlightRecorderEvents.APDU_EVENT);
+        recordingClass.getMethod("enable", String.class).invoke(recording, FlightRecorderEvents.CRYPTO_EVENT);
+
+        AID aid = AIDUtil.create("010203040506070809");
+        File file = File.createTempFile("jcardsim", ".jfr");
+        try {
+            recordingClass.getMethod("start").invoke(recording);
+            Simulator simulator = new Simulator(new SimulatorRuntime());
+            simulator.installApplet(aid, HelloWorldApplet.class);
+            assertTrue(simulator.selectApplet(aid));
+            simulator.transmitCommand(new byte[]{0x01, 0x02, 0x00, 0x00});
+
+            AESKey key = (AESKey) KeyBuilder.buildKey(KeyBuilder.TYPE_AES, KeyBuilder.LENGTH_AES_128, false);
+            key.setKey(new byte[16], (short) 0);
+            Cipher cipher = Cipher.getInstance(Cipher.ALG_AES_BLOCK_128_CBC_NOPAD, false);
+            cipher.init(key, Cipher.MODE_ENCRYPT);
+            cipher.doFinal(new byte[32], (short) 0, (short) 32, new byte[32], (short) 0);
+            recordingClass.getMethod("stop").invoke(recording);
+            recordingClass.getMethod("dump", Path.class).invoke(recording, file.toPath());
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+        }
+
+        try {
+            boolean apdu = false;
+            boolean doFinal = false;
+            List<?> list = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                    .getMethod("readAllEvents", Path.class).invoke(null, file.toPath());
+            for (Object event : list) {
+                Object type = event.getClass().getMethod("getEventType").invoke(event);
+                String name = (String) type.getClass().getMethod("getName").invoke(type);
+                if (name.equals(FlightRecorderEvents.APDU_EVENT) && value(event, "ins").equals(0x02)) {
+                    assertEquals(AIDUtil.toString(aid), value(event, "applet"));
+                    assertEquals(0x9000, value(event, "sw"));
+                    apdu = true;
+                } else if (name.equals(FlightRecorderEvents.CRYPTO_EVENT) && value(event, "operation").equals("Cipher.doFinal")) {
+                    assertEquals(32, value(event, "length"));
+                    doFinal = true;
+                }
+            }
+            assertTrue(apdu);
+            assertTrue(doFinal);
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testDisabledEventIsNotStarted() throws Exception {
+        try {
+            Class.forName("jdk.jfr.Recording");
+        } catch (ClassNotFoundException e) {
+            return;
+        }
+        // no recording has the event enabled
+        FlightRecorderEvents events = new FlightRecorderEvents();
+        assertNull(events.crypto.begin());
+    }
+
+    private static Object value(Object event, String field) throws Exception {
+        Method getValue = event.getClass().getMethod("getValue", String.class);
+        return getValue.invoke(event, field);
+    }
+}
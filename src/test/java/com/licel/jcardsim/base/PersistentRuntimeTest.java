@@ -20,14 +20,20 @@ import static com.licel.jcardsim.base.Simulator.DEFAULT_ATR;
 
 import com.licel.jcardsim.samples.HelloWorldApplet;
 import com.licel.jcardsim.samples.PersistentApplet;
+import com.licel.jcardsim.smartcardio.CardSimulator;
 import com.licel.jcardsim.utils.AIDUtil;
 import com.licel.jcardsim.utils.ByteUtil;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import javacard.framework.AID;
+import javacard.framework.JCSystem;
+import javacard.framework.Util;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
 import junit.framework.TestCase;
 import org.bouncycastle.util.Arrays;
 
@@ -165,6 +171,48 @@ public class PersistentRuntimeTest extends TestCase {
         assertEquals(true, Arrays.areEqual(response, otherResponse));
     }
     
+    public void testCommandAPDUIsPersisted() {
+        System.out.println("testCommandAPDUIsPersisted");
+
+        CardSimulator simulator = new CardSimulator(new PersistentSimulatorRuntime());
+        simulator.installApplet(aid, PersistentApplet.class);
+        assertEquals(true, simulator.selectApplet(aid));
+        ResponseAPDU response = simulator.transmitCommand(new CommandAPDU(0x01, INC_COUNTER, 0x00, 0x00));
+        assertEquals(0x9000, response.getSW());
+
+        assertEquals(1, getCounter());
+    }
+
+    public void testStreamedCommandsArePersisted() throws IOException {
+        System.out.println("testStreamedCommandsArePersisted");
+
+        Simulator instance = new Simulator(new PersistentSimulatorRuntime());
+        instance.installApplet(aid, PersistentApplet.class);
+        assertEquals(true, instance.selectApplet(aid));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        instance.transmitCommand(new byte[]{0x01, INC_COUNTER, 0x00, 0x00}, out);
+        assertSW_9000(out.toByteArray());
+        assertEquals(1, getCounter());
+
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        short sw = instance.transmitCommand(new byte[]{0x01, INC_COUNTER, 0x00, 0x00}, new ResponseSink() {
+            public void write(byte[] buffer, int offset, int length) {
+                data.write(buffer, offset, length);
+            }
+        });
+        assertEquals((short) 0x9000, sw);
+        assertEquals(2, getCounter());
+    }
+
+    private byte getCounter() {
+        Simulator otherInstance = new Simulator(new PersistentSimulatorRuntime());
+        otherInstance.loadApplet(aid, PersistentApplet.class);
+        assertEquals(true, otherInstance.selectApplet(aid));
+        byte[] response = otherInstance.transmitCommand(new byte[]{0x01, GET_COUNTER, 0x00, 0x00});
+        assertSW_9000(response);
+        return response[0];
+    }
+
     private byte incCounter() {
         SimulatorRuntime tmpRuntime = new PersistentSimulatorRuntime();
         Simulator tmpInst = new Simulator(tmpRuntime);
@@ -217,6 +265,23 @@ public class PersistentRuntimeTest extends TestCase {
 
     }
 
+    public void testResetRuntimeInTransaction() {
+        System.out.println("testResetRuntimeInTransaction");
+
+        SimulatorRuntime runtime = new PersistentSimulatorRuntime();
+        Simulator instance = new Simulator(runtime);
+        byte[] data = new byte[4];
+        runtime.beginTransaction();
+        Util.arrayCopy(new byte[]{1, 2, 3, 4}, (short) 0, data, (short) 0, (short) 4);
+        instance.resetRuntime();
+        assertEquals(0, JCSystem.getTransactionDepth());
+
+        // undo entries logged before the reset must be gone
+        runtime.beginTransaction();
+        runtime.abortTransaction();
+        assertTrue(Arrays.areEqual(new byte[]{1, 2, 3, 4}, data));
+    }
+
     public void testEmptyAppletDir() {
         System.out.println("testEmptyAppletDir");
 
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.samples.Sha1Applet;
+import com.licel.jcardsim.utils.AIDUtil;
+import com.licel.jcardsim.utils.ByteUtil;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import javacard.framework.AID;
+import junit.framework.TestCase;
+
+/**
+ * Test for response streaming and GET RESPONSE chaining
+ */
+public class ResponseStreamingTest extends TestCase {
+    private static final byte CLA = (byte) 0x80;
+    private static final byte INS_ECHO = 2;
+
+    public ResponseStreamingTest(String name) {
+        super(name);
+    }
+
+    private Simulator prepareSimulator() {
+        Simulator simulator = new Simulator(new SimulatorRuntime());
+        AID aid = AIDUtil.create("0102030405cafe01");
+        simulator.installApplet(aid, Sha1Applet.class);
+        simulator.selectApplet(aid);
+        return simulator;
+    }
+
+    private static byte[] echoCommand(byte[] data) {
+        byte[] command = new byte[7 + data.length];
+        command[0] = CLA;
+        command[1] = INS_ECHO;
+        command[5] = (byte) (data.length >> 8);
+        command[6] = (byte) data.length;
+        System.arraycopy(data, 0, command, 7, data.length);
+        return command;
+    }
+
+    private static byte[] testData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    public void testSink() {
+        Simulator simulator = prepareSimulator();
+        byte[] data = testData(1000);
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        short sw = simulator.transmitCommand(echoCommand(data), new ResponseSink() {
+            public void write(byte[] bytes, int offset, int length) {
+                received.write(bytes, offset, length);
+            }
+        });
+        assertEquals(0x9000, sw & 0xFFFF);
+        assertTrue(Arrays.equals(data, received.toByteArray()));
+    }
+
+    public void testSinkFailure() {
+        Simulator simulator = prepareSimulator();
+        final IllegalStateException failure = new IllegalStateException();
+        try {
+            simulator.transmitCommand(echoCommand(testData(10)), new ResponseSink() {
+                public void write(byte[] bytes, int offset, int length) {
+                    throw failure;
+                }
+            });
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        // the runtime is usable afterwards
+        byte[] command = echoCommand(testData(10));
+        ByteUtil.requireSW(simulator.transmitCommand(command), 0x9000);
+    }
+
+    public void testOutputStream() throws Exception {
+        Simulator simulator = prepareSimulator();
+        byte[] command = echoCommand(testData(2000));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int length = simulator.transmitCommand(command, out);
+        byte[] expected = simulator.transmitCommand(command);
+        assertEquals(expected.length, length);
+        assertTrue(Arrays.equals(expected, out.toByteArray()));
+    }
+
+    public void testGetResponseChaining() {
+        Simulator simulator = prepareSimulator();
+        simulator.setResponseChaining(true);
+        byte[] data = testData(600);
+
+        byte[] response = simulator.transmitCommand(echoCommand(data));
+        assertEquals(256 + 2, response.length);
+        assertEquals(0x6100, ByteUtil.getSW(response) & 0xFFFF);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        received.write(response, 0, 256);
+
+        response = simulator.transmitCommand(new byte[]{0, (byte) 0xC0, 0, 0, 0});
+        assertEquals(256 + 2, response.length);
+        assertEquals(0x6158, ByteUtil.getSW(response) & 0xFFFF);
+        received.write(response, 0, 256);
+
+        response = simulator.transmitCommand(new byte[]{0, (byte) 0xC0, 0, 0, 0x58});
+        assertEquals(0x58 + 2, response.length);
+        assertEquals(0x9000, ByteUtil.getSW(response) & 0xFFFF);
+        received.write(response, 0, 0x58);
+        assertTrue(Arrays.equals(data, received.toByteArray()));
+
+        // without pending data GET RESPONSE goes to the applet
+        ByteUtil.requireSW(simulator.transmitCommand(new byte[]{0, (byte) 0xC0, 0, 0, 0}), 0x6E00);
+    }
+
+    public void testNoChainingForT1() {
+        Simulator simulator = prepareSimulator();
+        simulator.setResponseChaining(true);
+        simulator.changeProtocol("T=1");
+        byte[] data = testData(600);
+        byte[] response = simulator.transmitCommand(echoCommand(data));
+        assertEquals(data.length + 2, response.length);
+        ByteUtil.requireSW(response, 0x9000);
+    }
+}
@@ -17,7 +17,10 @@ package com.licel.jcardsim.base;
 
 import com.licel.jcardsim.samples.HelloWorldApplet;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.util.Properties;
 
 import com.licel.jcardsim.samples.TestResponseDataAndStatusWordApplet;
 import com.licel.jcardsim.utils.AIDUtil;
@@ -234,6 +237,36 @@ public class SimulatorTest extends TestCase {
         assertEquals(instance.selectApplet(TEST_APPLET_AID), false);
     }
 
+    /**
+     * Test of reloadApplets method, of class Simulator.
+     */
+    public void testReloadApplets() throws Exception {
+        System.out.println("reloadApplets");
+        File jar = File.createTempFile("helloworld", ".jar");
+        jar.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(jar);
+        fos.write(appletJarContents);
+        fos.close();
+        Properties properties = new Properties();
+        properties.setProperty("com.licel.jcardsim.card.applet.0.AID", Hex.toHexString(TEST_APPLET1_AID_BYTES));
+        properties.setProperty("com.licel.jcardsim.card.applet.0.Class", TEST_APPLET1_CLASSNAME);
+        properties.setProperty("com.licel.jcardsim.card.applet.0.Jar", jar.getAbsolutePath());
+
+        Simulator instance = new Simulator(new SimulatorRuntime(), properties);
+        Class<?> appletClass = instance.cl.loadClass(TEST_APPLET1_CLASSNAME);
+        instance.createApplet(TEST_APPLET1_AID, createData, (short) 0, (byte) createData.length);
+        assertTrue(instance.selectApplet(TEST_APPLET1_AID));
+
+        instance.reloadApplets(properties);
+        // applet instances are gone, classes come from a new class loader
+        assertFalse(instance.selectApplet(TEST_APPLET1_AID));
+        assertNotSame(appletClass, instance.cl.loadClass(TEST_APPLET1_CLASSNAME));
+        instance.createApplet(TEST_APPLET1_AID, createData, (short) 0, (byte) createData.length);
+        assertTrue(instance.selectApplet(TEST_APPLET1_AID));
+        byte[] response = instance.transmitCommand(new byte[]{0x01, 0x02, 0x00, 0x00});
+        assertTrue(Arrays.areEqual(new byte[]{(byte) 0x90, 0x00}, response));
+    }
+
     /**
      * Test of getATR method, of class Simulator.
      */
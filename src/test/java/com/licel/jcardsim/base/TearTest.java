@@ -0,0 +1,283 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.utils.AIDUtil;
+import com.licel.jcardsim.utils.ByteUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javacard.framework.AID;
+import javacard.framework.APDU;
+import javacard.framework.Applet;
+import javacard.framework.ISO7816;
+import javacard.framework.ISOException;
+import javacard.framework.JCSystem;
+import javacard.framework.Util;
+import javacard.security.AESKey;
+import javacard.security.KeyBuilder;
+import javacard.security.RandomData;
+import javacardx.crypto.Cipher;
+import junit.framework.TestCase;
+
+/**
+ * Test for tear injection and checkpoints
+ */
+public class TearTest extends TestCase {
+    private static final byte INS_WRITE = 0x20;
+    private static final byte INS_WRITE_TRANSACTION = 0x21;
+    private static final byte INS_READ = 0x22;
+    private static final byte INS_IS_TRANSIENT = 0x23;
+    private static final byte INS_ENCRYPT = 0x24;
+    private static final byte INS_WRITE_NON_ATOMIC = 0x25;
+    private static final AID AID = AIDUtil.create("010203040506070809");
+    private static final AID CRYPTO_AID = AIDUtil.create("01020304050607080A");
+
+    private static class TearApplet extends Applet {
+        private final byte[] data = new byte[16];
+        private final byte[] transientData = JCSystem.makeTransientByteArray((short) 16, JCSystem.CLEAR_ON_DESELECT);
+
+        @SuppressWarnings("unused")
+        public static void install(byte[] bArray, short bOffset, byte bLength) {
+            new TearApplet().register();
+        }
+
+        @Override
+        public void process(APDU apdu) throws ISOException {
+            if (selectingApplet()) {
+                return;
+            }
+            byte[] buffer = apdu.getBuffer();
+            short length = apdu.setIncomingAndReceive();
+            switch (buffer[ISO7816.OFFSET_INS]) {
+                case INS_WRITE:
+                    Util.arrayCopy(buffer, ISO7816.OFFSET_CDATA, data, (short) 0, length);
+                    Util.setShort(data, (short) 8, (short) 0x0102);
+                    apdu.setOutgoingAndSend((short) 0, (short) 4);
+                    return;
+                case INS_WRITE_TRANSACTION:
+                    JCSystem.beginTransaction();
+                    Util.arrayCopy(buffer, ISO7816.OFFSET_CDATA, data, (short) 0, length);
+                    Util.setShort(data, (short) 8, (short) 0x0102);
+                    JCSystem.commitTransaction();
+                    return;
+                case INS_WRITE_NON_ATOMIC:
+                    Util.arrayCopyNonAtomic(buffer, ISO7816.OFFSET_CDATA, data, (short) 0, length);
+                    Util.arrayFillNonAtomic(data, (short) 8, (short) 2, (byte) 0x7F);
+                    return;
+                case INS_READ:
+                    Util.arrayCopyNonAtomic(data, (short) 0, buffer, (short) 0, (short) data.length);
+                    apdu.setOutgoingAndSend((short) 0, (short) data.length);
+                    return;
+                case INS_IS_TRANSIENT:
+                    buffer[0] = JCSystem.isTransient(transientData);
+                    apdu.setOutgoingAndSend((short) 0, (short) 1);
+                    return;
+                default:
+                    ISOException.throwIt(ISO7816.SW_INS_NOT_SUPPORTED);
+            }
+        }
+    }
+
+    private static class CryptoApplet extends Applet {
+        private final RandomData random = RandomData.getInstance(RandomData.ALG_SECURE_RANDOM);
+        private final AESKey key = (AESKey) KeyBuilder.buildKey(KeyBuilder.TYPE_AES, KeyBuilder.LENGTH_AES_128, false);
+        private final Cipher cipher = Cipher.getInstance(Cipher.ALG_AES_BLOCK_128_CBC_NOPAD, false);
+        private final byte[] keyData = new byte[16];
+
+        @SuppressWarnings("unused")
+        public static void install(byte[] bArray, short bOffset, byte bLength) {
+            new CryptoApplet().register();
+        }
+
+        @Override
+        public void process(APDU apdu) throws ISOException {
+            if (selectingApplet()) {
+                return;
+            }
+            byte[] buffer = apdu.getBuffer();
+            short length = apdu.setIncomingAndReceive();
+            switch (buffer[ISO7816.OFFSET_INS]) {
+                case INS_WRITE:
+                    random.generateData(keyData, (short) 0, (short) keyData.length);
+                    key.setKey(keyData, (short) 0);
+                    return;
+                case INS_ENCRYPT:
+                    cipher.init(key, Cipher.MODE_ENCRYPT);
+                    short out = cipher.doFinal(buffer, ISO7816.OFFSET_CDATA, length, buffer, (short) 0);
+                    apdu.setOutgoingAndSend((short) 0, out);
+                    return;
+                default:
+                    ISOException.throwIt(ISO7816.SW_INS_NOT_SUPPORTED);
+            }
+        }
+    }
+
+    private Simulator simulator;
+
+    public TearTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        simulator = new Simulator(new SimulatorRuntime());
+        simulator.installApplet(AID, TearApplet.class);
+        simulator.selectApplet(AID);
+    }
+
+    private static byte[] write(byte ins, int value) {
+        byte[] command = new byte[]{0, ins, 0, 0, 8, 0, 0, 0, 0, 0, 0, 0, 0};
+        Arrays.fill(command, 5, 13, (byte) value);
+        return command;
+    }
+
+    private byte[] read() {
+        byte[] response = simulator.transmitCommand(new byte[]{0, INS_READ, 0, 0, 16});
+        ByteUtil.requireSW(response, 0x9000);
+        return Arrays.copyOf(response, 16);
+    }
+
+    private static byte[] expected(int value, boolean withShort) {
+        byte[] data = new byte[16];
+        Arrays.fill(data, 0, 8, (byte) value);
+        if (withShort) {
+            data[8] = 1;
+            data[9] = 2;
+        }
+        return data;
+    }
+
+    private void assertTorn(byte[] command) {
+        try {
+            simulator.transmitCommand(command);
+            fail("CardTearException expected");
+        } catch (CardTearException e) {
+            // expected
+        }
+        simulator.setTearInjector(null);
+        simulator.selectApplet(AID);
+    }
+
+    public void testTearAfterPersistentWrites() {
+        TearInjector injector = TearInjector.afterPersistentWrites(1);
+        simulator.setTearInjector(injector);
+        assertTorn(write(INS_WRITE, 0x11));
+        assertEquals(1, injector.getTearCount());
+        assertTrue(Arrays.equals(expected(0x11, false), read()));
+    }
+
+    public void testTearNonAtomicWrites() {
+        TearInjector injector = TearInjector.afterPersistentWrites(1);
+        simulator.setTearInjector(injector);
+        assertTorn(write(INS_WRITE_NON_ATOMIC, 0x12));
+        assertEquals(1, injector.getTearCount());
+        assertTrue(Arrays.equals(expected(0x12, false), read()));
+
+        simulator.setTearInjector(TearInjector.afterPersistentWrites(0));
+        assertTorn(write(INS_WRITE_NON_ATOMIC, 0x13));
+        assertTrue(Arrays.equals(expected(0x12, false), read()));
+    }
+
+    public void testTearRollsBackTransaction() {
+        simulator.setTearInjector(TearInjector.afterPersistentWrites(1));
+        assertTorn(write(INS_WRITE_TRANSACTION, 0x22));
+        assertTrue(Arrays.equals(new byte[16], read()));
+    }
+
+    public void testTearAfterResponseBytes() {
+        simulator.setTearInjector(TearInjector.afterResponseBytes(2));
+        assertTorn(write(INS_WRITE, 0x33));
+        assertTrue(Arrays.equals(expected(0x33, true), read()));
+    }
+
+    public void testNoTearWhenPointNotReached() {
+        simulator.setTearInjector(TearInjector.afterPersistentWrites(2));
+        ByteUtil.requireSW(simulator.transmitCommand(write(INS_WRITE, 0x44)), 0x9000);
+        simulator.setTearInjector(null);
+        assertTrue(Arrays.equals(expected(0x44, true), read()));
+    }
+
+    public void testCheckpointRestore() {
+        ByteUtil.requireSW(simulator.transmitCommand(write(INS_WRITE, 0x55)), 0x9000);
+        CardCheckpoint checkpoint = simulator.checkpoint();
+        ByteUtil.requireSW(simulator.transmitCommand(write(INS_WRITE, 0x66)), 0x9000);
+
+        simulator.restore(checkpoint);
+        assertTrue(Arrays.equals(expected(0x55, true), read()));
+        byte[] response = simulator.transmitCommand(new byte[]{0, INS_IS_TRANSIENT, 0, 0, 1});
+        assertEquals(JCSystem.CLEAR_ON_DESELECT, response[0]);
+
+        // a checkpoint can be restored again
+        ByteUtil.requireSW(simulator.transmitCommand(write(INS_WRITE, 0x77)), 0x9000);
+        simulator.restore(checkpoint);
+        assertTrue(Arrays.equals(expected(0x55, true), read()));
+    }
+
+    public void testCheckpointWithCryptoObjects() {
+        simulator.installApplet(CRYPTO_AID, CryptoApplet.class);
+        assertTrue(simulator.selectApplet(CRYPTO_AID));
+        ByteUtil.requireSW(simulator.transmitCommand(new byte[]{0, INS_WRITE, 0, 0}), 0x9000);
+        byte[] encrypt = new byte[21];
+        encrypt[1] = INS_ENCRYPT;
+        encrypt[4] = 16;
+        byte[] before = simulator.transmitCommand(encrypt);
+        ByteUtil.requireSW(before, 0x9000);
+
+        CardCheckpoint checkpoint = simulator.checkpoint();
+        // new random key
+        ByteUtil.requireSW(simulator.transmitCommand(new byte[]{0, INS_WRITE, 0, 0}), 0x9000);
+        assertFalse(Arrays.equals(before, simulator.transmitCommand(encrypt)));
+
+        simulator.restore(checkpoint);
+        assertTrue(Arrays.equals(before, simulator.transmitCommand(encrypt)));
+        // the random generator still works after a restore
+        ByteUtil.requireSW(simulator.transmitCommand(new byte[]{0, INS_WRITE, 0, 0}), 0x9000);
+    }
+
+    private List<Boolean> randomTears(long seed) {
+        CardCheckpoint checkpoint = simulator.checkpoint();
+        TearInjector injector = TearInjector.atRandomPoint(seed, 3);
+        List<Boolean> outcomes = new ArrayList<Boolean>();
+        for (int i = 0; i < 30; i++) {
+            simulator.restore(checkpoint);
+            simulator.setTearInjector(injector);
+            boolean torn = false;
+            try {
+                simulator.transmitCommand(write(INS_WRITE_TRANSACTION, i));
+            } catch (CardTearException e) {
+                torn = true;
+                simulator.selectApplet(AID);
+            }
+            simulator.setTearInjector(null);
+            // a transaction is never half applied
+            assertTrue(Arrays.equals(torn ? new byte[16] : expected(i, true), read()));
+            outcomes.add(torn);
+        }
+        assertEquals(Collections.frequency(outcomes, Boolean.TRUE), injector.getTearCount());
+        return outcomes;
+    }
+
+    public void testRandomTearsAreDeterministic() {
+        List<Boolean> first = randomTears(42);
+        List<Boolean> second = randomTears(42);
+        assertEquals(first, second);
+        assertTrue(first.contains(Boolean.TRUE));
+        assertTrue(first.contains(Boolean.FALSE));
+    }
+}
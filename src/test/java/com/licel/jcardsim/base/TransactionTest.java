@@ -0,0 +1,191 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.base;
+
+import com.licel.jcardsim.utils.AIDUtil;
+import com.licel.jcardsim.utils.ByteUtil;
+import java.util.Arrays;
+import javacard.framework.AID;
+import javacard.framework.APDU;
+import javacard.framework.Applet;
+import javacard.framework.ISO7816;
+import javacard.framework.ISOException;
+import javacard.framework.JCSystem;
+import javacard.framework.TransactionException;
+import javacard.framework.Util;
+import junit.framework.TestCase;
+
+/**
+ * Test for the transaction undo log
+ */
+public class TransactionTest extends TestCase {
+    private static final byte INS_COMMIT = 0x10;
+    private static final byte INS_ABORT = 0x11;
+    private static final byte INS_LEAVE_OPEN = 0x12;
+    private static final byte INS_READ = 0x13;
+    private static final byte INS_TRANSIENT_ABORT = 0x14;
+    private static final byte INS_READ_TRANSIENT = 0x15;
+    private static final byte INS_TWO_WRITES = 0x16;
+
+    private static class TransactionApplet extends Applet {
+        private final byte[] data = new byte[16];
+        private final byte[] transientData = JCSystem.makeTransientByteArray((short) 16, JCSystem.CLEAR_ON_RESET);
+
+        @SuppressWarnings("unused")
+        public static void install(byte[] bArray, short bOffset, byte bLength) {
+            new TransactionApplet().register();
+        }
+
+        @Override
+        public void process(APDU apdu) throws ISOException {
+            if (selectingApplet()) {
+                return;
+            }
+            byte[] buffer = apdu.getBuffer();
+            short length = apdu.setIncomingAndReceive();
+            switch (buffer[ISO7816.OFFSET_INS]) {
+                case INS_COMMIT:
+                    JCSystem.beginTransaction();
+                    Util.arrayCopy(buffer, ISO7816.OFFSET_CDATA, data, (short) 0, length);
+                    Util.setShort(data, (short) 14, (short) 0x0102);
+                    JCSystem.commitTransaction();
+                    return;
+                case INS_ABORT:
+                    JCSystem.beginTransaction();
+                    Util.arrayCopy(buffer, ISO7816.OFFSET_CDATA, data, (short) 0, length);
+                    Util.setShort(data, (short) 14, (short) 0x0304);
+                    Util.arrayCopy(buffer, ISO7816.OFFSET_CDATA, data, (short) 1, length);
+                    JCSystem.abortTransaction();
+                    return;
+                case INS_LEAVE_OPEN:
+                    JCSystem.beginTransaction();
+                    Util.arrayCopy(buffer, ISO7816.OFFSET_CDATA, data, (short) 0, length);
+                    return;
+                case INS_READ:
+                    Util.arrayCopyNonAtomic(data, (short) 0, buffer, (short) 0, (short) data.length);
+                    apdu.setOutgoingAndSend((short) 0, (short) data.length);
+                    return;
+                case INS_TRANSIENT_ABORT:
+                    JCSystem.beginTransaction();
+                    Util.arrayCopy(buffer, ISO7816.OFFSET_CDATA, transientData, (short) 0, length);
+                    JCSystem.abortTransaction();
+                    return;
+                case INS_READ_TRANSIENT:
+                    Util.arrayCopyNonAtomic(transientData, (short) 0, buffer, (short) 0, (short) transientData.length);
+                    apdu.setOutgoingAndSend((short) 0, (short) transientData.length);
+                    return;
+                case INS_TWO_WRITES:
+                    JCSystem.beginTransaction();
+                    try {
+                        Util.arrayCopy(buffer, ISO7816.OFFSET_CDATA, data, (short) 0, length);
+                        Util.arrayCopy(buffer, ISO7816.OFFSET_CDATA, data, (short) 0, length);
+                    } catch (TransactionException e) {
+                        JCSystem.abortTransaction();
+                        ISOException.throwIt((short) (0x6F00 | e.getReason()));
+                    }
+                    JCSystem.commitTransaction();
+                    return;
+                default:
+                    ISOException.throwIt(ISO7816.SW_INS_NOT_SUPPORTED);
+            }
+        }
+    }
+
+    private SimulatorRuntime runtime;
+    private Simulator simulator;
+
+    public TransactionTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        runtime = new SimulatorRuntime();
+        simulator = new Simulator(runtime);
+        AID aid = AIDUtil.create("010203040506070809");
+        simulator.installApplet(aid, TransactionApplet.class);
+        simulator.selectApplet(aid);
+    }
+
+    private byte[] command(byte ins, byte[] data) {
+        byte[] command = new byte[5 + data.length];
+        command[ISO7816.OFFSET_INS] = ins;
+        command[ISO7816.OFFSET_LC] = (byte) data.length;
+        System.arraycopy(data, 0, command, 5, data.length);
+        return command;
+    }
+
+    private byte[] read(byte ins) {
+        byte[] response = simulator.transmitCommand(new byte[]{0, ins, 0, 0, 16});
+        ByteUtil.requireSW(response, 0x9000);
+        return Arrays.copyOf(response, 16);
+    }
+
+    private static byte[] filled(int value) {
+        byte[] data = new byte[8];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+
+    public void testCommit() {
+        ByteUtil.requireSW(simulator.transmitCommand(command(INS_COMMIT, filled(0x11))), 0x9000);
+        byte[] expected = new byte[16];
+        Arrays.fill(expected, 0, 8, (byte) 0x11);
+        expected[14] = 1;
+        expected[15] = 2;
+        assertTrue(Arrays.equals(expected, read(INS_READ)));
+        assertEquals(1, runtime.getTransactionLog().getCommitCount());
+    }
+
+    public void testAbort() {
+        ByteUtil.requireSW(simulator.transmitCommand(command(INS_COMMIT, filled(0x11))), 0x9000);
+        byte[] committed = read(INS_READ);
+        ByteUtil.requireSW(simulator.transmitCommand(command(INS_ABORT, filled(0x22))), 0x9000);
+        assertTrue(Arrays.equals(committed, read(INS_READ)));
+        assertEquals(1, runtime.getTransactionLog().getAbortCount());
+        assertEquals(2 * (8 + TransactionLog.ENTRY_OVERHEAD) + 2 + TransactionLog.ENTRY_OVERHEAD,
+                runtime.getTransactionLog().getHighWaterMark());
+    }
+
+    public void testOpenTransactionAbortedAfterProcess() {
+        ByteUtil.requireSW(simulator.transmitCommand(command(INS_LEAVE_OPEN, filled(0x33))), 0x9000);
+        assertEquals(0, runtime.getTransactionDepth());
+        assertTrue(Arrays.equals(new byte[16], read(INS_READ)));
+    }
+
+    public void testTransientArrayNotRolledBack() {
+        ByteUtil.requireSW(simulator.transmitCommand(command(INS_TRANSIENT_ABORT, filled(0x44))), 0x9000);
+        byte[] expected = new byte[16];
+        Arrays.fill(expected, 0, 8, (byte) 0x44);
+        assertTrue(Arrays.equals(expected, read(INS_READ_TRANSIENT)));
+        assertEquals(0, runtime.getTransactionLog().getHighWaterMark());
+    }
+
+    public void testCommitCapacity() {
+        runtime.setMaxCommitCapacity((short) (8 + TransactionLog.ENTRY_OVERHEAD));
+        assertEquals(8 + TransactionLog.ENTRY_OVERHEAD, runtime.getMaxCommitCapacity());
+        assertEquals(8 + TransactionLog.ENTRY_OVERHEAD, runtime.getUnusedCommitCapacity());
+
+        byte[] response = simulator.transmitCommand(command(INS_TWO_WRITES, filled(0x55)));
+        ByteUtil.requireSW(response, 0x6F00 | TransactionException.BUFFER_FULL);
+        assertTrue(Arrays.equals(new byte[16], read(INS_READ)));
+        assertEquals(1, runtime.getTransactionLog().getOverflowCount());
+
+        runtime.setMaxCommitCapacity((short) (2 * (8 + TransactionLog.ENTRY_OVERHEAD)));
+        ByteUtil.requireSW(simulator.transmitCommand(command(INS_TWO_WRITES, filled(0x55))), 0x9000);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.crypto;
+
+import javacard.security.Checksum;
+import javacard.security.CryptoException;
+import javacard.security.MessageDigest;
+import junit.framework.TestCase;
+
+/**
+ * Test for <code>AlgorithmRegistry</code>
+ */
+public class AlgorithmRegistryTest extends TestCase {
+    static final byte TEST_ALGORITHM = (byte) 0x7E;
+    static final byte PROVIDER_ALGORITHM = (byte) 0x7D;
+
+    public AlgorithmRegistryTest(String name) {
+        super(name);
+    }
+
+    public void testRegisterAndUnregister() {
+        assertFalse(AlgorithmRegistry.CHECKSUM.isSupported(TEST_ALGORITHM));
+        AlgorithmRegistry.CHECKSUM.register(new AlgorithmFactory<Checksum>() {
+            public Checksum newInstance(byte algorithm) {
+                return new CRC32();
+            }
+        }, TEST_ALGORITHM);
+        try {
+            assertTrue(AlgorithmRegistry.CHECKSUM.isSupported(TEST_ALGORITHM));
+            Checksum checksum = Checksum.getInstance(TEST_ALGORITHM, false);
+            assertEquals(Checksum.ALG_ISO3309_CRC32, checksum.getAlgorithm());
+        } finally {
+            AlgorithmRegistry.CHECKSUM.unregister(TEST_ALGORITHM);
+        }
+        try {
+            Checksum.getInstance(TEST_ALGORITHM, false);
+            fail("algorithm must be unregistered");
+        } catch (CryptoException e) {
+            assertEquals(CryptoException.NO_SUCH_ALGORITHM, e.getReason());
+        }
+    }
+
+    public void testServiceLoaderProvider() {
+        assertTrue(AlgorithmRegistry.CHECKSUM.isSupported(PROVIDER_ALGORITHM));
+        Checksum checksum = Checksum.getInstance(PROVIDER_ALGORITHM, false);
+        assertEquals(Checksum.ALG_ISO3309_CRC16, checksum.getAlgorithm());
+    }
+
+    public void testDigestInstancesAreIndependent() {
+        byte[] msg = "abc".getBytes();
+        byte[] first = new byte[MessageDigest.LENGTH_SHA_256];
+        byte[] second = new byte[MessageDigest.LENGTH_SHA_256];
+        MessageDigest md1 = MessageDigest.getInstance(MessageDigest.ALG_SHA_256, false);
+        MessageDigest md2 = MessageDigest.getInstance(MessageDigest.ALG_SHA_256, false);
+        md1.update(msg, (short) 0, (short) msg.length);
+        md2.doFinal(msg, (short) 0, (short) msg.length, second, (short) 0);
+        md1.doFinal(new byte[0], (short) 0, (short) 0, first, (short) 0);
+        assertTrue(java.util.Arrays.equals(first, second));
+    }
+
+    public void testNullFactoryRejected() {
+        try {
+            AlgorithmRegistry.CIPHER.register(null, TEST_ALGORITHM);
+            fail("null factory must be rejected");
+        } catch (NullPointerException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Registered in <code>META-INF/services</code> of the test resources
+     */
+    public static final class TestAlgorithmProvider implements AlgorithmProvider {
+        public void registerAlgorithms() {
+            AlgorithmRegistry.CHECKSUM.register(new AlgorithmFactory<Checksum>() {
+                public Checksum newInstance(byte algorithm) {
+                    return new CRC16();
+                }
+            }, PROVIDER_ALGORITHM);
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.licel.jcardsim.crypto;
 
+import javacard.security.CryptoException;
 import javacard.security.KeyBuilder;
 import javacard.security.KeyPair;
 import javacard.security.MessageDigest;
@@ -324,4 +325,33 @@ public class AsymmetricSignatureImplTest extends TestCase {
                 etalonSign, etalonSignOffset, (short)(etalonSignLength!=0?etalonSignLength:etalonSign.length));
         assertEquals(true, result);
     }
+
+    /**
+     * Test of <code>signPreComputedHash</code> with a wrong hash length and
+     * with an algorithm that does not accept precomputed hashes
+     */
+    public void testPreComputedHashIllegalUse() {
+        KeyPair kp = new KeyPair(KeyPair.ALG_RSA, KeyBuilder.LENGTH_RSA_1024);
+        kp.genKeyPair();
+        byte[] hash = new byte[MessageDigest.LENGTH_SHA_256 - 1];
+        byte[] signature = new byte[128];
+
+        Signature engine = Signature.getInstance(Signature.ALG_RSA_SHA_256_PKCS1, false);
+        engine.init(kp.getPrivate(), Signature.MODE_SIGN);
+        try {
+            engine.signPreComputedHash(hash, (short) 0, (short) hash.length, signature, (short) 0);
+            fail("wrong hash length must be rejected");
+        } catch (CryptoException e) {
+            assertEquals(CryptoException.ILLEGAL_USE, e.getReason());
+        }
+
+        engine = Signature.getInstance(Signature.ALG_RSA_SHA_ISO9796, false);
+        engine.init(kp.getPrivate(), Signature.MODE_SIGN);
+        try {
+            engine.signPreComputedHash(hash, (short) 0, (short) 20, signature, (short) 0);
+            fail("ISO 9796 signatures do not accept precomputed hashes");
+        } catch (CryptoException e) {
+            assertEquals(CryptoException.ILLEGAL_USE, e.getReason());
+        }
+    }
 }
@@ -54,4 +54,14 @@ public class CRC16Test extends TestCase {
         crcEngine.doFinal(msg, (short) 0, (short) msg.length, crc, (short) 0);
         assertEquals(true, Arrays.areEqual(Hex.decode(CRC), crc));
     }
+
+    public void testCrc16Multipart() {
+        Checksum crcEngine = Checksum.getInstance(Checksum.ALG_ISO3309_CRC16, false);
+        byte[] crc = new byte[2];
+        byte[] msg = Hex.decode(MESSAGE);
+        crcEngine.update(msg, (short) 0, (short) 5);
+        crcEngine.update(msg, (short) 5, (short) 0);
+        crcEngine.doFinal(msg, (short) 5, (short) (msg.length - 5), crc, (short) 0);
+        assertEquals(true, Arrays.areEqual(Hex.decode(CRC), crc));
+    }
 }
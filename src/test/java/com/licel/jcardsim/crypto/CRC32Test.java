@@ -56,4 +56,32 @@ public class CRC32Test extends TestCase {
         crcEngine.doFinal(msg, (short) 0, (short) msg.length, crc, (short) 0);
         assertEquals(true, Arrays.areEqual(Hex.decode(CRC), crc));
     }
+
+    /**
+     * Multi-part update with the standard initial value must match <code>java.util.zip.CRC32</code>
+     */
+    public void testCrc32Multipart() {
+        Checksum crcEngine = Checksum.getInstance(Checksum.ALG_ISO3309_CRC32, false);
+        byte[] msg = new byte[1000];
+        for (int i = 0; i < msg.length; i++) {
+            msg[i] = (byte) (i * 31);
+        }
+        byte[] init = Hex.decode("FFFFFFFF");
+        crcEngine.init(init, (short) 0, (short) init.length);
+        crcEngine.update(msg, (short) 0, (short) 333);
+        crcEngine.update(msg, (short) 333, (short) 333);
+        byte[] crc = new byte[4];
+        crcEngine.doFinal(msg, (short) 666, (short) (msg.length - 666), crc, (short) 0);
+
+        CRC32 jdk = new CRC32();
+        jdk.update(msg);
+        long expected = jdk.getValue();
+        byte[] expectedBytes = new byte[]{(byte) (expected >>> 24), (byte) (expected >>> 16),
+                (byte) (expected >>> 8), (byte) expected};
+        assertEquals(true, Arrays.areEqual(expectedBytes, crc));
+
+        // engine is reset after doFinal
+        crcEngine.doFinal(Hex.decode(MESSAGE), (short) 0, (short) (MESSAGE.length() / 2), crc, (short) 0);
+        assertEquals(true, Arrays.areEqual(Hex.decode(CRC), crc));
+    }
 }
@@ -15,6 +15,7 @@
  */
 package com.licel.jcardsim.crypto;
 
+import javacard.security.CryptoException;
 import javacard.security.Signature;
 import junit.framework.TestCase;
 
@@ -66,4 +67,25 @@ public class SignatureProxyTest extends TestCase {
         }
 
     }
+
+    public void testUnsupportedAlgorithm() {
+        byte[] unsupported = {Signature.ALG_RSA_SHA_RFC2409, Signature.ALG_RSA_MD5_RFC2409,
+            Signature.ALG_RSA_RIPEMD160_ISO9796_MR, (byte) 0x7F};
+        for (byte algorithm : unsupported) {
+            try {
+                Signature.getInstance(algorithm, false);
+                fail("Algorithm " + algorithm + " must not be supported");
+            } catch (CryptoException e) {
+                assertEquals(CryptoException.NO_SUCH_ALGORITHM, e.getReason());
+            }
+        }
+    }
+
+    public void testInstancesAreIndependent() {
+        Signature first = Signature.getInstance(Signature.ALG_ECDSA_SHA_256, false);
+        Signature second = Signature.getInstance(Signature.ALG_ECDSA_SHA_256, false);
+        assertNotSame(first, second);
+        assertEquals(Signature.ALG_ECDSA_SHA_256, first.getAlgorithm());
+        assertTrue(Signature.getInstance(Signature.ALG_HMAC_SHA_256, false) instanceof SymmetricSignatureImpl);
+    }
 }
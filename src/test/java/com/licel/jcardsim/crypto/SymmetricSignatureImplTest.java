@@ -421,4 +421,27 @@ public class SymmetricSignatureImplTest extends TestCase {
                 (short) 0, (short) macEtalon.length));
 
     }
+
+    /**
+     * Test of verify method, of class SymmetricSignatureImpl with a modified
+     * or truncated MAC and with the MAC at a non-zero offset
+     */
+    public void testVerifyRejectsModifiedMac() {
+        byte[] hmacKeyBytes = Hex.decode(HMAC_TESTS[0][0]);
+        HMACKey hmacKey = (HMACKey) KeyBuilder.buildKey(KeyBuilder.TYPE_HMAC, (short) hmacKeyBytes.length, false);
+        hmacKey.setKey(hmacKeyBytes, (short) 0, (short) hmacKeyBytes.length);
+        Signature engine = Signature.getInstance(HMAC_IDS[0], false);
+        engine.init(hmacKey, Signature.MODE_VERIFY);
+        byte[] msg = Hex.decode(HMAC_TESTS[0][1]);
+        byte[] mac = Hex.decode(HMAC_TESTS[0][2]);
+        byte[] sigBuff = new byte[mac.length + 3];
+        System.arraycopy(mac, 0, sigBuff, 3, mac.length);
+
+        assertTrue(engine.verify(msg, (short) 0, (short) msg.length, sigBuff, (short) 3, (short) mac.length));
+        assertFalse(engine.verify(msg, (short) 0, (short) msg.length, sigBuff, (short) 3, (short) (mac.length - 1)));
+        sigBuff[sigBuff.length - 1] ^= 1;
+        assertFalse(engine.verify(msg, (short) 0, (short) msg.length, sigBuff, (short) 3, (short) mac.length));
+        sigBuff[sigBuff.length - 1] ^= 1;
+        assertTrue(engine.verify(msg, (short) 0, (short) msg.length, sigBuff, (short) 3, (short) mac.length));
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.framework;
+
+import com.licel.jcardsim.base.ApduCase;
+import com.licel.jcardsim.base.Simulator;
+import com.licel.jcardsim.base.SimulatorRuntime;
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import com.licel.jcardsim.utils.ByteUtil;
+import javacard.framework.AID;
+import java.lang.reflect.Constructor;
+import javacard.framework.APDU;
+import junit.framework.TestCase;
+
+/**
+ * Test for the <code>APDUProxy</code> merged into <code>APDU</code>
+ */
+public class APDUProxyTest extends TestCase {
+
+    public APDUProxyTest(String name) {
+        super(name);
+    }
+
+    public void testApduImplementsInternalApdu() {
+        assertTrue(InternalAPDU.class.isAssignableFrom(APDU.class));
+    }
+
+    public void testCurrentApduOutsideProcess() {
+        Simulator simulator = new Simulator(new SimulatorRuntime());
+        AID aid = AIDUtil.create("010203040506070809");
+        simulator.installApplet(aid, HelloWorldApplet.class);
+        simulator.selectApplet(aid);
+        ByteUtil.requireSW(simulator.transmitCommand(new byte[]{0x01, 0x02, 0x00, 0x00}), 0x9000);
+        try {
+            APDU.getCurrentAPDU();
+            fail("SecurityException expected");
+        } catch (SecurityException e) {
+            // access is only allowed during process
+        }
+    }
+
+    public void testBufferClearedAfterLongerCommand() throws Exception {
+        Constructor<APDU> constructor = APDU.class.getDeclaredConstructor(boolean.class);
+        constructor.setAccessible(true);
+        APDU apdu = constructor.newInstance(true);
+        InternalAPDU internal = (InternalAPDU) (Object) apdu;
+
+        byte[] longCommand = new byte[7 + 1000];
+        longCommand[4] = 0;
+        longCommand[5] = (byte) (1000 >> 8);
+        longCommand[6] = (byte) 1000;
+        for (int i = 7; i < longCommand.length; i++) {
+            longCommand[i] = (byte) 0xA5;
+        }
+        internal.internalReset(APDU.PROTOCOL_T1, ApduCase.getCase(longCommand), longCommand);
+        // applet scratch data in the short buffer area
+        apdu.getBuffer()[200] = 0x5A;
+
+        byte[] shortCommand = new byte[]{0x01, 0x02, 0x00, 0x00};
+        internal.internalReset(APDU.PROTOCOL_T1, ApduCase.getCase(shortCommand), shortCommand);
+        byte[] buffer = apdu.getBuffer();
+        for (int i = shortCommand.length; i < buffer.length; i++) {
+            assertEquals("offset " + i, 0, buffer[i]);
+        }
+    }
+
+    public void testScratchDataBeyondShortBufferCleared() throws Exception {
+        Constructor<APDU> constructor = APDU.class.getDeclaredConstructor(boolean.class);
+        constructor.setAccessible(true);
+        APDU apdu = constructor.newInstance(true);
+        InternalAPDU internal = (InternalAPDU) (Object) apdu;
+
+        byte[] command = new byte[]{0x01, 0x02, 0x00, 0x00};
+        internal.internalReset(APDU.PROTOCOL_T1, ApduCase.getCase(command), command);
+        // written directly, not through an API method
+        byte[] buffer = apdu.getBuffer();
+        buffer[261] = 0x5A;
+        buffer[buffer.length - 1] = 0x5A;
+
+        internal.internalReset(APDU.PROTOCOL_T1, ApduCase.getCase(command), command);
+        assertEquals(0, buffer[261]);
+        assertEquals(0, buffer[buffer.length - 1]);
+    }
+}
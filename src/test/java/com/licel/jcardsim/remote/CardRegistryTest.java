@@ -0,0 +1,125 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import com.licel.jcardsim.base.Simulator;
+import com.licel.jcardsim.base.SimulatorRuntime;
+import com.licel.jcardsim.io.JavaCardInterface;
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import com.licel.jcardsim.utils.ByteUtil;
+import javacard.framework.AID;
+import junit.framework.TestCase;
+import org.bouncycastle.util.Arrays;
+
+import java.util.Properties;
+
+/**
+ * Test for <code>CardRegistry</code> and <code>CardTemplate</code>
+ */
+public class CardRegistryTest extends TestCase {
+    private static final String PRESET_AID = "010203040506070809";
+    private static final String INSTALLED_AID = "01020304050607080A";
+    private static final String ATR = "3B00";
+    private static final byte[] NOP = {0x01, 0x02, 0x00, 0x00};
+
+    private CardRegistry registry;
+
+    public CardRegistryTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Properties cfg = new Properties();
+        cfg.setProperty(Simulator.ATR_SYSTEM_PROPERTY, ATR);
+        cfg.setProperty("com.licel.jcardsim.card.applet.0.AID", PRESET_AID);
+        cfg.setProperty("com.licel.jcardsim.card.applet.0.Class", HelloWorldApplet.class.getName());
+        registry = new CardRegistry();
+        registry.addTemplate(CardRegistry.DEFAULT_TEMPLATE, new CardTemplate(cfg));
+    }
+
+    private static void install(JavaCardInterface card, String aid) {
+        card.installApplet(AIDUtil.create(aid), HelloWorldApplet.class.getName(), new byte[0], (short) 0, (byte) 0);
+    }
+
+    private static boolean isInstalled(JavaCardInterface card, String aid) {
+        return card.selectApplet(AIDUtil.create(aid));
+    }
+
+    public void testCreateCardFromTemplate() {
+        String first = registry.createCard(null);
+        String second = registry.createCard(CardRegistry.DEFAULT_TEMPLATE);
+        assertFalse(first.equals(second));
+
+        JavaCardInterface card = registry.getCard(first);
+        assertEquals(ATR, ByteUtil.hexString(card.getATR()));
+        AID aid = AIDUtil.create(PRESET_AID);
+        card.createApplet(aid, new byte[0], (short) 0, (byte) 0);
+        assertTrue(card.selectApplet(aid));
+        assertTrue(Arrays.areEqual(new byte[]{(byte) 0x90, 0x00}, card.transmitCommand(NOP)));
+
+        // cards are independent
+        install(card, INSTALLED_AID);
+        assertFalse(isInstalled(registry.getCard(second), INSTALLED_AID));
+    }
+
+    public void testUnknownTemplate() {
+        try {
+            registry.createCard("missing");
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testCloneRepeatsInstalls() {
+        String id = registry.createCard(null);
+        install(registry.getCard(id), INSTALLED_AID);
+
+        String cloneId = registry.cloneCard(id);
+        assertFalse(id.equals(cloneId));
+        JavaCardInterface clone = registry.getCard(cloneId);
+        assertTrue(isInstalled(clone, INSTALLED_AID));
+        assertTrue(Arrays.areEqual(new byte[]{(byte) 0x90, 0x00}, clone.transmitCommand(NOP)));
+    }
+
+    public void testResetRestoresTemplate() {
+        String id = registry.createCard(null);
+        install(registry.getCard(id), INSTALLED_AID);
+        registry.resetCard(id);
+        assertFalse(isInstalled(registry.getCard(id), INSTALLED_AID));
+    }
+
+    public void testDestroyCard() {
+        String id = registry.createCard(null);
+        assertTrue(registry.getCardIds().contains(id));
+        assertTrue(registry.destroyCard(id));
+        assertNull(registry.getCard(id));
+        assertFalse(registry.destroyCard(id));
+    }
+
+    public void testExternalCardCannotBeCloned() {
+        registry.putCard("external", new Simulator(new SimulatorRuntime()));
+        try {
+            registry.cloneCard("external");
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
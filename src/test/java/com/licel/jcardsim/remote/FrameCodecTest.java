@@ -0,0 +1,113 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import junit.framework.TestCase;
+import org.bouncycastle.util.Arrays;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+
+/**
+ * Test for <code>FrameCodec</code>
+ */
+public class FrameCodecTest extends TestCase {
+    private Pipe pipe;
+
+    public FrameCodecTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        pipe = Pipe.open();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        pipe.sink().close();
+        pipe.source().close();
+        super.tearDown();
+    }
+
+    public void testVpcdWireFormat() throws Exception {
+        FrameCodec codec = new FrameCodec(pipe.source(), pipe.sink(), FrameCodec.Header.UINT16_BIG_ENDIAN);
+        codec.writeFrame(new byte[]{0x01, 0x02, 0x03});
+        codec.writeHeader(0xABCD);
+
+        ByteBuffer raw = ByteBuffer.allocate(7);
+        while (raw.hasRemaining()) {
+            pipe.source().read(raw);
+        }
+        assertTrue(Arrays.areEqual(new byte[]{0x00, 0x03, 0x01, 0x02, 0x03, (byte) 0xAB, (byte) 0xCD}, raw.array()));
+    }
+
+    public void testBixVReaderWireFormat() throws Exception {
+        FrameCodec codec = new FrameCodec(pipe.source(), pipe.sink(), FrameCodec.Header.INT32_LITTLE_ENDIAN);
+        codec.writeFrame(new byte[]{0x55});
+
+        ByteBuffer raw = ByteBuffer.allocate(5);
+        while (raw.hasRemaining()) {
+            pipe.source().read(raw);
+        }
+        assertTrue(Arrays.areEqual(new byte[]{0x01, 0x00, 0x00, 0x00, 0x55}, raw.array()));
+    }
+
+    public void testRoundTripReusesPayload() throws Exception {
+        FrameCodec codec = new FrameCodec(pipe.source(), pipe.sink(), FrameCodec.Header.UINT16_BIG_ENDIAN);
+        codec.writeFrame(new byte[]{0x00, (byte) 0xA4, 0x04, 0x00});
+        codec.writeFrame(new byte[]{0x01, 0x02, 0x00, 0x00});
+        codec.writeFrame(new byte[0]);
+
+        byte[] first = codec.readPayload(codec.readHeader());
+        assertTrue(Arrays.areEqual(new byte[]{0x00, (byte) 0xA4, 0x04, 0x00}, first));
+        byte[] second = codec.readPayload(codec.readHeader());
+        assertTrue(Arrays.areEqual(new byte[]{0x01, 0x02, 0x00, 0x00}, second));
+        assertSame(first, second);
+        assertEquals(0, codec.readPayload(codec.readHeader()).length);
+    }
+
+    public void testCommandByte() throws Exception {
+        FrameCodec codec = new FrameCodec(pipe.source(), pipe.sink(), FrameCodec.Header.UINT16_BIG_ENDIAN);
+        codec.writeFrame(new byte[]{VSmartCardTCPProtocol.GET_ATR});
+        assertEquals(1, codec.readHeader());
+        assertEquals(VSmartCardTCPProtocol.GET_ATR, codec.readByte());
+    }
+
+    public void testEndOfStream() throws Exception {
+        FrameCodec codec = new FrameCodec(pipe.source(), pipe.sink(), FrameCodec.Header.INT32_LITTLE_ENDIAN);
+        pipe.sink().write(ByteBuffer.wrap(new byte[]{0x01, 0x00}));
+        pipe.sink().close();
+        try {
+            codec.readHeader();
+            fail("truncated header must fail");
+        } catch (EOFException e) {
+            // expected
+        }
+    }
+
+    public void testFrameTooLong() throws Exception {
+        FrameCodec codec = new FrameCodec(pipe.source(), pipe.sink(), FrameCodec.Header.UINT16_BIG_ENDIAN);
+        try {
+            codec.writeFrame(new byte[0x10000]);
+            fail("vpcd frames are limited to 65535 bytes");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import com.licel.jcardsim.base.Simulator;
+import com.licel.jcardsim.base.SimulatorRuntime;
+import com.licel.jcardsim.io.CAD;
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import javacard.framework.SystemException;
+import junit.framework.TestCase;
+import org.bouncycastle.util.Arrays;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Test for <code>JavaCardSocketServer</code> and <code>JavaCardSocketClient</code>
+ */
+public class JavaCardSocketServerTest extends TestCase {
+    private static final String TEST_APPLET_AID = "010203040506070809";
+    private static final byte[] NOP = {0x01, 0x02, 0x00, 0x00};
+    private static final byte[] SW_9000 = {(byte) 0x90, 0x00};
+
+    private JavaCardSocketServer server;
+    private JavaCardSocketClient client;
+
+    public JavaCardSocketServerTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        super.tearDown();
+    }
+
+    private void startTcpServer() throws Exception {
+        server = new JavaCardSocketServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.addCard(JavaCardSocketServer.DEFAULT_CARD, new Simulator(new SimulatorRuntime()));
+        server.start();
+        InetSocketAddress address = (InetSocketAddress) server.getLocalAddress();
+        client = new JavaCardSocketClient(address.getHostString(), address.getPort());
+    }
+
+    private static void installAndSelect(JavaCardSocketClient client) {
+        AID aid = AIDUtil.create(TEST_APPLET_AID);
+        client.installApplet(aid, HelloWorldApplet.class.getName(), new byte[0], (short) 0, (byte) 0);
+        assertTrue(client.selectApplet(aid));
+    }
+
+    public void testTransmit() throws Exception {
+        startTcpServer();
+        installAndSelect(client);
+        assertTrue(Arrays.areEqual(SW_9000, client.transmitCommand(NOP)));
+        assertEquals("T=0", client.getProtocol());
+        assertTrue(client.getATR().length > 0);
+    }
+
+    public void testPipelinedTransmit() throws Exception {
+        startTcpServer();
+        installAndSelect(client);
+        List<Future<byte[]>> responses = new ArrayList<Future<byte[]>>();
+        for (int i = 0; i < 100; i++) {
+            responses.add(client.transmitCommandAsync(NOP));
+        }
+        for (Future<byte[]> response : responses) {
+            assertTrue(Arrays.areEqual(SW_9000, response.get()));
+        }
+    }
+
+    public void testBatchTransmit() throws Exception {
+        startTcpServer();
+        installAndSelect(client);
+        byte[][] responses = client.transmitCommands(NOP, NOP, NOP);
+        assertEquals(3, responses.length);
+        for (byte[] response : responses) {
+            assertTrue(Arrays.areEqual(SW_9000, response));
+        }
+    }
+
+    public void testNamedCards() throws Exception {
+        startTcpServer();
+        server.addCard("second", new Simulator(new SimulatorRuntime()));
+        JavaCardSocketClient second = client.forCard("second");
+        installAndSelect(second);
+        assertTrue(Arrays.areEqual(SW_9000, second.transmitCommand(NOP)));
+
+        try {
+            client.forCard("missing").transmitCommand(NOP);
+            fail("SystemException expected");
+        } catch (SystemException e) {
+            assertEquals(SystemException.NO_RESOURCE, e.getReason());
+        }
+    }
+
+    public void testCardLifecycle() throws Exception {
+        startTcpServer();
+        server.getRegistry().addTemplate(CardRegistry.DEFAULT_TEMPLATE, new CardTemplate(new Properties()));
+        JavaCardSocketClient card = client.createCard(CardRegistry.DEFAULT_TEMPLATE);
+        assertNotNull(server.getCard(card.getCardName()));
+        installAndSelect(card);
+
+        JavaCardSocketClient clone = card.cloneCard();
+        assertTrue(clone.selectApplet(AIDUtil.create(TEST_APPLET_AID)));
+        assertTrue(Arrays.areEqual(SW_9000, clone.transmitCommand(NOP)));
+
+        card.resetCard();
+        assertFalse(card.selectApplet(AIDUtil.create(TEST_APPLET_AID)));
+        assertTrue(card.destroyCard());
+        assertNull(server.getCard(card.getCardName()));
+
+        try {
+            client.createCard("missing");
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testMalformedResponses() throws Exception {
+        // AID lengths that make decoding throw NegativeArraySizeException and SystemException
+        byte[][] payloads = {{RemoteProtocol.STATUS_OK, (byte) 0xFE},
+                {RemoteProtocol.STATUS_OK, 17, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17},
+                {RemoteProtocol.STATUS_OK}};
+        for (byte[] payload : payloads) {
+            JavaCardSocketClient.AIDResponse response = new JavaCardSocketClient.AIDResponse();
+            response.complete(ByteBuffer.wrap(payload));
+            assertTrue(response.isDone());
+            try {
+                response.get();
+                fail("ExecutionException expected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+    }
+
+    public void testUnixDomainSocketFileHandling() throws Exception {
+        if (!UnixDomainSockets.isSupported()) {
+            return;
+        }
+        File path = new File(System.getProperty("java.io.tmpdir"), "jcardsim-test-" + System.nanoTime() + ".sock");
+        assertTrue(path.createNewFile());
+        try {
+            JavaCardSocketServer.bindUnixDomainSocket(path.getAbsolutePath());
+            fail("IOException expected");
+        } catch (IOException e) {
+            // expected, regular files are not replaced
+        }
+        assertTrue(path.isFile());
+        assertTrue(path.delete());
+
+        // a second server replaces the stale socket, closing the first keeps it
+        JavaCardSocketServer first = JavaCardSocketServer.bindUnixDomainSocket(path.getAbsolutePath());
+        JavaCardSocketServer second = JavaCardSocketServer.bindUnixDomainSocket(path.getAbsolutePath());
+        first.close();
+        assertTrue(path.exists());
+        second.close();
+        assertFalse(path.exists());
+    }
+
+    public void testUnixDomainSocket() throws Exception {
+        if (!UnixDomainSockets.isSupported()) {
+            return;
+        }
+        File path = new File(System.getProperty("java.io.tmpdir"), "jcardsim-test-" + System.nanoTime() + ".sock");
+        server = JavaCardSocketServer.bindUnixDomainSocket(path.getAbsolutePath());
+        server.addCard(JavaCardSocketServer.DEFAULT_CARD, new Simulator(new SimulatorRuntime()));
+        server.start();
+        client = JavaCardSocketClient.connectUnixDomainSocket(path.getAbsolutePath());
+        installAndSelect(client);
+        assertTrue(Arrays.areEqual(SW_9000, client.transmitCommand(NOP)));
+
+        // terminal type SOCKET
+        Properties cfg = new Properties();
+        cfg.setProperty("com.licel.jcardsim.terminal.type", Byte.toString(CAD.SOCKET));
+        cfg.setProperty("com.licel.jcardsim.terminal.socket", path.getAbsolutePath());
+        JavaCardSocketClient cadClient = (JavaCardSocketClient) new CAD(cfg).getCardInterface();
+        try {
+            assertTrue(cadClient.selectApplet(AIDUtil.create(TEST_APPLET_AID)));
+            assertTrue(Arrays.areEqual(SW_9000, cadClient.transmitCommand(NOP)));
+        } finally {
+            cadClient.close();
+        }
+        client.close();
+        server.close();
+        assertFalse(path.exists());
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import com.licel.jcardsim.base.Simulator;
+import com.licel.jcardsim.base.SimulatorRuntime;
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import javacard.framework.SystemException;
+import junit.framework.TestCase;
+import org.bouncycastle.util.Arrays;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+
+/**
+ * Test for <code>SharedMemoryCardServer</code>
+ */
+public class SharedMemoryCardServerTest extends TestCase {
+    private static final String TEST_APPLET_AID = "010203040506070809";
+    private static final byte[] NOP = {0x01, 0x02, 0x00, 0x00};
+    private static final byte[] SW_9000 = {(byte) 0x90, 0x00};
+
+    private File file;
+    private SharedMemoryCardServer server;
+    private JavaCardSocketClient client;
+
+    public SharedMemoryCardServerTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = new File(System.getProperty("java.io.tmpdir"), "jcardsim-test-" + System.nanoTime() + ".shm");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        file.delete();
+        super.tearDown();
+    }
+
+    private void startServer(int capacity, SharedMemoryCardServer.WaitStrategy waitStrategy) throws Exception {
+        server = new SharedMemoryCardServer(file.getAbsolutePath(), capacity, new CardRegistry(), waitStrategy);
+        server.addCard(JavaCardSocketServer.DEFAULT_CARD, new Simulator(new SimulatorRuntime()));
+        server.start();
+        client = JavaCardSocketClient.connectSharedMemory(file.getAbsolutePath(), waitStrategy);
+    }
+
+    private static void installAndSelect(JavaCardSocketClient client) {
+        AID aid = AIDUtil.create(TEST_APPLET_AID);
+        client.installApplet(aid, HelloWorldApplet.class.getName(), new byte[0], (short) 0, (byte) 0);
+        assertTrue(client.selectApplet(aid));
+    }
+
+    public void testTransmit() throws Exception {
+        startServer(SharedMemoryCardServer.DEFAULT_CAPACITY, SharedMemoryCardServer.WaitStrategy.PARK);
+        installAndSelect(client);
+        assertTrue(Arrays.areEqual(SW_9000, client.transmitCommand(NOP)));
+        assertTrue(Arrays.areEqual(SW_9000, client.transmitCommandAsync(NOP).get()));
+        assertEquals("T=0", client.getProtocol());
+        assertTrue(client.getATR().length > 0);
+    }
+
+    public void testBusySpinWrapAround() throws Exception {
+        // small queues, messages wrap around the end of the data area
+        startServer(256, SharedMemoryCardServer.WaitStrategy.BUSY_SPIN);
+        installAndSelect(client);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(Arrays.areEqual(SW_9000, client.transmitCommand(NOP)));
+        }
+        try {
+            client.transmitCommand(new byte[512]);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected, the request does not fit into the queue
+        }
+        assertTrue(Arrays.areEqual(SW_9000, client.transmitCommand(NOP)));
+    }
+
+    public void testCardLifecycle() throws Exception {
+        startServer(SharedMemoryCardServer.DEFAULT_CAPACITY, SharedMemoryCardServer.WaitStrategy.PARK);
+        server.getRegistry().addTemplate(CardRegistry.DEFAULT_TEMPLATE, new CardTemplate(new Properties()));
+        JavaCardSocketClient card = client.createCard(CardRegistry.DEFAULT_TEMPLATE);
+        installAndSelect(card);
+        JavaCardSocketClient clone = card.cloneCard();
+        assertTrue(clone.selectApplet(AIDUtil.create(TEST_APPLET_AID)));
+        assertTrue(card.destroyCard());
+        assertTrue(clone.destroyCard());
+    }
+
+    public void testReconnectAndClose() throws Exception {
+        startServer(SharedMemoryCardServer.DEFAULT_CAPACITY, SharedMemoryCardServer.WaitStrategy.PARK);
+        installAndSelect(client);
+        client.close();
+        try {
+            client.transmitCommand(NOP);
+            fail("SystemException expected");
+        } catch (SystemException e) {
+            assertEquals(SystemException.NO_RESOURCE, e.getReason());
+        }
+
+        client = JavaCardSocketClient.connectSharedMemory(file.getAbsolutePath(), SharedMemoryCardServer.WaitStrategy.PARK);
+        assertTrue(Arrays.areEqual(SW_9000, client.transmitCommand(NOP)));
+
+        server.close();
+        assertFalse(file.exists());
+        try {
+            client.transmitCommand(NOP);
+            fail("SystemException expected");
+        } catch (SystemException e) {
+            assertEquals(SystemException.NO_RESOURCE, e.getReason());
+        }
+    }
+
+    public void testServerWithoutHeartbeat() throws Exception {
+        // a server process that died without marking the file closed
+        SharedMemoryTransport.create(file, 256, SharedMemoryCardServer.WaitStrategy.PARK);
+        SharedMemoryTransport transport = SharedMemoryTransport.open(file, SharedMemoryCardServer.WaitStrategy.PARK, 200);
+        transport.writeRequest(NOP, 0, NOP.length);
+        long start = System.nanoTime();
+        try {
+            transport.readResponse();
+            fail("IOException expected");
+        } catch (IOException e) {
+            // expected
+        }
+        assertTrue(System.nanoTime() - start < 5000000000L);
+    }
+
+    public void testRingBuffer() throws Exception {
+        ByteBuffer region = ByteBuffer.allocateDirect(MappedRingBuffer.HEADER_SIZE + 64);
+        MappedRingBuffer producer = new MappedRingBuffer(region, 64);
+        MappedRingBuffer consumer = new MappedRingBuffer(region.duplicate(), 64);
+        assertNull(consumer.poll());
+        byte[] message = new byte[25];
+        for (int i = 0; i < 10; i++) {
+            message[0] = (byte) i;
+            assertTrue(producer.offer(message, 0, message.length));
+            assertTrue(producer.offer(message, 0, message.length));
+            // third message does not fit until the consumer catches up
+            assertFalse(producer.offer(message, 0, message.length));
+            for (int j = 0; j < 2; j++) {
+                ByteBuffer received = consumer.poll();
+                assertEquals(message.length, received.remaining());
+                assertEquals(i, received.get(0));
+            }
+            assertNull(consumer.poll());
+        }
+    }
+}
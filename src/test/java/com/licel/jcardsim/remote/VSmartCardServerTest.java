@@ -0,0 +1,183 @@
+/*
+ * Copyright 2026 Licel Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.licel.jcardsim.remote;
+
+import com.licel.jcardsim.base.Simulator;
+import com.licel.jcardsim.base.SimulatorRuntime;
+import com.licel.jcardsim.samples.HelloWorldApplet;
+import com.licel.jcardsim.utils.AIDUtil;
+import javacard.framework.AID;
+import junit.framework.TestCase;
+import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Test for <code>VSmartCardServer</code>, the test plays the role of vpcd
+ */
+public class VSmartCardServerTest extends TestCase {
+    private static final String TEST_APPLET_AID = "010203040506070809";
+    private static final int CARDS = 3;
+
+    public VSmartCardServerTest(String name) {
+        super(name);
+    }
+
+    public void testMultipleCards() throws Exception {
+        AID aid = AIDUtil.create(TEST_APPLET_AID);
+        ServerSocket[] readers = new ServerSocket[CARDS];
+        Socket[] sockets = new Socket[CARDS];
+        VSmartCardServer server = new VSmartCardServer();
+        try {
+            server.start();
+            for (int i = 0; i < CARDS; i++) {
+                readers[i] = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+                Simulator sim = new Simulator(new SimulatorRuntime());
+                sim.installApplet(aid, HelloWorldApplet.class);
+                server.addCard("127.0.0.1", readers[i].getLocalPort(), sim);
+            }
+            for (int i = 0; i < CARDS; i++) {
+                sockets[i] = readers[i].accept();
+                sockets[i].setSoTimeout(10000);
+            }
+            assertEquals(CARDS, server.getCardCount());
+
+            byte[] select = AIDUtil.select(aid);
+            byte[] nop = new byte[]{0x01, 0x02, 0x00, 0x00};
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < CARDS; i++) {
+                    DataOutputStream out = new DataOutputStream(sockets[i].getOutputStream());
+                    // power on and ATR without waiting in between, as vpcd does
+                    out.write(new byte[]{0x00, 0x01, VSmartCardTCPProtocol.POWER_ON,
+                            0x00, 0x01, VSmartCardTCPProtocol.GET_ATR});
+                    out.writeShort(select.length);
+                    out.write(select);
+                    out.flush();
+                }
+                for (int i = 0; i < CARDS; i++) {
+                    DataInputStream in = new DataInputStream(sockets[i].getInputStream());
+                    assertTrue(Arrays.areEqual(Hex.decode(Simulator.DEFAULT_ATR), readFrame(in)));
+                    byte[] response = readFrame(in);
+                    assertEquals((byte) 0x90, response[response.length - 2]);
+
+                    DataOutputStream out = new DataOutputStream(sockets[i].getOutputStream());
+                    out.writeShort(nop.length);
+                    out.write(nop);
+                    out.flush();
+                    assertTrue(Arrays.areEqual(new byte[]{(byte) 0x90, 0x00}, readFrame(in)));
+                }
+            }
+
+            sockets[0].close();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (server.getCardCount() != CARDS - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(CARDS - 1, server.getCardCount());
+        } finally {
+            server.close();
+            for (int i = 0; i < CARDS; i++) {
+                if (sockets[i] != null) {
+                    sockets[i].close();
+                }
+                if (readers[i] != null) {
+                    readers[i].close();
+                }
+            }
+        }
+    }
+
+    public void testUnixDomainSocket() throws Exception {
+        if (!UnixDomainSockets.isSupported()) {
+            return;
+        }
+        AID aid = AIDUtil.create(TEST_APPLET_AID);
+        File path = new File(System.getProperty("java.io.tmpdir"), "jcardsim-vpcd-" + System.nanoTime() + ".sock");
+        ServerSocketChannel reader = UnixDomainSockets.openServer(path.getAbsolutePath());
+        SocketChannel socket = null;
+        VSmartCardServer server = new VSmartCardServer();
+        try {
+            server.start();
+            Simulator sim = new Simulator(new SimulatorRuntime());
+            sim.installApplet(aid, HelloWorldApplet.class);
+            server.addCard(path.getAbsolutePath(), sim);
+            socket = reader.accept();
+
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(socket));
+            DataInputStream in = new DataInputStream(Channels.newInputStream(socket));
+            byte[] select = AIDUtil.select(aid);
+            out.write(new byte[]{0x00, 0x01, VSmartCardTCPProtocol.POWER_ON,
+                    0x00, 0x01, VSmartCardTCPProtocol.GET_ATR});
+            out.writeShort(select.length);
+            out.write(select);
+            out.flush();
+            assertTrue(Arrays.areEqual(Hex.decode(Simulator.DEFAULT_ATR), readFrame(in)));
+            byte[] response = readFrame(in);
+            assertEquals((byte) 0x90, response[response.length - 2]);
+        } finally {
+            server.close();
+            if (socket != null) {
+                socket.close();
+            }
+            reader.close();
+            path.delete();
+        }
+    }
+
+    public void testProtocolConnectsToUnixDomainSocketWithoutDelay() throws Exception {
+        if (!UnixDomainSockets.isSupported()) {
+            return;
+        }
+        File path = new File(System.getProperty("java.io.tmpdir"), "jcardsim-vpcd-" + System.nanoTime() + ".sock");
+        ServerSocketChannel reader = UnixDomainSockets.openServer(path.getAbsolutePath());
+        VSmartCardTCPProtocol protocol = new VSmartCardTCPProtocol();
+        SocketChannel socket = null;
+        try {
+            long start = System.nanoTime();
+            protocol.connect(path.getAbsolutePath());
+            assertTrue(System.nanoTime() - start < 1000000000L);
+            socket = reader.accept();
+
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(socket));
+            out.write(new byte[]{0x00, 0x01, VSmartCardTCPProtocol.GET_ATR});
+            out.flush();
+            assertEquals(VSmartCardTCPProtocol.GET_ATR, protocol.readCommand());
+        } finally {
+            protocol.disconnect();
+            if (socket != null) {
+                socket.close();
+            }
+            reader.close();
+            path.delete();
+        }
+    }
+
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        byte[] frame = new byte[in.readUnsignedShort()];
+        in.readFully(frame);
+        return frame;
+    }
+}
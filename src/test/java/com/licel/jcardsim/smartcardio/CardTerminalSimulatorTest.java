@@ -1,11 +1,15 @@
 package com.licel.jcardsim.smartcardio;
 
+import com.licel.jcardsim.utils.AIDUtil;
 import com.licel.jcardsim.utils.AutoResetEvent;
 import javacard.framework.ISO7816;
 import junit.framework.TestCase;
 import org.bouncycastle.util.encoders.Hex;
 
 import javax.smartcardio.*;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
 import java.security.Security;
 import java.util.Arrays;
@@ -132,6 +136,52 @@ public class CardTerminalSimulatorTest extends TestCase {
         assertEquals("y", terminals.list().get(1).getName());
     }
 
+    public void testTransmitByteBuffer() throws CardException {
+        CardTerminal terminal = CardTerminalSimulator.terminals("buffer terminal").getTerminal("buffer terminal");
+        CardSimulator cardSimulator = new CardSimulator();
+        cardSimulator.createApplet(AIDUtil.create(TEST_APPLET_AID), new byte[0], (short) 0, (byte) 0);
+        cardSimulator.assignToTerminal(terminal);
+        CardChannel channel = terminal.connect("T=1").getBasicChannel();
+
+        ByteBuffer command = ByteBuffer.allocateDirect(64);
+        ByteBuffer response = ByteBuffer.allocateDirect(260);
+        command.put(new CommandAPDU(ISO7816.CLA_ISO7816, ISO7816.INS_SELECT, 4, 0, Hex.decode(TEST_APPLET_AID)).getBytes());
+        ((Buffer) command).flip();
+        assertEquals(2, channel.transmit(command, response));
+        assertEquals(0, command.remaining());
+        assertEquals(0x9000, response.getShort(0) & 0xFFFF);
+
+        // hello world, appended after the previous response
+        ((Buffer) command).clear();
+        command.put(new byte[]{0x00, 0x01, 0x00, 0x00});
+        ((Buffer) command).flip();
+        int length = channel.transmit(command, response);
+        assertEquals(2 + length, response.position());
+        ((Buffer) response).flip();
+        ((Buffer) response).position(2);
+        byte[] data = new byte[length];
+        response.get(data);
+        assertEquals(0x9000, new ResponseAPDU(data).getSW());
+        assertEquals("Hello world !", new String(new ResponseAPDU(data).getData()));
+
+        // response buffer too small
+        ((Buffer) command).flip();
+        ByteBuffer small = ByteBuffer.allocate(4);
+        try {
+            channel.transmit(command, small);
+            fail("BufferOverflowException expected");
+        } catch (BufferOverflowException e) {
+            assertEquals(0, small.position());
+        }
+
+        try {
+            channel.transmit(command, command);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
     public void testWaitForInsert() throws CardException, InterruptedException {
         final AutoResetEvent autoResetEvent = new AutoResetEvent();
         final CardTerminals terminals = CardTerminalSimulator.terminals("my terminal");
@@ -44,6 +44,9 @@ public class JCardSimProviderTest extends TestCase {
     protected void tearDown() throws Exception {
         System.clearProperty("com.licel.jcardsim.card.applet.0.AID");
         System.clearProperty("com.licel.jcardsim.card.applet.0.Class");
+        System.clearProperty("com.licel.jcardsim.terminal.count");
+        System.clearProperty("com.licel.jcardsim.terminal.1.card.applet.0.AID");
+        System.clearProperty("com.licel.jcardsim.terminal.1.card.applet.0.Class");
     }
 
     public void testProvider() throws CardException, NoSuchAlgorithmException, UnsupportedEncodingException {
@@ -140,4 +143,40 @@ public class JCardSimProviderTest extends TestCase {
         response = jcsChannel.transmit(new CommandAPDU(0x00, 0x08, 0x00, 0x00));
         assertEquals(0x9000, response.getSW());
     }
+
+    public void testMultipleTerminals() throws CardException, NoSuchAlgorithmException {
+        System.setProperty("com.licel.jcardsim.terminal.count", "3");
+        System.setProperty("com.licel.jcardsim.terminal.1.card.applet.0.AID", TEST_APPLET_AID);
+        System.setProperty("com.licel.jcardsim.terminal.1.card.applet.0.Class", "com.licel.jcardsim.samples.HelloWorldApplet");
+        if (Security.getProvider("jCardSim") == null) {
+            Security.addProvider(new JCardSimProvider());
+        }
+        List<CardTerminal> list = TerminalFactory.getInstance("jCardSim", null).terminals().list();
+        assertEquals(3, list.size());
+        assertEquals("jCardSim.Terminal", list.get(0).getName());
+        assertEquals("jCardSim.Terminal.1", list.get(1).getName());
+        assertEquals("jCardSim.Terminal.2", list.get(2).getName());
+
+        // only terminal 1 has the applet pre-installed
+        CardChannel first = list.get(1).connect("T=1").getBasicChannel();
+        CardChannel second = list.get(2).connect("T=1").getBasicChannel();
+        assertEquals(0x9000, createApplet(first).getSW());
+        assertTrue(createApplet(second).getSW() != 0x9000);
+        CommandAPDU selectApplet = new CommandAPDU(ISO7816.CLA_ISO7816, ISO7816.INS_SELECT, 4, 0, Hex.decode(TEST_APPLET_AID));
+        assertEquals(0x9000, first.transmit(selectApplet).getSW());
+        assertTrue(second.transmit(selectApplet).getSW() != 0x9000);
+
+        // the card is kept when the terminals are listed again
+        CardTerminal again = TerminalFactory.getInstance("jCardSim", null).terminals().list().get(1);
+        assertEquals(0x9000, again.connect("T=1").getBasicChannel().transmit(selectApplet).getSW());
+    }
+
+    private static ResponseAPDU createApplet(CardChannel channel) throws CardException {
+        byte[] aidBytes = Hex.decode(TEST_APPLET_AID);
+        byte[] createData = new byte[1 + aidBytes.length + 1 + 3];
+        createData[0] = (byte) aidBytes.length;
+        System.arraycopy(aidBytes, 0, createData, 1, aidBytes.length);
+        createData[1 + aidBytes.length] = (byte) 3;
+        return channel.transmit(new CommandAPDU(0x80, 0xb8, 0, 0, createData));
+    }
 }